@@ -31,6 +31,10 @@ public final class DiskBuilder extends Builder {
   private DataOutput vout;
   /** Output stream for temporary values. */
   private DataOutput sout;
+  /** References to shared texts (only assigned if values are deduplicated). */
+  private SharedValues sharedTexts;
+  /** References to shared attribute values (only assigned if values are deduplicated). */
+  private SharedValues sharedValues;
 
   /** Static options. */
   private final StaticOptions sopts;
@@ -68,11 +72,15 @@ public final class DiskBuilder extends Builder {
 
     elemNames = new Names(meta);
     attrNames = new Names(meta);
+    if(meta.deduplicate) {
+      sharedTexts = new SharedValues(meta.maxlen);
+      sharedValues = new SharedValues(meta.maxlen);
+    }
     try {
       try {
         tout = new DataOutput(new TableOutput(meta, DATATBL));
-        xout = new DataOutput(meta.dbfile(DATATXT), bs);
-        vout = new DataOutput(meta.dbfile(DATAATV), bs);
+        xout = output(DATATXT, bs);
+        vout = output(DATAATV, bs);
         sout = new DataOutput(meta.dbfile(DATATMP), bs);
         parse();
       } finally {
@@ -82,6 +90,15 @@ public final class DiskBuilder extends Builder {
         if(sout != null) sout.close();
       }
 
+      // write references to shared values
+      if(sharedTexts != null) {
+        try(DataOutput out = new DataOutput(meta.dbfile(DATASHR))) {
+          out.writeLongs(new long[] { xout.size(), vout.size() });
+          sharedTexts.write(out);
+          sharedValues.write(out);
+        }
+      }
+
       // copy temporary values into database table
       try(DataInput in = new DataInput(meta.dbfile(DATATMP))) {
         final TableAccess ta = new TableDiskAccess(meta, true);
@@ -157,6 +174,19 @@ public final class DiskBuilder extends Builder {
     ++ssize;
   }
 
+  /**
+   * Creates an output stream for texts or attribute values.
+   * @param name name of the file
+   * @param bs buffer size
+   * @return output stream
+   * @throws IOException I/O exception
+   */
+  private DataOutput output(final String name, final int bs) throws IOException {
+    final IOFile file = meta.dbfile(name);
+    return meta.compression ? new DataOutput(new CompressedOutput(file)) :
+      new DataOutput(file, bs);
+  }
+
   /**
    * Calculates the text offset and writes the text value.
    * @param value value to be inlined
@@ -169,11 +199,20 @@ public final class DiskBuilder extends Builder {
     final long v = Token.toSimpleInt(value);
     if(v != Integer.MIN_VALUE) return v | IO.OFFNUM;
 
+    // reference shared text
+    final SharedValues shared = text ? sharedTexts : sharedValues;
+    if(shared != null) {
+      final long ref = shared.get(value);
+      if(ref != -1) return ref;
+    }
+
     // store text to heap file
     final DataOutput store = text ? xout : vout;
     final long off = store.size();
-    final byte[] val = Compress.pack(value);
+    final byte[] val = meta.compression ? value : Compress.pack(value);
     store.writeToken(val);
-    return val == value ? off : off | IO.OFFCOMP;
+    final long ref = val == value ? off : off | IO.OFFCOMP;
+    if(shared != null) shared.add(value, ref);
+    return ref;
   }
 }
@@ -1,9 +1,12 @@
 package org.basex.core;
 
+import java.util.concurrent.atomic.*;
+
 import org.basex.core.jobs.*;
 import org.basex.core.locks.*;
 import org.basex.core.users.*;
 import org.basex.data.*;
+import org.basex.index.*;
 import org.basex.io.random.*;
 import org.basex.query.util.pkg.*;
 import org.basex.query.value.seq.*;
@@ -21,6 +24,9 @@ import org.basex.util.list.*;
  * @author Christian Gruen
  */
 public final class Context {
+  /** Indicates if global resources have been configured. */
+  private static final AtomicBoolean CONFIGURED = new AtomicBoolean();
+
   /** Client info. Set to {@code null} in standalone/server mode. */
   public final ClientInfo client;
   /** Blocked clients. */
@@ -125,6 +131,19 @@ public final class Context {
     user = users.get(UserText.ADMIN);
     jobs = new JobPool(soptions);
     client = null;
+    configure(soptions);
+  }
+
+  /**
+   * Configures resources that are shared by all contexts of the JVM.
+   * This is only done once, with the static options of the first main context.
+   * @param sopts static options
+   */
+  private static void configure(final StaticOptions sopts) {
+    if(CONFIGURED.getAndSet(true)) return;
+    BufferPool.get().size(sopts.get(StaticOptions.BUFFERPOOL));
+    IndexCache.capacity(sopts.get(StaticOptions.INDEXCACHE));
+    IndexCache.persist(sopts.get(StaticOptions.INDEXWARMUP));
   }
 
   /**
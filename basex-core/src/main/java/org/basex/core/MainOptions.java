@@ -22,6 +22,14 @@ public final class MainOptions extends Options {
   public static final BooleanOption MAINMEM = new BooleanOption("MAINMEM", false);
   /** Flag for closing a database after creating it. */
   public static final BooleanOption CREATEONLY = new BooleanOption("CREATEONLY", false);
+  /** Flag for accessing database files via memory mapping. */
+  public static final BooleanOption MMAP = new BooleanOption("MMAP", false);
+  /** Flag for journaling updates. */
+  public static final BooleanOption JOURNAL = new BooleanOption("JOURNAL", false);
+  /** Flag for storing texts and attribute values in compressed blocks. */
+  public static final BooleanOption COMPRESSION = new BooleanOption("COMPRESSION", false);
+  /** Flag for storing repeated texts and attribute values only once. */
+  public static final BooleanOption DEDUPLICATE = new BooleanOption("DEDUPLICATE", false);
 
   // Parsing
 
@@ -81,6 +89,12 @@ public final class MainOptions extends Options {
   public static final BooleanOption TOKENINDEX = new BooleanOption("TOKENINDEX", false);
   /** Flag for creating a full-text index. */
   public static final BooleanOption FTINDEX = new BooleanOption("FTINDEX", false);
+  /** Flag for creating an element index. */
+  public static final BooleanOption ELEMINDEX = new BooleanOption("ELEMINDEX", false);
+  /** Flag for creating a path-qualified value index. */
+  public static final BooleanOption PATHVALUEINDEX = new BooleanOption("PATHVALUEINDEX", false);
+  /** Flag for creating a trigram index. */
+  public static final BooleanOption TRIGRAMINDEX = new BooleanOption("TRIGRAMINDEX", false);
 
   /** Text index: names to include. */
   public static final StringOption TEXTINCLUDE = new StringOption("TEXTINCLUDE", "");
@@ -127,6 +141,10 @@ public final class MainOptions extends Options {
   public static final NumberOption INLINELIMIT = new NumberOption("INLINELIMIT", 100);
   /** Flag for tail-call optimization. */
   public static final NumberOption TAILCALLS = new NumberOption("TAILCALLS", 256);
+  /** Maximum number of tuples that are sorted in main memory (0: no limit). */
+  public static final NumberOption SORTBUFFER = new NumberOption("SORTBUFFER", 0);
+  /** Maximum number of groups that are built in main memory (0: no limit). */
+  public static final NumberOption GROUPBUFFER = new NumberOption("GROUPBUFFER", 0);
   /** Favor global database when opening resources. */
   public static final BooleanOption DEFAULTDB = new BooleanOption("DEFAULTDB", false);
   /** Forces database creation for unknown documents. */
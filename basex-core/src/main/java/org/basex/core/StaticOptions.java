@@ -38,6 +38,12 @@ public final class StaticOptions extends Options {
   public static final BooleanOption FAIRLOCK = new BooleanOption("FAIRLOCK", false);
   /** Timeout (seconds) for remembering result of asynchronous queries. */
   public static final NumberOption CACHETIMEOUT = new NumberOption("CACHETIMEOUT", 3600);
+  /** Size of the global buffer pool for database files (MB). */
+  public static final NumberOption BUFFERPOOL = new NumberOption("BUFFERPOOL", 32);
+  /** Maximum number of cached entries per index. */
+  public static final NumberOption INDEXCACHE = new NumberOption("INDEXCACHE", 65536);
+  /** Persist cached index keys when databases are closed. */
+  public static final BooleanOption INDEXWARMUP = new BooleanOption("INDEXWARMUP", false);
 
   /** Comment: written to options file. */
   public static final Comment C_CLIENT = new Comment("Client/Server Architecture");
@@ -176,6 +176,8 @@ public interface Text {
   String LI_SIZE = LI + "Size: ";
   /** Index info. */
   String LI_ENTRIES = LI + "Entries: ";
+  /** Index info. */
+  String LI_CACHE = LI + "Cache: ";
 
   /** Index info. */
   String HASH = "Hash";
@@ -288,7 +290,8 @@ public interface Text {
     LI + CmdCreate.DATABASE + " [" + S_NAME + "] ([" + S_INPUT + "]):"  + NL +
     "  " + lang("c_create21", S_NAME, S_INPUT) + NL +
     LI + CmdCreate.INDEX + " [" + CmdIndex.TEXT + '|' + CmdIndex.ATTRIBUTE + '|' +
-      CmdIndex.TOKEN + '|' + CmdIndex.FULLTEXT + "]:" + NL +
+      CmdIndex.TOKEN + '|' + CmdIndex.FULLTEXT + '|' + CmdIndex.ELEMENT + '|' +
+      CmdIndex.PATHVALUE + '|' + CmdIndex.TRIGRAM + "]:" + NL +
     "  " + lang("c_create23") + NL +
     LI + CmdCreate.USER + " [" + S_NAME + "] ([" + S_PW + "]):" + NL +
     "  " + lang("c_create24")
@@ -355,7 +358,8 @@ public interface Text {
     LI + CmdDrop.DATABASE + " [" + S_NAME + "]:" + NL +
     "  " + lang("c_drop21") + NL +
     LI + CmdDrop.INDEX + " [" + CmdIndex.TEXT + '|' + CmdIndex.ATTRIBUTE + '|' +
-      CmdIndex.TOKEN + '|' + CmdIndex.FULLTEXT + "]:" + NL +
+      CmdIndex.TOKEN + '|' + CmdIndex.FULLTEXT + '|' + CmdIndex.ELEMENT + '|' +
+      CmdIndex.PATHVALUE + '|' + CmdIndex.TRIGRAM + "]:" + NL +
     "  " + lang("c_drop22") + NL +
     LI + CmdDrop.USER + " [" + S_NAME + "] (" + ON + " [pattern]): " + NL +
       "  " + lang("c_drop23")
@@ -538,6 +542,12 @@ public interface Text {
   String INDEX_TOKENS_D = lang("index_tokens") + DOTS;
   /** Create full-text index. */
   String INDEX_FULLTEXT_D = lang("index_fulltext") + DOTS;
+  /** Create element index. */
+  String INDEX_ELEMENTS_D = lang("index_elements") + DOTS;
+  /** Create path-qualified value index. */
+  String INDEX_PATH_VALUES_D = lang("index_path_values") + DOTS;
+  /** Create trigram index. */
+  String INDEX_TRIGRAMS_D = lang("index_trigrams") + DOTS;
 
   /** Database created. */
   String DB_CREATED_X_X = lang("db_created_%_%");
@@ -582,6 +592,8 @@ public interface Text {
   String DB_PINNED_X = lang("db_pinned_%");
   /** Database updated. */
   String DB_UPDATED_X = lang("db_updated_%");
+  /** Database not journaled. */
+  String DB_NOT_JOURNALED_X = lang("db_not_journaled_%");
   /** Database closed. */
   String DB_CLOSED_X = lang("db_closed_%");
   /** Database optimized. */
@@ -1339,6 +1351,8 @@ public interface Text {
 
   /** Info on used main memory. */
   String USED_MEM = lang("used_mem");
+  /** Info on the buffer pool. */
+  String BUFFER_POOL = lang("buffer_pool");
   /** Memory information. */
   String TOTAL_MEM_C = lang("total_mem") + COLS;
   /** Memory information. */
@@ -82,10 +82,17 @@ public abstract class ACreate extends Command {
    * @return success flag
    */
   final boolean update(final Data data, final Code update) {
+    // prepare update, set locks
+    if(lock) {
+      try {
+        data.startUpdate(options);
+      } catch(final IOException ex) {
+        return error(Util.message(ex));
+      }
+    }
+
     IOException exc = null;
     try {
-      // prepare update, set locks
-      if(lock) data.startUpdate(options);
       // perform update, return success flag
       return update.run();
     } catch(final IOException ex) {
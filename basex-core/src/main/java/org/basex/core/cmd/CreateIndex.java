@@ -51,6 +51,15 @@ public final class CreateIndex extends ACreate {
       data.meta.diacritics = options.get(MainOptions.DIACRITICS);
       data.meta.language = Language.get(options);
       data.meta.stopwords = options.get(MainOptions.STOPWORDS);
+    } else if(ci == CmdIndex.ELEMENT) {
+      type = IndexType.ELEMENT;
+      data.meta.createelem = true;
+    } else if(ci == CmdIndex.PATHVALUE) {
+      type = IndexType.PATHVALUE;
+      data.meta.createpathvalue = true;
+    } else if(ci == CmdIndex.TRIGRAM) {
+      type = IndexType.TRIGRAM;
+      data.meta.createtrigram = true;
     } else {
       return error(UNKNOWN_CMD_X, this);
     }
@@ -82,6 +91,9 @@ public final class CreateIndex extends ACreate {
     if(data.meta.createattr) create(IndexType.ATTRIBUTE, data, cmd);
     if(data.meta.createtoken) create(IndexType.TOKEN, data, cmd);
     if(data.meta.createft) create(IndexType.FULLTEXT, data, cmd);
+    if(data.meta.createelem) create(IndexType.ELEMENT, data, cmd);
+    if(data.meta.createpathvalue) create(IndexType.PATHVALUE, data, cmd);
+    if(data.meta.createtrigram) create(IndexType.TRIGRAM, data, cmd);
   }
 
   /**
@@ -92,6 +104,8 @@ public final class CreateIndex extends ACreate {
    * @throws IOException I/O exception
    */
   static void create(final IndexType type, final Data data, final ACreate cmd) throws IOException {
+    // keys of the path index refer to the ids of an up-to-date path summary
+    if(type == IndexType.PATHVALUE) Optimize.structures(data, null);
     DropIndex.drop(type, data);
     data.createIndex(type, cmd);
     data.meta.index(type, true);
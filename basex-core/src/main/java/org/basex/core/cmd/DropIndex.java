@@ -43,6 +43,15 @@ public final class DropIndex extends ACreate {
     } else if(ci == CmdIndex.FULLTEXT) {
       type = IndexType.FULLTEXT;
       data.meta.createft = false;
+    } else if(ci == CmdIndex.ELEMENT) {
+      type = IndexType.ELEMENT;
+      data.meta.createelem = false;
+    } else if(ci == CmdIndex.PATHVALUE) {
+      type = IndexType.PATHVALUE;
+      data.meta.createpathvalue = false;
+    } else if(ci == CmdIndex.TRIGRAM) {
+      type = IndexType.TRIGRAM;
+      data.meta.createtrigram = false;
     } else {
       return error(UNKNOWN_CMD_X, this);
     }
@@ -106,61 +106,77 @@ public final class Optimize extends ACreate {
       final boolean enforceToken, final boolean enforceFt, final Optimize cmd) throws IOException {
 
     // initialize structural indexes
-    final MetaData meta = data.meta;
-    if(!meta.uptodate) {
-      data.paths.init();
-      data.elemNames.init();
-      data.attrNames.init();
-      meta.dirty = true;
-
-      final IntList pars = new IntList(), elemStack = new IntList();
-      int n = 0;
-
-      for(int pre = 0; pre < meta.size; ++pre) {
-        final byte kind = (byte) data.kind(pre);
-        final int par = data.parent(pre, kind);
-        while(!pars.isEmpty() && pars.peek() > par) {
-          pars.pop();
-          elemStack.pop();
-        }
-
-        final int level = pars.size();
-        if(kind == Data.DOC) {
-          data.paths.index(0, Data.DOC, level);
-          pars.push(pre);
-          elemStack.push(0);
-          ++n;
-        } else if(kind == Data.ELEM) {
-          final int id = data.nameId(pre);
-          data.elemNames.index(data.elemNames.key(id));
-          data.paths.index(id, Data.ELEM, level);
-          pars.push(pre);
-          elemStack.push(id);
-        } else if(kind == Data.ATTR) {
-          final int id = data.nameId(pre);
-          final byte[] value = data.text(pre, false);
-          data.attrNames.index(data.attrNames.key(id), value);
-          data.paths.index(id, Data.ATTR, level, value, meta);
-        } else {
-          final byte[] value = data.text(pre, true);
-          if(level > 1) {
-            final Stats stats = data.elemNames.stats(elemStack.peek());
-            if(kind == Data.TEXT) stats.add(value, meta);
-            else stats.setLeaf(false);
-          }
-          data.paths.index(0, kind, level, value, meta);
-        }
-        if(cmd != null) cmd.pre = pre;
-      }
-      meta.ndocs = n;
-      meta.uptodate = true;
-    }
+    final boolean paths = structures(data, cmd);
 
     // rebuild value indexes
+    final MetaData meta = data.meta;
     optimize(IndexType.TEXT, data, meta.createtext, enforceText, cmd);
     optimize(IndexType.ATTRIBUTE, data, meta.createattr, enforceAttr, cmd);
     optimize(IndexType.TOKEN, data, meta.createtoken, enforceToken, cmd);
     optimize(IndexType.FULLTEXT, data, meta.createft, enforceFt, cmd);
+    optimize(IndexType.ELEMENT, data, meta.createelem, false, cmd);
+    // path ids change if the path summary is rebuilt
+    optimize(IndexType.PATHVALUE, data, meta.createpathvalue, paths && meta.pathvalueindex, cmd);
+    optimize(IndexType.TRIGRAM, data, meta.createtrigram, false, cmd);
+  }
+
+  /**
+   * Rebuilds the path summary and the statistics of a database if they are not up-to-date.
+   * @param data data
+   * @param cmd calling command instance (may be {@code null})
+   * @return {@code true} if the structures have been rebuilt
+   */
+  static boolean structures(final Data data, final Optimize cmd) {
+    final MetaData meta = data.meta;
+    if(meta.uptodate) return false;
+
+    data.paths.init();
+    data.elemNames.init();
+    data.attrNames.init();
+    meta.dirty = true;
+
+    final IntList pars = new IntList(), elemStack = new IntList();
+    int n = 0;
+
+    for(int pre = 0; pre < meta.size; ++pre) {
+      final byte kind = (byte) data.kind(pre);
+      final int par = data.parent(pre, kind);
+      while(!pars.isEmpty() && pars.peek() > par) {
+        pars.pop();
+        elemStack.pop();
+      }
+
+      final int level = pars.size();
+      if(kind == Data.DOC) {
+        data.paths.index(0, Data.DOC, level);
+        pars.push(pre);
+        elemStack.push(0);
+        ++n;
+      } else if(kind == Data.ELEM) {
+        final int id = data.nameId(pre);
+        data.elemNames.index(data.elemNames.key(id));
+        data.paths.index(id, Data.ELEM, level);
+        pars.push(pre);
+        elemStack.push(id);
+      } else if(kind == Data.ATTR) {
+        final int id = data.nameId(pre);
+        final byte[] value = data.text(pre, false);
+        data.attrNames.index(data.attrNames.key(id), value);
+        data.paths.index(id, Data.ATTR, level, value, meta);
+      } else {
+        final byte[] value = data.text(pre, true);
+        if(level > 1) {
+          final Stats stats = data.elemNames.stats(elemStack.peek());
+          if(kind == Data.TEXT) stats.add(value, meta);
+          else stats.setLeaf(false);
+        }
+        data.paths.index(0, kind, level, value, meta);
+      }
+      if(cmd != null) cmd.pre = pre;
+    }
+    meta.ndocs = n;
+    meta.uptodate = true;
+    return true;
   }
 
   /**
@@ -199,6 +215,10 @@ public final class Optimize extends ACreate {
       if(data.meta.textindex) optimize(IndexType.TEXT, data, true, true, null);
       if(data.meta.attrindex) optimize(IndexType.ATTRIBUTE, data, true, true, null);
       if(data.meta.tokenindex) optimize(IndexType.TOKEN, data, true, true, null);
+      if(data.meta.ftindex) optimize(IndexType.FULLTEXT, data, true, true, null);
+      if(data.meta.elemindex) optimize(IndexType.ELEMENT, data, true, true, null);
+      if(data.meta.pathvalueindex) optimize(IndexType.PATHVALUE, data, true, true, null);
+      if(data.meta.trigramindex) optimize(IndexType.TRIGRAM, data, true, true, null);
     }
   }
 }
@@ -14,6 +14,7 @@ import org.basex.io.*;
 import org.basex.io.serial.*;
 import org.basex.query.value.item.*;
 import org.basex.query.value.node.*;
+import org.basex.util.*;
 import org.basex.util.list.*;
 
 /**
@@ -21,6 +22,9 @@ import org.basex.util.list.*;
  * the currently opened database. This effectively eliminates all fragmentation
  * and can lead to significant space savings after updates.
  *
+ * The new database is built in a temporary directory, while other jobs can still read the
+ * original database. Readers will only be blocked while the original database is replaced.
+ *
  * @author BaseX Team 2005-17, BSD License
  * @author Leo Woerteler
  */
@@ -35,11 +39,21 @@ public final class OptimizeAll extends ACreate {
   @Override
   protected boolean run() {
     final Data data = context.data();
+    // build optimized database
+    final String tmpName;
+    try {
+      tmpName = build(data, context, options, this);
+    } catch(final IOException ex) {
+      return error(Util.message(ex));
+    }
+
+    // block readers, replace original database
+    context.locking.upgrade();
     if(!update(data, new Code() {
       @Override
       boolean run() throws IOException {
         try {
-          optimizeAll(data, context, options, OptimizeAll.this);
+          replace(data, tmpName, context);
           return true;
         } finally {
           context.closeDB();
@@ -52,6 +66,13 @@ public final class OptimizeAll extends ACreate {
       error(open.info());
   }
 
+  @Override
+  public void addLocks() {
+    super.addLocks();
+    // defer exclusive lock until the original database will be replaced
+    jc().locks.deferred = true;
+  }
+
   @Override
   public boolean newData(final Context ctx) {
     return true;
@@ -80,21 +101,37 @@ public final class OptimizeAll extends ACreate {
    */
   public static void optimizeAll(final Data data, final Context context,
       final MainOptions options, final OptimizeAll cmd) throws IOException {
+    replace(data, build(data, context, options, cmd), context);
+  }
+
+  /**
+   * Builds an optimized copy of a database, including all index structures.
+   * The original database will only be read.
+   * @param data disk data
+   * @param context database context
+   * @param options main options
+   * @param cmd command reference or {@code null}
+   * @return name of the temporary database
+   * @throws IOException I/O Exception during index rebuild
+   * @throws BaseXException database exception
+   */
+  private static String build(final Data data, final Context context,
+      final MainOptions options, final OptimizeAll cmd) throws IOException {
 
     if(data.inMemory()) throw new BaseXException(NO_MAINMEM);
 
     final DiskData odata = (DiskData) data;
     final MetaData ometa = odata.meta;
-
-    // check if database is also pinned by other users
     final String name = ometa.name;
-    if(context.datas.pins(name) > 1) throw new BaseXException(DB_PINNED_X, name);
 
     // adopt original index options
     options.set(MainOptions.TEXTINDEX, ometa.textindex);
     options.set(MainOptions.ATTRINDEX, ometa.attrindex);
     options.set(MainOptions.TOKENINDEX, ometa.tokenindex);
     options.set(MainOptions.FTINDEX, ometa.ftindex);
+    options.set(MainOptions.ELEMINDEX, ometa.elemindex);
+    options.set(MainOptions.PATHVALUEINDEX, ometa.pathvalueindex);
+    options.set(MainOptions.TRIGRAMINDEX, ometa.trigramindex);
     options.set(MainOptions.TEXTINCLUDE, ometa.textinclude);
     options.set(MainOptions.ATTRINCLUDE, ometa.attrinclude);
     options.set(MainOptions.TOKENINCLUDE, ometa.tokeninclude);
@@ -120,10 +157,13 @@ public final class OptimizeAll extends ACreate {
     final DiskData ndata;
     try {
       ndata = builder.build();
+    } catch(final Throwable th) {
+      // build failed: delete temporary database
+      DropDB.drop(tmpName, sopts);
+      throw th;
     } finally {
       if(cmd != null) cmd.popJob();
     }
-    Close.close(odata, context);
 
     // adopt original meta data, create new index structures
     final MetaData nmeta = ndata.meta;
@@ -131,6 +171,9 @@ public final class OptimizeAll extends ACreate {
     nmeta.createattr = ometa.createattr;
     nmeta.createtoken = ometa.createtoken;
     nmeta.createft = ometa.createft;
+    nmeta.createelem = ometa.createelem;
+    nmeta.createpathvalue = ometa.createpathvalue;
+    nmeta.createtrigram = ometa.createtrigram;
     nmeta.original = ometa.original;
     nmeta.filesize = ometa.filesize;
     nmeta.time = ometa.time;
@@ -144,14 +187,50 @@ public final class OptimizeAll extends ACreate {
     } finally {
       ndata.close();
     }
+    return tmpName;
+  }
+
+  /**
+   * Closes a database and replaces it with an optimized copy.
+   * The original database is renamed first. It will be restored if the copy cannot be moved in.
+   * @param data disk data
+   * @param tmpName name of the optimized copy
+   * @param context database context
+   * @throws BaseXException database exception
+   */
+  private static void replace(final Data data, final String tmpName, final Context context)
+      throws BaseXException {
+
+    // check if database is also pinned by other users
+    final MetaData ometa = data.meta;
+    final String name = ometa.name;
+    final StaticOptions sopts = context.soptions;
+    if(context.datas.pins(name) > 1) {
+      DropDB.drop(tmpName, sopts);
+      throw new BaseXException(DB_PINNED_X, name);
+    }
+    Close.close(data, context);
 
-    // move binary files
-    final IOFile bin = ometa.binaries();
-    if(bin.exists()) bin.rename(nmeta.binaries());
+    // rename old database
+    final String oldName = sopts.randomDbName(name);
+    if(!sopts.dbPath(name).rename(sopts.dbPath(oldName))) {
+      DropDB.drop(tmpName, sopts);
+      throw new BaseXException(DB_NOT_RENAMED_X, name);
+    }
+
+    // move binary files, rename temporary database
+    final IOFile obin = new IOFile(sopts.dbPath(oldName), IO.RAW);
+    final IOFile nbin = new IOFile(sopts.dbPath(tmpName), IO.RAW);
+    if(obin.exists() && !obin.rename(nbin) || !AlterDB.alter(tmpName, name, sopts)) {
+      // restore old database
+      if(nbin.exists()) nbin.rename(obin);
+      DropDB.drop(tmpName, sopts);
+      sopts.dbPath(oldName).rename(sopts.dbPath(name));
+      throw new BaseXException(DB_NOT_RENAMED_X, tmpName);
+    }
 
-    // drop old database, rename temporary database
-    if(!DropDB.drop(name, sopts)) throw new BaseXException(DB_NOT_DROPPED_X, name);
-    if(!AlterDB.alter(tmpName, name, sopts)) throw new BaseXException(DB_NOT_RENAMED_X, tmpName);
+    // drop old database
+    if(!DropDB.drop(oldName, sopts)) throw new BaseXException(DB_NOT_DROPPED_X, oldName);
   }
 
   /**
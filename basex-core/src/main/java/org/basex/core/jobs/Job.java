@@ -13,7 +13,7 @@ import org.basex.util.*;
  * @author Christian Gruen
  */
 public abstract class Job {
-  /** Child jobs. */
+  /** Child jobs (may be modified by parallel child jobs). */
   private final List<Job> children = Collections.synchronizedList(new ArrayList<Job>(0));
   /** Job context. */
   private JobContext jc = new JobContext(this);
@@ -65,8 +65,8 @@ public abstract class Job {
    * @return job
    */
   public final Job active() {
-    for(final Job job : children) return job.active();
-    return this;
+    final Job[] jobs = children();
+    return jobs.length != 0 ? jobs[0].active() : this;
   }
 
   /**
@@ -84,8 +84,25 @@ public abstract class Job {
   /**
    * Pops the last job.
    */
-  public final synchronized void popJob() {
-    children.remove(children.size() - 1);
+  public final void popJob() {
+    synchronized(children) {
+      children.remove(children.size() - 1);
+    }
+  }
+
+  /**
+   * Removes the specified child job. Called by child jobs that may finish in arbitrary order.
+   * @param job child job
+   */
+  public final void popJob(final Job job) {
+    synchronized(children) {
+      for(int c = children.size() - 1; c >= 0; c--) {
+        if(children.get(c) == job) {
+          children.remove(c);
+          return;
+        }
+      }
+    }
   }
 
   /**
@@ -121,7 +138,7 @@ public abstract class Job {
    * @param js new state
    */
   public void state(final JobState js) {
-    for(final Job job : children) job.state(js);
+    for(final Job job : children()) job.state(js);
     state = js;
     if(js == JobState.STOPPED || js == JobState.TIMEOUT || js == JobState.MEMORY) {
       stopped = true;
@@ -169,12 +186,20 @@ public abstract class Job {
    * @param ctx job context
    */
   final void jobContext(final JobContext ctx) {
-    for(final Job job : children) job.jobContext(ctx);
+    for(final Job job : children()) job.jobContext(ctx);
     jc = ctx;
   }
 
   // PRIVATE FUNCTIONS ============================================================================
 
+  /**
+   * Returns a snapshot of the child jobs.
+   * @return child jobs
+   */
+  private Job[] children() {
+    return children.toArray(new Job[0]);
+  }
+
   /**
    * Starts a timeout thread.
    * @param sec seconds wait; deactivated if set to 0
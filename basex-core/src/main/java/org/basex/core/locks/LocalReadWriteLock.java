@@ -9,6 +9,8 @@ import java.util.concurrent.locks.*;
  * @author Christian Gruen
  */
 final class LocalReadWriteLock extends ReentrantReadWriteLock {
+  /** Lock for writers (acquired before the write lock; reads are not blocked). */
+  final ReentrantLock writers;
   /** Pins. */
   private int pins;
 
@@ -18,6 +20,7 @@ final class LocalReadWriteLock extends ReentrantReadWriteLock {
    */
   LocalReadWriteLock(final boolean fair) {
     super(fair);
+    writers = new ReentrantLock(fair);
   }
 
   /**
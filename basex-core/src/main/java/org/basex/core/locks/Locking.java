@@ -20,6 +20,16 @@ import org.basex.util.*;
  *
  * This class prevents locking deadlocks by sorting all strings.
  *
+ * Writers are serialized by a separate lock. If write locks are deferred, the exclusive write
+ * locks on databases will only be acquired when updates are applied (see {@link #upgrade()}).
+ * Until then, readers can access the same databases: they see the original state, as no changes
+ * have been made yet. No database snapshots are kept: while updates are applied, readers are
+ * blocked as before. Write locks are deferred by updating queries and by the online
+ * {@code OPTIMIZE ALL} command, which builds the optimized copy of a database while readers
+ * are still admitted and upgrades its locks before the original database is replaced. In both
+ * cases, locks are only deferred if all locks of the job are local write locks on databases.
+ * All other commands acquire exclusive locks right away.
+ *
  * Locks can only be released by the same thread which acquired it.
  *
  * Locking methods are not synchronized to each other. The user must make sure not to call them in
@@ -138,18 +148,42 @@ public final class Locking {
       }
     }
 
+    // serialize writers. write locks will only be deferred if no other locks need to be held
+    for(final String string : writes) {
+      pin(string).writers.lock();
+      if(!database(string)) locks.deferred = false;
+    }
+    if(read || writes.global()) locks.deferred = false;
+
     // assign locks in sorted order (to ensure that write locks will be assigned first)
     int w = 0, r = 0;
     final int rs = reads.size(), ws = writes.size();
     while(r < rs || w < ws) {
       if(w < ws && (r == rs || writes.get(w).compareTo(reads.get(r)) <= 0)) {
-        pin(writes.get(w++)).writeLock().lock();
+        final LocalReadWriteLock wl = lock(writes.get(w++));
+        if(!locks.deferred) wl.writeLock().lock();
       } else {
         pin(reads.get(r++)).readLock().lock();
       }
     }
   }
 
+  /**
+   * Acquires the exclusive write locks that have been deferred for the current job.
+   * Called before updates are applied.
+   */
+  public void upgrade() {
+    final Locks locks = locked.get(Thread.currentThread().getId());
+    if(locks == null || !locks.deferred) return;
+
+    // no deadlocks: other writers are blocked, and no other locks are held by the current job
+    for(final String write : locks.writes) {
+      final LocalReadWriteLock lock = lock(write);
+      if(!lock.isWriteLockedByCurrentThread()) lock.writeLock().lock();
+    }
+    locks.deferred = false;
+  }
+
   /**
    * Removes locks for the specified job, all in reverse order.
    */
@@ -161,7 +195,11 @@ public final class Locking {
 
     // release all local locks
     for(final String read : reads) unpin(read).readLock().unlock();
-    for(final String write : writes) unpin(write).writeLock().unlock();
+    for(final String write : writes) {
+      final LocalReadWriteLock wl = unpin(write);
+      if(wl.isWriteLockedByCurrentThread()) wl.writeLock().unlock();
+      wl.writers.unlock();
+    }
 
     // allow next global reader to resume
     synchronized(globalLock) {
@@ -206,6 +244,17 @@ public final class Locking {
     }
   }
 
+  /**
+   * Returns the lock of a pinned lock string.
+   * @param string lock string
+   * @return lock
+   */
+  private LocalReadWriteLock lock(final String string) {
+    synchronized(localLocks) {
+      return localLocks.get(string);
+    }
+  }
+
   /**
    * Unpins a lock string. Removes a lock if pin count is zero.
    * @param string lock string
@@ -221,6 +270,16 @@ public final class Locking {
     }
   }
 
+  /**
+   * Checks if the specified lock string references a database.
+   * @param string lock string
+   * @return result of check
+   */
+  private static boolean database(final String string) {
+    return !string.startsWith(PREFIX) && !string.startsWith(USER_PREFIX) &&
+      !string.startsWith(MODULE_PREFIX);
+  }
+
   @Override
   public String toString() {
     final StringBuilder sb = new StringBuilder(NL).append("Locking").append(NL);
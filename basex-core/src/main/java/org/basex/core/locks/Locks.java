@@ -14,6 +14,12 @@ public final class Locks {
   public final LockList reads = new LockList();
   /** Write locks. */
   public final LockList writes = new LockList();
+  /**
+   * Indicates if exclusive write locks on databases will be deferred until
+   * {@link Locking#upgrade()} is called. Until then, other jobs can read the databases;
+   * they will be blocked again while updates are applied.
+   */
+  public boolean deferred;
 
   /**
    * Finalizes locks. Replaces context references with current database, sorts entries,
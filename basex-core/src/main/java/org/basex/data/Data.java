@@ -100,6 +100,12 @@ public abstract class Data {
   public ValueIndex tokenIndex;
   /** Full-text index. */
   public ValueIndex ftIndex;
+  /** Element index. */
+  public ValueIndex elemIndex;
+  /** Path-qualified value index. */
+  public ValueIndex pathValueIndex;
+  /** Trigram index. */
+  public ValueIndex trigramIndex;
 
   /** Indicates if distances are to be updated. */
   public boolean updateDists = true;
@@ -151,7 +157,8 @@ public abstract class Data {
 
   /**
    * Starts an update operation: writes a file to disk to indicate that an update is going on,
-   * and exclusively locks the table file.
+   * and exclusively locks the table file. If an exception is raised, the update has not been
+   * started, and {@link #finishUpdate(MainOptions)} must not be called.
    * @param opts main options
    * @throws BaseXException database exception
    */
@@ -211,6 +218,9 @@ public abstract class Data {
       case ATTRIBUTE: return attrIndex;
       case TOKEN:     return tokenIndex;
       case FULLTEXT:  return ftIndex;
+      case ELEMENT:   return elemIndex;
+      case PATHVALUE: return pathValueIndex;
+      case TRIGRAM:   return trigramIndex;
       case PATH:      return paths;
       default:        throw Util.notExpected();
     }
@@ -523,18 +533,28 @@ public abstract class Data {
       } else {
         // update element name
         final IntList pres = new IntList();
-        // update text index
-        if(meta.updindex && meta.textindex) {
+        // update text and full-text index
+        if(meta.updindex && (meta.textindex || meta.ftindex)) {
           final int last = pre + sz;
           for(int curr = pre + attSize(pre, kind); curr < last; curr += size(curr, kind(curr))) {
             if(kind(curr) == TEXT) pres.add(curr);
           }
-          textIndex.delete(new ValueCache(pres, IndexType.TEXT, this));
+          if(meta.textindex) textIndex.delete(new ValueCache(pres, IndexType.TEXT, this));
+          if(meta.ftindex) ftIndex.delete(new ValueCache(pres, IndexType.FULLTEXT, this));
+        }
+        if(meta.updindex && meta.elemindex) {
+          elemIndex.delete(new ValueCache(pre, IndexType.ELEMENT, this));
         }
         table.write1(pre, 3, uriId);
         final int nameId = elemNames.put(name);
         table.write2(nsPre, 1, (nsFlag || nsFlag(nsPre) ? 1 << 15 : 0) | nameId);
-        if(!pres.isEmpty()) textIndex.add(new ValueCache(pres, IndexType.TEXT, this));
+        if(meta.updindex && meta.elemindex) {
+          elemIndex.add(new ValueCache(pre, IndexType.ELEMENT, this));
+        }
+        if(!pres.isEmpty()) {
+          if(meta.textindex) textIndex.add(new ValueCache(pres, IndexType.TEXT, this));
+          if(meta.ftindex) ftIndex.add(new ValueCache(pres, IndexType.FULLTEXT, this));
+        }
       }
     }
   }
@@ -1059,6 +1079,9 @@ public abstract class Data {
       if(meta.textindex) textIndex.delete(new ValueCache(pre, size, IndexType.TEXT, this));
       if(meta.attrindex) attrIndex.delete(new ValueCache(pre, size, IndexType.ATTRIBUTE, this));
       if(meta.tokenindex) tokenIndex.delete(new ValueCache(pre, size, IndexType.TOKEN, this));
+      if(meta.ftindex) ftIndex.delete(new ValueCache(pre, size, IndexType.FULLTEXT, this));
+      if(meta.elemindex) elemIndex.delete(new ValueCache(pre, size, IndexType.ELEMENT, this));
+      if(meta.trigramindex) trigramIndex.delete(new ValueCache(pre, size, IndexType.TRIGRAM, this));
       if(id != -1) idmap.delete(pre, id, -size);
     }
   }
@@ -1077,6 +1100,9 @@ public abstract class Data {
       if(meta.textindex) textIndex.add(new ValueCache(pre, size, IndexType.TEXT, this));
       if(meta.attrindex) attrIndex.add(new ValueCache(pre, size, IndexType.ATTRIBUTE, this));
       if(meta.tokenindex) tokenIndex.add(new ValueCache(pre, size, IndexType.TOKEN, this));
+      if(meta.ftindex) ftIndex.add(new ValueCache(pre, size, IndexType.FULLTEXT, this));
+      if(meta.elemindex) elemIndex.add(new ValueCache(pre, size, IndexType.ELEMENT, this));
+      if(meta.trigramindex) trigramIndex.add(new ValueCache(pre, size, IndexType.TRIGRAM, this));
     }
   }
 
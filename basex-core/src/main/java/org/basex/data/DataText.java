@@ -12,9 +12,9 @@ public interface DataText {
   // META DATA ====================================================================================
 
   /** Database version; older version cannot open these instances. */
-  String STORAGE = "8.6";
+  String STORAGE = "8.6.1";
   /** Index version; older version cannot open indexes of these instances. */
-  String ISTORAGE = "8.6";
+  String ISTORAGE = "8.6.1";
 
   /** Database version. */
   String DBSTR = "STORAGE";
@@ -36,6 +36,10 @@ public interface DataText {
   String DBUPDIDX = "UPDINDEX";
   /** Automatic optimization. */
   String DBAUTOOPT = "AUTOOPT";
+  /** Compressed texts and attribute values. */
+  String DBCOMPRESS = "COMPRESS";
+  /** Shared texts and attribute values. */
+  String DBDEDUP = "DEDUP";
   /** Text index. */
   String DBTXTIDX = "TXTINDEX";
   /** Attribute index. */
@@ -44,6 +48,12 @@ public interface DataText {
   String DBTOKIDX = "TOKINDEX";
   /** Full-text index. */
   String DBFTXIDX = "FTXINDEX";
+  /** Element index. */
+  String DBELMIDX = "ELMINDEX";
+  /** Path-qualified value index. */
+  String DBPVLIDX = "PVLINDEX";
+  /** Trigram index. */
+  String DBTRGIDX = "TRGINDEX";
   /** Text index: names. */
   String DBTXTINC = "TXTINC";
   /** Attribute index: names. */
@@ -84,6 +94,12 @@ public interface DataText {
   String DBCRTTOK = "CRTTOK";
   /** Recreate full-text index. */
   String DBCRTFTX = "CRTFTX";
+  /** Recreate element index. */
+  String DBCRTELM = "CRTELM";
+  /** Recreate path-qualified value index. */
+  String DBCRTPVL = "CRTPVL";
+  /** Recreate trigram index. */
+  String DBCRTTRG = "CRTTRG";
 
   /** Full-text wildcards indexing (legacy, obsolete). */
   String DBWCIDX = "WCINDEX";
@@ -115,6 +131,12 @@ public interface DataText {
   String DATATOK = "tok";
   /** Database - Full-text index. */
   String DATAFTX = "ftx";
+  /** Database - Element index. */
+  String DATAELM = "elm";
+  /** Database - Path-qualified value index. */
+  String DATAPVL = "pvl";
+  /** Database - Trigram index. */
+  String DATATRG = "trg";
   /** Database - Stopword list. */
   String DATASWL = "swl";
   /** Database - Updating flag. */
@@ -123,6 +145,10 @@ public interface DataText {
   String DATAPTH = "pth";
   /** Database - ID->PRE mapping. */
   String DATAIDP = "idp";
+  /** Database - Journal. */
+  String DATAJNL = "jnl";
+  /** Database - Shared values. */
+  String DATASHR = "shr";
 
   // XML SERIALIZATION ============================================================================
 
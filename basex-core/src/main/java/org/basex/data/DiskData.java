@@ -34,6 +34,10 @@ public final class DiskData extends Data {
   private DataAccess texts;
   /** Values access file. */
   private DataAccess values;
+  /** References to shared texts (assigned with the first update if values are deduplicated). */
+  private SharedValues sharedTexts;
+  /** References to shared attribute values (assigned with the first update). */
+  private SharedValues sharedValues;
 
   /**
    * Default constructor, called from {@link Open#open}.
@@ -43,6 +47,8 @@ public final class DiskData extends Data {
   public DiskData(final MetaData meta) throws IOException {
     super(meta);
 
+    // replay committed updates that have not been completely written to the database files
+    Journal.recover(meta.dbfile(DATAJNL));
     try(DataInput in = new DataInput(meta.dbfile(DATAINF))) {
       meta.read(in);
       while(true) {
@@ -65,12 +71,17 @@ public final class DiskData extends Data {
       if(meta.textindex) textIndex = new UpdatableDiskValues(this, IndexType.TEXT);
       if(meta.attrindex) attrIndex = new UpdatableDiskValues(this, IndexType.ATTRIBUTE);
       if(meta.tokenindex) tokenIndex = new UpdatableDiskValues(this, IndexType.TOKEN);
+      if(meta.elemindex) elemIndex = new UpdatableDiskValues(this, IndexType.ELEMENT);
+      if(meta.trigramindex) trigramIndex = new UpdatableDiskValues(this, IndexType.TRIGRAM);
     } else {
       if(meta.textindex) textIndex = new DiskValues(this, IndexType.TEXT);
       if(meta.attrindex) attrIndex = new DiskValues(this, IndexType.ATTRIBUTE);
       if(meta.tokenindex) tokenIndex = new DiskValues(this, IndexType.TOKEN);
+      if(meta.elemindex) elemIndex = new DiskValues(this, IndexType.ELEMENT);
+      if(meta.trigramindex) trigramIndex = new DiskValues(this, IndexType.TRIGRAM);
     }
     if(meta.ftindex) ftIndex = new FTIndex(this);
+    if(meta.pathvalueindex) pathValueIndex = new DiskValues(this, IndexType.PATHVALUE);
   }
 
   /**
@@ -100,9 +111,13 @@ public final class DiskData extends Data {
    * @throws IOException I/O exception
    */
   private void init() throws IOException {
+    // blocks of compressed files are not journaled (updates will be rejected)
+    if(meta.journaling && !meta.compression) meta.journal = new Journal(meta.dbfile(DATAJNL));
     table = new TableDiskAccess(meta, false);
-    texts = new DataAccess(meta.dbfile(DATATXT));
-    values = new DataAccess(meta.dbfile(DATAATV));
+    texts = new DataAccess(meta.dbfile(DATATXT), meta.mmap, meta.compression);
+    values = new DataAccess(meta.dbfile(DATAATV), meta.mmap, meta.compression);
+    texts.journal(meta.journal);
+    values.journal(meta.journal);
   }
 
   /**
@@ -112,6 +127,11 @@ public final class DiskData extends Data {
   private void write() throws IOException {
     if(!meta.dirty) return;
 
+    final Journal journal = meta.journal;
+    if(journal != null) {
+      journal.file(meta.dbfile(DATAINF));
+      if(meta.updindex) journal.file(meta.dbfile(DATAIDP));
+    }
     try(DataOutput out = new DataOutput(meta.dbfile(DATAINF))) {
       meta.write(out);
       out.writeToken(token(DBTAGS));
@@ -136,6 +156,7 @@ public final class DiskData extends Data {
     super.close();
     try {
       write();
+      writeShared();
       table.close();
       texts.close();
       values.close();
@@ -143,6 +164,13 @@ public final class DiskData extends Data {
       close(IndexType.ATTRIBUTE);
       close(IndexType.TOKEN);
       close(IndexType.FULLTEXT);
+      close(IndexType.ELEMENT);
+      close(IndexType.PATHVALUE);
+      close(IndexType.TRIGRAM);
+      if(meta.journal != null) {
+        meta.journal.close();
+        meta.journal = null;
+      }
     } catch(final IOException ex) {
       Util.stack(ex);
     }
@@ -163,11 +191,20 @@ public final class DiskData extends Data {
 
   @Override
   public void createIndex(final IndexType type, final Command cmd) throws IOException {
-    // close existing index
+    // close existing index; back up its files if updates are journaled
     close(type);
+    final Journal journal = meta.journal;
+    final String pattern = (type == IndexType.FULLTEXT ? DATAFTX : DiskValues.fileSuffix(type)) +
+        '.' + IO.BASEXSUFFIX;
+    if(journal != null) {
+      for(final IOFile file : meta.path.children()) {
+        if(file.name().matches(pattern)) journal.file(file);
+      }
+    }
     final IndexBuilder ib;
     switch(type) {
-      case TEXT: case ATTRIBUTE: case TOKEN: ib = new DiskValuesBuilder(this, type); break;
+      case TEXT: case ATTRIBUTE: case TOKEN: case ELEMENT: case PATHVALUE: case TRIGRAM:
+        ib = new DiskValuesBuilder(this, type); break;
       case FULLTEXT: ib = new FTBuilder(this); break;
       default: throw Util.notExpected();
     }
@@ -177,6 +214,13 @@ public final class DiskData extends Data {
     } finally {
       if(cmd != null) cmd.popJob();
     }
+
+    // journal the files of the new index
+    if(journal != null) {
+      for(final IOFile file : meta.path.children()) {
+        if(file.name().matches(pattern)) journal.created(file);
+      }
+    }
   }
 
   @Override
@@ -198,16 +242,27 @@ public final class DiskData extends Data {
       case ATTRIBUTE: attrIndex = index; break;
       case TOKEN:     tokenIndex = index; break;
       case FULLTEXT:  ftIndex = index; break;
+      case ELEMENT:   elemIndex = index; break;
+      case PATHVALUE: pathValueIndex = index; break;
+      case TRIGRAM:   trigramIndex = index; break;
       default:        break;
     }
   }
 
   @Override
   public void startUpdate(final MainOptions opts) throws BaseXException {
-    if(!table.lock(true)) throw new BaseXException(DB_PINNED_X, meta.name);
+    if(meta.journaling && meta.compression) throw new BaseXException(DB_NOT_JOURNALED_X, meta.name);
+    // restore shared lock if the update cannot be started
+    if(!table.lock(true)) {
+      table.lock(false);
+      throw new BaseXException(DB_PINNED_X, meta.name);
+    }
     if(opts.get(MainOptions.AUTOFLUSH)) {
       final IOFile upd = meta.updateFile();
-      if(upd.exists()) throw new BaseXException(DB_UPDATED_X, meta.name);
+      if(upd.exists()) {
+        table.lock(false);
+        throw new BaseXException(DB_UPDATED_X, meta.name);
+      }
       if(!upd.touch()) throw Util.notExpected("%: could not create lock file.", meta.name);
     }
   }
@@ -239,6 +294,13 @@ public final class DiskData extends Data {
         values.flush();
         if(textIndex != null) textIndex.flush();
         if(attrIndex != null) attrIndex.flush();
+        if(tokenIndex != null) tokenIndex.flush();
+        if(ftIndex != null) ftIndex.flush();
+        if(elemIndex != null) elemIndex.flush();
+        if(pathValueIndex != null) pathValueIndex.flush();
+        if(trigramIndex != null) trigramIndex.flush();
+        // commit journaled updates
+        if(meta.journal != null) meta.journal.commit();
       }
     } catch(final IOException ex) {
       Util.stack(ex);
@@ -313,8 +375,8 @@ public final class DiskData extends Data {
   protected void delete(final int pre, final boolean text) {
     // old entry (offset or value)
     final long old = textRef(pre);
-    // fill unused space with zero-bytes
-    if(!number(old)) (text ? texts : values).free(old & IO.OFFCOMP - 1, 0);
+    // fill unused space with zero-bytes (shared entries will be discarded by optimizations)
+    if(!number(old) && !meta.deduplicate) (text ? texts : values).free(old & IO.OFFCOMP - 1, 0);
   }
 
   @Override
@@ -331,12 +393,15 @@ public final class DiskData extends Data {
     final long v = toSimpleInt(value);
     if(v != Integer.MIN_VALUE) {
       // invalidate old entry if it was not inlined
-      if(!number(oldRef)) store.free(oldRef & IO.OFFCOMP - 1, 0);
+      if(!number(oldRef) && !meta.deduplicate) store.free(oldRef & IO.OFFCOMP - 1, 0);
       // inline integer value
       textRef(pre, v | IO.OFFNUM);
+    } else if(meta.deduplicate) {
+      // old entry may be shared: reference existing or append new entry
+      textRef(pre, textRef(value, kind != ATTR));
     } else {
       // otherwise, try to compress new value
-      final byte[] val = Compress.pack(value);
+      final byte[] val = pack(value);
 
       // choose inserting position
       final long off;
@@ -363,11 +428,74 @@ public final class DiskData extends Data {
     final long v = toSimpleInt(value);
     if(v != Integer.MIN_VALUE) return v | IO.OFFNUM;
 
+    // reference shared text
+    final SharedValues shared = shared(text);
+    if(shared != null) {
+      final long ref = shared.get(value);
+      if(ref != -1) return ref;
+    }
+
     // store text to heap file
     final DataAccess store = text ? texts : values;
     final long off = store.length();
-    final byte[] val = Compress.pack(value);
+    final byte[] val = pack(value);
     store.writeToken(off, val);
-    return val == value ? off : off | IO.OFFCOMP;
+    final long ref = val == value ? off : off | IO.OFFCOMP;
+    if(shared != null) shared.add(value, ref);
+    return ref;
+  }
+
+  /**
+   * Returns the references to shared texts or attribute values. When called for the first time,
+   * the references are read that have been written when the database was built or closed.
+   * @param text text or attribute value
+   * @return references, or {@code null} if values are not deduplicated
+   */
+  private SharedValues shared(final boolean text) {
+    if(!meta.deduplicate) return null;
+    if(sharedTexts == null) {
+      sharedTexts = new SharedValues(meta.maxlen);
+      sharedValues = new SharedValues(meta.maxlen);
+      final IOFile file = meta.dbfile(DATASHR);
+      if(file.exists()) {
+        try(DataInput in = new DataInput(file)) {
+          // heap entries are never overwritten: references are valid if the heaps are not shorter
+          final long[] lengths = in.readLongs(in.readNum());
+          if(lengths[0] <= texts.length() && lengths[1] <= values.length()) {
+            final SharedValues st = new SharedValues(in, meta.maxlen);
+            sharedValues = new SharedValues(in, meta.maxlen);
+            sharedTexts = st;
+          }
+        } catch(final IOException ex) {
+          Util.debug(ex);
+        }
+      }
+    }
+    return text ? sharedTexts : sharedValues;
+  }
+
+  /**
+   * Writes the references to shared texts and attribute values if they have been used.
+   * @throws IOException I/O exception
+   */
+  private void writeShared() throws IOException {
+    if(sharedTexts == null) return;
+
+    final IOFile file = meta.dbfile(DATASHR);
+    if(meta.journal != null) meta.journal.file(file);
+    try(DataOutput out = new DataOutput(file)) {
+      out.writeLongs(new long[] { texts.length(), values.length() });
+      sharedTexts.write(out);
+      sharedValues.write(out);
+    }
+  }
+
+  /**
+   * Compresses a token, unless texts and attribute values are stored in compressed blocks.
+   * @param value value
+   * @return compressed or original value
+   */
+  private byte[] pack(final byte[] value) {
+    return meta.compression ? value : Compress.pack(value);
   }
 }
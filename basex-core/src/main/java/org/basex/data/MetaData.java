@@ -13,6 +13,7 @@ import org.basex.index.*;
 import org.basex.io.*;
 import org.basex.io.in.DataInput;
 import org.basex.io.out.DataOutput;
+import org.basex.io.random.*;
 import org.basex.util.*;
 import org.basex.util.ft.*;
 
@@ -46,11 +47,21 @@ public final class MetaData {
   public boolean tokenindex;
   /** Indicates if a full-text index exists. */
   public boolean ftindex;
+  /** Indicates if an element index exists. */
+  public boolean elemindex;
+  /** Indicates if a path-qualified value index exists. */
+  public boolean pathvalueindex;
+  /** Indicates if a trigram index exists. */
+  public boolean trigramindex;
 
   /** Flag for activated automatic index update. */
   public boolean updindex;
   /** Flag for automatic index updating. */
   public boolean autooptimize;
+  /** Flag for compressed texts and attribute values. */
+  public boolean compression;
+  /** Flag for shared texts and attribute values. */
+  public boolean deduplicate;
 
   /** Indicates if the text index is to be recreated. */
   public boolean createtext;
@@ -60,6 +71,12 @@ public final class MetaData {
   public boolean createtoken;
   /** Indicates if the full-text index is to be recreated. */
   public boolean createft;
+  /** Indicates if the element index is to be recreated. */
+  public boolean createelem;
+  /** Indicates if the path-qualified value index is to be recreated. */
+  public boolean createpathvalue;
+  /** Indicates if the trigram index is to be recreated. */
+  public boolean createtrigram;
   /** Text index: names to include. */
   public String textinclude = "";
   /** Attribute index: names to include. */
@@ -94,6 +111,12 @@ public final class MetaData {
   public boolean corrupt;
   /** Dirty flag. */
   public boolean dirty;
+  /** Flag for memory-mapped file access (not stored on disk). */
+  public boolean mmap;
+  /** Flag for journaling updates (not stored on disk). */
+  public boolean journaling;
+  /** Journal (only assigned if a database with journaled updates is opened). */
+  public Journal journal;
 
   /** Number of nodes. */
   public int size;
@@ -128,11 +151,16 @@ public final class MetaData {
     createattr = options.get(MainOptions.ATTRINDEX);
     createtoken = options.get(MainOptions.TOKENINDEX);
     createft = options.get(MainOptions.FTINDEX);
+    createelem = options.get(MainOptions.ELEMINDEX);
+    createpathvalue = options.get(MainOptions.PATHVALUEINDEX);
+    createtrigram = options.get(MainOptions.TRIGRAMINDEX);
     diacritics = options.get(MainOptions.DIACRITICS);
     stemming = options.get(MainOptions.STEMMING);
     casesens = options.get(MainOptions.CASESENS);
     updindex = options.get(MainOptions.UPDINDEX);
     autooptimize = options.get(MainOptions.AUTOOPTIMIZE);
+    compression = options.get(MainOptions.COMPRESSION);
+    deduplicate = options.get(MainOptions.DEDUPLICATE);
     maxlen = options.get(MainOptions.MAXLEN);
     maxcats = options.get(MainOptions.MAXCATS);
     stopwords = options.get(MainOptions.STOPWORDS);
@@ -142,6 +170,8 @@ public final class MetaData {
     tokeninclude = options.get(MainOptions.TOKENINCLUDE);
     ftinclude = options.get(MainOptions.FTINCLUDE);
     splitsize = options.get(MainOptions.SPLITSIZE);
+    mmap = options.get(MainOptions.MMAP);
+    journaling = options.get(MainOptions.JOURNAL);
   }
 
   // STATIC METHODS ===============================================================================
@@ -292,6 +322,9 @@ public final class MetaData {
       case ATTRIBUTE: return attrindex;
       case TOKEN:     return tokenindex;
       case FULLTEXT:  return ftindex;
+      case ELEMENT:   return elemindex;
+      case PATHVALUE: return pathvalueindex;
+      case TRIGRAM:   return trigramindex;
       default:        throw Util.notExpected();
     }
   }
@@ -307,6 +340,9 @@ public final class MetaData {
       case ATTRIBUTE: attrindex = exists; break;
       case TOKEN:     tokenindex = exists; break;
       case FULLTEXT:  ftindex = exists; break;
+      case ELEMENT:   elemindex = exists; break;
+      case PATHVALUE: pathvalueindex = exists; break;
+      case TRIGRAM:   trigramindex = exists; break;
       default:        throw Util.notExpected();
     }
   }
@@ -322,6 +358,9 @@ public final class MetaData {
       case ATTRIBUTE: return attrinclude;
       case TOKEN:     return tokeninclude;
       case FULLTEXT:  return ftinclude;
+      case ELEMENT:
+      case PATHVALUE:
+      case TRIGRAM:   return "";
       default:        throw Util.notExpected();
     }
   }
@@ -337,6 +376,9 @@ public final class MetaData {
       case ATTRIBUTE: attrinclude = options.get(MainOptions.ATTRINCLUDE); break;
       case TOKEN:     tokeninclude = options.get(MainOptions.TOKENINCLUDE); break;
       case FULLTEXT:  ftinclude = options.get(MainOptions.FTINCLUDE); break;
+      case ELEMENT:
+      case PATHVALUE:
+      case TRIGRAM:   break;
       default:        throw Util.notExpected();
     }
   }
@@ -350,6 +392,9 @@ public final class MetaData {
    */
   void read(final DataInput in) throws IOException {
     String storage = "", istorage = "";
+    // flags are not stored in older databases
+    compression = false;
+    deduplicate = false;
     while(true) {
       final String k = Token.string(in.readToken());
       if(k.isEmpty()) break;
@@ -374,10 +419,15 @@ public final class MetaData {
         else if(k.equals(DBFTDC))     diacritics   = toBool(v);
         else if(k.equals(DBUPDIDX))   updindex     = toBool(v);
         else if(k.equals(DBAUTOOPT))  autooptimize = toBool(v);
+        else if(k.equals(DBCOMPRESS)) compression  = toBool(v);
+        else if(k.equals(DBDEDUP))    deduplicate  = toBool(v);
         else if(k.equals(DBTXTIDX))   textindex    = toBool(v);
         else if(k.equals(DBATVIDX))   attrindex    = toBool(v);
         else if(k.equals(DBTOKIDX))   tokenindex   = toBool(v);
         else if(k.equals(DBFTXIDX))   ftindex      = toBool(v);
+        else if(k.equals(DBELMIDX))   elemindex    = toBool(v);
+        else if(k.equals(DBPVLIDX))   pathvalueindex = toBool(v);
+        else if(k.equals(DBTRGIDX))   trigramindex = toBool(v);
         else if(k.equals(DBTXTINC))   textinclude  = v;
         else if(k.equals(DBATVINC))   attrinclude  = v;
         else if(k.equals(DBTOKINC))   tokeninclude = v;
@@ -387,6 +437,9 @@ public final class MetaData {
         else if(k.equals(DBCRTATV))   createattr   = toBool(v);
         else if(k.equals(DBCRTTOK))   createtoken  = toBool(v);
         else if(k.equals(DBCRTFTX))   createft     = toBool(v);
+        else if(k.equals(DBCRTELM))   createelem   = toBool(v);
+        else if(k.equals(DBCRTPVL))   createpathvalue = toBool(v);
+        else if(k.equals(DBCRTTRG))   createtrigram = toBool(v);
         else if(k.equals(DBWCIDX))    wcindex      = toBool(v);
         else if(k.equals(DBFTST))     stemming     = toBool(v);
         else if(k.equals(DBFTCS))     casesens     = toBool(v);
@@ -402,6 +455,16 @@ public final class MetaData {
     // check version of database indexes
     oldindex = !istorage.equals(ISTORAGE) &&
         new Version(istorage).compareTo(new Version(ISTORAGE)) > 0;
+    // deactivate value indexes if id lists were stored without skip pointers, and
+    // updatable full-text indexes if they were stored with pre values instead of ids
+    if(new Version(istorage).compareTo(new Version(ISTORAGE)) < 0 &&
+        (textindex || attrindex || tokenindex || updindex && ftindex)) {
+      textindex = false;
+      attrindex = false;
+      tokenindex = false;
+      if(updindex) ftindex = false;
+      oldindex = true;
+    }
     corrupt = dbfile(DATAUPD).exists();
     // deactivate full-text index if obsolete trie structure was used
     if(wcindex) ftindex = false;
@@ -422,10 +485,15 @@ public final class MetaData {
     writeInfo(out, DBSIZE,     size);
     writeInfo(out, DBUPDIDX,   updindex);
     writeInfo(out, DBAUTOOPT,  autooptimize);
+    writeInfo(out, DBCOMPRESS, compression);
+    writeInfo(out, DBDEDUP,    deduplicate);
     writeInfo(out, DBTXTIDX,   textindex);
     writeInfo(out, DBATVIDX,   attrindex);
     writeInfo(out, DBTOKIDX,   tokenindex);
     writeInfo(out, DBFTXIDX,   ftindex);
+    writeInfo(out, DBELMIDX,   elemindex);
+    writeInfo(out, DBPVLIDX,   pathvalueindex);
+    writeInfo(out, DBTRGIDX,   trigramindex);
     writeInfo(out, DBTXTINC,   textinclude);
     writeInfo(out, DBATVINC,   attrinclude);
     writeInfo(out, DBTOKINC,   tokeninclude);
@@ -435,6 +503,9 @@ public final class MetaData {
     writeInfo(out, DBCRTATV,   createattr);
     writeInfo(out, DBCRTTOK,   createtoken);
     writeInfo(out, DBCRTFTX,   createft);
+    writeInfo(out, DBCRTELM,   createelem);
+    writeInfo(out, DBCRTPVL,   createpathvalue);
+    writeInfo(out, DBCRTTRG,   createtrigram);
     writeInfo(out, DBFTST,     stemming);
     writeInfo(out, DBFTCS,     casesens);
     writeInfo(out, DBFTDC,     diacritics);
@@ -459,8 +530,12 @@ public final class MetaData {
       textindex = false;
       attrindex = false;
       tokenindex = false;
+      ftindex = false;
+      elemindex = false;
+      trigramindex = false;
     }
-    ftindex = false;
+    // the path summary, which is referenced by the path-qualified index, is not updated
+    pathvalueindex = false;
   }
 
   /**
@@ -85,6 +85,21 @@ public enum MetaProp {
     public Boolean value(final MetaData meta) { return meta.ftindex; }
   },
   /** Property. */
+  ELEMINDEX(true) {
+    @Override
+    public Boolean value(final MetaData meta) { return meta.elemindex; }
+  },
+  /** Property. */
+  PATHVALUEINDEX(true) {
+    @Override
+    public Boolean value(final MetaData meta) { return meta.pathvalueindex; }
+  },
+  /** Property. */
+  TRIGRAMINDEX(true) {
+    @Override
+    public Boolean value(final MetaData meta) { return meta.trigramindex; }
+  },
+  /** Property. */
   TEXTINCLUDE(true) {
     @Override
     public String value(final MetaData meta) { return meta.textinclude; }
@@ -140,6 +155,16 @@ public enum MetaProp {
     public Boolean value(final MetaData meta) { return meta.autooptimize; }
   },
   /** Property. */
+  COMPRESSION(true) {
+    @Override
+    public Boolean value(final MetaData meta) { return meta.compression; }
+  },
+  /** Property. */
+  DEDUPLICATE(true) {
+    @Override
+    public Boolean value(final MetaData meta) { return meta.deduplicate; }
+  },
+  /** Property. */
   MAXCATS(true) {
     @Override
     public Integer value(final MetaData meta) { return meta.maxcats; }
@@ -0,0 +1,91 @@
+package org.basex.data;
+
+import java.io.*;
+import java.util.*;
+
+import org.basex.io.in.DataInput;
+import org.basex.io.out.DataOutput;
+import org.basex.util.hash.*;
+import org.basex.util.list.*;
+
+/**
+ * This class remembers the references of texts or attribute values that have been
+ * stored in a heap file. It is used to store repeated values only once.
+ * To limit memory consumption, only short values are remembered, and the number of
+ * values is bounded. The references are written to disk when a database is built or closed.
+ *
+ * @author BaseX Team 2005-17, BSD License
+ * @author Christian Gruen
+ */
+public final class SharedValues {
+  /** Maximum number of remembered values. */
+  private static final int MAX = 1 << 20;
+  /** Values. */
+  private final TokenSet values = new TokenSet();
+  /** References (indexed by value ids, starting with 1). */
+  private final LongList refs = new LongList();
+  /** Maximum length of remembered values. */
+  private final int maxlen;
+
+  /**
+   * Constructor.
+   * @param maxlen maximum length of remembered values
+   */
+  public SharedValues(final int maxlen) {
+    this.maxlen = maxlen;
+    refs.add(-1);
+  }
+
+  /**
+   * Constructor, reading the references from disk.
+   * @param in input stream
+   * @param maxlen maximum length of remembered values
+   * @throws IOException I/O exception
+   */
+  public SharedValues(final DataInput in, final int maxlen) throws IOException {
+    this(maxlen);
+    final byte[][] vals = in.readTokens();
+    final long[] rfs = in.readLongs(in.readNum());
+    final int vl = vals.length;
+    for(int v = 0; v < vl; v++) add(vals[v], rfs[v]);
+  }
+
+  /**
+   * Writes the references to disk.
+   * @param out output stream
+   * @throws IOException I/O exception
+   */
+  public void write(final DataOutput out) throws IOException {
+    final int size = values.size();
+    final byte[][] vals = new byte[size][];
+    for(int id = 1; id <= size; id++) vals[id - 1] = values.key(id);
+    out.writeTokens(vals);
+    out.writeLongs(Arrays.copyOfRange(refs.toArray(), 1, size + 1));
+  }
+
+  /**
+   * Returns the reference of a value that has already been stored.
+   * @param value value
+   * @return reference, or {@code -1} if the value is unknown
+   */
+  public long get(final byte[] value) {
+    return value.length > maxlen ? -1 : refs.get(values.id(value));
+  }
+
+  /**
+   * Indicates if no more values will be remembered.
+   * @return result of check
+   */
+  public boolean full() {
+    return values.size() >= MAX;
+  }
+
+  /**
+   * Remembers the reference of a value.
+   * @param value value
+   * @param ref reference
+   */
+  public void add(final byte[] value, final long ref) {
+    if(value.length <= maxlen && !full() && values.add(value)) refs.add(ref);
+  }
+}
@@ -86,6 +86,11 @@ public abstract class IndexBuilder extends Job {
    * @return result of check
    */
   protected final boolean indexEntry() {
+    if(type == IndexType.ELEMENT) return data.kind(pre) == Data.ELEM;
+    if(type == IndexType.PATHVALUE || type == IndexType.TRIGRAM) {
+      final int kind = data.kind(pre);
+      return kind == Data.TEXT || kind == Data.ATTR;
+    }
     return data.kind(pre) == (text ? Data.TEXT : Data.ATTR) && includeNames.contains(pre, text);
   }
 
@@ -170,6 +175,9 @@ public abstract class IndexBuilder extends Job {
       case ATTRIBUTE: return INDEX_ATTRIBUTES_D;
       case TOKEN: return INDEX_TOKENS_D;
       case FULLTEXT: return INDEX_FULLTEXT_D;
+      case ELEMENT: return INDEX_ELEMENTS_D;
+      case PATHVALUE: return INDEX_PATH_VALUES_D;
+      case TRIGRAM: return INDEX_TRIGRAMS_D;
       default: throw Util.notExpected();
     }
   }
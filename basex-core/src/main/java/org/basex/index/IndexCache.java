@@ -2,54 +2,105 @@ package org.basex.index;
 
 import static org.basex.util.Token.*;
 
-import java.lang.ref.*;
-import java.util.concurrent.locks.*;
+import java.io.*;
+import java.util.concurrent.atomic.*;
 
+import org.basex.io.*;
+import org.basex.io.in.DataInput;
+import org.basex.io.out.DataOutput;
 import org.basex.util.*;
+import org.basex.util.list.*;
 
 /**
  * This class caches sizes and offsets from index results.
  *
+ * The number of entries is bounded. If the cache is full, the least recently used entry is
+ * evicted. A new entry is only admitted if its key has been requested at least as often as
+ * the key of the entry that would be evicted (TinyLFU admission): access frequencies are
+ * estimated by a compact count-min sketch, which is aged by halving all counters. This way,
+ * frequently requested keys will not be flushed by scans.
+ *
+ * Larger caches are divided into segments, which are locked independently. The sketch is shared
+ * by all segments and updated without locks: concurrent updates may get lost, which only affects
+ * the accuracy of the estimated frequencies.
+ *
  * @author BaseX Team 2005-17, BSD License
  * @author Dimitar Popov
  */
 public final class IndexCache {
-  /** Queue used to collect unused keys. */
-  private final ReferenceQueue<IndexEntry> queue = new ReferenceQueue<>();
-  /** Read-write lock. */
-  private final ReentrantReadWriteLock rwl = new ReentrantReadWriteLock(true);
-  /** Hash table buckets. */
-  private BucketEntry[] buckets = new BucketEntry[Array.CAPACITY];
-  /** Number of entries in the cache. */
-  private int size;
+  /** Default maximum number of entries. */
+  private static volatile int capacity = 1 << 16;
+  /** Indicates if the keys of the cache will be persisted. */
+  private static volatile boolean persist;
+  /** Seeds for the rows of the frequency sketch. */
+  private static final int[] SEEDS = { 0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F };
+  /** Maximum number of segments. */
+  private static final int SEGMENTS = 16;
+  /** Minimum number of entries per segment. */
+  private static final int SEGMENTSIZE = 1 << 10;
+
+  /** Maximum number of entries. */
+  private final int max;
+  /** Segments. */
+  private final Segment[] segments;
+  /** Counters of the frequency sketch (4 bits are used per counter). */
+  private final byte[] sketch;
+  /** Number of sketch increments since the counters have been halved. */
+  private final AtomicInteger increments = new AtomicInteger();
+
+  /**
+   * Constructor, using the default capacity.
+   */
+  public IndexCache() {
+    this(capacity);
+  }
+
+  /**
+   * Constructor.
+   * @param max maximum number of entries (0: disable cache)
+   */
+  public IndexCache(final int max) {
+    this.max = Math.max(0, max);
+    int s = 1 << 8;
+    while(s < this.max && s < 1 << 22) s <<= 1;
+    sketch = new byte[s];
+
+    int n = 1;
+    while(n < SEGMENTS && (long) n * SEGMENTSIZE << 1 <= this.max) n <<= 1;
+    segments = new Segment[n];
+    for(int i = 0; i < n; i++) segments[i] = new Segment(this.max / n + (i < this.max % n ? 1 : 0));
+  }
+
+  /**
+   * Assigns the default maximum number of entries of new caches.
+   * @param entries number of entries (0: disable caches)
+   */
+  public static void capacity(final int entries) {
+    capacity = entries;
+  }
+
+  /**
+   * Indicates if the keys of caches will be persisted when databases are closed.
+   * @param keys flag
+   */
+  public static void persist(final boolean keys) {
+    persist = keys;
+  }
 
   /**
    * Gets cached entry for the specified key.
    * @param key key
-   * @return cached entry or {@code null} if the entry is stale
+   * @return cached entry or {@code null} if the entry is not cached
    */
   public IndexEntry get(final byte[] key) {
     final int hash = hash(key);
-    rwl.readLock().lock();
-
-    try {
-      final int i = indexFor(hash, buckets.length);
-      BucketEntry e = buckets[i];
-      while(e != null) {
-        final IndexEntry entry = e.get();
-        if(entry != null && e.hash == hash && eq(entry.key, key)) return entry;
-        e = e.next;
-      }
-    } finally {
-      rwl.readLock().unlock();
-    }
-
-    return null;
+    increment(hash);
+    return segment(hash).get(key, hash);
   }
 
   /**
    * Adds a new cache entry. If an entry with the specified key already exists,
-   * it will be updated.
+   * it will be updated. If the cache is full, the entry may be rejected.
    * @param key key
    * @param count number of index hits
    * @param offset offset to id list
@@ -57,31 +108,7 @@ public final class IndexCache {
    */
   public IndexEntry add(final byte[] key, final int count, final long offset) {
     final int hash = hash(key);
-    rwl.writeLock().lock();
-
-    try {
-      purge();
-      final int i = indexFor(hash, buckets.length);
-      BucketEntry current = buckets[i], prev = current;
-      while(current != null) {
-        final BucketEntry next = current.next;
-        final IndexEntry entry = current.get();
-        if(entry == null) {
-          delete(i, current, prev, next);
-        } else if(current.hash == hash && eq(entry.key, key)) {
-          update(entry, count, offset);
-          return entry;
-        }
-        prev = current;
-        current = next;
-      }
-
-      final IndexEntry entry = new IndexEntry(key, count, offset);
-      add(i, hash, entry);
-      return entry;
-    } finally {
-      rwl.writeLock().unlock();
-    }
+    return segment(hash).add(key, hash, count, offset);
   }
 
   /**
@@ -90,142 +117,355 @@ public final class IndexCache {
    */
   public void delete(final byte[] key) {
     final int hash = hash(key);
-    rwl.writeLock().lock();
+    segment(hash).delete(key, hash);
+  }
 
-    try {
-      purge();
-      final int i = indexFor(hash, buckets.length);
-      BucketEntry e = buckets[i], prev = e;
-      while(e != null) {
-        final BucketEntry next = e.next;
-        final IndexEntry entry = e.get();
-        if(entry == null) {
-          delete(i, e, prev, next);
-        } else if(e.hash == hash && eq(entry.key, key)) {
-          delete(i, e, prev, next);
-          break;
-        }
-        prev = e;
-        e = next;
+  /**
+   * Returns the number of cached entries.
+   * @return number of entries
+   */
+  public int size() {
+    int size = 0;
+    for(final Segment segment : segments) {
+      synchronized(segment) {
+        size += segment.size;
       }
-    } finally {
-      rwl.writeLock().unlock();
     }
+    return size;
   }
 
   /**
-   * Purges stale entries from the cache.
+   * Returns the number of hits.
+   * @return hits
    */
-  private void purge() {
-    for(Object x; (x = queue.poll()) != null;) {
-      final BucketEntry e = (BucketEntry) x;
-      final int i = indexFor(e.hash, buckets.length);
-      BucketEntry prev = buckets[i], p = prev;
-      while(p != null) {
-        final BucketEntry next = p.next;
-        if(p == e) {
-          delete(i, e, prev, next);
-          break;
-        }
-        prev = p;
-        p = next;
+  public long hits() {
+    long hits = 0;
+    for(final Segment segment : segments) {
+      synchronized(segment) {
+        hits += segment.hits;
       }
     }
+    return hits;
   }
 
   /**
-   * Add a new index entry to the bucket with the specified index.
-   * @param i bucket index
-   * @param hash hash of the new index key
-   * @param entry index entry
+   * Returns the number of misses.
+   * @return misses
    */
-  private void add(final int i, final int hash, final IndexEntry entry) {
-    buckets[i] = new BucketEntry(hash, buckets[i], entry, queue);
-    if(++size == buckets.length) rehash();
+  public long misses() {
+    long misses = 0;
+    for(final Segment segment : segments) {
+      synchronized(segment) {
+        misses += segment.misses;
+      }
+    }
+    return misses;
   }
 
   /**
-   * Update an existing index entry.
-   * @param entry index entry to update
-   * @param size new size
-   * @param offset new offset
+   * Returns a string with information on the cache.
+   * @return info string
    */
-  private static void update(final IndexEntry entry, final int size, final long offset) {
-    entry.size = size;
-    entry.offset = offset;
+  public String info() {
+    final long hits = hits(), misses = misses(), total = hits + misses;
+    return size() + " of " + max + " entries, " + hits + " hits, " + misses + " misses" +
+      (total == 0 ? "" : " (" + hits * 100 / total + "%)");
+  }
+
+  /**
+   * Returns the keys of all entries. The keys of each segment are returned in one block,
+   * starting with the most recently used one.
+   * @return keys
+   */
+  public TokenList keys() {
+    final TokenList list = new TokenList();
+    for(final Segment segment : segments) {
+      synchronized(segment) {
+        for(BucketEntry e = segment.head.after; e != segment.head; e = e.after) {
+          list.add(e.entry.key);
+        }
+      }
+    }
+    return list;
   }
 
   /**
-   * Deletes a cached entry from the buckets with the specified index.
-   * @param i buckets index
-   * @param e cached entry to delete
-   * @param p previous cache entry
-   * @param n next cache entry
+   * Writes the keys of all entries to the specified file, or deletes the file if keys are
+   * not persisted or if the cache is empty.
+   * @param file file
+   * @throws IOException I/O exception
    */
-  private void delete(final int i, final BucketEntry e, final BucketEntry p, final BucketEntry n) {
-    if(p == e) buckets[i] = n;
-    else p.next = n;
-    e.next = null;
-    --size;
+  public void write(final IOFile file) throws IOException {
+    final TokenList keys = persist ? keys() : new TokenList();
+    if(keys.isEmpty()) {
+      if(file.exists()) file.delete();
+    } else {
+      try(DataOutput out = new DataOutput(file)) {
+        out.writeTokens(keys.finish());
+      }
+    }
   }
 
   /**
-   * Resizes the hash table.
+   * Reads the keys that have been persisted to the specified file.
+   * @param file file
+   * @return keys, starting with the most recently used one (empty if keys are not persisted)
+   * @throws IOException I/O exception
    */
-  private void rehash() {
-    purge();
+  public static byte[][] read(final IOFile file) throws IOException {
+    if(!persist || !file.exists()) return new byte[0][];
+    try(DataInput in = new DataInput(file)) {
+      return in.readTokens();
+    }
+  }
 
-    final int s = size << 1;
-    final BucketEntry[] tmp = new BucketEntry[s];
+  /**
+   * Returns the segment for the specified hash.
+   * @param hash hash
+   * @return segment
+   */
+  private Segment segment(final int hash) {
+    return segments[hash * SEEDS[0] >>> 28 & segments.length - 1];
+  }
 
-    final int l = buckets.length;
-    for(int i = 0; i < l; ++i) {
-      BucketEntry e = buckets[i];
-      buckets[i] = null;
-      while(e != null) {
-        final BucketEntry next = e.next;
-        final int p = indexFor(e.hash, tmp.length);
-        e.next = tmp[p];
-        tmp[p] = e;
-        e = next;
-      }
+  /**
+   * Increments the frequency counters of the specified hash.
+   * @param hash hash
+   */
+  private void increment(final int hash) {
+    if(max == 0) return;
+    for(int r = 0; r < 4; r++) {
+      final int i = slot(hash, r), shift = (i & 1) << 2;
+      // read counter once: concurrent updates may get lost, but counters cannot overflow
+      final int b = sketch[i >>> 1];
+      if((b >> shift & 0x0F) < 0x0F) sketch[i >>> 1] = (byte) (b + (1 << shift));
+    }
+    // halve all counters in regular intervals
+    if(increments.incrementAndGet() == sketch.length * 5) {
+      final int sl = sketch.length;
+      for(int s = 0; s < sl; s++) sketch[s] = (byte) (sketch[s] >>> 1 & 0x77);
+      increments.set(0);
     }
-    buckets = tmp;
   }
 
   /**
-   * Returns buckets index for a hash code.
-   * @param h hash code
-   * @param n number of available buckets
-   * @return index of a buckets
+   * Returns the estimated frequency of the specified hash.
+   * @param hash hash
+   * @return frequency
    */
-  private static int indexFor(final int h, final int n) {
-    return h & n - 1;
+  private int frequency(final int hash) {
+    int f = 0x0F;
+    for(int r = 0; r < 4; r++) {
+      final int i = slot(hash, r);
+      f = Math.min(f, sketch[i >>> 1] >> ((i & 1) << 2) & 0x0F);
+    }
+    return f;
+  }
+
+  /**
+   * Returns the position of a counter in the sketch.
+   * @param hash hash
+   * @param row row of the sketch
+   * @return position
+   */
+  private int slot(final int hash, final int row) {
+    final int h = hash * SEEDS[row];
+    return (h ^ h >>> 15) & (sketch.length << 1) - 1;
+  }
+
+  /**
+   * Segment of the cache, with its own hash table and list of recently used entries.
+   */
+  private final class Segment {
+    /** Maximum number of entries. */
+    private final int max;
+    /** List sentinel (after: most recently used entry, before: least recently used entry). */
+    private final BucketEntry head = new BucketEntry(0, null, null);
+    /** Hash table buckets. */
+    private BucketEntry[] buckets = new BucketEntry[Array.CAPACITY];
+    /** Number of entries in the segment. */
+    private int size;
+    /** Number of hits. */
+    private long hits;
+    /** Number of misses. */
+    private long misses;
+
+    /**
+     * Constructor.
+     * @param max maximum number of entries
+     */
+    Segment(final int max) {
+      this.max = max;
+      head.before = head;
+      head.after = head;
+    }
+
+    /**
+     * Gets cached entry for the specified key.
+     * @param key key
+     * @param hash hash of the key
+     * @return cached entry or {@code null} if the entry is not cached
+     */
+    synchronized IndexEntry get(final byte[] key, final int hash) {
+      for(BucketEntry e = buckets[indexFor(hash, buckets.length)]; e != null; e = e.next) {
+        if(e.hash == hash && eq(e.entry.key, key)) {
+          hits++;
+          unlink(e);
+          link(e);
+          return e.entry;
+        }
+      }
+      misses++;
+      return null;
+    }
+
+    /**
+     * Adds a new cache entry.
+     * @param key key
+     * @param hash hash of the key
+     * @param count number of index hits
+     * @param offset offset to id list
+     * @return cache entry
+     */
+    synchronized IndexEntry add(final byte[] key, final int hash, final int count,
+        final long offset) {
+      for(BucketEntry e = buckets[indexFor(hash, buckets.length)]; e != null; e = e.next) {
+        if(e.hash == hash && eq(e.entry.key, key)) {
+          e.entry.size = count;
+          e.entry.offset = offset;
+          unlink(e);
+          link(e);
+          return e.entry;
+        }
+      }
+
+      final IndexEntry entry = new IndexEntry(key, count, offset);
+      if(size >= max) {
+        // reject entry if it has been requested less often than the least recently used entry
+        final BucketEntry lru = head.before;
+        if(lru == head || frequency(hash) < frequency(lru.hash)) return entry;
+        delete(lru);
+      }
+      final int i = indexFor(hash, buckets.length);
+      final BucketEntry e = new BucketEntry(hash, buckets[i], entry);
+      buckets[i] = e;
+      link(e);
+      if(++size == buckets.length) rehash();
+      return entry;
+    }
+
+    /**
+     * Deletes a cached entry.
+     * @param key key
+     * @param hash hash of the key
+     */
+    synchronized void delete(final byte[] key, final int hash) {
+      for(BucketEntry e = buckets[indexFor(hash, buckets.length)]; e != null; e = e.next) {
+        if(e.hash == hash && eq(e.entry.key, key)) {
+          delete(e);
+          return;
+        }
+      }
+    }
+
+    /**
+     * Links the specified entry as most recently used entry.
+     * @param e entry
+     */
+    private void link(final BucketEntry e) {
+      e.before = head;
+      e.after = head.after;
+      head.after.before = e;
+      head.after = e;
+    }
+
+    /**
+     * Unlinks the specified entry from the list.
+     * @param e entry
+     */
+    private void unlink(final BucketEntry e) {
+      e.before.after = e.after;
+      e.after.before = e.before;
+    }
+
+    /**
+     * Deletes the specified entry.
+     * @param entry entry to delete
+     */
+    private void delete(final BucketEntry entry) {
+      final int i = indexFor(entry.hash, buckets.length);
+      BucketEntry prev = null;
+      for(BucketEntry e = buckets[i]; e != null; prev = e, e = e.next) {
+        if(e == entry) {
+          if(prev == null) buckets[i] = e.next;
+          else prev.next = e.next;
+          unlink(e);
+          --size;
+          return;
+        }
+      }
+    }
+
+    /**
+     * Resizes the hash table.
+     */
+    private void rehash() {
+      final int s = size << 1;
+      final BucketEntry[] tmp = new BucketEntry[s];
+
+      final int l = buckets.length;
+      for(int i = 0; i < l; ++i) {
+        BucketEntry e = buckets[i];
+        buckets[i] = null;
+        while(e != null) {
+          final BucketEntry next = e.next;
+          final int p = indexFor(e.hash, tmp.length);
+          e.next = tmp[p];
+          tmp[p] = e;
+          e = next;
+        }
+      }
+      buckets = tmp;
+    }
+
+    /**
+     * Returns buckets index for a hash code.
+     * @param h hash code
+     * @param n number of available buckets
+     * @return index of a buckets
+     */
+    private int indexFor(final int h, final int n) {
+      return h & n - 1;
+    }
   }
 
   /**
    * Cache buckets entry. Used to implement a linked list of cache entries for
-   * each buckets. It also stores the hash of the current entry for better
-   * performance.
+   * each buckets, and a list with all entries in the order of their usage.
+   * It also stores the hash of the current entry for better performance.
    */
-  private static class BucketEntry extends SoftReference<IndexEntry> {
+  private static final class BucketEntry {
     /** Hash code of the stored cache entry key. */
     final int hash;
+    /** Cache entry. */
+    final IndexEntry entry;
     /** Next buckets entry or {@code null} if the last one for this buckets. */
     BucketEntry next;
+    /** More recently used entry. */
+    BucketEntry before;
+    /** Less recently used entry. */
+    BucketEntry after;
 
     /**
      * Constructor.
      * @param h hash code of the cache entry key
      * @param n next buckets entry or {@code null} if the last one
      * @param v stored cache entry
-     * @param rq reference queue
      */
-    BucketEntry(final int h, final BucketEntry n, final IndexEntry v,
-        final ReferenceQueue<IndexEntry> rq) {
-      super(v, rq);
+    BucketEntry(final int h, final BucketEntry n, final IndexEntry v) {
       hash = h;
       next = n;
+      entry = v;
     }
   }
 }
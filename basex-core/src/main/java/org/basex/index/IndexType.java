@@ -22,7 +22,22 @@ public enum IndexType {
   /** Token index. */
   TOKEN,
   /** Full-text index. */
-  FULLTEXT;
+  FULLTEXT,
+  /** Element index. */
+  ELEMENT,
+  /** Path-qualified value index. */
+  PATHVALUE,
+  /** Trigram index. */
+  TRIGRAM;
+
+  /**
+   * Indicates if multiple keys are indexed per node, and if the positions of the keys
+   * are stored with the ids.
+   * @return result of check
+   */
+  public boolean tokenize() {
+    return this == TOKEN || this == TRIGRAM;
+  }
 
   @Override
   public String toString() {
@@ -57,11 +57,16 @@ public final class FTBuilder extends IndexBuilder {
   public FTIndex build() throws IOException {
     Util.debug(detailedInfo());
 
+    // updatable index: store ids instead of pre values, discard old delta segment
+    final boolean updindex = data.meta.updindex;
+    if(updindex) data.meta.dbfile(DATAFTX + 'd').delete();
     try {
       for(pre = 0; pre < size; ++pre) {
         if((pre & 0x0FFF) == 0) check();
         if(!indexEntry()) continue;
 
+        final int id = updindex ? data.id(pre) : pre;
+
         // current lexer position
         final StopWords sw = lexer.ftOpt().sw;
         lexer.init(data.text(pre, true));
@@ -76,7 +81,7 @@ public final class FTBuilder extends IndexBuilder {
               writeIndex(true);
               clean();
             }
-            tree.index(tok, pre, pos, splits);
+            tree.index(tok, id, pos, splits);
             count++;
           }
         }
@@ -158,7 +163,7 @@ public final class FTBuilder extends IndexBuilder {
    * @param lp last offset
    * @throws IOException I/O exception
    */
-  private static void writeInd(final DataOutput outX, final IntList il,
+  static void writeInd(final DataOutput outX, final IntList il,
       final int ls, final int lp) throws IOException {
 
     final int is = il.size();
@@ -6,6 +6,7 @@ import static org.basex.util.Token.*;
 import static org.basex.util.ft.FTFlag.*;
 
 import java.io.*;
+import java.util.*;
 
 import org.basex.core.*;
 import org.basex.data.*;
@@ -13,6 +14,9 @@ import org.basex.index.*;
 import org.basex.index.query.*;
 import org.basex.index.stats.*;
 import org.basex.index.value.*;
+import org.basex.io.*;
+import org.basex.io.in.DataInput;
+import org.basex.io.out.DataOutput;
 import org.basex.io.random.*;
 import org.basex.query.expr.ft.*;
 import org.basex.query.util.ft.*;
@@ -43,15 +47,33 @@ import org.basex.util.similarity.*;
  * </li>
  * <li>File <b>z</b> contains the {@code id/pos} references.
  *   The values are ordered, but not distinct:<br/>
- *   {@code pre1/pos1, pre2/pos2, pre3/pos3, ...} [{@link Num}]</li>
+ *   {@code id1/pos1, id2/pos2, id3/pos3, ...} [{@link Num}]<br/>
+ *   If the index is not updatable, pre values are stored instead of ids.</li>
  * </ul>
  *
+ * <p>If {@link MainOptions#UPDINDEX} is enabled, the files represent the main segment of the
+ * index. Updates are recorded in a delta segment, which is kept in main memory and written
+ * to file <b>d</b> when updates are flushed. It consists of the ids of all deleted nodes and
+ * the {@code id/pos} references of all added tokens. Entries of deleted nodes are skipped when
+ * the main segment is accessed, and the entries of the delta segment are added. If the delta
+ * segment gets too large, both segments are merged and the main segment is rewritten.</p>
+ *
  * @author BaseX Team 2005-17, BSD License
  * @author Christian Gruen
  */
 public final class FTIndex extends ValueIndex {
   /** Entry size. */
   private static final int ENTRY = 9;
+  /** Maximum number of delta entries before the segments will be merged. */
+  private static final int MERGE = 1 << 18;
+  /** Order of tokens in the index: by length, then lexicographically. */
+  private static final Comparator<byte[]> ORDER = new Comparator<byte[]>() {
+    @Override
+    public int compare(final byte[] token1, final byte[] token2) {
+      final int d = token1.length - token2.length;
+      return d != 0 ? d : diff(token1, token2);
+    }
+  };
 
   /** Cached texts. Increases used memory, but speeds up repeated queries. */
   private final IntObjMap<byte[]> ctext = new IntObjMap<>();
@@ -60,16 +82,27 @@ public final class FTIndex extends ValueIndex {
 
   /** Index storing each unique token length and pointer
    * on the first token with this length. */
-  private final DataAccess inX;
+  private DataAccess inX;
   /** Index storing each token, its data size and pointer on the data. */
-  private final DataAccess inY;
-  /** Storing pre and pos values for each token. */
-  private final DataAccess inZ;
+  private DataAccess inY;
+  /** Storing id and pos values for each token. */
+  private DataAccess inZ;
 
   /** Cache for number of hits and data reference per token. */
-  private final IndexCache cache = new IndexCache();
+  private IndexCache cache = new IndexCache();
   /** Token positions. */
-  private final int[] tp;
+  private int[] tp;
+
+  /** Delta segment: id/pos values of added tokens ({@code null} if index is not updatable). */
+  private final TokenObjMap<IntList> delta;
+  /** Ids of deleted nodes. */
+  private IntSet deleted = new IntSet();
+  /** Number of id/pos entries in the delta segment. */
+  private int count;
+  /** Indicates if the delta segment has been modified. */
+  private boolean dirty;
+  /** Lexer for updated texts (lazy instantiation). */
+  private FTLexer lexer;
 
   /**
    * Constructor, initializing the index structure.
@@ -78,6 +111,20 @@ public final class FTIndex extends ValueIndex {
    */
   public FTIndex(final Data data) throws IOException {
     super(data, IndexType.FULLTEXT);
+    open();
+    delta = data.meta.updindex ? new TokenObjMap<IntList>() : null;
+    if(delta != null) readDelta();
+
+    // warm up cache with the tokens that were cached when the index was closed
+    final byte[][] tokens = IndexCache.read(data.meta.dbfile(DATAFTX + 'c'));
+    for(int t = tokens.length - 1; t >= 0; t--) read(tokens[t]);
+  }
+
+  /**
+   * Opens the files of the main segment.
+   * @throws IOException I/O Exception
+   */
+  private void open() throws IOException {
     // cache token length index
     inY = new DataAccess(data.meta.dbfile(DATAFTX + 'y'));
     inZ = new DataAccess(data.meta.dbfile(DATAFTX + 'z'));
@@ -111,7 +158,7 @@ public final class FTIndex extends ValueIndex {
     final FTOpt opt = ((FTLexer) it).ftOpt();
     if(opt.is(FZ) || opt.is(WC)) return Math.max(1, data.meta.size >> 4);
 
-    return entry(tok).size;
+    return entry(tok).size + deltaSize(tok);
   }
 
   @Override
@@ -128,7 +175,8 @@ public final class FTIndex extends ValueIndex {
 
     // return cached or new result
     final IndexEntry e = entry(tok);
-    return e.size > 0 ? iter(e.offset, e.size, inZ, tok) : FTIndexIterator.FTEMPTY;
+    return e.size > 0 || deltaSize(tok) > 0 ? iter(e.offset, e.size, tok) :
+      FTIndexIterator.FTEMPTY;
   }
 
   /**
@@ -138,8 +186,15 @@ public final class FTIndex extends ValueIndex {
    */
   private IndexEntry entry(final byte[] token) {
     final IndexEntry e = cache.get(token);
-    if(e != null) return e;
+    return e != null ? e : read(token);
+  }
 
+  /**
+   * Reads an entry from disk and caches it.
+   * @param token token to be found
+   * @return cache entry
+   */
+  private IndexEntry read(final byte[] token) {
     final long p = token(token);
     return p == -1 ? new IndexEntry(token, 0, 0) :
       cache.add(token, size(p, token.length), pointer(p, token.length));
@@ -148,6 +203,49 @@ public final class FTIndex extends ValueIndex {
   @Override
   public EntryIterator entries(final IndexEntries entries) {
     final byte[] prefix = entries.get();
+    final EntryIterator iter = entries(prefix);
+    if(delta == null) return iter;
+
+    // merge entries of main segment with tokens that only occur in the delta segment
+    final TokenList list = new TokenList();
+    for(final byte[] token : delta) {
+      if(startsWith(token, prefix) && deltaSize(token) > 0 && token(token) == -1) list.add(token);
+    }
+    if(list.isEmpty()) return iter;
+    final byte[][] tokens = list.sort(ORDER, true).finish();
+    return new EntryIterator() {
+      byte[] next = iter.next();
+      int d, nr, count = iter.count();
+
+      @Override
+      public synchronized byte[] next() {
+        final byte[] token;
+        if(d < tokens.length && (next == null || ORDER.compare(tokens[d], next) < 0)) {
+          token = tokens[d++];
+          nr = deltaSize(token);
+        } else {
+          token = next;
+          if(token != null) {
+            nr = count + deltaSize(token);
+            next = iter.next();
+            count = iter.count();
+          }
+        }
+        return token;
+      }
+      @Override
+      public int count() {
+        return nr;
+      }
+    };
+  }
+
+  /**
+   * Returns an iterator for the entries of the main segment.
+   * @param prefix prefix
+   * @return iterator
+   */
+  private EntryIterator entries(final byte[] prefix) {
     return new EntryIterator() {
       int ti = prefix.length - 1, i, e, nr;
       boolean inner;
@@ -226,6 +324,7 @@ public final class FTIndex extends ValueIndex {
     final IndexStats stats = new IndexStats(options.get(MainOptions.MAXSTAT));
     addOccs(stats);
     stats.print(tb);
+    tb.add(LI_CACHE).add(cache.info()).add(NL);
     return tb.finish();
   }
 
@@ -236,6 +335,12 @@ public final class FTIndex extends ValueIndex {
 
   @Override
   public synchronized void close() {
+    try {
+      if(dirty) writeDelta();
+      cache.write(data.meta.dbfile(DATAFTX + 'c'));
+    } catch(final IOException ex) {
+      Util.stack(ex);
+    }
     inX.close();
     inY.close();
     inZ.close();
@@ -243,8 +348,14 @@ public final class FTIndex extends ValueIndex {
 
   @Override
   public int size() {
+    int size = 0;
+    if(delta != null) {
+      for(final byte[] token : delta) {
+        if(deltaSize(token) > 0 && token(token) == -1) size++;
+      }
+    }
     final int tl = tp.length;
-    int size = 0, t = tl - 1;
+    int t = tl - 1;
     while(true) {
       final int e = t;
       while(tp[--t] == -1) {
@@ -297,14 +408,21 @@ public final class FTIndex extends ValueIndex {
 
     final int max = tp[tl - 1];
     while(p < max) {
-      final int oc = size(p, i);
-      if(stats.adding(oc)) stats.add(inY.readBytes(p, i), oc);
+      final byte[] token = inY.readBytes(p, i);
+      final int oc = size(p, i) + deltaSize(token);
+      if(stats.adding(oc)) stats.add(token, oc);
       p += i + ENTRY;
       if(p == tp[j]) {
         i = j;
         while(j + 1 < tl && tp[++j] == -1);
       }
     }
+    if(delta != null) {
+      for(final byte[] token : delta) {
+        final int oc = deltaSize(token);
+        if(oc > 0 && token(token) == -1 && stats.adding(oc)) stats.add(token, oc);
+      }
+    }
   }
 
   /**
@@ -345,12 +463,20 @@ public final class FTIndex extends ValueIndex {
       int t = s + 1, r = -1;
       while(t < tl && r == -1) r = tp[t++];
       while(p < r) {
-        if(ls.similar(inY.readBytes(p, s), token, k)) {
-          it = FTIndexIterator.union(iter(pointer(p, s), size(p, s), inZ, token), it);
+        final byte[] tok = inY.readBytes(p, s);
+        if(ls.similar(tok, token, k)) {
+          it = FTIndexIterator.union(iter(pointer(p, s), size(p, s), tok), it);
         }
         p += s + ENTRY;
       }
     }
+    if(delta != null) {
+      for(final byte[] tok : delta) {
+        if(deltaSize(tok) > 0 && token(tok) == -1 && ls.similar(tok, token, k)) {
+          it = FTIndexIterator.union(iter(0, 0, tok), it);
+        }
+      }
+    }
     return it;
   }
 
@@ -381,16 +507,17 @@ public final class FTIndex extends ValueIndex {
         final byte[] t = inY.readBytes(i, ti);
         if(!startsWith(t, pref)) break;
         if(wc.match(t)) {
-          inZ.cursor(pointer(i, ti));
-          final int s = size(i, ti);
-          for(int d = 0; d < s; d++) {
-            pr.add(inZ.readNum());
-            ps.add(inZ.readNum());
-          }
+          read(pointer(i, ti), size(i, ti), pr, ps, true);
+          if(delta != null) delta(t, pr, ps, true);
         }
         i += ti + ENTRY;
       }
     }
+    if(delta != null) {
+      for(final byte[] t : delta) {
+        if(startsWith(t, pref) && wc.match(t) && token(t) == -1) delta(t, pr, ps, true);
+      }
+    }
     return iter(new FTCache(pr, ps), token);
   }
 
@@ -398,20 +525,67 @@ public final class FTIndex extends ValueIndex {
    * Returns an iterator for an index entry.
    * @param off offset on entries
    * @param size number of id/pos entries
-   * @param da data source
    * @param token index token
    * @return iterator
    */
-  private static FTIndexIterator iter(final long off, final int size, final DataAccess da,
-      final byte[] token) {
-    da.cursor(off);
+  private FTIndexIterator iter(final long off, final int size, final byte[] token) {
     final IntList pr = new IntList(size);
     final IntList ps = new IntList(size);
+    read(off, size, pr, ps, true);
+    if(delta != null) delta(token, pr, ps, true);
+    return iter(new FTCache(pr, ps), token);
+  }
+
+  /**
+   * Reads the id/pos values of an entry in the main segment. Entries of deleted nodes are skipped.
+   * @param off offset on entries
+   * @param size number of id/pos entries
+   * @param pr pre values or ids
+   * @param ps positions
+   * @param pres convert ids to pre values
+   */
+  private void read(final long off, final int size, final IntList pr, final IntList ps,
+      final boolean pres) {
+    inZ.cursor(off);
     for(int c = 0; c < size; c++) {
-      pr.add(da.readNum());
-      ps.add(da.readNum());
+      final int id = inZ.readNum(), pos = inZ.readNum();
+      if(delta == null) {
+        pr.add(id);
+        ps.add(pos);
+      } else if(!deleted.contains(id)) {
+        pr.add(pres ? data.pre(id) : id);
+        ps.add(pos);
+      }
     }
-    return iter(new FTCache(pr, ps), token);
+  }
+
+  /**
+   * Adds the id/pos values of a token in the delta segment.
+   * @param token token
+   * @param pr pre values or ids
+   * @param ps positions
+   * @param pres convert ids to pre values
+   */
+  private void delta(final byte[] token, final IntList pr, final IntList ps,
+      final boolean pres) {
+    final IntList list = delta.get(token);
+    if(list == null) return;
+    final int s = list.size();
+    for(int l = 0; l < s; l += 2) {
+      final int id = list.get(l);
+      pr.add(pres ? data.pre(id) : id);
+      ps.add(list.get(l + 1));
+    }
+  }
+
+  /**
+   * Returns the number of id/pos entries of a token in the delta segment.
+   * @param token token
+   * @return number of entries
+   */
+  private int deltaSize(final byte[] token) {
+    final IntList list = delta != null ? delta.get(token) : null;
+    return list != null ? list.size() >> 1 : 0;
   }
 
   /**
@@ -492,16 +666,220 @@ public final class FTIndex extends ValueIndex {
     }
   }
 
+  /**
+   * Returns a lexer for tokenizing updated texts.
+   * @return lexer
+   */
+  public FTLexer lexer() {
+    if(lexer == null) {
+      final FTOpt opt = new FTOpt().assign(data.meta);
+      opt.sw = new StopWords();
+      opt.sw.comp(data);
+      lexer = new FTLexer(opt);
+    }
+    return lexer;
+  }
+
   @Override
-  public void add(final ValueCache vc) {
-    throw Util.notExpected();
+  public synchronized void add(final ValueCache vc) {
+    for(final byte[] key : vc) {
+      IntList list = delta.get(key);
+      if(list == null) {
+        list = new IntList();
+        delta.put(key, list);
+      }
+      final IntList ids = vc.ids(key), pos = vc.pos(key);
+      final int s = ids.size();
+      for(int i = 0; i < s; i++) list.add(ids.get(i)).add(pos.get(i));
+      count += s;
+    }
+    dirty = true;
   }
 
   @Override
-  public void delete(final ValueCache vc) {
-    throw Util.notExpected();
+  public synchronized void delete(final ValueCache vc) {
+    for(final byte[] key : vc) {
+      final IntList ids = vc.ids(key);
+      final int s = ids.size();
+      for(int i = 0; i < s; i++) deleted.add(ids.get(i));
+
+      // remove entries from delta segment (look up ids in a sorted copy)
+      final IntList list = delta.get(key);
+      if(list == null) continue;
+      final IntList sorted = new IntList(ids.toArray()).sort();
+      final int ls = list.size();
+      int n = 0;
+      for(int l = 0; l < ls; l += 2) {
+        final int id = list.get(l);
+        if(sorted.sortedIndexOf(id) < 0) {
+          list.set(n++, id);
+          list.set(n++, list.get(l + 1));
+        }
+      }
+      list.size(n);
+      count -= ls - n >> 1;
+    }
+    dirty = true;
   }
 
   @Override
-  public void flush() { }
+  public synchronized void flush() {
+    if(!dirty) return;
+    try {
+      if(count + deleted.size() > MERGE) merge();
+      writeDelta();
+    } catch(final IOException ex) {
+      Util.stack(ex);
+    }
+  }
+
+  /**
+   * Reads the delta segment.
+   * @throws IOException I/O exception
+   */
+  private void readDelta() throws IOException {
+    final IOFile file = data.meta.dbfile(DATAFTX + 'd');
+    if(!file.exists()) return;
+
+    try(DataInput in = new DataInput(file)) {
+      for(int d = in.readNum(); d > 0; d--) deleted.add(in.readNum());
+      for(int t = in.readNum(); t > 0; t--) {
+        final byte[] token = in.readToken();
+        final int s = in.readNum();
+        final IntList list = new IntList(s);
+        for(int l = 0; l < s; l++) list.add(in.readNum());
+        delta.put(token, list);
+        count += s >> 1;
+      }
+    }
+  }
+
+  /**
+   * Writes the delta segment.
+   * @throws IOException I/O exception
+   */
+  private void writeDelta() throws IOException {
+    final IOFile file = data.meta.dbfile(DATAFTX + 'd');
+    journal(file);
+    try(DataOutput out = new DataOutput(file)) {
+      out.writeNum(deleted.size());
+      for(final int id : deleted.toArray()) out.writeNum(id);
+      out.writeNum(delta.size());
+      for(final byte[] token : delta) {
+        final IntList list = delta.get(token);
+        final int s = list.size();
+        out.writeToken(token);
+        out.writeNum(s);
+        for(int l = 0; l < s; l++) out.writeNum(list.get(l));
+      }
+    }
+    dirty = false;
+  }
+
+  /**
+   * Merges the delta segment into the main segment.
+   * @throws IOException I/O exception
+   */
+  private void merge() throws IOException {
+    final TokenList list = new TokenList(delta.size());
+    for(final byte[] token : delta) list.add(token);
+    final byte[][] tokens = list.sort(ORDER, true).finish();
+    final int ts = tokens.length;
+
+    final MetaData meta = data.meta;
+    try(DataOutput outX = new DataOutput(meta.dbfile(DATAFTX + "mx"));
+        DataOutput outY = new DataOutput(meta.dbfile(DATAFTX + "my"));
+        DataOutput outZ = new DataOutput(meta.dbfile(DATAFTX + "mz"))) {
+
+      final IntList ind = new IntList(), pr = new IntList(), ps = new IntList();
+      int t = 0;
+      final int tl = tp.length;
+      for(int ti = 0; ti < tl - 1; ti++) {
+        int p = tp[ti];
+        if(p == -1) continue;
+        int c = ti + 1, e = -1;
+        while(c < tl && e == -1) e = tp[c++];
+        for(; p < e; p += ti + ENTRY) {
+          final byte[] token = inY.readBytes(p, ti);
+          // write tokens that only occur in the delta segment
+          for(; t < ts && ORDER.compare(tokens[t], token) < 0; t++) {
+            pr.reset();
+            ps.reset();
+            delta(tokens[t], pr, ps, false);
+            write(tokens[t], pr, ps, ind, outY, outZ);
+          }
+          pr.reset();
+          ps.reset();
+          read(pointer(p, ti), size(p, ti), pr, ps, false);
+          if(t < ts && eq(tokens[t], token)) delta(tokens[t++], pr, ps, false);
+          write(token, pr, ps, ind, outY, outZ);
+        }
+      }
+      for(; t < ts; t++) {
+        pr.reset();
+        ps.reset();
+        delta(tokens[t], pr, ps, false);
+        write(tokens[t], pr, ps, ind, outY, outZ);
+      }
+      FTBuilder.writeInd(outX, ind, ind.isEmpty() ? 1 : ind.get(ind.size() - 2) + 1,
+          (int) outY.size());
+    }
+
+    // replace main segment
+    inX.close();
+    inY.close();
+    inZ.close();
+    for(final char c : new char[] { 'x', 'y', 'z' }) {
+      final IOFile file = meta.dbfile(DATAFTX + c);
+      journal(file);
+      file.delete();
+      if(!meta.dbfile(DATAFTX + 'm' + c).rename(file)) {
+        throw new IOException("Could not rename index file: " + file);
+      }
+    }
+    open();
+    cache = new IndexCache();
+    ctext.clear();
+    delta.clear();
+    deleted = new IntSet();
+    count = 0;
+  }
+
+  /**
+   * Writes an entry of the main segment.
+   * @param token token
+   * @param ids ids
+   * @param pos positions
+   * @param ind token lengths and offsets
+   * @param outY token output
+   * @param outZ data output
+   * @throws IOException I/O exception
+   */
+  private static void write(final byte[] token, final IntList ids, final IntList pos,
+      final IntList ind, final DataOutput outY, final DataOutput outZ) throws IOException {
+
+    final int s = ids.size();
+    if(s == 0) return;
+    if(ind.isEmpty() || ind.get(ind.size() - 2) < token.length) {
+      ind.add(token.length);
+      ind.add((int) outY.size());
+    }
+    outY.writeBytes(token);
+    outY.write5(outZ.size());
+    outY.write4(s);
+    for(int i = 0; i < s; i++) {
+      outZ.writeNum(ids.get(i));
+      outZ.writeNum(pos.get(i));
+    }
+  }
+
+  /**
+   * Announces a file that will be rewritten to the journal.
+   * @param file file
+   * @throws IOException I/O exception
+   */
+  private void journal(final IOFile file) throws IOException {
+    final Journal journal = data.meta.journal;
+    if(journal != null) journal.file(file);
+  }
 }
@@ -29,6 +29,8 @@ public final class PathIndex implements Index {
   private Data data;
   /** Root node. */
   private PathNode root;
+  /** Indicates if the ids of the nodes are up-to-date. */
+  private boolean ids;
 
   /**
    * Constructor.
@@ -80,6 +82,7 @@ public final class PathIndex implements Index {
    * Initializes the index.
    */
   public void init() {
+    ids = false;
     root = new PathNode();
     stack.clear();
     stack.add(root);
@@ -111,6 +114,7 @@ public final class PathIndex implements Index {
   public void index(final int name, final byte kind, final int level, final byte[] value,
       final MetaData meta) {
 
+    ids = false;
     if(level == 0) {
       final Stats stats = root.stats;
       if(value != null) stats.add(value, meta);
@@ -235,6 +239,62 @@ public final class PathIndex implements Index {
     return list;
   }
 
+  /**
+   * Returns the id of the specified node. Ids are assigned in preorder.
+   * Called by the query optimizer.
+   * @param node node
+   * @return id
+   */
+  public int id(final PathNode node) {
+    ids();
+    return node.id;
+  }
+
+  /**
+   * Returns the id of the path of the specified database node.
+   * Called by the path-qualified value index.
+   * @param pre pre value
+   * @return id, or {@code -1} if the path is not found
+   */
+  public int id(final int pre) {
+    ids();
+    // collect ancestors
+    final IntList pres = new IntList();
+    for(int p = pre; p != -1; p = data.parent(p, data.kind(p))) {
+      if(data.kind(p) == Data.DOC) break;
+      pres.add(p);
+    }
+
+    // follow path, starting from the root node
+    PathNode node = root;
+    for(int i = pres.size() - 1; i >= 0 && node != null; i--) {
+      final int p = pres.get(i);
+      final int kind = data.kind(p);
+      final int name = kind == Data.ELEM || kind == Data.ATTR ? data.nameId(p) : 0;
+      PathNode child = null;
+      for(final PathNode ch : node.children) {
+        if(ch.kind == kind && ch.name == name) {
+          child = ch;
+          break;
+        }
+      }
+      node = child;
+    }
+    return node != null ? node.id : -1;
+  }
+
+  /**
+   * Assigns preorder ids to all nodes.
+   */
+  private synchronized void ids() {
+    if(ids) return;
+    final ArrayList<PathNode> nodes = new ArrayList<>();
+    root.addDesc(nodes);
+    final int ns = nodes.size();
+    for(int n = 0; n < ns; n++) nodes.get(n).id = n;
+    ids = true;
+  }
+
   // Info =====================================================================
 
   @Override
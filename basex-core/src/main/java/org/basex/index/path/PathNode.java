@@ -29,6 +29,8 @@ public final class PathNode {
   public PathNode[] children;
   /** Node kind. */
   public final Stats stats;
+  /** Id (assigned in preorder by {@link PathIndex}). */
+  int id;
 
   /** Empty element flag,assigned during index construction.
    *  0: no empty elements;
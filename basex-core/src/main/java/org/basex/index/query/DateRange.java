@@ -0,0 +1,80 @@
+package org.basex.index.query;
+
+import org.basex.index.*;
+import org.basex.query.value.item.*;
+import org.basex.query.value.type.*;
+import org.basex.util.*;
+
+/**
+ * This class stores a range of dates or dateTimes for index access.
+ *
+ * @author BaseX Team 2005-17, BSD License
+ * @author Christian Gruen
+ */
+public final class DateRange implements IndexToken {
+  /** Index type. */
+  private final IndexType type;
+  /** Minimum value ({@code null}: no lower limit). */
+  public final ADate min;
+  /** Include minimum value. */
+  public final boolean mni;
+  /** Maximum value ({@code null}: no upper limit). */
+  public final ADate max;
+  /** Include maximum value. */
+  public final boolean mxi;
+
+  /**
+   * Constructor.
+   * @param type index type
+   * @param min minimum value (can be {@code null})
+   * @param mni include minimum value
+   * @param max maximum value (can be {@code null})
+   * @param mxi include maximum value
+   */
+  public DateRange(final IndexType type, final ADate min, final boolean mni, final ADate max,
+      final boolean mxi) {
+    this.type = type;
+    this.min = min;
+    this.mni = mni;
+    this.max = max;
+    this.mxi = mxi;
+  }
+
+  /**
+   * Returns the date type of the range.
+   * @return date type ({@link AtomType#DAT} or {@link AtomType#DTM})
+   */
+  public AtomType date() {
+    return (AtomType) (min != null ? min : max).type;
+  }
+
+  /**
+   * Returns the minimum value in milliseconds since the epoch.
+   * @return minimum value
+   */
+  public double minEpoch() {
+    if(min == null) return Double.NEGATIVE_INFINITY;
+    final double d = min.epoch();
+    return mni ? d : Math.nextUp(d);
+  }
+
+  /**
+   * Returns the maximum value in milliseconds since the epoch.
+   * @return maximum value
+   */
+  public double maxEpoch() {
+    if(max == null) return Double.POSITIVE_INFINITY;
+    final double d = max.epoch();
+    return mxi ? d : Math.nextAfter(d, Double.NEGATIVE_INFINITY);
+  }
+
+  @Override
+  public IndexType type() {
+    return type;
+  }
+
+  @Override
+  public byte[] get() {
+    return Token.EMPTY;
+  }
+}
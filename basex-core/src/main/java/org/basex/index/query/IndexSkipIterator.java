@@ -0,0 +1,17 @@
+package org.basex.index.query;
+
+/**
+ * Iterator for returning index results in ascending order, which can skip results.
+ *
+ * @author BaseX Team 2005-17, BSD License
+ * @author Christian Gruen
+ */
+public interface IndexSkipIterator extends IndexIterator {
+  /**
+   * Skips all results that are smaller than the specified pre value and returns true if more
+   * results can be returned. If true is returned, {@link #pre()} returns the next result.
+   * @param target target pre value
+   * @return result of check
+   */
+  boolean advance(int target);
+}
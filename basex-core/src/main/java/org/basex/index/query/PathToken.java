@@ -0,0 +1,45 @@
+package org.basex.index.query;
+
+import org.basex.index.*;
+import org.basex.util.*;
+
+/**
+ * This class defines access to tokens of the path-qualified value index.
+ * Index keys are composed of the id of a node in the path summary and the string value.
+ *
+ * @author BaseX Team 2005-17, BSD License
+ * @author Christian Gruen
+ */
+public final class PathToken implements IndexToken {
+  /** Index key. */
+  private final byte[] key;
+
+  /**
+   * Constructor.
+   * @param path id of the path
+   * @param value value to be found
+   */
+  public PathToken(final int path, final byte[] value) {
+    key = key(path, value);
+  }
+
+  @Override
+  public IndexType type() {
+    return IndexType.PATHVALUE;
+  }
+
+  @Override
+  public byte[] get() {
+    return key;
+  }
+
+  /**
+   * Returns an index key.
+   * @param path id of the path
+   * @param value value
+   * @return key
+   */
+  public static byte[] key(final int path, final byte[] value) {
+    return Token.concat(Num.num(path), value);
+  }
+}
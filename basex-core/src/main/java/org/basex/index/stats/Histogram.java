@@ -0,0 +1,164 @@
+package org.basex.index.stats;
+
+import java.io.*;
+import java.util.*;
+
+import org.basex.io.in.DataInput;
+import org.basex.io.out.DataOutput;
+
+/**
+ * Equi-depth histogram for numeric values.
+ *
+ * While values are added, a fixed-size random sample is maintained (reservoir sampling).
+ * The sample is sorted and divided into buckets with the same number of values. Each bucket
+ * stores the smallest and largest value of its sample values. If all values fit into the
+ * sample, the histogram is complete: values will then only occur within the bucket ranges.
+ *
+ * @author BaseX Team 2005-17, BSD License
+ * @author Christian Gruen
+ */
+final class Histogram {
+  /** Maximum size of the sample. */
+  private static final int SAMPLE = 1024;
+  /** Maximum number of buckets. */
+  private static final int BUCKETS = 32;
+
+  /** Sample ({@code null} if the histogram has been read from disk). */
+  private double[] sample;
+  /** Smallest and largest value of each bucket ({@code null} if not computed yet). */
+  private double[] bounds;
+  /** Total number of values. */
+  private int size;
+  /** Seed of the random generator. */
+  private int seed = 0x2545F491;
+
+  /**
+   * Constructor.
+   */
+  Histogram() {
+    sample = new double[SAMPLE];
+  }
+
+  /**
+   * Constructor, specifying an input stream.
+   * @param in input stream
+   * @throws IOException I/O exception
+   */
+  Histogram(final DataInput in) throws IOException {
+    size = in.readNum();
+    final int bl = in.readNum();
+    bounds = new double[bl];
+    for(int b = 0; b < bl; b++) bounds[b] = in.readDouble();
+  }
+
+  /**
+   * Writes the histogram to the specified output stream.
+   * @param out output stream
+   * @throws IOException I/O exception
+   */
+  void write(final DataOutput out) throws IOException {
+    final double[] bnds = bounds();
+    out.writeNum(size);
+    out.writeNum(bnds.length);
+    for(final double b : bnds) out.writeDouble(b);
+  }
+
+  /**
+   * Adds a value. Values that are added after the histogram has been read from disk are
+   * not assigned to buckets anymore, and the histogram will be marked as incomplete.
+   * @param value value
+   */
+  void add(final double value) {
+    if(sample == null) {
+      size = Math.max(size, SAMPLE) + 1;
+      return;
+    }
+    if(size < SAMPLE) {
+      sample[size] = value;
+    } else {
+      // replace sample value with decreasing probability
+      seed ^= seed << 13;
+      seed ^= seed >>> 17;
+      seed ^= seed << 5;
+      final int r = (int) ((seed & 0xFFFFFFFFL) % (size + 1));
+      if(r < SAMPLE) sample[r] = value;
+    }
+    size++;
+    bounds = null;
+  }
+
+  /**
+   * Estimates the number of values in the specified range.
+   * @param min minimum (inclusive)
+   * @param max maximum (inclusive)
+   * @return number of values
+   */
+  int estimate(final double min, final double max) {
+    final double[] bnds = bounds();
+    final int bl = bnds.length;
+    if(bl == 0) return 0;
+
+    final double depth = (double) size / (bl >>> 1);
+    double count = 0;
+    for(int b = 0; b < bl; b += 2) {
+      final double lo = bnds[b], hi = bnds[b + 1];
+      if(hi < min || lo > max) continue;
+      if(lo >= min && hi <= max || lo == hi) {
+        count += depth;
+      } else {
+        // partial overlap: assume uniform distribution of values within the bucket
+        count += depth * Math.max(Math.min(hi, max) - Math.max(lo, min), 0) / (hi - lo);
+      }
+    }
+    return (int) Math.ceil(count);
+  }
+
+  /**
+   * Checks if the histogram is complete, and if none of the buckets overlaps the specified
+   * range. If {@code true} is returned, no value exists in the range.
+   * @param min minimum (inclusive)
+   * @param max maximum (inclusive)
+   * @return result of check
+   */
+  boolean disjoint(final double min, final double max) {
+    if(size > SAMPLE) return false;
+    final double[] bnds = bounds();
+    final int bl = bnds.length;
+    for(int b = 0; b < bl; b += 2) {
+      if(bnds[b + 1] >= min && bnds[b] <= max) return false;
+    }
+    return true;
+  }
+
+  /**
+   * Returns the bounds of the buckets. Computes them if necessary.
+   * @return bounds
+   */
+  private double[] bounds() {
+    if(bounds == null) {
+      final int s = Math.min(size, SAMPLE);
+      final double[] sorted = Arrays.copyOf(sample, s);
+      Arrays.sort(sorted);
+      final int bs = Math.min(BUCKETS, s);
+      final double[] bnds = new double[bs << 1];
+      for(int b = 0; b < bs; b++) {
+        bnds[b << 1] = sorted[b * s / bs];
+        bnds[(b << 1) + 1] = sorted[(b + 1) * s / bs - 1];
+      }
+      bounds = bnds;
+    }
+    return bounds;
+  }
+
+  @Override
+  public String toString() {
+    final double[] bnds = bounds();
+    final StringBuilder sb = new StringBuilder();
+    final int bl = bnds.length;
+    for(int b = 0; b < bl; b += 2) {
+      sb.append(b == 0 ? "" : ", ").append('[').append(bnds[b]).append(", ");
+      sb.append(bnds[b + 1]).append(']');
+    }
+    return sb.toString();
+  }
+}
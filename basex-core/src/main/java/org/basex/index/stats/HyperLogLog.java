@@ -0,0 +1,90 @@
+package org.basex.index.stats;
+
+import java.io.*;
+
+import org.basex.io.in.DataInput;
+import org.basex.io.out.DataOutput;
+import org.basex.util.*;
+
+/**
+ * HyperLogLog sketch for estimating the number of distinct values.
+ *
+ * The hash of each value is split into a register index and a remainder. Each register stores
+ * the maximum number of leading zeros of all remainders. The number of distinct values is
+ * estimated via the harmonic mean of all registers. With 256 registers, the standard
+ * error is around 6.5%.
+ *
+ * @author BaseX Team 2005-17, BSD License
+ * @author Christian Gruen
+ */
+final class HyperLogLog {
+  /** Number of bits used for the register index. */
+  private static final int BITS = 8;
+  /** Number of registers. */
+  private static final int SIZE = 1 << BITS;
+
+  /** Registers. */
+  private final byte[] registers;
+
+  /**
+   * Constructor.
+   */
+  HyperLogLog() {
+    registers = new byte[SIZE];
+  }
+
+  /**
+   * Constructor, specifying an input stream.
+   * @param in input stream
+   * @throws IOException I/O exception
+   */
+  HyperLogLog(final DataInput in) throws IOException {
+    registers = in.readToken();
+  }
+
+  /**
+   * Writes the sketch to the specified output stream.
+   * @param out output stream
+   * @throws IOException I/O exception
+   */
+  void write(final DataOutput out) throws IOException {
+    out.writeToken(registers);
+  }
+
+  /**
+   * Adds a value.
+   * @param value value
+   */
+  void add(final byte[] value) {
+    // finalization step of MurmurHash3: distribute the bits of the token hash
+    int h = Token.hash(value);
+    h ^= h >>> 16;
+    h *= 0x85EBCA6B;
+    h ^= h >>> 13;
+    h *= 0xC2B2AE35;
+    h ^= h >>> 16;
+
+    final int r = h >>> 32 - BITS;
+    final byte rank = (byte) (Integer.numberOfLeadingZeros(h << BITS | 1 << BITS - 1) + 1);
+    if(registers[r] < rank) registers[r] = rank;
+  }
+
+  /**
+   * Returns the estimated number of distinct values.
+   * @return number of distinct values
+   */
+  int estimate() {
+    double sum = 0;
+    int zeros = 0;
+    for(final byte r : registers) {
+      sum += 1.0d / (1L << r);
+      if(r == 0) zeros++;
+    }
+    // bias correction for 256 registers
+    final double alpha = 0.7213 / (1 + 1.079 / SIZE);
+    double e = alpha * SIZE * SIZE / sum;
+    // small range correction: linear counting
+    if(e <= 2.5 * SIZE && zeros != 0) e = SIZE * Math.log((double) SIZE / zeros);
+    return (int) Math.round(e);
+  }
+}
@@ -30,6 +30,10 @@ public final class Stats {
 
   /** Leaf node flag. Indicates if all nodes only have a text node as child. */
   private boolean leaf;
+  /** Histogram of numeric values (created if categories are given up). */
+  private Histogram histogram;
+  /** Sketch for counting distinct values (created if categories are given up). */
+  private HyperLogLog sketch;
 
   /**
    * Default constructor.
@@ -65,7 +69,7 @@ public final class Stats {
    */
   public Stats(final DataInput in) throws IOException {
     // 0x10 indicates format introduced with Version 7.1
-    final int t = in.readNum() & 0xF;
+    final int f = in.readNum(), t = f & 0xF;
     type = (byte) t;
 
     if(isInteger(t) || isDouble(t)) {
@@ -79,6 +83,9 @@ public final class Stats {
     leaf = in.readBool();
     // legacy since version 7.1
     in.readDouble();
+    // 0x20, 0x40: histogram and sketch (storage version 8.6.1; flags are not set in older files)
+    if((f & 0x20) != 0) histogram = new Histogram(in);
+    if((f & 0x40) != 0) sketch = new HyperLogLog(in);
   }
 
   /**
@@ -98,7 +105,7 @@ public final class Stats {
     }
 
     // 0x10 indicates format introduced with Version 7.1
-    out.writeNum(type | 0x10);
+    out.writeNum(type | 0x10 | (histogram != null ? 0x20 : 0) | (sketch != null ? 0x40 : 0));
     if(isNumeric(type)) {
       out.writeDouble(min);
       out.writeDouble(max);
@@ -111,13 +118,16 @@ public final class Stats {
     out.writeBool(leaf);
     // legacy since version 7.1
     out.writeDouble(0);
+    if(histogram != null) histogram.write(out);
+    if(sketch != null) sketch.write(out);
   }
 
   /**
    * Adds a value. All values are first treated as integer values. If a value cannot be converted
    * to an integer, it is treated as double value. If conversion fails again, it is handled as
    * string category. Next, all values are cached. As soon as their number exceeds a maximum,
-   * the cached values are skipped, and contents are treated as arbitrary strings.
+   * the cached values are skipped, and contents are treated as arbitrary strings. From then
+   * on, distinct values are estimated by a sketch, and numeric values are added to a histogram.
    * @param value value to be added
    * @param meta meta data
    */
@@ -157,13 +167,80 @@ public final class Stats {
     if(values != null) {
       if(vl > meta.maxlen || vl > 0 && ws(value)) {
         // give up categories if string is too long or only consists of whitespaces
-        values = null;
+        sketch();
       } else {
         values.put(value, Math.max(1, values.get(value) + 1));
         // give up categories if number of entries exceeds limit
-        if(values.size() > meta.maxcats) values = null;
+        if(values.size() > meta.maxcats) sketch();
+        return;
+      }
+    }
+    if(sketch != null) sketch.add(value);
+    if(histogram != null) {
+      if(!isNumeric(t)) histogram = null;
+      else if(vl > 0) histogram.add(toDouble(value));
+    }
+  }
+
+  /**
+   * Returns the number of distinct values. The result is exact if categories exist,
+   * and estimated otherwise.
+   * @return number of distinct values, or {@code -1} if no information is available
+   */
+  public int distinct() {
+    return values != null ? values.size() : sketch != null ? Math.max(1, sketch.estimate()) : -1;
+  }
+
+  /**
+   * Returns the number of numeric values in the specified range. The result is exact if
+   * categories exist, and estimated otherwise.
+   * @param mn minimum (inclusive)
+   * @param mx maximum (inclusive)
+   * @return number of values, or {@code -1} if no information is available
+   */
+  public int estimate(final double mn, final double mx) {
+    if(!isNumeric(type)) return -1;
+    if(mn > max || mx < min) return 0;
+    if(values != null) {
+      int c = 0;
+      for(final byte[] value : values) {
+        final double d = toDouble(value);
+        if(d >= mn && d <= mx) c += values.get(value);
+      }
+      return c;
+    }
+    return histogram != null ? histogram.estimate(mn, mx) : -1;
+  }
+
+  /**
+   * Checks if no numeric value exists in the specified range. {@code true} is only returned if
+   * this is guaranteed by the minimum and maximum, the categories, or a complete histogram.
+   * @param mn minimum (inclusive)
+   * @param mx maximum (inclusive)
+   * @return result of check
+   */
+  public boolean disjoint(final double mn, final double mx) {
+    return isNumeric(type) && (values != null ? estimate(mn, mx) == 0 :
+      mn > max || mx < min || histogram != null && histogram.disjoint(mn, mx));
+  }
+
+  /**
+   * Gives up categories. The distinct values are added to a sketch, and numeric values are
+   * added to a histogram.
+   */
+  private void sketch() {
+    sketch = new HyperLogLog();
+    if(isNumeric(type)) histogram = new Histogram();
+    for(final byte[] value : values) {
+      sketch.add(value);
+      if(histogram != null) {
+        final double d = toDouble(value);
+        if(!Double.isNaN(d)) {
+          for(int c = values.get(value); c > 0; c--) histogram.add(d);
+        }
       }
     }
+    values = null;
   }
 
   @Override
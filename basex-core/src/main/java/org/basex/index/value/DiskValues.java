@@ -12,7 +12,9 @@ import org.basex.data.*;
 import org.basex.index.*;
 import org.basex.index.query.*;
 import org.basex.index.stats.*;
+import org.basex.io.*;
 import org.basex.io.random.*;
+import org.basex.query.value.type.*;
 import org.basex.util.*;
 import org.basex.util.hash.*;
 import org.basex.util.list.*;
@@ -38,6 +40,18 @@ public class DiskValues extends ValueIndex {
 
   /** Synchronization object. */
   private final Object monitor = new Object();
+  /** File prefix. */
+  private final String pref;
+  /** Numeric keys (lazy instantiation, invalidated by updates). */
+  private NumericKeys numeric;
+  /** Keys of type xs:date (lazy instantiation, invalidated by updates). */
+  private NumericKeys dates;
+  /** Keys of type xs:dateTime (lazy instantiation, invalidated by updates). */
+  private NumericKeys dateTimes;
+  /** Key dictionary ({@code null} if it does not exist, invalidated by updates). */
+  private volatile KeyDictionary dictionary;
+  /** Indicates if the key dictionary is outdated and will be rebuilt on demand. */
+  private volatile boolean rebuild;
 
   /**
    * Constructor, initializing the index structure.
@@ -61,7 +75,23 @@ public class DiskValues extends ValueIndex {
     super(data, type);
     idxl = new DataAccess(data.meta.dbfile(pref + 'l'));
     idxr = new DataAccess(data.meta.dbfile(pref + 'r'));
+    idxl.journal(data.meta.journal);
+    idxr.journal(data.meta.journal);
     size.set(idxl.read4());
+    this.pref = pref;
+
+    // load dictionary: if it is not available, keys will be looked up on disk
+    final IOFile file = dictionaryFile();
+    try {
+      dictionary = KeyDictionary.read(file, size());
+    } catch(final IOException ex) {
+      Util.debug(ex);
+    }
+    // rebuild an outdated dictionary
+    rebuild = dictionary == null && file.exists();
+    // warm up cache with the keys that were cached when the index was closed
+    final byte[][] keys = IndexCache.read(cacheFile());
+    for(int k = keys.length - 1; k >= 0; k--) read(keys[k]);
   }
 
   @Override
@@ -77,11 +107,12 @@ public class DiskValues extends ValueIndex {
       final int entries = size();
       for(int index = 0; index < entries; index++) {
         final long pos = idxr.read5(index * 5L);
-        final int count = idxl.readNum(pos);
+        final int count = ids(pos);
         if(stats.adding(count)) stats.add(key(idxl.readNum()), count);
       }
     }
     stats.print(tb);
+    tb.add(LI_CACHE).add(cache.info()).add(NL);
     return tb.finish();
   }
 
@@ -93,7 +124,21 @@ public class DiskValues extends ValueIndex {
   @Override
   public final int costs(final IndexToken it) {
     if(it instanceof StringRange) return Math.max(1, data.meta.size / 10);
-    if(it instanceof NumericRange) return Math.max(1, data.meta.size / 3);
+    if(it instanceof NumericRange) {
+      final NumericRange nr = (NumericRange) it;
+      synchronized(monitor) {
+        final NumericKeys nk = numeric();
+        return (int) Math.min(Integer.MAX_VALUE, nk.count(nk.first(nr.min), nk.last(nr.max)));
+      }
+    }
+    if(it instanceof DateRange) {
+      final DateRange dr = (DateRange) it;
+      synchronized(monitor) {
+        final NumericKeys nk = dates(dr.date());
+        return (int) Math.min(Integer.MAX_VALUE,
+            nk.count(nk.first(dr.minEpoch()), nk.last(dr.maxEpoch())));
+      }
+    }
     return entry(it.get()).size;
   }
 
@@ -101,6 +146,7 @@ public class DiskValues extends ValueIndex {
   public final IndexIterator iter(final IndexToken it) {
     if(it instanceof StringRange) return idRange((StringRange) it);
     if(it instanceof NumericRange) return idRange((NumericRange) it);
+    if(it instanceof DateRange) return idRange((DateRange) it);
     final IndexEntry ie = entry(it.get());
     return iter(ie.size, ie.offset);
   }
@@ -112,6 +158,11 @@ public class DiskValues extends ValueIndex {
 
   @Override
   public final void close() {
+    try {
+      cache.write(cacheFile());
+    } catch(final IOException ex) {
+      Util.stack(ex);
+    }
     synchronized(monitor) {
       idxl.close();
       idxr.close();
@@ -142,6 +193,54 @@ public class DiskValues extends ValueIndex {
     idxr.flush();
   }
 
+  /**
+   * Invalidates the numeric keys and the key dictionary after the index has been updated.
+   * Both will be rebuilt from the index keys when they are requested next. Existing files
+   * will be truncated and journaled.
+   */
+  final void invalidate() {
+    synchronized(monitor) {
+      numeric = null;
+      dates = null;
+      dateTimes = null;
+      if(dictionary != null) rebuild = true;
+      dictionary = null;
+    }
+    for(final IOFile file : new IOFile[] { numericFile(), dictionaryFile() }) {
+      if(file.length() == 0) continue;
+      try {
+        if(data.meta.journal != null) data.meta.journal.file(file);
+        file.write(new byte[0]);
+      } catch(final IOException ex) {
+        Util.stack(ex);
+      }
+    }
+  }
+
+  /**
+   * Reads the number of ids of an id list and skips the skip pointers.
+   * <p><em>Important:</em> This method is NOT thread-safe.</p>
+   * @param pos position of the id list
+   * @return number of ids
+   */
+  final int ids(final long pos) {
+    final int count = idxl.readNum(pos);
+    skip(count);
+    return count;
+  }
+
+  /**
+   * Skips the skip pointers of an id list. The cursor must be placed after the number of ids.
+   * <p><em>Important:</em> This method is NOT thread-safe.</p>
+   * @param count number of ids
+   */
+  final void skip(final int count) {
+    if(count > IdBlocks.BLOCK) {
+      final int len = idxl.readNum();
+      idxl.cursor(idxl.cursor() + len);
+    }
+  }
+
   /**
    * Returns the {@code pre} value for the specified id.
    * @param id id value
@@ -152,13 +251,15 @@ public class DiskValues extends ValueIndex {
   }
 
   /**
-   * Binary search for key in the {@code idxr} reference file.
+   * Searches for a key in the key dictionary or, if it is not available, performs a binary
+   * search in the {@code idxr} reference file.
    * <p><em>Important:</em> This method is thread-safe.</p>
    * @param key token to be found
    * @return index of the key, or (-(insertion point) - 1)
    */
   protected final int get(final byte[] key) {
-    return get(key, 0, size());
+    final KeyDictionary dict = dictionary();
+    return dict != null ? dict.get(key) : get(key, 0, size());
   }
 
   /**
@@ -194,21 +295,35 @@ public class DiskValues extends ValueIndex {
    */
   private IndexEntry entry(final byte[] key) {
     final IndexEntry entry = cache.get(key);
-    if(entry != null) return entry;
+    return entry != null ? entry : read(key);
+  }
 
+  /**
+   * Reads an index entry from disk and caches it.
+   * <p><em>Important:</em> This method is thread-safe.</p>
+   * @param key key to be found
+   * @return cache entry
+   */
+  private IndexEntry read(final byte[] key) {
     final long index = get(key);
     if(index < 0) return new IndexEntry(key, 0, 0);
 
     final int count;
     final long offset;
 
-    synchronized(monitor) {
-      // get position in heap file
-      final long pos = idxr.read5(index * 5L);
-      count = idxl.readNum(pos);
-      offset = idxl.cursor();
+    final KeyDictionary dict = dictionary();
+    if(dict != null) {
+      final IndexEntry entry = dict.entry((int) index);
+      count = entry.size;
+      offset = entry.offset;
+    } else {
+      synchronized(monitor) {
+        // get position in heap file
+        final long pos = idxr.read5(index * 5L);
+        count = idxl.readNum(pos);
+        offset = idxl.cursor();
+      }
     }
-
     return cache.add(key, count, offset);
   }
 
@@ -338,7 +453,11 @@ public class DiskValues extends ValueIndex {
    * @return index entry
    */
   private IndexEntry indexEntry(final int index) {
-    // try the cache first
+    // use the dictionary if available
+    final KeyDictionary dict = dictionary;
+    if(dict != null) return dict.entry(index);
+
+    // try the cache
     byte[] key = ctext.get(index);
     if(key != null) {
       final IndexEntry entry = cache.get(key);
@@ -349,6 +468,7 @@ public class DiskValues extends ValueIndex {
     final long pos = idxr.read5(index * 5L);
     final int count = idxl.readNum(pos);
     if(key == null) {
+      skip(count);
       key = key(idxl.readNum());
       ctext.put(index, key);
     }
@@ -363,13 +483,17 @@ public class DiskValues extends ValueIndex {
    * @return iterator
    */
   private IndexIterator iter(final int sz, final long offset) {
+    // ids are identical to pre values: decode ids lazily
+    if(!data.meta.updindex) return new IdIterator(sz, offset);
+
     final IntList pres = new IntList(sz);
     synchronized(monitor) {
       idxl.cursor(offset);
+      skip(sz);
       for(int i = 0, id = 0; i < sz; i++) {
         id += idxl.readNum();
         // pass over token position
-        if(type == IndexType.TOKEN) idxl.readNum();
+        if(type.tokenize()) idxl.readNum();
         pres.add(pre(id));
       }
     }
@@ -388,11 +512,23 @@ public class DiskValues extends ValueIndex {
     synchronized(monitor) {
       final int i = get(tok.min);
       final int entries = size();
+      final KeyDictionary dict = dictionary();
       for(int index = i < 0 ? -i - 1 : tok.mni ? i : i + 1; index < entries; index++) {
-        final int count = idxl.readNum(idxr.read5(index * 5L));
+        final int count;
+        final byte[] key;
+        if(dict != null) {
+          final IndexEntry entry = dict.entry(index);
+          count = entry.size;
+          key = entry.key;
+          idxl.cursor(entry.offset);
+          skip(count);
+        } else {
+          count = ids(idxr.read5(index * 5L));
+          key = null;
+        }
         int id = idxl.readNum();
         // skip traversal if value is too large
-        final int diff = diff(key(id), tok.max);
+        final int diff = diff(key != null ? key : key(id), tok.max);
         if(diff > 0 || !tok.mxi && diff == 0) break;
         // add pre values
         for(int c = 0; c < count; c++) {
@@ -405,42 +541,305 @@ public class DiskValues extends ValueIndex {
   }
 
   /**
-   * Performs a range query. All index values must be numeric.
+   * Performs a numeric range query. Non-numeric index values are ignored.
    * <p><em>Important:</em> This method is thread-safe.</p>
    * @param tok index term
    * @return results
    */
   private IndexIterator idRange(final NumericRange tok) {
-    // check if min and max are positive integers with the same number of digits
-    final double min = tok.min, max = tok.max;
-    final int len = max > 0 && (long) max == max ? token(max).length : 0;
-    final boolean simple = len != 0 && min > 0 && (long) min == min && token(min).length == len;
+    synchronized(monitor) {
+      return idRange(numeric(), tok.min, tok.max);
+    }
+  }
 
-    final IntList pres = new IntList();
+  /**
+   * Performs a range query on dates or dateTimes. Index values of other types are ignored.
+   * <p><em>Important:</em> This method is thread-safe.</p>
+   * @param tok index term
+   * @return results
+   */
+  private IndexIterator idRange(final DateRange tok) {
     synchronized(monitor) {
-      final int entries = size();
-      final boolean text = type == IndexType.TEXT;
-      for(int index = 0; index < entries; ++index) {
-        final int count = idxl.readNum(idxr.read5(index * 5L));
-        int id = idxl.readNum();
-        final int pre = pre(id);
-
-        final double v = data.textDbl(pre, text);
-        if(v >= min && v <= max) {
-          // value is in range
-          for(int c = 0; c < count; c++) {
-            pres.add(pre(id));
-            id += idxl.readNum();
+      return idRange(dates(tok.date()), tok.minEpoch(), tok.maxEpoch());
+    }
+  }
+
+  /**
+   * Returns the ids of all sorted keys in the specified range.
+   * <p><em>Important:</em> This method is NOT thread-safe.</p>
+   * @param nk sorted keys
+   * @param min minimum value (inclusive)
+   * @param max maximum value (inclusive)
+   * @return results
+   */
+  private IndexIterator idRange(final NumericKeys nk, final double min, final double max) {
+    // find keys via binary search, read id lists of all keys in the range
+    final IntList pres = new IntList();
+    final int last = nk.last(max);
+    for(int n = nk.first(min); n < last; n++) {
+      final int count = ids(idxr.read5(nk.key(n) * 5L));
+      for(int c = 0, id = 0; c < count; c++) {
+        id += idxl.readNum();
+        pres.add(pre(id));
+      }
+    }
+    return iter(pres.sort());
+  }
+
+  /**
+   * Returns the numeric keys of the index. If they have not been stored on disk, or if the
+   * index has been updated, they are created from the index keys.
+   * <p><em>Important:</em> This method is NOT thread-safe.</p>
+   * @return numeric keys
+   */
+  private NumericKeys numeric() {
+    if(numeric == null) {
+      final IOFile file = numericFile();
+      if(file.length() != 0) {
+        try {
+          numeric = NumericKeys.read(file, size());
+        } catch(final IOException ex) {
+          Util.debug(ex);
+        }
+      }
+      if(numeric == null) numeric = keys(new NumericKeys());
+    }
+    return numeric;
+  }
+
+  /**
+   * Returns the keys of the index that are of the specified date type.
+   * As values without timezone depend on the implicit timezone, the keys are not stored on disk.
+   * <p><em>Important:</em> This method is NOT thread-safe.</p>
+   * @param date date type ({@link AtomType#DAT} or {@link AtomType#DTM})
+   * @return date keys
+   */
+  private NumericKeys dates(final AtomType date) {
+    if(date == AtomType.DAT) {
+      if(dates == null) dates = keys(new NumericKeys(date));
+      return dates;
+    }
+    if(dateTimes == null) dateTimes = keys(new NumericKeys(date));
+    return dateTimes;
+  }
+
+  /**
+   * Adds all index keys to the specified sorted keys.
+   * <p><em>Important:</em> This method is NOT thread-safe.</p>
+   * @param nk sorted keys
+   * @return sorted keys
+   */
+  private NumericKeys keys(final NumericKeys nk) {
+    final int entries = size();
+    for(int index = 0; index < entries; index++) {
+      final int count = ids(idxr.read5(index * 5L));
+      nk.add(key(idxl.readNum()), index, count);
+    }
+    return nk.finish();
+  }
+
+  /**
+   * Returns the key dictionary. If the index has been updated, it is rebuilt from the index keys.
+   * <p><em>Important:</em> This method is thread-safe.</p>
+   * @return dictionary, or {@code null} if it does not exist
+   */
+  private KeyDictionary dictionary() {
+    KeyDictionary dict = dictionary;
+    if(dict == null && rebuild) {
+      synchronized(monitor) {
+        dict = dictionary;
+        if(dict == null && rebuild) {
+          dict = keys(new KeyDictionary());
+          dictionary = dict;
+          rebuild = false;
+        }
+      }
+    }
+    return dict;
+  }
+
+  /**
+   * Adds all index keys to the specified dictionary.
+   * <p><em>Important:</em> This method is NOT thread-safe.</p>
+   * @param kd key dictionary
+   * @return key dictionary
+   */
+  private KeyDictionary keys(final KeyDictionary kd) {
+    final int entries = size();
+    for(int index = 0; index < entries; index++) {
+      final int count = idxl.readNum(idxr.read5(index * 5L));
+      final long offset = idxl.cursor();
+      skip(count);
+      kd.add(key(idxl.readNum()), count, offset);
+    }
+    return kd.finish();
+  }
+
+  /**
+   * Returns the file with the persisted keys of the cache.
+   * @return file
+   */
+  private IOFile cacheFile() {
+    return data.meta.dbfile(pref + 'c');
+  }
+
+  /**
+   * Returns the file with the key dictionary.
+   * @return file
+   */
+  private IOFile dictionaryFile() {
+    return data.meta.dbfile(pref + 'k');
+  }
+
+  /**
+   * Returns the file with the numeric keys.
+   * @return file
+   */
+  private IOFile numericFile() {
+    return data.meta.dbfile(fileSuffix(type) + 'n');
+  }
+
+  /**
+   * Iterator for id lists, which decodes ids block by block and uses skip pointers to skip
+   * blocks. Returned ids must be identical to pre values.
+   */
+  private final class IdIterator implements IndexSkipIterator {
+    /** Number of ids. */
+    private final int size;
+    /** Ids of the current block. */
+    private final int[] block = new int[IdBlocks.BLOCK];
+    /** Number of ids in the current block. */
+    private int bs;
+    /** Position of the next id in the current block. */
+    private int bp;
+    /** Number of decoded ids. */
+    private int read;
+    /** Last decoded id. */
+    private int last;
+    /** File position of the next block. */
+    private long pos;
+    /** File position of the skip pointers. */
+    private final long offset;
+    /** File position of the first block. */
+    private final long start;
+    /** Last ids before each block (lazy instantiation). */
+    private int[] ids;
+    /** File positions of each block (lazy instantiation). */
+    private long[] offsets;
+    /** Current id. */
+    private int id;
+
+    /**
+     * Constructor.
+     * @param size number of ids
+     * @param offset file position after the number of ids
+     */
+    IdIterator(final int size, final long offset) {
+      this.size = size;
+      this.offset = offset;
+      synchronized(monitor) {
+        idxl.cursor(offset);
+        skip(size);
+        start = idxl.cursor();
+      }
+      pos = start;
+    }
+
+    @Override
+    public boolean more() {
+      if(bp == bs) {
+        if(read == size) return false;
+        decode();
+      }
+      id = block[bp++];
+      return true;
+    }
+
+    @Override
+    public boolean advance(final int target) {
+      // skip ids of the current block
+      if(bp < bs && block[bs - 1] >= target) {
+        while(block[bp] < target) bp++;
+        id = block[bp++];
+        return true;
+      }
+      // find last block whose preceding id is smaller than the target
+      if(size > IdBlocks.BLOCK) {
+        if(ids == null) pointers();
+        int l = (read + IdBlocks.BLOCK - 1) / IdBlocks.BLOCK, h = ids.length - 1, b = -1;
+        while(l <= h) {
+          final int m = l + h >>> 1;
+          if(ids[m] < target) {
+            b = m;
+            l = m + 1;
+          } else {
+            h = m - 1;
           }
-        } else if(simple && v > max && data.textLen(pre, text) == len) {
-          // if limits are integers, if min, max and current value have the same
-          // string length, and if current value is larger than max, test can be
-          // skipped, as all remaining values will be bigger
-          break;
+        }
+        if(b != -1) {
+          pos = offsets[b];
+          last = ids[b];
+          read = b * IdBlocks.BLOCK;
+          bs = 0;
+          bp = 0;
         }
       }
+      while(more()) {
+        if(id >= target) return true;
+      }
+      return false;
+    }
+
+    @Override
+    public int pre() {
+      return id;
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+
+    /**
+     * Decodes the next block.
+     */
+    private void decode() {
+      final int n = Math.min(IdBlocks.BLOCK, size - read);
+      final boolean token = type.tokenize();
+      synchronized(monitor) {
+        idxl.cursor(pos);
+        for(int i = 0; i < n; i++) {
+          last += idxl.readNum();
+          // pass over token position
+          if(token) idxl.readNum();
+          block[i] = last;
+        }
+        pos = idxl.cursor();
+      }
+      read += n;
+      bs = n;
+      bp = 0;
+    }
+
+    /**
+     * Reads the skip pointers. Entry {@code 0} refers to the first block.
+     */
+    private void pointers() {
+      final int blocks = (size + IdBlocks.BLOCK - 1) / IdBlocks.BLOCK;
+      final int[] is = new int[blocks];
+      final long[] os = new long[blocks];
+      os[0] = start;
+      synchronized(monitor) {
+        idxl.cursor(offset);
+        idxl.readNum();
+        for(int b = 1; b < blocks; b++) {
+          is[b] = is[b - 1] + idxl.readNum();
+          os[b] = os[b - 1] + idxl.readNum();
+        }
+      }
+      ids = is;
+      offsets = os;
     }
-    return iter(pres.sort());
   }
 
   /**
@@ -467,6 +866,15 @@ public class DiskValues extends ValueIndex {
    * @return key token
    */
   private byte[] key(final int id) {
+    if(type == IndexType.ELEMENT) return data.name(pre(id), Data.ELEM);
+    if(type == IndexType.PATHVALUE) {
+      final int pre = pre(id);
+      return PathToken.key(data.paths.id(pre), data.text(pre, data.kind(pre) == Data.TEXT));
+    }
+    if(type == IndexType.TRIGRAM) {
+      final int pre = pre(id);
+      return Trigrams.get(data.text(pre, data.kind(pre) == Data.TEXT), idxl.readNum());
+    }
     final byte[] text = data.text(pre(id), type == IndexType.TEXT);
     return type == IndexType.TOKEN ? distinctTokens(text)[idxl.readNum()] : text;
   }
@@ -483,7 +891,7 @@ public class DiskValues extends ValueIndex {
     final int entries = size();
     for(int index = 0; index < entries; index++) {
       final long pos = idxr.read5(index * 5L);
-      final int count = idxl.readNum(pos);
+      final int count = ids(pos);
       int id = idxl.readNum();
       tb.add("  ").addInt(index).add(". offset: ").addLong(pos);
       if(all) {
@@ -512,7 +920,9 @@ public class DiskValues extends ValueIndex {
    * @param type index type
    * @return file suffix
    */
-  static String fileSuffix(final IndexType type) {
-    return type == IndexType.TOKEN ? DATATOK : type == IndexType.TEXT ? DATATXT : DATAATV;
+  public static String fileSuffix(final IndexType type) {
+    return type == IndexType.TOKEN ? DATATOK : type == IndexType.TEXT ? DATATXT :
+      type == IndexType.ELEMENT ? DATAELM : type == IndexType.PATHVALUE ? DATAPVL :
+      type == IndexType.TRIGRAM ? DATATRG : DATAATV;
   }
 }
@@ -6,26 +6,32 @@ import java.io.*;
 
 import org.basex.data.*;
 import org.basex.index.*;
+import org.basex.index.query.*;
 import org.basex.io.out.DataOutput;
 import org.basex.io.random.*;
 import org.basex.util.*;
 import org.basex.util.list.*;
 
 /**
- * <p>This class builds an index for attribute values and text contents in a
- * tree structure and stores the result to disk.</p>
+ * <p>This class builds an index for attribute values, text contents and element names
+ * in a tree structure and stores the result to disk.</p>
  *
  * <p>The data is stored on disk in the following format:</p>
  * <ul>
  * <li> {@code DATATXT/ATV + 'l'}: contains the index values, which are dense id
- *   lists to all text nodes/attribute values, stored in the {@link Num} format:
- *   [size0, id1, id2, ...]. The number of index keys is stored in the first 4
+ *   lists to all text nodes/attribute values, stored in blocks with skip pointers
+ *   (see {@link IdBlocks}). The number of index keys is stored in the first 4
  *   bytes of the file.</li>
  * <li> {@code DATATXT/ATV + 'r'}: contains 5-byte references to the id lists
  *   for all keys. To save space, the keys itself are not stored in the index
  *   structure. Instead, they can be found by following the id references to
  *   the main table.
  * </li>
+ * <li> {@code DATATXT/ATV + 'n'}: contains all numeric keys, sorted by their values
+ *   (see {@link NumericKeys}). It is used for numeric range queries.</li>
+ * <li> {@code DATATXT/ATV + 'k'}: contains all keys in a compact representation, along with
+ *   the number and offsets of their ids (see {@link KeyDictionary}). It is kept in main memory
+ *   and used for finding keys.</li>
  * </ul>
  *
  * @author BaseX Team 2005-17, BSD License
@@ -34,6 +40,12 @@ import org.basex.util.list.*;
 public final class DiskValuesBuilder extends ValuesBuilder {
   /** Temporary value tree. */
   private IndexTree index;
+  /** Numeric keys ({@code null} for token index). */
+  private final NumericKeys numeric;
+  /** Key dictionary. */
+  private final KeyDictionary dictionary = new KeyDictionary();
+  /** Number of written keys. */
+  private int keys;
 
   /**
    * Constructor.
@@ -43,6 +55,8 @@ public final class DiskValuesBuilder extends ValuesBuilder {
   public DiskValuesBuilder(final Data data, final IndexType type) {
     super(data, type);
     index = new IndexTree(type);
+    numeric = tokenize || type == IndexType.ELEMENT || type == IndexType.PATHVALUE ? null :
+      new NumericKeys();
   }
 
   @Override
@@ -55,12 +69,31 @@ public final class DiskValuesBuilder extends ValuesBuilder {
         if((pre & 0x0FFF) == 0) check();
         if(indexEntry()) {
           final int id = updindex ? data.id(pre) : pre;
-          if(tokenize) {
+          if(type == IndexType.TRIGRAM) {
+            final byte[] value = data.text(pre, data.kind(pre) == Data.TEXT);
+            final IntList offsets = Trigrams.offsets(value);
+            final int os = offsets.size();
+            for(int o = 0; o < os; o++) {
+              final int off = offsets.get(o);
+              index.add(Trigrams.get(value, off), id, off);
+              count++;
+            }
+          } else if(tokenize) {
             int pos = 0;
             for(final byte[] token : distinctTokens(data.text(pre, text))) {
               index.add(token, id, pos++);
               count++;
             }
+          } else if(type == IndexType.ELEMENT) {
+            index.add(data.name(pre, Data.ELEM), id, 0);
+            count++;
+          } else if(type == IndexType.PATHVALUE) {
+            final boolean txt = data.kind(pre) == Data.TEXT;
+            final int path = data.paths.id(pre);
+            if(path != -1 && data.textLen(pre, txt) <= data.meta.maxlen) {
+              index.add(PathToken.key(path, data.text(pre, txt)), id, 0);
+              count++;
+            }
           } else if(data.textLen(pre, text) <= data.meta.maxlen) {
             index.add(data.text(pre, text), id, 0);
             count++;
@@ -74,6 +107,10 @@ public final class DiskValuesBuilder extends ValuesBuilder {
         clean();
         merge();
       }
+      if(numeric != null) {
+        numeric.finish().write(data.meta.dbfile(DiskValues.fileSuffix(type) + 'n'), keys);
+      }
+      dictionary.finish().write(data.meta.dbfile(DiskValues.fileSuffix(type) + 'k'), keys);
 
       finishIndex();
       return updindex ? new UpdatableDiskValues(data, type) : new DiskValues(data, type);
@@ -136,6 +173,7 @@ public final class DiskValuesBuilder extends ValuesBuilder {
         }
 
         // parse through all values, cache and sort id values
+        final byte[] key = vm[min].key;
         final int ms = ml.size();
         for(int m = 0; m < ms; ++m) {
           final DiskValuesMerger t = vm[ml.get(m)];
@@ -151,7 +189,7 @@ public final class DiskValuesBuilder extends ValuesBuilder {
           t.next();
         }
         // write final structure to disk
-        write(outL, outR, id, pos);
+        write(outL, outR, id, pos, key);
         ++entries;
       }
     }
@@ -177,7 +215,8 @@ public final class DiskValuesBuilder extends ValuesBuilder {
       final IntList id = new IntList(), pos = tokenize ? new IntList() : null;
       index.init();
       while(index.more()) {
-        final byte[] values = index.ids.get(index.next());
+        final int i = index.next();
+        final byte[] values = index.ids.get(i);
         final int vs = Num.size(values);
 
         if(partial) {
@@ -194,7 +233,7 @@ public final class DiskValuesBuilder extends ValuesBuilder {
             }
           }
           // write final structure to disk
-          write(outL, outR, id, pos);
+          write(outL, outR, id, pos, index.keys.get(i));
         }
       }
     }
@@ -216,30 +255,18 @@ public final class DiskValuesBuilder extends ValuesBuilder {
    * @param outR references
    * @param id ids
    * @param pos positions (can be {@code null})
+   * @param key key
    * @throws IOException I/O exception
    */
   private void write(final DataOutput outL, final DataOutput outR, final IntList id,
-      final IntList pos) throws IOException {
-
-    // sort values before writing
-    int[] order = null;
-    if(tokenize) {
-      // tokenization: create array with offsets to ordered values
-      order = id.createOrder();
-    } else {
-      // no token index: simple sort
-      id.sort();
-    }
+      final IntList pos, final byte[] key) throws IOException {
 
     final int is = id.size();
+    if(numeric != null) numeric.add(key, keys, is);
+    dictionary.add(key, is, outL.size() + Num.length(is));
+    keys++;
     outR.write5(outL.size());
-    outL.writeNum(is);
-    for(int i = 0, old = 0; i < is; i++) {
-      final int value = id.get(i);
-      outL.writeNum(value - old);
-      if(order != null) outL.writeNum(pos.get(order[i]));
-      old = value;
-    }
+    outL.writeBytes(IdBlocks.encode(id, pos));
     id.reset();
     if(pos != null) pos.reset();
   }
@@ -0,0 +1,62 @@
+package org.basex.index.value;
+
+import org.basex.util.*;
+import org.basex.util.list.*;
+
+/**
+ * This class encodes the id lists of value indexes.
+ *
+ * Ids are sorted and stored as distances in the {@link Num} format. If ids are tokenized,
+ * each distance is followed by the token position. Lists are divided into blocks of
+ * {@link #BLOCK} ids. Lists with more than one block are preceded by skip pointers, which
+ * contain the last id before each block and the byte offset of the block, both stored as
+ * distances to the previous pointer: {@code [size, len, id1, off1, ..., dist1, pos1, ...]}.
+ * {@code len} is the byte length of the skip pointers.
+ *
+ * @author BaseX Team 2005-17, BSD License
+ * @author Christian Gruen
+ */
+final class IdBlocks {
+  /** Number of ids per block. */
+  static final int BLOCK = 128;
+
+  /** Private constructor. */
+  private IdBlocks() { }
+
+  /**
+   * Encodes an id list.
+   * @param ids ids (will be sorted)
+   * @param pos token positions (can be {@code null})
+   * @return encoded list
+   */
+  static byte[] encode(final IntList ids, final IntList pos) {
+    int[] order = null;
+    if(pos == null) {
+      // no token index: simple sort
+      ids.sort();
+    } else {
+      // tokenization: create array with offsets to ordered values
+      order = ids.createOrder();
+    }
+
+    final int is = ids.size();
+    final ByteList list = new ByteList(), skip = is > BLOCK ? new ByteList() : null;
+    for(int i = 0, old = 0, lastId = 0, lastOff = 0; i < is; i++) {
+      if(skip != null && i > 0 && i % BLOCK == 0) {
+        final int off = list.size();
+        skip.add(Num.num(old - lastId)).add(Num.num(off - lastOff));
+        lastId = old;
+        lastOff = off;
+      }
+      final int id = ids.get(i);
+      list.add(Num.num(id - old));
+      if(order != null) list.add(Num.num(pos.get(order[i])));
+      old = id;
+    }
+
+    final ByteList result = new ByteList(list.size() + (skip != null ? skip.size() + 10 : 5));
+    result.add(Num.num(is));
+    if(skip != null) result.add(Num.num(skip.size())).add(skip.finish());
+    return result.add(list.finish()).finish();
+  }
+}
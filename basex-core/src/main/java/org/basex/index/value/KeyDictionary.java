@@ -0,0 +1,230 @@
+package org.basex.index.value;
+
+import static org.basex.util.Token.*;
+
+import java.io.*;
+import java.util.*;
+
+import org.basex.index.*;
+import org.basex.io.*;
+import org.basex.io.in.DataInput;
+import org.basex.io.out.DataOutput;
+import org.basex.util.*;
+import org.basex.util.list.*;
+
+/**
+ * This class contains all keys of a value index in a compact main-memory representation.
+ * It maps the keys to the number of ids and the file offsets of their id lists. Exact, prefix
+ * and range lookups can thus be performed without accessing the index files and the database
+ * table.
+ *
+ * Keys are front-coded: they are grouped into blocks of {@link #BLOCK} keys. The first key of a
+ * block is stored completely, and all further keys are stored as the length of the prefix that
+ * is shared with the previous key and the remaining suffix. Keys are found by a binary search on
+ * the first keys of all blocks and a sequential search within a block.
+ *
+ * The dictionary is stored in the index file with the suffix {@code 'k'}:
+ * {@code [k, d, b1 ... bs, o1 ... os]}: number of index keys [Num], encoded keys [Token],
+ * start positions of the blocks [Num], offsets of the first id lists of the blocks [long].
+ * Each entry of a block is encoded as follows:
+ * <ul>
+ *   <li> first key: {@code [l, key, c]}: key length [Num], key, number of ids [Num]</li>
+ *   <li> further keys: {@code [p, l, suffix, c, d]}: length of the shared prefix [Num],
+ *     suffix length [Num], suffix, number of ids [Num],
+ *     distance to the offset of the previous key [Num]</li>
+ * </ul>
+ *
+ * @author BaseX Team 2005-17, BSD License
+ * @author Christian Gruen
+ */
+final class KeyDictionary {
+  /** Number of keys per block. */
+  private static final int BLOCK = 16;
+
+  /** Encoded keys ({@code null} after the dictionary has been finished). */
+  private ByteList list = new ByteList();
+  /** Start positions of the blocks. */
+  private final IntList blockList = new IntList();
+  /** Offsets of the first id lists of the blocks. */
+  private final LongList offsetList = new LongList();
+  /** Last key that has been added. */
+  private byte[] last = EMPTY;
+  /** Offset of the id list of the last key. */
+  private long lastOffset;
+
+  /** Encoded keys. */
+  private byte[] keys;
+  /** Start positions of the blocks. */
+  private int[] blocks;
+  /** Offsets of the first id lists of the blocks. */
+  private long[] offsets;
+  /** Number of keys. */
+  private int size;
+
+  /**
+   * Adds a key. Keys must be added in ascending order.
+   * @param key key
+   * @param count number of ids
+   * @param offset file offset to the id list (after the number of ids)
+   */
+  void add(final byte[] key, final int count, final long offset) {
+    if(size % BLOCK == 0) {
+      blockList.add(list.size());
+      offsetList.add(offset);
+      list.add(Num.num(key.length)).add(key).add(Num.num(count));
+    } else {
+      final int kl = key.length, ml = Math.min(kl, last.length);
+      int p = 0;
+      while(p < ml && key[p] == last[p]) p++;
+      list.add(Num.num(p)).add(Num.num(kl - p)).add(key, p, kl).add(Num.num(count));
+      list.add(Num.num((int) (offset - lastOffset)));
+    }
+    last = key;
+    lastOffset = offset;
+    size++;
+  }
+
+  /**
+   * Finishes the dictionary. Must be called after all keys have been added.
+   * @return self reference
+   */
+  KeyDictionary finish() {
+    keys = list.finish();
+    blocks = blockList.finish();
+    offsets = offsetList.finish();
+    list = null;
+    last = null;
+    return this;
+  }
+
+  /**
+   * Finds the position of a key.
+   * @param key key to be found
+   * @return index of the key, or (-(insertion point) - 1)
+   */
+  int get(final byte[] key) {
+    // find last block whose first key is smaller than or equal to the search key
+    int l = 0, h = blocks.length - 1, b = -1;
+    while(l <= h) {
+      final int m = l + h >>> 1;
+      final int d = diff(new Cursor(m).key, key);
+      if(d == 0) return m * BLOCK;
+      if(d < 0) {
+        b = m;
+        l = m + 1;
+      } else {
+        h = m - 1;
+      }
+    }
+    if(b == -1) return -1;
+
+    // sequential search in the block
+    final Cursor cursor = new Cursor(b);
+    final int end = Math.min(size, (b + 1) * BLOCK);
+    for(int index = b * BLOCK + 1; index < end; index++) {
+      final int d = diff(cursor.next(), key);
+      if(d == 0) return index;
+      if(d > 0) return -index - 1;
+    }
+    return -end - 1;
+  }
+
+  /**
+   * Returns the entry at the specified position.
+   * @param index position of the key
+   * @return index entry
+   */
+  IndexEntry entry(final int index) {
+    final Cursor cursor = new Cursor(index / BLOCK);
+    for(int i = index % BLOCK; i > 0; i--) cursor.next();
+    return new IndexEntry(cursor.key, cursor.count, cursor.offset);
+  }
+
+  /**
+   * Writes the dictionary to disk.
+   * @param file file
+   * @param entries number of index keys
+   * @throws IOException I/O exception
+   */
+  void write(final IOFile file, final int entries) throws IOException {
+    try(DataOutput out = new DataOutput(file)) {
+      out.writeNum(entries);
+      out.writeToken(keys);
+      out.writeNums(blocks);
+      out.writeLongs(offsets);
+    }
+  }
+
+  /**
+   * Reads the dictionary from disk.
+   * @param file file
+   * @param entries number of index keys
+   * @return dictionary, or {@code null} if the file does not exist or is outdated
+   * @throws IOException I/O exception
+   */
+  static KeyDictionary read(final IOFile file, final int entries) throws IOException {
+    if(file.length() == 0) return null;
+    try(DataInput in = new DataInput(file)) {
+      if(in.readNum() != entries) return null;
+      final KeyDictionary kd = new KeyDictionary();
+      kd.keys = in.readToken();
+      kd.blocks = in.readNums();
+      kd.offsets = in.readLongs(in.readNum());
+      kd.size = entries;
+      kd.list = null;
+      kd.last = null;
+      return kd;
+    }
+  }
+
+  /**
+   * Cursor for decoding the keys of a block.
+   */
+  private final class Cursor {
+    /** Current key. */
+    private byte[] key;
+    /** Number of ids of the current key. */
+    private int count;
+    /** Offset of the id list of the current key. */
+    private long offset;
+    /** Position of the next entry. */
+    private int pos;
+
+    /**
+     * Constructor, decoding the first key of a block.
+     * @param block block
+     */
+    Cursor(final int block) {
+      pos = blocks[block];
+      final int kl = num();
+      key = Arrays.copyOfRange(keys, pos, pos + kl);
+      pos += kl;
+      count = num();
+      offset = offsets[block];
+    }
+
+    /**
+     * Decodes the next key of the block.
+     * @return key
+     */
+    byte[] next() {
+      final int prefix = num(), sl = num();
+      key = Arrays.copyOf(key, prefix + sl);
+      System.arraycopy(keys, pos, key, prefix, sl);
+      pos += sl;
+      count = num();
+      offset += num();
+      return key;
+    }
+
+    /**
+     * Decodes a compressed integer.
+     * @return integer
+     */
+    private int num() {
+      final int v = Num.get(keys, pos);
+      pos += Num.length(keys, pos);
+      return v;
+    }
+  }
+}
@@ -0,0 +1,208 @@
+package org.basex.index.value;
+
+import static org.basex.util.Token.*;
+
+import java.io.*;
+import java.util.*;
+
+import org.basex.io.*;
+import org.basex.io.in.DataInput;
+import org.basex.io.out.DataOutput;
+import org.basex.query.*;
+import org.basex.query.value.item.*;
+import org.basex.query.value.type.*;
+import org.basex.util.*;
+
+/**
+ * This class contains the numeric keys of a value index, sorted by their values.
+ * It is used for numeric range queries: the first and last key of a range are found via binary
+ * search, and the number of results can be computed without accessing the index entries.
+ * If a date type is specified, keys of that type are stored as milliseconds since the epoch.
+ *
+ * The keys are stored in the index file with the suffix {@code 'n'}:
+ * {@code [k, v1 ... vs, i1 ... is, c0 ... cs]}: number of index keys at creation time [Num],
+ * values [long], key positions [Num], accumulated numbers of ids [long].
+ *
+ * @author BaseX Team 2005-17, BSD License
+ * @author Christian Gruen
+ */
+final class NumericKeys {
+  /** Date type ({@link AtomType#DAT}, {@link AtomType#DTM}), or {@code null} for numbers. */
+  private final AtomType date;
+  /** Values (sorted). */
+  private double[] values = new double[Array.CAPACITY];
+  /** Key positions. */
+  private int[] keys = new int[Array.CAPACITY];
+  /** Accumulated number of ids: entry {@code i} contains the counts of all previous keys. */
+  private long[] counts = new long[Array.CAPACITY + 1];
+  /** Number of entries. */
+  private int size;
+
+  /**
+   * Constructor for numeric keys.
+   */
+  NumericKeys() {
+    this(null);
+  }
+
+  /**
+   * Constructor.
+   * @param date date type ({@link AtomType#DAT}, {@link AtomType#DTM}),
+   *   or {@code null} for numeric keys
+   */
+  NumericKeys(final AtomType date) {
+    this.date = date;
+  }
+
+  /**
+   * Adds a key if it is numeric or of the date type. Keys must be added in ascending order of
+   * their positions.
+   * @param key key
+   * @param index key position
+   * @param count number of ids
+   */
+  void add(final byte[] key, final int index, final int count) {
+    final double value = date == null ? toDouble(key) : epoch(key);
+    if(Double.isNaN(value)) return;
+
+    if(size == values.length) {
+      final int s = Array.newSize(size);
+      values = Arrays.copyOf(values, s);
+      keys = Arrays.copyOf(keys, s);
+      counts = Arrays.copyOf(counts, s + 1);
+    }
+    values[size] = value;
+    keys[size] = index;
+    counts[++size] = count;
+  }
+
+  /**
+   * Converts a key to milliseconds since the epoch.
+   * @param key key
+   * @return milliseconds, or {@link Double#NaN} if the key is no valid date
+   */
+  private double epoch(final byte[] key) {
+    // skip expensive parsing of keys that do not start with a year
+    final byte[] k = trim(key);
+    final int kl = k.length;
+    int i = kl > 0 && k[0] == '-' ? 1 : 0;
+    while(i < kl && digit(k[i])) i++;
+    if(i < 4 || i == kl || k[i] != '-') return Double.NaN;
+    try {
+      return (date == AtomType.DAT ? new Dat(k, null) : new Dtm(k, null)).epoch();
+    } catch(final QueryException ex) {
+      Util.debug(ex);
+      return Double.NaN;
+    }
+  }
+
+  /**
+   * Sorts the entries by their values. Must be called after all keys have been added.
+   * @return self reference
+   */
+  NumericKeys finish() {
+    final int[] order = Array.createOrder(Arrays.copyOf(values, size), true);
+    final double[] vls = new double[size];
+    final int[] ks = new int[size];
+    final long[] cs = new long[size + 1];
+    for(int o = 0; o < size; o++) {
+      final int i = order[o];
+      vls[o] = values[i];
+      ks[o] = keys[i];
+      cs[o + 1] = cs[o] + counts[i + 1];
+    }
+    values = vls;
+    keys = ks;
+    counts = cs;
+    return this;
+  }
+
+  /**
+   * Returns the position of the first entry that is equal to or greater than the specified value.
+   * @param min minimum value
+   * @return position
+   */
+  int first(final double min) {
+    int l = 0, h = size;
+    while(l < h) {
+      final int m = l + h >>> 1;
+      if(values[m] < min) l = m + 1;
+      else h = m;
+    }
+    return l;
+  }
+
+  /**
+   * Returns the position after the last entry that is equal to or smaller than the specified
+   * value.
+   * @param max maximum value
+   * @return position
+   */
+  int last(final double max) {
+    int l = 0, h = size;
+    while(l < h) {
+      final int m = l + h >>> 1;
+      if(values[m] <= max) l = m + 1;
+      else h = m;
+    }
+    return l;
+  }
+
+  /**
+   * Returns the position of the key of the specified entry.
+   * @param entry entry
+   * @return key position
+   */
+  int key(final int entry) {
+    return keys[entry];
+  }
+
+  /**
+   * Returns the number of ids of the specified entries.
+   * @param first first entry (inclusive)
+   * @param last last entry (exclusive)
+   * @return number of ids
+   */
+  long count(final int first, final int last) {
+    return first < last ? counts[last] - counts[first] : 0;
+  }
+
+  /**
+   * Writes the entries to disk.
+   * @param file file
+   * @param entries number of index keys
+   * @throws IOException I/O exception
+   */
+  void write(final IOFile file, final int entries) throws IOException {
+    final long[] bits = new long[size];
+    for(int s = 0; s < size; s++) bits[s] = Double.doubleToRawLongBits(values[s]);
+    try(DataOutput out = new DataOutput(file)) {
+      out.writeNum(entries);
+      out.writeLongs(bits);
+      out.writeNums(Arrays.copyOf(keys, size));
+      out.writeLongs(Arrays.copyOf(counts, size + 1));
+    }
+  }
+
+  /**
+   * Reads the entries from disk.
+   * @param file file
+   * @param entries number of index keys
+   * @return entries, or {@code null} if the file is outdated
+   * @throws IOException I/O exception
+   */
+  static NumericKeys read(final IOFile file, final int entries) throws IOException {
+    try(DataInput in = new DataInput(file)) {
+      if(in.readNum() != entries) return null;
+      final NumericKeys nk = new NumericKeys();
+      final int s = in.readNum();
+      final long[] bits = in.readLongs(s);
+      nk.values = new double[s];
+      for(int b = 0; b < s; b++) nk.values[b] = Double.longBitsToDouble(bits[b]);
+      nk.keys = in.readNums();
+      nk.counts = in.readLongs(in.readNum());
+      nk.size = s;
+      return nk;
+    }
+  }
+}
@@ -0,0 +1,66 @@
+package org.basex.index.value;
+
+import static org.basex.util.Token.*;
+
+import org.basex.util.hash.*;
+import org.basex.util.list.*;
+
+/**
+ * This class splits texts into trigrams (sequences of three bytes).
+ *
+ * As UTF-8 is self-synchronizing, a text can only contain a string with at least three bytes if
+ * it contains all trigrams of this string. In the index, a trigram is referenced by the offset
+ * of its first occurrence in the indexed text.
+ *
+ * @author BaseX Team 2005-17, BSD License
+ * @author Christian Gruen
+ */
+public final class Trigrams {
+  /** Length of a trigram. */
+  public static final int LENGTH = 3;
+
+  /** Private constructor. */
+  private Trigrams() { }
+
+  /**
+   * Returns the offsets of the first occurrences of all distinct trigrams of a text.
+   * @param text text
+   * @return offsets
+   */
+  public static IntList offsets(final byte[] text) {
+    final IntList list = new IntList();
+    final int tl = text.length - LENGTH + 1;
+    if(tl > 0) {
+      final IntSet set = new IntSet();
+      for(int t = 0; t < tl; t++) {
+        if(set.add((text[t] & 0xFF) << 16 | (text[t + 1] & 0xFF) << 8 | text[t + 2] & 0xFF)) {
+          list.add(t);
+        }
+      }
+    }
+    return list;
+  }
+
+  /**
+   * Returns the trigram at the specified offset.
+   * @param text text
+   * @param offset offset
+   * @return trigram
+   */
+  public static byte[] get(final byte[] text, final int offset) {
+    return substring(text, offset, offset + LENGTH);
+  }
+
+  /**
+   * Returns all distinct trigrams of a text.
+   * @param text text
+   * @return trigrams
+   */
+  public static byte[][] distinct(final byte[] text) {
+    final IntList offsets = offsets(text);
+    final int os = offsets.size();
+    final byte[][] trigrams = new byte[os][];
+    for(int o = 0; o < os; o++) trigrams[o] = get(text, offsets.get(o));
+    return trigrams;
+  }
+}
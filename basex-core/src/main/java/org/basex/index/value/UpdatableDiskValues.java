@@ -35,6 +35,7 @@ public final class UpdatableDiskValues extends DiskValues {
 
   @Override
   public synchronized void add(final ValueCache values) {
+    invalidate();
     // create a sorted list of the new keys and update the old keys
     final TokenList newKeys = new TokenList();
 
@@ -47,7 +48,7 @@ public final class UpdatableDiskValues extends DiskValues {
         final IntList ids = values.ids(key), pos = values.pos(key);
 
         final long off = idxr.read5(index * 5L);
-        final int oldSize = idxl.readNum(off), newSize = oldSize + ids.size();
+        final int oldSize = ids(off), newSize = oldSize + ids.size();
         final IntList newIds = new IntList(newSize);
         final IntList newPos = pos != null ? new IntList(newSize) : null;
         // add existing ids
@@ -89,6 +90,7 @@ public final class UpdatableDiskValues extends DiskValues {
 
   @Override
   public synchronized void delete(final ValueCache values) {
+    invalidate();
     // create a list of the indexes of the keys which should be completely deleted
     final IntList keys = new IntList();
     int p = 0;
@@ -116,7 +118,7 @@ public final class UpdatableDiskValues extends DiskValues {
     final boolean pos = values.pos(key) != null;
 
     // read each id from the list and skip the ones that should be deleted
-    final int oldSize = idxl.readNum(off), delSize = ids.size(), newSize = oldSize - delSize;
+    final int oldSize = ids(off), delSize = ids.size(), newSize = oldSize - delSize;
     final IntList newIds = new IntList(newSize), newPos = pos ? new IntList(newSize) : null;
     for(int o = 0, d = 0, currId = 0; o < oldSize; o++) {
       currId += idxl.readNum();
@@ -186,20 +188,16 @@ public final class UpdatableDiskValues extends DiskValues {
    * @param index index in reference file
    */
   private void writeIds(final byte[] key, final IntList ids, final IntList pos, final int index) {
-    // compute compressed size of distance list
-    final int[] nums = prepare(ids, pos);
-
-    // compute byte length and choose new insertion position (append at the end if no slot is found)
-    int bytes = Num.length(nums.length);
-    for(final int num : nums) bytes += Num.length(num);
+    // encode ids and choose new insertion position (append at the end if no slot is found)
+    final int sz = ids.size();
+    final byte[] list = IdBlocks.encode(ids, pos);
+    final int bytes = list.length;
     final long offset = free.get(bytes, idxl.length());
 
-    // update key index and compressed numbers
-    final int sz = ids.size();
+    // update key index and id list
     writeIndex(index, offset, key);
     idxl.cursor(offset);
-    idxl.writeNum(sz);
-    for(final int num : nums) idxl.writeNum(num);
+    idxl.writeBytes(list, 0, bytes);
 
     // update cache entry
     cache.add(key, sz, offset + Num.length(sz));
@@ -225,35 +223,6 @@ public final class UpdatableDiskValues extends DiskValues {
     idxl.write4(0, sz);
   }
 
-  /**
-   * Returns a new array which contains id distances in ascending order, optionally interspersed
-   * with token positions.
-   * @param ids id list
-   * @param pos position list (can be {@code null})
-   * @return differences
-   */
-  private static int[] prepare(final IntList ids, final IntList pos) {
-    final int is = ids.size();
-    final IntList result = new IntList(pos == null ? is : is << 1);
-    int[] order = null;
-    if(pos == null) {
-      // no token index: simple sort
-      ids.sort();
-    } else {
-      // tokenization: create array with offsets to ordered values
-      order = ids.createOrder();
-    }
-
-    int lastId = 0;
-    for(int i = 0; i < is; i++) {
-      final int id = ids.get(i);
-      result.add(id - lastId);
-      lastId = id;
-      if(pos != null) result.add(pos.get(order[i]));
-    }
-    return result.finish();
-  }
-
   @Override
   public String toString() {
     return super.toString() + free;
@@ -6,6 +6,8 @@ import java.util.*;
 
 import org.basex.data.*;
 import org.basex.index.*;
+import org.basex.index.ft.*;
+import org.basex.util.ft.*;
 import org.basex.util.hash.*;
 import org.basex.util.list.*;
 
@@ -51,19 +53,47 @@ public final class ValueCache implements Iterable<byte[]> {
    * @param data data reference
    */
   public ValueCache(final IntList pres, final IndexType type, final Data data) {
-    pos = type == IndexType.TOKEN ? new ArrayList<IntList>() : null;
+    final boolean ft = type == IndexType.FULLTEXT;
+    pos = type.tokenize() || ft ? new ArrayList<IntList>() : null;
 
     final IndexNames in = new IndexNames(type, data);
-    final boolean text = type == IndexType.TEXT;
-    final int pl = pres.size(), kind = text ? Data.TEXT : Data.ATTR;
+    final boolean text = type == IndexType.TEXT || ft, elem = type == IndexType.ELEMENT;
+    final int pl = pres.size(), kind = elem ? Data.ELEM : text ? Data.TEXT : Data.ATTR;
+    final FTLexer lexer = ft ? ((FTIndex) data.ftIndex).lexer() : null;
     for(int p = 0; p < pl; p++) {
       final int pre = pres.get(p);
-      if(data.kind(pre) == kind && in.contains(pre, text)) {
-        if(type == IndexType.TOKEN) {
+      if(type == IndexType.TRIGRAM) {
+        // texts and attribute values: trigrams are referenced by their offsets
+        final int k = data.kind(pre);
+        if(k == Data.TEXT || k == Data.ATTR) {
+          final byte[] value = data.text(pre, k == Data.TEXT);
+          final IntList offsets = Trigrams.offsets(value);
+          final int os = offsets.size();
+          for(int o = 0; o < os; o++) {
+            final int off = offsets.get(o);
+            addId(Trigrams.get(value, off), pre, off, data);
+          }
+        }
+      } else if(data.kind(pre) == kind && (elem || in.contains(pre, text))) {
+        if(elem) {
+          addId(data.name(pre, Data.ELEM), pre, 0, data);
+        } else if(type == IndexType.TOKEN) {
           int ps = 0;
           for(final byte[] token : distinctTokens(data.text(pre, text))) {
             addId(token, pre, ps++, data);
           }
+        } else if(ft) {
+          // skip too long and stopword tokens
+          final StopWords sw = lexer.ftOpt().sw;
+          lexer.init(data.text(pre, true));
+          int ps = -1;
+          while(lexer.hasNext()) {
+            final byte[] token = lexer.nextToken();
+            ++ps;
+            if(token.length <= data.meta.maxlen && (sw.isEmpty() || !sw.contains(token))) {
+              addId(token, pre, ps, data);
+            }
+          }
         } else if(data.textLen(pre, text) <= data.meta.maxlen) {
           addId(data.text(pre, text), pre, 0, data);
         }
@@ -129,7 +159,7 @@ public final class ValueCache implements Iterable<byte[]> {
    * @param key key
    * @return id list
    */
-  IntList ids(final byte[] key) {
+  public IntList ids(final byte[] key) {
     return ids.get(keys.id(key) - 1);
   }
 
@@ -138,7 +168,7 @@ public final class ValueCache implements Iterable<byte[]> {
    * @param key key
    * @return id list, or {@code null}
    */
-  IntList pos(final byte[] key) {
+  public IntList pos(final byte[] key) {
     return pos != null ? pos.get(keys.id(key) - 1) : null;
   }
 }
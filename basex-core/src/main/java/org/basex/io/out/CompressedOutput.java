@@ -0,0 +1,61 @@
+package org.basex.io.out;
+
+import java.io.*;
+import java.util.*;
+
+import org.basex.io.*;
+import org.basex.io.random.*;
+
+/**
+ * This class writes a file with compressed contents, which can be accessed via
+ * {@link DataAccess}.
+ *
+ * @author BaseX Team 2005-17, BSD License
+ * @author Christian Gruen
+ */
+public final class CompressedOutput extends OutputStream {
+  /** Buffer. */
+  private final byte[] buffer = new byte[IO.BLOCKSIZE];
+  /** File. */
+  private final RandomAccessFile raf;
+  /** Compressed blocks. */
+  private final CompressedBlocks blocks;
+
+  /** Position inside buffer. */
+  private int pos;
+  /** Number of written blocks. */
+  private long block;
+
+  /**
+   * Constructor.
+   * @param file file to be written
+   * @throws IOException I/O exception
+   */
+  public CompressedOutput(final IOFile file) throws IOException {
+    raf = new RandomAccessFile(file.file(), "rw");
+    raf.setLength(0);
+    blocks = new CompressedBlocks(raf);
+  }
+
+  @Override
+  public void write(final int b) throws IOException {
+    buffer[pos++] = (byte) b;
+    if(pos == IO.BLOCKSIZE) {
+      blocks.write(block++, buffer);
+      pos = 0;
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      if(pos != 0) {
+        Arrays.fill(buffer, pos, IO.BLOCKSIZE, (byte) 0);
+        blocks.write(block, buffer);
+      }
+      blocks.flush(block * IO.BLOCKSIZE + pos);
+    } finally {
+      raf.close();
+    }
+  }
+}
@@ -0,0 +1,294 @@
+package org.basex.io.random;
+
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+import org.basex.io.*;
+import org.basex.util.*;
+
+/**
+ * This class provides a global pool, which caches disk blocks of all opened database files.
+ *
+ * The pool is consulted if a block is not found in the buffers of a file. It only contains
+ * blocks that are consistent with the disk contents: blocks are added after they have been
+ * read from or written to disk. A simplified 2Q replacement policy is applied to prevent
+ * the pool from being flushed by sequential scans: new blocks are added to a FIFO queue and
+ * are only promoted to the main LRU queue if they are requested again after having been
+ * evicted. To reduce contention, the pool is split into segments.
+ *
+ * @author BaseX Team 2005-17, BSD License
+ * @author Christian Gruen
+ */
+public final class BufferPool {
+  /** Global instance. */
+  private static final BufferPool INSTANCE = new BufferPool();
+  /** Number of segments (must be 1 << n). */
+  private static final int SEGMENTS = 1 << 4;
+
+  /** Segments. */
+  private final Segment[] segments = new Segment[SEGMENTS];
+  /** Counter for file ids. */
+  private final AtomicInteger ids = new AtomicInteger();
+  /** Number of hits. */
+  private final AtomicLong hits = new AtomicLong();
+  /** Number of misses. */
+  private final AtomicLong misses = new AtomicLong();
+  /** Maximum number of blocks. */
+  private volatile int capacity;
+
+  /**
+   * Constructor.
+   */
+  private BufferPool() {
+    for(int s = 0; s < SEGMENTS; s++) segments[s] = new Segment();
+  }
+
+  /**
+   * Returns the global instance.
+   * @return instance
+   */
+  public static BufferPool get() {
+    return INSTANCE;
+  }
+
+  /**
+   * Assigns the size of the pool. Superfluous blocks will be discarded.
+   * @param mb size in megabytes (0: disable pool)
+   */
+  public void size(final int mb) {
+    final int c = (int) Math.min(Integer.MAX_VALUE, ((long) Math.max(0, mb) << 20) / IO.BLOCKSIZE);
+    capacity = c;
+    for(final Segment s : segments) s.size(c / SEGMENTS);
+  }
+
+  /**
+   * Returns a new file id.
+   * @return id
+   */
+  int register() {
+    return ids.incrementAndGet();
+  }
+
+  /**
+   * Copies a cached block to the specified array.
+   * @param file file id
+   * @param block block number
+   * @param data target array
+   * @return {@code true} if the block was found
+   */
+  boolean read(final int file, final long block, final byte[] data) {
+    if(capacity == 0) return false;
+    final long key = key(file, block);
+    final boolean hit = segment(key).read(key, data);
+    (hit ? hits : misses).incrementAndGet();
+    return hit;
+  }
+
+  /**
+   * Caches a block that has been read from or written to disk.
+   * @param file file id
+   * @param block block number
+   * @param data block data
+   */
+  void write(final int file, final long block, final byte[] data) {
+    write(file, block, data, 0);
+  }
+
+  /**
+   * Caches a block that has been read from disk.
+   * @param file file id
+   * @param block block number
+   * @param data array containing the block data
+   * @param off array offset
+   */
+  void write(final int file, final long block, final byte[] data, final int off) {
+    if(capacity == 0) return;
+    final long key = key(file, block);
+    segment(key).write(key, data, off);
+  }
+
+  /**
+   * Indicates if the pool is enabled.
+   * @return result of check
+   */
+  boolean enabled() {
+    return capacity != 0;
+  }
+
+  /**
+   * Removes all blocks of the specified file.
+   * @param file file id
+   */
+  void remove(final int file) {
+    for(final Segment s : segments) s.remove(file);
+  }
+
+  /**
+   * Returns a string with information on the pool.
+   * @return info string
+   */
+  public String info() {
+    long size = 0;
+    for(final Segment s : segments) size += s.size();
+    return Performance.format(size * IO.BLOCKSIZE) + " of " +
+      Performance.format((long) capacity * IO.BLOCKSIZE) + ", " +
+      hits.get() + " hits, " + misses.get() + " misses";
+  }
+
+  /**
+   * Returns the number of hits.
+   * @return hits
+   */
+  public long hits() {
+    return hits.get();
+  }
+
+  /**
+   * Returns the number of misses.
+   * @return misses
+   */
+  public long misses() {
+    return misses.get();
+  }
+
+  /**
+   * Returns the key for the specified block.
+   * @param file file id
+   * @param block block number
+   * @return key
+   */
+  private static long key(final int file, final long block) {
+    return (long) file << 32 | block & 0xFFFFFFFFL;
+  }
+
+  /**
+   * Returns the segment for the specified key.
+   * @param key key
+   * @return segment
+   */
+  private Segment segment(final long key) {
+    final long h = key * 0x9E3779B97F4A7C15L;
+    return segments[(int) (h >>> 60) & SEGMENTS - 1];
+  }
+
+  /** Segment of the pool, managed by the 2Q replacement policy. */
+  private static final class Segment {
+    /** FIFO queue with blocks that have been accessed once. */
+    private final LinkedHashMap<Long, byte[]> in = new LinkedHashMap<>();
+    /** Keys of blocks that have recently been evicted from the FIFO queue. */
+    private final LinkedHashMap<Long, Boolean> out = new LinkedHashMap<>();
+    /** LRU queue with frequently accessed blocks. */
+    private final LinkedHashMap<Long, byte[]> main = new LinkedHashMap<>(16, 0.75f, true);
+    /** Maximum number of blocks. */
+    private int capacity;
+
+    /**
+     * Assigns the maximum number of blocks.
+     * @param c number of blocks
+     */
+    synchronized void size(final int c) {
+      capacity = c;
+      evict();
+      while(out.size() > Math.max(1, capacity >>> 1)) remove(out);
+    }
+
+    /**
+     * Returns the number of cached blocks.
+     * @return number of blocks
+     */
+    synchronized int size() {
+      return in.size() + main.size();
+    }
+
+    /**
+     * Copies a cached block to the specified array.
+     * @param key key
+     * @param data target array
+     * @return {@code true} if the block was found
+     */
+    synchronized boolean read(final long key, final byte[] data) {
+      byte[] block = main.get(key);
+      if(block == null) block = in.get(key);
+      if(block == null) return false;
+      System.arraycopy(block, 0, data, 0, block.length);
+      return true;
+    }
+
+    /**
+     * Caches a block.
+     * @param key key
+     * @param data array containing the block data
+     * @param off array offset
+     */
+    synchronized void write(final long key, final byte[] data, final int off) {
+      if(capacity == 0) return;
+
+      byte[] block = main.get(key);
+      if(block == null) block = in.get(key);
+      if(block == null) {
+        // reuse evicted array
+        block = evict();
+        if(block == null) block = new byte[IO.BLOCKSIZE];
+        // promote block to main queue if it has recently been evicted from the FIFO queue
+        if(out.remove(key) != null) main.put(key, block);
+        else in.put(key, block);
+      }
+      System.arraycopy(data, off, block, 0, IO.BLOCKSIZE);
+    }
+
+    /**
+     * Removes all blocks of the specified file.
+     * @param file file id
+     */
+    synchronized void remove(final int file) {
+      remove(in.keySet(), file);
+      remove(out.keySet(), file);
+      remove(main.keySet(), file);
+    }
+
+    /**
+     * Evicts blocks until the capacity is not exceeded anymore.
+     * @return last evicted array (can be {@code null})
+     */
+    private byte[] evict() {
+      byte[] block = null;
+      while(in.size() + main.size() >= Math.max(1, capacity)) {
+        if(in.size() > capacity >>> 2 || main.isEmpty()) {
+          // evict block from FIFO queue and remember its key
+          final Long key = in.keySet().iterator().next();
+          block = in.remove(key);
+          out.put(key, Boolean.TRUE);
+          if(out.size() > Math.max(1, capacity >>> 1)) remove(out);
+        } else {
+          block = remove(main);
+        }
+      }
+      return block;
+    }
+
+    /**
+     * Removes the eldest entry from the specified map.
+     * @param map map
+     * @param <V> value type
+     * @return value of removed entry
+     */
+    private static <V> V remove(final LinkedHashMap<Long, V> map) {
+      final Iterator<V> iter = map.values().iterator();
+      final V value = iter.next();
+      iter.remove();
+      return value;
+    }
+
+    /**
+     * Removes all keys of the specified file.
+     * @param keys keys
+     * @param file file id
+     */
+    private static void remove(final Set<Long> keys, final int file) {
+      final Iterator<Long> iter = keys.iterator();
+      while(iter.hasNext()) {
+        if((int) (iter.next() >>> 32) == file) iter.remove();
+      }
+    }
+  }
+}
@@ -2,23 +2,40 @@ package org.basex.io.random;
 
 /**
  * This class provides a simple, clock-based buffer management.
+ * If buffers are addressed by block numbers, sequential accesses will be detected.
  *
  * @author BaseX Team 2005-17, BSD License
  * @author Christian Gruen
  */
 final class Buffers {
-  /** Number of buffers (must be 1 << n). */
+  /** Default number of buffers (must be 1 << n). */
   private static final int BUFFERS = 1 << 4;
   /** Buffers. */
-  private final Buffer[] buf = new Buffer[BUFFERS];
+  private final Buffer[] buf;
+  /** Bit mask for buffer offsets. */
+  private final int mask;
   /** Current buffer offset. */
   private int off;
+  /** Last requested position that was not buffered. */
+  private long last = -1;
+  /** Number of consecutive requests for the respectively next position. */
+  private int run;
 
   /**
    * Constructor.
    */
   Buffers() {
-    for(int b = 0; b < BUFFERS; ++b) buf[b] = new Buffer();
+    this(BUFFERS);
+  }
+
+  /**
+   * Constructor.
+   * @param size number of buffers (must be 1 << n)
+   */
+  Buffers(final int size) {
+    buf = new Buffer[size];
+    mask = size - 1;
+    for(int b = 0; b < size; ++b) buf[b] = new Buffer();
   }
 
   /**
@@ -46,8 +63,20 @@ final class Buffers {
     final int o = off;
     do {
       if(buf[off].pos == p) return false;
-    } while((off = off + 1 & BUFFERS - 1) != o);
-    off = o + 1 & BUFFERS - 1;
+    } while((off = off + 1 & mask) != o);
+    off = o + 1 & mask;
+    run = p == last + 1 ? run + 1 : 0;
+    last = p;
     return true;
   }
+
+  /**
+   * Indicates if the buffers are currently accessed sequentially, i.e., if the last
+   * requests referenced consecutive positions that were not buffered yet.
+   * @param min minimum number of consecutive requests
+   * @return result of check
+   */
+  boolean sequential(final int min) {
+    return run >= min;
+  }
 }
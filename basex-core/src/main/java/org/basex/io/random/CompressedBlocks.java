@@ -0,0 +1,265 @@
+package org.basex.io.random;
+
+import java.io.*;
+import java.nio.*;
+import java.util.*;
+
+import org.basex.io.*;
+import org.basex.util.*;
+
+/**
+ * This class provides block-wise access to a file with compressed contents.
+ *
+ * The logical contents are divided into chunks of {@link #CHUNKSIZE} bytes, which are
+ * compressed with {@link LZ4}. The file is concluded by a directory with the offsets and lengths
+ * of all chunks, followed by the offset of the directory, the number of chunks and the
+ * logical file length.
+ *
+ * Chunks that are referenced by the directory on disk are never overwritten: a modified chunk
+ * is written to a new slot, which is overwritten by subsequent modifications until the next
+ * directory has been written. The slots of replaced chunks are reused after that. Space that is
+ * still unused when the file is closed will be reclaimed by {@code OPTIMIZE ALL}. New slots are
+ * allocated in front of the directory on disk if there is enough space, or after the trailer,
+ * which is then repeated at the end of the file. A new directory is written in front of the
+ * current one if there is enough space, or after it otherwise. The new contents become visible
+ * with the trailer at the end of the file; the directory on disk remains valid until then.
+ *
+ * The decompressed contents of the current chunk are cached.
+ * NOTE: the class is not thread-safe.
+ *
+ * @author BaseX Team 2005-17, BSD License
+ * @author Christian Gruen
+ */
+public final class CompressedBlocks {
+  /** Chunk power. */
+  private static final int CHUNKPOWER = 16;
+  /** Chunk size (must be a multiple of {@link IO#BLOCKSIZE}). */
+  private static final int CHUNKSIZE = 1 << CHUNKPOWER;
+  /** Size of a directory entry. */
+  private static final int ENTRY = 12;
+  /** Size of the trailer. */
+  private static final int TRAILER = 20;
+
+  /** File. */
+  private final RandomAccessFile raf;
+  /** Decompressed contents of the current chunk. */
+  private final byte[] chunk = new byte[CHUNKSIZE];
+  /** Compression buffer. */
+  private final byte[] buffer = new byte[LZ4.maxLength(CHUNKSIZE)];
+  /** Hash table for compression. */
+  private final int[] table = LZ4.table();
+  /** File offsets of the chunks. */
+  private long[] offsets;
+  /** Compressed lengths of the chunks (0: empty chunk, {@link #CHUNKSIZE}: uncompressed). */
+  private int[] lengths;
+  /** Number of chunks. */
+  private int chunks;
+  /** End of the chunk data. */
+  private long end;
+  /** Offset of the directory on disk. */
+  private long dir;
+  /** End of the file on disk. */
+  private long tail;
+  /** Trailer on disk. */
+  private byte[] trailer;
+  /** Chunks that have been written to new slots since the last flush. */
+  private BitArray fresh = new BitArray();
+  /** Free slots (offsets and lengths). */
+  private final TreeMap<Long, Integer> free = new TreeMap<>();
+  /** Slots that will be free after the next flush (offsets and lengths). */
+  private final TreeMap<Long, Integer> released = new TreeMap<>();
+  /** Logical file length. */
+  private long length;
+
+  /** Index of the current chunk. */
+  private int current = -1;
+  /** Indicates if the current chunk has been modified. */
+  private boolean dirty;
+  /** Indicates if the directory has been modified. */
+  private boolean changed;
+
+  /**
+   * Constructor.
+   * @param raf file (an empty file will be treated as empty logical file)
+   * @throws IOException I/O exception
+   */
+  public CompressedBlocks(final RandomAccessFile raf) throws IOException {
+    this.raf = raf;
+    final long fl = raf.length();
+    if(fl != 0) {
+      final ByteBuffer bb = ByteBuffer.allocate(TRAILER);
+      raf.seek(fl - TRAILER);
+      raf.readFully(bb.array());
+      dir = bb.getLong();
+      chunks = bb.getInt();
+      length = bb.getLong();
+      trailer = bb.array();
+      tail = fl;
+
+      final ByteBuffer entries = ByteBuffer.allocate(chunks * ENTRY);
+      raf.seek(dir);
+      raf.readFully(entries.array());
+      offsets = new long[chunks];
+      lengths = new int[chunks];
+      for(int c = 0; c < chunks; c++) {
+        offsets[c] = entries.getLong();
+        lengths[c] = entries.getInt();
+        end = Math.max(end, offsets[c] + lengths[c]);
+      }
+    } else {
+      offsets = new long[0];
+      lengths = new int[0];
+    }
+  }
+
+  /**
+   * Returns the logical file length.
+   * @return length
+   */
+  public long length() {
+    return length;
+  }
+
+  /**
+   * Reads a block.
+   * @param block block number
+   * @param data target array
+   * @throws IOException I/O exception
+   */
+  public void read(final long block, final byte[] data) throws IOException {
+    final long pos = block * IO.BLOCKSIZE;
+    chunk((int) (pos >>> CHUNKPOWER));
+    System.arraycopy(chunk, (int) (pos & CHUNKSIZE - 1), data, 0, IO.BLOCKSIZE);
+  }
+
+  /**
+   * Writes a block.
+   * @param block block number
+   * @param data block data
+   * @throws IOException I/O exception
+   */
+  public void write(final long block, final byte[] data) throws IOException {
+    final long pos = block * IO.BLOCKSIZE;
+    chunk((int) (pos >>> CHUNKPOWER));
+    System.arraycopy(data, 0, chunk, (int) (pos & CHUNKSIZE - 1), IO.BLOCKSIZE);
+    dirty = true;
+  }
+
+  /**
+   * Writes the current chunk and the directory to disk.
+   * @param len logical file length
+   * @throws IOException I/O exception
+   */
+  public void flush(final long len) throws IOException {
+    store();
+    if(!changed && len == length) return;
+
+    length = len;
+    final int size = chunks * ENTRY + TRAILER;
+    // write directory in front of the current one if it fits in there, or after it otherwise
+    final long pos = end + size <= dir ? end : Math.max(end, tail);
+    final ByteBuffer bb = ByteBuffer.allocate(size);
+    for(int c = 0; c < chunks; c++) bb.putLong(offsets[c]).putInt(lengths[c]);
+    bb.putLong(pos).putInt(chunks).putLong(length);
+    raf.seek(pos);
+    raf.write(bb.array());
+    // the old directory is invalidated by the new trailer at the end of the file
+    raf.setLength(pos + size);
+    dir = pos;
+    tail = pos + size;
+    trailer = Arrays.copyOfRange(bb.array(), size - TRAILER, size);
+    changed = false;
+    // slots of replaced chunks are not referenced anymore
+    free.putAll(released);
+    released.clear();
+    fresh = new BitArray();
+  }
+
+  /**
+   * Makes the specified chunk the current one.
+   * @param c index of the chunk
+   * @throws IOException I/O exception
+   */
+  private void chunk(final int c) throws IOException {
+    if(c == current) return;
+    store();
+
+    final int l = c < chunks ? lengths[c] : 0;
+    if(l == 0) {
+      Arrays.fill(chunk, (byte) 0);
+    } else {
+      raf.seek(offsets[c]);
+      if(l == CHUNKSIZE) {
+        raf.readFully(chunk);
+      } else {
+        raf.readFully(buffer, 0, l);
+        LZ4.decompress(buffer, 0, l, chunk);
+      }
+    }
+    current = c;
+  }
+
+  /**
+   * Compresses and writes the current chunk if it has been modified.
+   * @throws IOException I/O exception
+   */
+  private void store() throws IOException {
+    if(!dirty) return;
+
+    final int c = current;
+    if(c >= chunks) {
+      if(c >= offsets.length) {
+        final int s = Array.newSize(c + 1);
+        offsets = Arrays.copyOf(offsets, s);
+        lengths = Arrays.copyOf(lengths, s);
+      }
+      chunks = c + 1;
+    }
+    // store incompressible chunks uncompressed
+    int l = LZ4.compress(chunk, CHUNKSIZE, buffer, table);
+    final byte[] data = l < CHUNKSIZE ? buffer : chunk;
+    l = Math.min(l, CHUNKSIZE);
+    // chunks referenced by the directory on disk, or chunks that do not fit, get a new slot
+    if(!fresh.get(c) || l > lengths[c]) {
+      final int ol = lengths[c];
+      if(ol != 0) (fresh.get(c) ? free : released).put(offsets[c], ol);
+      offsets[c] = allocate(l);
+      fresh.set(c);
+    }
+    raf.seek(offsets[c]);
+    raf.write(data, 0, l);
+    lengths[c] = l;
+    dirty = false;
+    changed = true;
+  }
+
+  /**
+   * Allocates a slot for a chunk.
+   * @param l length of the chunk
+   * @return offset of the slot
+   * @throws IOException I/O exception
+   */
+  private long allocate(final int l) throws IOException {
+    // reuse first free slot that is large enough
+    for(final Map.Entry<Long, Integer> entry : free.entrySet()) {
+      final int fl = entry.getValue();
+      if(fl < l) continue;
+      final long off = entry.getKey();
+      free.remove(off);
+      if(fl > l) free.put(off + l, fl - l);
+      return off;
+    }
+    if(end + l <= dir || tail == 0) {
+      final long off = end;
+      end += l;
+      return off;
+    }
+    // append slot and a copy of the trailer: the directory on disk remains valid
+    final long off = Math.max(end, tail);
+    end = off + l;
+    tail = end + TRAILER;
+    raf.seek(end);
+    raf.write(trailer);
+    return off;
+  }
+}
@@ -7,6 +7,8 @@ import org.basex.util.*;
 
 /**
  * This class allows positional read and write access to a database file.
+ * If compression is enabled, the file contents are stored in compressed chunks,
+ * and all positions refer to the decompressed contents.
  *
  * @author BaseX Team 2005-17, BSD License
  * @author Christian Gruen
@@ -14,6 +16,12 @@ import org.basex.util.*;
 public final class DataAccess implements Closeable {
   /** Buffer manager. */
   private final Buffers bm = new Buffers();
+  /** Global buffer pool. */
+  private final BufferPool pool = BufferPool.get();
+  /** File id in the buffer pool. */
+  private final int id = pool.register();
+  /** File. */
+  private final IOFile file;
   /** Reference to the data input stream. */
   private final RandomAccessFile raf;
   /** File length. */
@@ -23,34 +31,100 @@ public final class DataAccess implements Closeable {
   /** Offset. */
   private int off;
 
+  /** Flag for memory-mapped file access. */
+  private final boolean mmap;
+  /** Memory mapping (only assigned if mapping is enabled and no updates are pending). */
+  private FileMapping mapping;
+  /** Current file position in the mapped file. */
+  private long mpos;
+  /** Compressed blocks (only assigned if compression is enabled). */
+  private final CompressedBlocks blocks;
+  /** Journal (only assigned if updates are journaled). */
+  private Journal journal;
+
   /**
    * Constructor, initializing the file reader.
    * @param file the file to be read
    * @throws IOException I/O Exception
    */
   public DataAccess(final IOFile file) throws IOException {
+    this(file, false);
+  }
+
+  /**
+   * Constructor, initializing the file reader.
+   * @param file the file to be read
+   * @param mmap map file to memory
+   * @throws IOException I/O Exception
+   */
+  public DataAccess(final IOFile file, final boolean mmap) throws IOException {
+    this(file, mmap, false);
+  }
+
+  /**
+   * Constructor, initializing the file reader.
+   * @param file the file to be read
+   * @param mmap map file to memory (ignored if compression is enabled)
+   * @param compress compressed file contents
+   * @throws IOException I/O Exception
+   */
+  public DataAccess(final IOFile file, final boolean mmap, final boolean compress)
+      throws IOException {
+    this.file = file;
+    this.mmap = mmap && !compress;
     RandomAccessFile f = null;
     try {
       f = new RandomAccessFile(file.file(), "rw");
-      length = f.length();
+      blocks = compress ? new CompressedBlocks(f) : null;
+      length = compress ? blocks.length() : f.length();
       raf = f;
       cursor(0);
+      map();
     } catch(final IOException ex) {
       if(f != null) f.close();
       throw ex;
     }
   }
 
+  /**
+   * Assigns a journal for all subsequent file modifications.
+   * Modifications of compressed files cannot be journaled.
+   * @param jnl journal (can be {@code null})
+   */
+  public void journal(final Journal jnl) {
+    if(jnl != null && blocks != null) {
+      throw Util.notExpected("Compressed files cannot be journaled: %.", file);
+    }
+    journal = jnl;
+  }
+
   /**
    * Flushes the buffered data.
    */
   public synchronized void flush() {
     try {
+      if(journal != null) {
+        boolean saved = false;
+        for(final Buffer b : bm.all()) if(b.dirty) saved |= journal(b);
+        if(changed) {
+          journal.length(file, length);
+          // save the contents of blocks that will be discarded
+          final long fl = raf.length();
+          for(long p = length & -IO.BLOCKSIZE; p < fl; p += IO.BLOCKSIZE) {
+            saved |= journal.undo(file, raf.getChannel(), p);
+          }
+        }
+        if(saved) journal.ahead();
+      }
       for(final Buffer b : bm.all()) if(b.dirty) writeBlock(b);
-      if(changed) {
+      if(blocks != null) {
+        blocks.flush(length);
+        changed = false;
+      } else if(changed) {
         raf.setLength(length);
         changed = false;
       }
+      map();
     } catch(final IOException ex) {
       Util.stack(ex);
     }
@@ -59,6 +133,11 @@ public final class DataAccess implements Closeable {
   @Override
   public synchronized void close() {
     flush();
+    if(mapping != null) {
+      mapping.release();
+      mapping = null;
+    }
+    pool.remove(id);
     try {
       raf.close();
     } catch(final IOException ex) {
@@ -71,7 +150,7 @@ public final class DataAccess implements Closeable {
    * @return position in the file
    */
   public long cursor() {
-    return buffer(false).pos + off;
+    return mapping != null ? mpos : buffer(false).pos + off;
   }
 
   /**
@@ -190,6 +269,13 @@ public final class DataAccess implements Closeable {
    * @return byte array
    */
   public synchronized byte[] readBytes(final int len) {
+    if(mapping != null) {
+      final byte[] b = new byte[len];
+      mapping.read(mpos, b, 0, len);
+      mpos += len;
+      return b;
+    }
+
     int l = len;
     int ll = IO.BLOCKSIZE - off;
     final byte[] b = new byte[l];
@@ -213,17 +299,32 @@ public final class DataAccess implements Closeable {
    * @param pos read position
    */
   public void cursor(final long pos) {
+    if(mapping != null) {
+      mpos = pos;
+      return;
+    }
+
     off = (int) (pos & IO.BLOCKSIZE - 1);
     final long b = pos - off;
     if(!bm.cursor(b)) return;
 
     final Buffer bf = bm.current();
     try {
-      if(bf.dirty) writeBlock(bf);
+      if(bf.dirty) {
+        if(journal != null && journal(bf)) journal.ahead();
+        writeBlock(bf);
+      }
       bf.pos = b;
-      raf.seek(bf.pos);
-      if(bf.pos < raf.length())
-        raf.readFully(bf.data, 0, (int) Math.min(length - bf.pos, IO.BLOCKSIZE));
+      final long block = b / IO.BLOCKSIZE;
+      if(bf.pos < (blocks != null ? length : raf.length()) && !pool.read(id, block, bf.data)) {
+        if(blocks != null) {
+          blocks.read(block, bf.data);
+        } else {
+          raf.seek(bf.pos);
+          raf.readFully(bf.data, 0, (int) Math.min(length - bf.pos, IO.BLOCKSIZE));
+        }
+        pool.write(id, block, bf.data);
+      }
     } catch(final IOException ex) {
       Util.stack(ex);
     }
@@ -253,6 +354,7 @@ public final class DataAccess implements Closeable {
    * @param value value to be written
    */
   public void write5(final long pos, final long value) {
+    unmap();
     cursor(pos);
     write((byte) (value >>> 32));
     write((byte) (value >>> 24));
@@ -276,6 +378,7 @@ public final class DataAccess implements Closeable {
    * @param value value to be written
    */
   public void write4(final int value) {
+    unmap();
     write(value >>> 24);
     write(value >>> 16);
     write(value >>>  8);
@@ -287,6 +390,7 @@ public final class DataAccess implements Closeable {
    * @param value number to be appended
    */
   public void writeNum(final int value) {
+    unmap();
     if(value < 0 || value > 0x3FFFFFFF) {
       write(0xC0); write(value >>> 24); write(value >>> 16); write(value >>> 8); write(value);
     } else if(value > 0x3FFF) {
@@ -306,6 +410,7 @@ public final class DataAccess implements Closeable {
    * @param len token length
    */
   public void writeBytes(final byte[] buffer, final int offset, final int len) {
+    unmap();
     final int last = offset + len;
     int o = offset;
 
@@ -340,6 +445,7 @@ public final class DataAccess implements Closeable {
    * @return new offset to store text
    */
   public long free(final long pos, final int size) {
+    unmap();
     // old text size (available space)
     int os = readNum(pos) + (int) (cursor() - pos);
 
@@ -388,6 +494,7 @@ public final class DataAccess implements Closeable {
    * @return next byte
    */
   private int read() {
+    if(mapping != null) return mapping.read1(mpos++) & 0xFF;
     final Buffer bf = buffer();
     return bf.data[off++] & 0xFF;
   }
@@ -415,15 +522,56 @@ public final class DataAccess implements Closeable {
     writeBytes(buffer, offset, len);
   }
 
+  /**
+   * Maps the file to memory if the mapping is enabled and not already assigned.
+   * @throws IOException I/O exception
+   */
+  private void map() throws IOException {
+    if(mmap && mapping == null) mapping = new FileMapping(raf.getChannel(), length);
+  }
+
+  /**
+   * Drops the memory mapping before contents are updated.
+   * The current file position is preserved. The mapping is released while holding the monitor,
+   * so that it will not be accessed by concurrent (synchronized) read operations anymore.
+   */
+  private synchronized void unmap() {
+    if(mapping == null) return;
+    mapping.release();
+    mapping = null;
+    cursor(mpos);
+  }
+
+  /**
+   * Adds the specified block to the journal, and its original contents if they have not been
+   * saved yet by the current update.
+   * @param buffer buffer to journal
+   * @return {@code true} if the original contents have been saved
+   * @throws IOException I/O exception
+   */
+  private boolean journal(final Buffer buffer) throws IOException {
+    final long pos = buffer.pos;
+    journal.block(file, pos, buffer.data, (int) Math.min(IO.BLOCKSIZE, length - pos));
+    return journal.undo(file, raf.getChannel(), pos);
+  }
+
   /**
    * Writes the specified block to disk.
+   * If updates are journaled, the block must have been journaled before, and the journal must
+   * have been synchronized if its original contents have been saved.
    * @param buffer buffer to write
    * @throws IOException I/O exception
    */
   private void writeBlock(final Buffer buffer) throws IOException {
-    final long pos = buffer.pos, len = Math.min(IO.BLOCKSIZE, length - pos);
-    raf.seek(pos);
-    raf.write(buffer.data, 0, (int) len);
+    final long pos = buffer.pos;
+    if(blocks != null) {
+      blocks.write(pos / IO.BLOCKSIZE, buffer.data);
+    } else {
+      final int len = (int) Math.min(IO.BLOCKSIZE, length - pos);
+      raf.seek(pos);
+      raf.write(buffer.data, 0, len);
+    }
+    pool.write(id, pos / IO.BLOCKSIZE, buffer.data);
     buffer.dirty = false;
   }
 
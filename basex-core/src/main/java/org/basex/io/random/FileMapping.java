@@ -0,0 +1,186 @@
+package org.basex.io.random;
+
+import java.io.*;
+import java.lang.reflect.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.concurrent.atomic.*;
+
+import org.basex.util.*;
+
+/**
+ * This class provides read-only access to a memory-mapped file.
+ * Files are mapped in segments, as a single mapping is limited to 2 GB.
+ * All read methods are thread-safe, as no state is changed by read operations.
+ *
+ * Mappings are explicitly released if they are not needed anymore, as the garbage collector
+ * may keep them alive for a long time, and as mapped files cannot be deleted on some systems.
+ * Mappings are reference-counted: the creator holds the first reference, and each additional
+ * holder must call {@link #acquire()} and {@link #release()}. The segments are only unmapped
+ * when the last reference has been released.
+ *
+ * @author BaseX Team 2005-17, BSD License
+ * @author Christian Gruen
+ */
+final class FileMapping {
+  /** Segment power (must be larger than the power of {@link org.basex.io.IO#BLOCKSIZE}). */
+  private static final int SEGPOWER = 30;
+  /** Segment size. */
+  private static final int SEGSIZE = 1 << SEGPOWER;
+  /** Unsafe instance for releasing buffers (Java 9 and later; otherwise {@code null}). */
+  private static final Object UNSAFE;
+  /** Method for releasing buffers (Java 9 and later; otherwise {@code null}). */
+  private static final Method CLEANER;
+
+  static {
+    Object unsafe = null;
+    Method cleaner = null;
+    try {
+      final Class<?> clazz = Class.forName("sun.misc.Unsafe");
+      cleaner = clazz.getMethod("invokeCleaner", ByteBuffer.class);
+      final Field field = clazz.getDeclaredField("theUnsafe");
+      field.setAccessible(true);
+      unsafe = field.get(null);
+    } catch(final Exception ex) {
+      cleaner = null;
+    }
+    UNSAFE = unsafe;
+    CLEANER = cleaner;
+  }
+
+  /** Mapped segments. */
+  private final MappedByteBuffer[] segments;
+  /** Length of the mapped region. */
+  private final long length;
+  /** Number of references. */
+  private final AtomicInteger refs = new AtomicInteger(1);
+
+  /**
+   * Constructor.
+   * @param channel file channel
+   * @param length number of bytes to be mapped
+   * @throws IOException I/O exception
+   */
+  FileMapping(final FileChannel channel, final long length) throws IOException {
+    this.length = length;
+    final int sl = (int) ((length + SEGSIZE - 1) >>> SEGPOWER);
+    segments = new MappedByteBuffer[sl];
+    for(int s = 0; s < sl; s++) {
+      final long pos = (long) s << SEGPOWER;
+      segments[s] = channel.map(MapMode.READ_ONLY, pos, Math.min(SEGSIZE, length - pos));
+    }
+  }
+
+  /**
+   * Adds a reference to this mapping. Must only be called by a holder of another reference.
+   * @return self reference
+   */
+  FileMapping acquire() {
+    refs.incrementAndGet();
+    return this;
+  }
+
+  /**
+   * Releases a reference. The segments are unmapped when the last reference is released.
+   * A holder must not access the mapping after having released its reference.
+   */
+  void release() {
+    if(refs.decrementAndGet() != 0) return;
+    final int sl = segments.length;
+    for(int s = 0; s < sl; s++) {
+      final MappedByteBuffer segment = segments[s];
+      segments[s] = null;
+      if(segment != null) release(segment);
+    }
+  }
+
+  /**
+   * Returns the length of the mapped region.
+   * @return length
+   */
+  long length() {
+    return length;
+  }
+
+  /**
+   * Reads a byte.
+   * @param pos file position
+   * @return byte
+   */
+  byte read1(final long pos) {
+    return segments[(int) (pos >>> SEGPOWER)].get((int) (pos & SEGSIZE - 1));
+  }
+
+  /**
+   * Reads a short value.
+   * @param pos file position
+   * @return value
+   */
+  int read2(final long pos) {
+    final int o = (int) (pos & SEGSIZE - 1);
+    if(o <= SEGSIZE - 2) return segments[(int) (pos >>> SEGPOWER)].getShort(o) & 0xFFFF;
+    return ((read1(pos) & 0xFF) << 8) + (read1(pos + 1) & 0xFF);
+  }
+
+  /**
+   * Reads an integer value.
+   * @param pos file position
+   * @return value
+   */
+  int read4(final long pos) {
+    final int o = (int) (pos & SEGSIZE - 1);
+    if(o <= SEGSIZE - 4) return segments[(int) (pos >>> SEGPOWER)].getInt(o);
+    return (read2(pos) << 16) + read2(pos + 2);
+  }
+
+  /**
+   * Reads a 5-byte value.
+   * @param pos file position
+   * @return value
+   */
+  long read5(final long pos) {
+    return ((long) (read1(pos) & 0xFF) << 32) + (read4(pos + 1) & 0xFFFFFFFFL);
+  }
+
+  /**
+   * Copies bytes to the specified array.
+   * @param pos file position
+   * @param array target array
+   * @param off array offset
+   * @param len number of bytes to copy
+   */
+  void read(final long pos, final byte[] array, final int off, final int len) {
+    long p = pos;
+    int o = off, l = len;
+    while(l > 0) {
+      final ByteBuffer bb = segments[(int) (p >>> SEGPOWER)].duplicate();
+      final int so = (int) (p & SEGSIZE - 1), n = Math.min(l, SEGSIZE - so);
+      bb.position(so);
+      bb.get(array, o, n);
+      p += n;
+      o += n;
+      l -= n;
+    }
+  }
+
+  /**
+   * Releases a mapped buffer. If this fails, it will be released by the garbage collector.
+   * @param buffer buffer
+   */
+  private static void release(final MappedByteBuffer buffer) {
+    try {
+      if(CLEANER != null) {
+        CLEANER.invoke(UNSAFE, buffer);
+      } else {
+        // Java 8 and earlier
+        final Method method = buffer.getClass().getMethod("cleaner");
+        method.setAccessible(true);
+        final Object cleaner = method.invoke(buffer);
+        if(cleaner != null) cleaner.getClass().getMethod("clean").invoke(cleaner);
+      }
+    } catch(final Exception ex) {
+      Util.debug(ex);
+    }
+  }
+}
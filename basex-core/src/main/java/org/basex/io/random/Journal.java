@@ -0,0 +1,721 @@
+package org.basex.io.random;
+
+import static org.basex.util.Token.*;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.zip.*;
+
+import org.basex.io.*;
+import org.basex.util.*;
+import org.basex.util.hash.*;
+
+/**
+ * This class journals the modifications of database files.
+ *
+ * Before a block is written to a database file, its new contents are appended to the journal.
+ * These records are replayed if the update has been committed, and they are not synchronized
+ * before the block is written. If a block is overwritten by an update for the first time, its
+ * current contents and the original length of the file are added as well. These records are
+ * synchronized before the block is written, and they are restored if the update is not
+ * committed. Before a file is rewritten as a whole, a record with its name is synchronized, and
+ * the current file is renamed to a backup, which is restored if the update is not committed.
+ *
+ * When updates are committed, all rewritten files are synchronized, a commit record with a
+ * checksum is added, and the journal is synchronized with a single call. Commits are grouped:
+ * a synchronization covers all records that have been added until it starts, and threads that
+ * commit while the journal is being synchronized wait for the next synchronization. A commit
+ * returns when it is durable, i.e., before the database locks are released and before the
+ * update is reported as successful. The database files are synchronized later on in a
+ * background thread of the journal (checkpoint), and the journal is reset afterwards. This way,
+ * the synchronization costs of the database files are shared by all commits since the last
+ * checkpoint.
+ *
+ * When a database is opened, all committed modifications of a left-over journal are replayed,
+ * and blocks and files modified by uncommitted updates are restored.
+ *
+ * @author BaseX Team 2005-17, BSD License
+ * @author Christian Gruen
+ */
+public final class Journal {
+  /** Record type: block. */
+  private static final byte BLOCK = 1;
+  /** Record type: file length. */
+  private static final byte LENGTH = 2;
+  /** Record type: rewritten file. */
+  private static final byte FILE = 3;
+  /** Record type: commit. */
+  private static final byte COMMIT = 4;
+  /** Record type: original contents of a block. */
+  private static final byte UNDO = 5;
+  /** Suffix of backup files. */
+  private static final String BACKUP = ".bak";
+  /** Delay until modified files will be synchronized (ms). */
+  private static final long DELAY = 1000;
+  /** Maximum size of the journal before modified files will be synchronized instantly. */
+  private static final long MAXSIZE = 1L << 26;
+
+  /** Journal file. */
+  private final IOFile file;
+  /** Names of modified files. */
+  private final HashSet<String> files = new HashSet<>();
+  /** Names of files that have been rewritten since the last commit. */
+  private final HashSet<String> rewritten = new HashSet<>();
+  /** Original lengths of files whose blocks have been saved since the last commit. */
+  private final HashMap<String, Long> lengths = new HashMap<>();
+  /** Blocks whose original contents have been saved since the last commit. */
+  private final HashMap<String, IntSet> saved = new HashMap<>();
+  /** Buffer for records. */
+  private final ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+  /** Checksum of the records since the last commit. */
+  private final CRC32 crc = new CRC32();
+  /** Journal channel (opened with the first record). */
+  private FileChannel channel;
+  /** Indicates if records have been added since the last commit. */
+  private boolean pending;
+  /** Indicates if a checkpoint has been scheduled. */
+  private boolean scheduled;
+  /** Timer for checkpoints (created with the first scheduled checkpoint). */
+  private Timer timer;
+  /** Number of writes to the journal channel. */
+  private long writes;
+  /** Number of writes that have been synchronized. */
+  private long synced;
+  /** Indicates if the journal is currently being synchronized. */
+  private boolean syncing;
+
+  /**
+   * Constructor.
+   * @param file journal file
+   */
+  public Journal(final IOFile file) {
+    this.file = file;
+  }
+
+  /**
+   * Adds the contents of a block that will be written to a database file.
+   * The record will be synchronized with the next commit.
+   * @param target target file
+   * @param pos file position
+   * @param data block data
+   * @param len number of bytes
+   * @throws IOException I/O exception
+   */
+  public synchronized void block(final IOFile target, final long pos, final byte[] data,
+      final int len) throws IOException {
+    record(BLOCK, target, 12);
+    buffer.putLong(pos).putInt(len);
+    bytes(data, len);
+  }
+
+  /**
+   * Adds the original contents of a block that will be overwritten before the update is
+   * committed. The contents are read from the database file and only added once per block and
+   * update, along with the original length of the file. If a record has been added, the journal
+   * must be synchronized via {@link #ahead()} before the block is written.
+   * @param target target file
+   * @param fc channel of the target file
+   * @param pos file position of the block
+   * @return {@code true} if a record has been added
+   * @throws IOException I/O exception
+   */
+  public synchronized boolean undo(final IOFile target, final FileChannel fc, final long pos)
+      throws IOException {
+
+    final String name = target.name();
+    IntSet blocks = saved.get(name);
+    if(blocks == null) {
+      blocks = new IntSet();
+      saved.put(name, blocks);
+      lengths.put(name, fc.size());
+    }
+    if(!blocks.add((int) (pos / IO.BLOCKSIZE))) return false;
+
+    final long length = lengths.get(name);
+    final int len = (int) Math.max(0, Math.min(IO.BLOCKSIZE, length - pos));
+    final ByteBuffer bb = ByteBuffer.allocate(len);
+    while(bb.hasRemaining() && fc.read(bb, pos + bb.position()) != -1);
+    final byte[] head = ByteBuffer.allocate(20).putLong(pos).putLong(length).putInt(len).array();
+
+    // the record is checked separately, as it will be restored without commit record
+    final CRC32 check = new CRC32();
+    check.update(token(name));
+    check.update(head);
+    check.update(bb.array(), 0, len);
+    record(UNDO, target, head.length);
+    buffer.put(head);
+    bytes(bb.array(), len);
+    if(buffer.remaining() < 4) drain();
+    buffer.putInt((int) check.getValue());
+    return true;
+  }
+
+  /**
+   * Adds the new length of a database file.
+   * The record will be synchronized with the next commit.
+   * @param target target file
+   * @param len file length
+   * @throws IOException I/O exception
+   */
+  public synchronized void length(final IOFile target, final long len) throws IOException {
+    record(LENGTH, target, 8);
+    buffer.putLong(len);
+  }
+
+  /**
+   * Announces that a database file will be rewritten as a whole. The current file is renamed
+   * to a backup, which will be restored if the update is not committed. Must be called
+   * before the file is rewritten; subsequent calls in the same update will be ignored.
+   * @param target target file
+   * @throws IOException I/O exception
+   */
+  public void file(final IOFile target) throws IOException {
+    final boolean exists = target.exists();
+    if(!rewrite(target, exists)) return;
+    if(!exists) return;
+
+    // the record must be durable before the file is renamed
+    ahead();
+    final IOFile backup = backup(target);
+    if(!backup.delete() || !target.rename(backup)) {
+      throw new IOException("Could not create backup: " + target);
+    }
+  }
+
+  /**
+   * Adds a database file that has been created by the current update.
+   * The file will be deleted if the update is not committed.
+   * @param target target file
+   * @throws IOException I/O exception
+   */
+  public void created(final IOFile target) throws IOException {
+    rewrite(target, false);
+  }
+
+  /**
+   * Synchronizes all records that have been added so far.
+   * Must be called before a file that will be rewritten is renamed to its backup.
+   * @throws IOException I/O exception
+   */
+  public void ahead() throws IOException {
+    final long w;
+    synchronized(this) {
+      if(channel == null) return;
+      if(buffer.position() != 0) drain();
+      w = writes;
+    }
+    sync(w);
+  }
+
+  /**
+   * Commits all records added since the last commit and synchronizes the journal.
+   * Files that have been rewritten are synchronized before the commit record is added.
+   * Modified database files will be synchronized by the next checkpoint.
+   * @throws IOException I/O exception
+   */
+  public void commit() throws IOException {
+    final long w;
+    final String[] names;
+    synchronized(this) {
+      if(!pending) return;
+      names = rewritten.toArray(new String[rewritten.size()]);
+      rewritten.clear();
+      lengths.clear();
+      saved.clear();
+      for(final String name : names) force(new IOFile(file.parent(), name));
+      w = append();
+    }
+    sync(w);
+    // backups are obsolete as soon as the commit is durable
+    for(final String name : names) backup(new IOFile(file.parent(), name)).delete();
+  }
+
+  /**
+   * Adds a record for a file that will be rewritten or has been created.
+   * @param target target file
+   * @param exists indicates if the file exists and will be backed up
+   * @return {@code false} if the file has already been added in the current update
+   * @throws IOException I/O exception
+   */
+  private synchronized boolean rewrite(final IOFile target, final boolean exists)
+      throws IOException {
+    if(!rewritten.add(target.name())) return false;
+    record(FILE, target, 1);
+    buffer.put((byte) (exists ? 1 : 0));
+    return true;
+  }
+
+  /**
+   * Appends a commit record for all records added since the last commit.
+   * @return number of writes
+   * @throws IOException I/O exception
+   */
+  private synchronized long append() throws IOException {
+    if(!buffer.hasRemaining()) drain();
+    buffer.put(COMMIT);
+    drain();
+    buffer.putInt((int) crc.getValue()).flip();
+    write(buffer);
+    buffer.clear();
+    crc.reset();
+    pending = false;
+
+    if(channel.size() > MAXSIZE) {
+      checkpoint();
+    } else if(!scheduled) {
+      scheduled = true;
+      if(timer == null) timer = new Timer(true);
+      timer.schedule(new TimerTask() {
+        @Override
+        public void run() {
+          try {
+            checkpoint();
+          } catch(final IOException ex) {
+            Util.debug(ex);
+          }
+        }
+      }, DELAY);
+    }
+    return writes;
+  }
+
+  /**
+   * Synchronizes the journal until the specified write is durable.
+   * If another thread is synchronizing the journal, the call waits for its completion, and
+   * a new synchronization, which covers all writes until then, is started if required.
+   * @param w number of the write
+   * @throws IOException I/O exception
+   */
+  private void sync(final long w) throws IOException {
+    final FileChannel fc;
+    final long target;
+    boolean interrupted = false;
+    synchronized(this) {
+      while(syncing && synced < w) {
+        try {
+          wait();
+        } catch(final InterruptedException ex) {
+          interrupted = true;
+        }
+      }
+      // skip synchronization if the write is durable, or if the journal has been closed
+      if(synced >= w || channel == null) {
+        if(interrupted) Thread.currentThread().interrupt();
+        return;
+      }
+      fc = channel;
+      target = writes;
+      syncing = true;
+    }
+
+    boolean ok = false;
+    try {
+      fc.force(false);
+      ok = true;
+    } finally {
+      synchronized(this) {
+        if(ok) synced = Math.max(synced, target);
+        syncing = false;
+        notifyAll();
+      }
+      if(interrupted) Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Synchronizes all modified database files and resets the journal.
+   * Skipped if uncommitted records exist, as the files may have been partially updated.
+   * @throws IOException I/O exception
+   */
+  public synchronized void checkpoint() throws IOException {
+    scheduled = false;
+    if(pending || channel == null) return;
+
+    for(final String name : files) {
+      try {
+        force(new IOFile(file.parent(), name));
+      } catch(final IOException ex) {
+        Util.debug(ex);
+      }
+    }
+    files.clear();
+    channel.truncate(0);
+    channel.force(false);
+    synced = writes;
+  }
+
+  /**
+   * Commits pending records, runs a checkpoint and deletes the journal.
+   * @throws IOException I/O exception
+   */
+  public synchronized void close() throws IOException {
+    if(timer != null) {
+      timer.cancel();
+      timer = null;
+    }
+    if(channel == null) return;
+
+    // wait until a running synchronization has been completed
+    boolean interrupted = false;
+    while(syncing) {
+      try {
+        wait();
+      } catch(final InterruptedException ex) {
+        interrupted = true;
+      }
+    }
+    if(interrupted) Thread.currentThread().interrupt();
+
+    commit();
+    checkpoint();
+    channel.close();
+    channel = null;
+    file.delete();
+  }
+
+  /**
+   * Replays all committed modifications of a left-over journal and deletes it.
+   * Records without subsequent commit record are discarded, and blocks and files that have been
+   * modified by uncommitted updates are restored. The journal is streamed in two passes.
+   * @param file journal file
+   * @throws IOException I/O exception
+   */
+  public static void recover(final IOFile file) throws IOException {
+    if(!file.exists()) return;
+
+    // find end of last valid commit record, and the files rewritten by uncommitted updates
+    final HashMap<String, Boolean> committed = new HashMap<>(), uncommitted = new HashMap<>();
+    long end = 0;
+    try(Input in = new Input(file)) {
+      try {
+        for(int type; (type = in.read()) != -1;) {
+          if(type == COMMIT) {
+            final int c = (int) in.crc.getValue();
+            if(in.readInt() != c) break;
+            in.crc.reset();
+            end = in.pos;
+            committed.putAll(uncommitted);
+            uncommitted.clear();
+          } else {
+            final String name = in.name();
+            if(type == BLOCK) {
+              in.readLong();
+              in.skip(in.readInt());
+            } else if(type == UNDO) {
+              in.readLong();
+              in.readLong();
+              in.skip(in.readInt());
+              in.readInt();
+            } else if(type == LENGTH) {
+              in.readLong();
+            } else if(type == FILE) {
+              uncommitted.put(name, in.readByte() != 0);
+            } else {
+              break;
+            }
+          }
+        }
+      } catch(final EOFException ex) {
+        // incomplete record
+        Util.debug(ex);
+      }
+    }
+
+    // replay committed records
+    final IOFile dir = file.parent();
+    final HashMap<String, RandomAccessFile> rafs = new HashMap<>();
+    try(Input in = new Input(file)) {
+      final byte[] data = new byte[IO.BLOCKSIZE << 4];
+      while(in.pos < end) {
+        final int type = in.read();
+        if(type == COMMIT) {
+          in.readInt();
+          continue;
+        }
+        final String n = in.name();
+        if(type == FILE) {
+          in.readByte();
+        } else if(type == UNDO) {
+          in.readLong();
+          in.readLong();
+          in.skip(in.readInt());
+          in.readInt();
+        } else if(type == BLOCK) {
+          final RandomAccessFile raf = file(n, dir, rafs);
+          raf.seek(in.readLong());
+          for(int len = in.readInt(); len > 0;) {
+            final int l = Math.min(len, data.length);
+            in.readFully(data, l);
+            raf.write(data, 0, l);
+            len -= l;
+          }
+        } else {
+          file(n, dir, rafs).setLength(in.readLong());
+        }
+      }
+
+      // restore blocks overwritten by uncommitted updates, and the original file lengths
+      final HashMap<String, Long> lengths = new HashMap<>();
+      try {
+        for(int type; (type = in.read()) != -1 && type != COMMIT;) {
+          final String n = in.name();
+          if(type == BLOCK) {
+            in.readLong();
+            in.skip(in.readInt());
+          } else if(type == LENGTH) {
+            in.readLong();
+          } else if(type == FILE) {
+            in.readByte();
+          } else if(type == UNDO) {
+            final long pos = in.readLong(), length = in.readLong();
+            final int len = in.readInt();
+            if(len < 0 || len > IO.BLOCKSIZE) break;
+            in.readFully(data, len);
+            final byte[] head = ByteBuffer.allocate(20).putLong(pos).putLong(length).putInt(len).
+                array();
+            final CRC32 check = new CRC32();
+            check.update(token(n));
+            check.update(head);
+            check.update(data, 0, len);
+            // incomplete record: the block has not been written yet
+            if(in.readInt() != (int) check.getValue()) break;
+
+            final RandomAccessFile raf = file(n, dir, rafs);
+            raf.seek(pos);
+            raf.write(data, 0, len);
+            if(!lengths.containsKey(n)) lengths.put(n, length);
+          } else {
+            break;
+          }
+        }
+      } catch(final EOFException ex) {
+        // incomplete record
+        Util.debug(ex);
+      }
+      for(final Map.Entry<String, Long> entry : lengths.entrySet()) {
+        rafs.get(entry.getKey()).setLength(entry.getValue());
+      }
+      for(final RandomAccessFile raf : rafs.values()) raf.getChannel().force(true);
+    } finally {
+      for(final RandomAccessFile raf : rafs.values()) raf.close();
+    }
+
+    // discard backups of committed files, restore files of uncommitted updates
+    for(final String name : committed.keySet()) {
+      if(!uncommitted.containsKey(name)) backup(new IOFile(dir, name)).delete();
+    }
+    for(final Map.Entry<String, Boolean> entry : uncommitted.entrySet()) {
+      final IOFile target = new IOFile(dir, entry.getKey()), backup = backup(target);
+      if(entry.getValue()) {
+        // skip restore if the file has not been renamed yet
+        if(backup.exists() && !(target.delete() && backup.rename(target))) {
+          throw new IOException("Could not restore file: " + target);
+        }
+      } else if(!target.delete()) {
+        throw new IOException("Could not delete file: " + target);
+      }
+    }
+    file.delete();
+  }
+
+  /**
+   * Returns a cached random access file for a database file that will be modified by recovery.
+   * @param name name of the file
+   * @param dir database directory
+   * @param rafs cached files
+   * @return random access file
+   * @throws IOException I/O exception
+   */
+  private static RandomAccessFile file(final String name, final IOFile dir,
+      final HashMap<String, RandomAccessFile> rafs) throws IOException {
+    RandomAccessFile raf = rafs.get(name);
+    if(raf == null) {
+      raf = new RandomAccessFile(new IOFile(dir, name).file(), "rw");
+      rafs.put(name, raf);
+    }
+    return raf;
+  }
+
+  /**
+   * Returns the backup of a database file.
+   * @param target target file
+   * @return backup file
+   */
+  private static IOFile backup(final IOFile target) {
+    return new IOFile(target.parent(), target.name() + BACKUP);
+  }
+
+  /**
+   * Starts a new record.
+   * @param type record type
+   * @param target target file
+   * @param len length of the fixed-size record fields
+   * @throws IOException I/O exception
+   */
+  private void record(final byte type, final IOFile target, final int len) throws IOException {
+    if(channel == null) {
+      channel = FileChannel.open(file.file().toPath(), StandardOpenOption.CREATE,
+          StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+    final byte[] name = token(target.name());
+    if(buffer.remaining() < 3 + name.length + len) drain();
+    buffer.put(type).putShort((short) name.length).put(name);
+    files.add(target.name());
+    pending = true;
+  }
+
+  /**
+   * Adds bytes to the current record.
+   * @param data data
+   * @param len number of bytes
+   * @throws IOException I/O exception
+   */
+  private void bytes(final byte[] data, final int len) throws IOException {
+    if(buffer.remaining() < len) drain();
+    if(buffer.remaining() < len) {
+      crc.update(data, 0, len);
+      write(ByteBuffer.wrap(data, 0, len));
+    } else {
+      buffer.put(data, 0, len);
+    }
+  }
+
+  /**
+   * Appends the buffered records to the journal.
+   * @throws IOException I/O exception
+   */
+  private void drain() throws IOException {
+    crc.update(buffer.array(), 0, buffer.position());
+    buffer.flip();
+    write(buffer);
+    buffer.clear();
+  }
+
+  /**
+   * Appends bytes to the journal.
+   * @param bb byte buffer
+   * @throws IOException I/O exception
+   */
+  private void write(final ByteBuffer bb) throws IOException {
+    long pos = channel.size();
+    while(bb.hasRemaining()) pos += channel.write(bb, pos);
+    writes++;
+  }
+
+  /**
+   * Synchronizes the contents of a file with the storage device.
+   * @param target file
+   * @throws IOException I/O exception
+   */
+  private static void force(final IOFile target) throws IOException {
+    if(!target.exists()) return;
+    try(FileChannel fc = FileChannel.open(target.file().toPath(), StandardOpenOption.WRITE)) {
+      fc.force(true);
+    }
+  }
+
+  /**
+   * Sequential reader for journal files, which computes the checksum of the consumed bytes.
+   */
+  private static final class Input implements Closeable {
+    /** Checksum of the consumed bytes. */
+    private final CRC32 crc = new CRC32();
+    /** Input stream. */
+    private final DataInputStream in;
+    /** Number of consumed bytes. */
+    private long pos;
+
+    /**
+     * Constructor.
+     * @param file journal file
+     * @throws IOException I/O exception
+     */
+    private Input(final IOFile file) throws IOException {
+      in = new DataInputStream(new CheckedInputStream(new BufferedInputStream(
+          new FileInputStream(file.file()), IO.BLOCKSIZE << 4), crc));
+    }
+
+    /**
+     * Reads a single byte.
+     * @return byte, or {@code -1} if the end of the journal has been reached
+     * @throws IOException I/O exception
+     */
+    private int read() throws IOException {
+      final int b = in.read();
+      if(b != -1) pos++;
+      return b;
+    }
+
+    /**
+     * Reads a byte.
+     * @return byte
+     * @throws IOException I/O exception
+     */
+    private byte readByte() throws IOException {
+      pos++;
+      return in.readByte();
+    }
+
+    /**
+     * Reads an integer.
+     * @return integer
+     * @throws IOException I/O exception
+     */
+    private int readInt() throws IOException {
+      pos += 4;
+      return in.readInt();
+    }
+
+    /**
+     * Reads a long value.
+     * @return long value
+     * @throws IOException I/O exception
+     */
+    private long readLong() throws IOException {
+      pos += 8;
+      return in.readLong();
+    }
+
+    /**
+     * Reads the name of a file.
+     * @return name
+     * @throws IOException I/O exception
+     */
+    private String name() throws IOException {
+      final byte[] name = new byte[in.readUnsignedShort()];
+      readFully(name, name.length);
+      pos += 2;
+      return string(name);
+    }
+
+    /**
+     * Reads bytes into the specified array.
+     * @param data target array
+     * @param len number of bytes
+     * @throws IOException I/O exception
+     */
+    private void readFully(final byte[] data, final int len) throws IOException {
+      in.readFully(data, 0, len);
+      pos += len;
+    }
+
+    /**
+     * Skips bytes. The skipped bytes are included in the checksum.
+     * @param len number of bytes
+     * @throws IOException I/O exception
+     */
+    private void skip(final int len) throws IOException {
+      if(len < 0) throw new EOFException("Invalid length: " + len);
+      final byte[] data = new byte[Math.min(len, IO.BLOCKSIZE << 4)];
+      for(int l = len; l > 0; l -= data.length) readFully(data, Math.min(l, data.length));
+    }
+
+    @Override
+    public void close() throws IOException {
+      in.close();
+    }
+  }
+}
@@ -3,6 +3,8 @@ package org.basex.io.random;
 import static org.basex.data.DataText.*;
 
 import java.io.*;
+import java.lang.ref.*;
+import java.nio.*;
 import java.nio.channels.*;
 import java.util.*;
 
@@ -16,21 +18,59 @@ import org.basex.util.*;
 /**
  * This class stores the table on disk and reads it page-wise.
  *
- * NOTE: this class is not thread-safe.
+ * As long as no updates are pending, read operations are performed concurrently and without
+ * locking: each thread is assigned its own cursor and a few buffers, and pages are read via
+ * positional channel access. The number of thread-local cursors is limited; additional threads
+ * and all read operations that take place while updates are pending are synchronized.
+ * A cursor is marked as busy while it is used. Before updates are performed or the table is
+ * closed, the cursors are invalidated, and their resources are only released after all busy
+ * cursors have been left. Cursors of terminated threads are reclaimed.
+ * After the table has been closed, pages that are still buffered or cached in the buffer pool
+ * can be read by existing references.
+ *
+ * If pages are requested sequentially (e.g., by a full table scan), the subsequent pages are
+ * read in a single I/O call and added to the buffer pool.
+ *
+ * NOTE: update operations are not thread-safe.
  *
  * @author BaseX Team 2005-17, BSD License
  * @author Christian Gruen
  * @author Tim Petrowsky
  */
 public final class TableDiskAccess extends TableAccess {
+  /** Number of pages that are read ahead if a sequential access is detected. */
+  private static final int READAHEAD = 32;
+  /** Number of consecutive page requests after which pages are read ahead. */
+  private static final int SEQUENTIAL = 2;
+  /** Maximum number of thread-local cursors. */
+  private static final int READERS = 64;
+  /** Number of buffers of a thread-local cursor (pages are cached in the buffer pool). */
+  private static final int READERBUFFERS = 1 << 1;
+
   /** Buffer manager. */
   private final Buffers bm = new Buffers();
+  /** Global buffer pool. */
+  private final BufferPool pool = BufferPool.get();
+  /** File id in the buffer pool. */
+  private final int id = pool.register();
   /** File storing all pages. */
   private final RandomAccessFile file;
   /** Bitmap storing free (=0) and used (=1) pages. */
   private BitArray usedPages;
   /** File lock. */
   private FileLock fl;
+  /** Memory mapping (only assigned if mapping is enabled and no updates are pending). */
+  private FileMapping mapping;
+  /** Thread-local cursors for concurrent reads. */
+  private final ThreadLocal<Reader> readers = new ThreadLocal<>();
+  /** Thread-local cursors that have been created for the current version of the table. */
+  private final ArrayList<Reader> active = new ArrayList<>();
+  /** Indicates if read operations can be performed concurrently (no updates are pending). */
+  private volatile boolean concurrent = true;
+  /** Version of the table; incremented whenever concurrent reads are resumed. */
+  private volatile int version;
+  /** Indicates if the table has been closed. */
+  private volatile boolean closed;
 
   /** First pre values (ascending order); will be initialized with the first update. */
   private int[] fpres;
@@ -84,6 +124,7 @@ public final class TableDiskAccess extends TableAccess {
     // initialize data file
     file = new RandomAccessFile(meta.dbfile(DATATBL).file(), "rw");
     if(!lock(write)) throw new BaseXException(Text.DB_PINNED_X, md.name);
+    map();
   }
 
   /**
@@ -105,9 +146,21 @@ public final class TableDiskAccess extends TableAccess {
 
   @Override
   public synchronized void flush(final boolean all) throws IOException {
+    final Journal journal = meta.journal;
+    if(journal != null) {
+      boolean saved = false;
+      for(final Buffer b : bm.all()) if(b.dirty) saved |= journal(b);
+      if(saved) journal.ahead();
+    }
     for(final Buffer b : bm.all()) if(b.dirty) write(b);
+    if(!concurrent && !closed) {
+      map();
+      version++;
+      concurrent = true;
+    }
     if(!dirty || !all) return;
 
+    if(journal != null) journal.file(meta.dbfile(DATATBL + 'i'));
     try(DataOutput out = new DataOutput(meta.dbfile(DATATBL + 'i'))) {
       final int sz = size;
       out.writeNum(sz);
@@ -125,7 +178,11 @@ public final class TableDiskAccess extends TableAccess {
 
   @Override
   public synchronized void close() throws IOException {
+    if(closed) return;
     flush(true);
+    update();
+    closed = true;
+    // blocks remain in the pool: they can still be read via references to the closed table
     file.close();
   }
 
@@ -144,37 +201,72 @@ public final class TableDiskAccess extends TableAccess {
   }
 
   @Override
-  public synchronized int read1(final int pre, final int off) {
-    final int o = off + cursor(pre);
-    final byte[] b = bm.current().data;
-    return b[o] & 0xFF;
+  public int read1(final int pre, final int off) {
+    final Reader rd = reader();
+    if(rd != null) {
+      try {
+        return rd.read1(pre, off);
+      } finally {
+        rd.leave();
+      }
+    }
+    synchronized(this) {
+      final int o = off + cursor(pre);
+      return read1(bm.current().data, o);
+    }
   }
 
   @Override
-  public synchronized int read2(final int pre, final int off) {
-    final int o = off + cursor(pre);
-    final byte[] b = bm.current().data;
-    return ((b[o] & 0xFF) << 8) + (b[o + 1] & 0xFF);
+  public int read2(final int pre, final int off) {
+    final Reader rd = reader();
+    if(rd != null) {
+      try {
+        return rd.read2(pre, off);
+      } finally {
+        rd.leave();
+      }
+    }
+    synchronized(this) {
+      final int o = off + cursor(pre);
+      return read2(bm.current().data, o);
+    }
   }
 
   @Override
-  public synchronized int read4(final int pre, final int off) {
-    final int o = off + cursor(pre);
-    final byte[] b = bm.current().data;
-    return ((b[o] & 0xFF) << 24) + ((b[o + 1] & 0xFF) << 16) +
-      ((b[o + 2] & 0xFF) << 8) + (b[o + 3] & 0xFF);
+  public int read4(final int pre, final int off) {
+    final Reader rd = reader();
+    if(rd != null) {
+      try {
+        return rd.read4(pre, off);
+      } finally {
+        rd.leave();
+      }
+    }
+    synchronized(this) {
+      final int o = off + cursor(pre);
+      return read4(bm.current().data, o);
+    }
   }
 
   @Override
-  public synchronized long read5(final int pre, final int off) {
-    final int o = off + cursor(pre);
-    final byte[] b = bm.current().data;
-    return ((long) (b[o] & 0xFF) << 32) + ((long) (b[o + 1] & 0xFF) << 24) +
-      ((b[o + 2] & 0xFF) << 16) + ((b[o + 3] & 0xFF) << 8) + (b[o + 4] & 0xFF);
+  public long read5(final int pre, final int off) {
+    final Reader rd = reader();
+    if(rd != null) {
+      try {
+        return rd.read5(pre, off);
+      } finally {
+        rd.leave();
+      }
+    }
+    synchronized(this) {
+      final int o = off + cursor(pre);
+      return read5(bm.current().data, o);
+    }
   }
 
   @Override
   public void write1(final int pre, final int off, final int v) {
+    update();
     final int o = off + cursor(pre);
     final Buffer bf = bm.current();
     final byte[] b = bf.data;
@@ -184,6 +276,7 @@ public final class TableDiskAccess extends TableAccess {
 
   @Override
   public void write2(final int pre, final int off, final int v) {
+    update();
     final int o = off + cursor(pre);
     final Buffer bf = bm.current();
     final byte[] b = bf.data;
@@ -194,6 +287,7 @@ public final class TableDiskAccess extends TableAccess {
 
   @Override
   public void write4(final int pre, final int off, final int v) {
+    update();
     final int o = off + cursor(pre);
     final Buffer bf = bm.current();
     final byte[] b = bf.data;
@@ -206,6 +300,7 @@ public final class TableDiskAccess extends TableAccess {
 
   @Override
   public void write5(final int pre, final int off, final long v) {
+    update();
     final int o = off + cursor(pre);
     final Buffer bf = bm.current();
     final byte[] b = bf.data;
@@ -219,6 +314,7 @@ public final class TableDiskAccess extends TableAccess {
 
   @Override
   protected void copy(final byte[] entries, final int pre, final int last) {
+    update();
     for(int o = 0, i = pre; i < last; ++i, o += IO.NODESIZE) {
       final int off = cursor(i);
       final Buffer bf = bm.current();
@@ -417,6 +513,7 @@ public final class TableDiskAccess extends TableAccess {
 
   @Override
   protected synchronized void dirty() {
+    update();
     // initialize data structures required for performing updates
     if(fpres == null) {
       final int b = size;
@@ -440,30 +537,42 @@ public final class TableDiskAccess extends TableAccess {
    * @return offset of the entry in the page
    */
   private synchronized int cursor(final int pre) {
-    int fp = firstPre, np = nextPre;
-    if(pre < fp || pre >= np) {
-      final int last = used - 1;
-      int l = 0, h = last, m = page;
-      while(l <= h) {
-        if(pre < fp) h = m - 1;
-        else if(pre >= np) l = m + 1;
-        else break;
-        m = h + l >>> 1;
-        fp = fpre(m);
-        np = m == last ? meta.size : fpre(m + 1);
-      }
-      if(l > h) throw Util.notExpected(
-          "Data Access out of bounds:" +
-          "\n- pre value: " + pre +
-          "\n- table size: " + meta.size +
-          "\n- first/next pre value: " + fp + '/' + np +
-          "\n- #total/used pages: " + size + '/' + used +
-          "\n- accessed page: " + m + " (" + l + " > " + h + ']');
-      readPage(m);
+    // the current buffer is invalid if the last page could not be read
+    if(pre < firstPre || pre >= nextPre || bm.current().pos == -1) {
+      readPage(find(pre, page, firstPre, nextPre));
     }
     return pre - firstPre << IO.NODEPOWER;
   }
 
+  /**
+   * Searches for the page containing the entry for the specified pre value.
+   * @param pre pre of the entry to search for
+   * @param pg index of the current page
+   * @param first pre value of the first entry in the current page
+   * @param next first pre value of the next page
+   * @return index of the page
+   */
+  private int find(final int pre, final int pg, final int first, final int next) {
+    final int last = used - 1;
+    int l = 0, h = last, m = pg, fp = first, np = next;
+    while(l <= h) {
+      if(pre < fp) h = m - 1;
+      else if(pre >= np) l = m + 1;
+      else break;
+      m = h + l >>> 1;
+      fp = fpre(m);
+      np = m == last ? meta.size : fpre(m + 1);
+    }
+    if(l > h) throw Util.notExpected(
+        "Data Access out of bounds:" +
+        "\n- pre value: " + pre +
+        "\n- table size: " + meta.size +
+        "\n- first/next pre value: " + fp + '/' + np +
+        "\n- #total/used pages: " + size + '/' + used +
+        "\n- accessed page: " + m + " (" + l + " > " + h + ']');
+    return m;
+  }
+
   /**
    * Updates the page pointers.
    * @param p page index
@@ -483,12 +592,129 @@ public final class TableDiskAccess extends TableAccess {
     read(page(p));
   }
 
+  /**
+   * Maps the table file to memory if the mapping is enabled and not already assigned.
+   * @throws IOException I/O exception
+   */
+  private void map() throws IOException {
+    if(meta.mmap && mapping == null) mapping = new FileMapping(file.getChannel(), file.length());
+  }
+
+  /**
+   * Prepares the table for updates.
+   * Concurrent reads and the memory mapping will be disabled until the table is flushed.
+   * The buffers of all thread-local cursors and the mapping are released as soon as no cursor
+   * is busy anymore.
+   */
+  private void update() {
+    if(!concurrent) return;
+    concurrent = false;
+    synchronized(active) {
+      for(final Reader rd : active) {
+        rd.await();
+        rd.release();
+      }
+      active.clear();
+    }
+    if(mapping != null) {
+      mapping.release();
+      mapping = null;
+    }
+  }
+
+  /**
+   * Returns the cursor of the current thread if read operations can be performed concurrently.
+   * The returned cursor is marked as busy and must be released by the caller.
+   * @return cursor or {@code null} if reads must be synchronized
+   */
+  private Reader reader() {
+    if(!concurrent) return null;
+    Reader rd = readers.get();
+    if(rd == null || rd.version != version) {
+      rd = newReader();
+      if(rd == null) return null;
+    }
+    // mark cursor as busy, check if it has been invalidated in the meantime
+    rd.busy = true;
+    if(concurrent && rd.version == version) return rd;
+    rd.leave();
+    return null;
+  }
+
+  /**
+   * Creates a cursor for the current thread. Cursors of terminated threads are reclaimed.
+   * @return cursor or {@code null} if the maximum number of cursors has been reached
+   */
+  private Reader newReader() {
+    synchronized(active) {
+      if(!concurrent) return null;
+      if(active.size() >= READERS) {
+        final Iterator<Reader> iter = active.iterator();
+        while(iter.hasNext()) {
+          final Reader rd = iter.next();
+          final Thread owner = rd.owner.get();
+          if(owner == null || !owner.isAlive()) {
+            rd.release();
+            iter.remove();
+          }
+        }
+        if(active.size() >= READERS) return null;
+      }
+      final Reader rd = new Reader();
+      active.add(rd);
+      readers.set(rd);
+      return rd;
+    }
+  }
+
+  /**
+   * Reads a byte value from the specified array.
+   * @param b byte array
+   * @param o offset
+   * @return integer value
+   */
+  private static int read1(final byte[] b, final int o) {
+    return b[o] & 0xFF;
+  }
+
+  /**
+   * Reads a short value from the specified array.
+   * @param b byte array
+   * @param o offset
+   * @return integer value
+   */
+  private static int read2(final byte[] b, final int o) {
+    return ((b[o] & 0xFF) << 8) + (b[o + 1] & 0xFF);
+  }
+
+  /**
+   * Reads an integer value from the specified array.
+   * @param b byte array
+   * @param o offset
+   * @return integer value
+   */
+  private static int read4(final byte[] b, final int o) {
+    return ((b[o] & 0xFF) << 24) + ((b[o + 1] & 0xFF) << 16) +
+      ((b[o + 2] & 0xFF) << 8) + (b[o + 3] & 0xFF);
+  }
+
+  /**
+   * Reads a 5-byte value from the specified array.
+   * @param b byte array
+   * @param o offset
+   * @return long value
+   */
+  private static long read5(final byte[] b, final int o) {
+    return ((long) (b[o] & 0xFF) << 32) + ((long) (b[o + 1] & 0xFF) << 24) +
+      ((b[o + 2] & 0xFF) << 16) + ((b[o + 3] & 0xFF) << 8) + (b[o + 4] & 0xFF);
+  }
+
   /**
    * Return the specified page index.
    * @param p index of the page to fetch
    * @return pre value
    */
-  private synchronized int page(final int p) {
+  private int page(final int p) {
     return pages == null ? p : pages[p];
   }
 
@@ -497,7 +723,7 @@ public final class TableDiskAccess extends TableAccess {
    * @param p index of the page to fetch
    * @return pre value
    */
-  private synchronized int fpre(final int p) {
+  private int fpre(final int p) {
     return fpres == null ? p * IO.ENTRIES : fpres[p];
   }
 
@@ -510,19 +736,52 @@ public final class TableDiskAccess extends TableAccess {
 
     final Buffer bf = bm.current();
     try {
-      if(bf.dirty) write(bf);
-      bf.pos = p;
+      if(bf.dirty) {
+        if(meta.journal != null && journal(bf)) meta.journal.ahead();
+        write(bf);
+      }
+      // the buffer is only assigned to the page after it has been read
+      bf.pos = -1;
       if(p >= size) {
         size = p + 1;
-      } else {
-        file.seek(bf.pos * IO.BLOCKSIZE);
+      } else if(!pool.read(id, p, bf.data) && !(bm.sequential(SEQUENTIAL) && readAhead(p, bf))) {
+        file.seek((long) p * IO.BLOCKSIZE);
         file.readFully(bf.data);
+        pool.write(id, p, bf.data);
       }
+      bf.pos = p;
     } catch(final IOException ex) {
-      Util.stack(ex);
+      // closed table: pages that are still buffered can be read, others are unavailable
+      throw closed ? Util.notExpected("Page % of closed table is unavailable.", p) :
+        Util.notExpected(ex);
     }
   }
 
+  /**
+   * Reads the specified and the subsequent pages in a single I/O call. The first page is
+   * copied to the specified buffer, and all pages are added to the buffer pool.
+   * @param p page to fetch
+   * @param bf buffer
+   * @return {@code false} if no pages were read ahead
+   * @throws IOException I/O exception
+   */
+  private boolean readAhead(final long p, final Buffer bf) throws IOException {
+    final int n = (int) Math.min(READAHEAD, size - p);
+    if(n < 2 || !pool.enabled()) return false;
+
+    final ByteBuffer bb = ByteBuffer.allocate(n * IO.BLOCKSIZE);
+    final long pos = p * IO.BLOCKSIZE;
+    final FileChannel fc = file.getChannel();
+    while(bb.hasRemaining() && fc.read(bb, pos + bb.position()) != -1);
+    final int blocks = bb.position() / IO.BLOCKSIZE;
+    if(blocks == 0) return false;
+
+    final byte[] data = bb.array();
+    System.arraycopy(data, 0, bf.data, 0, IO.BLOCKSIZE);
+    for(int b = 0; b < blocks; b++) pool.write(id, p + b, data, b * IO.BLOCKSIZE);
+    return true;
+  }
+
   /**
    * Moves the cursor to a free page (either new or existing empty one).
    */
@@ -534,14 +793,31 @@ public final class TableDiskAccess extends TableAccess {
     ++page;
   }
 
+  /**
+   * Adds the specified buffer to the journal, and the original contents of its block if they
+   * have not been saved yet by the current update.
+   * @param bf buffer to journal
+   * @return {@code true} if the original contents have been saved
+   * @throws IOException I/O exception
+   */
+  private boolean journal(final Buffer bf) throws IOException {
+    final IOFile target = meta.dbfile(DATATBL);
+    final long pos = bf.pos * IO.BLOCKSIZE;
+    meta.journal.block(target, pos, bf.data, IO.BLOCKSIZE);
+    return meta.journal.undo(target, file.getChannel(), pos);
+  }
+
   /**
    * Writes the specified buffer disk and resets the dirty flag.
+   * If updates are journaled, the buffer must have been journaled before, and the journal must
+   * have been synchronized if the original contents of the block have been saved.
    * @param bf buffer to write
    * @throws IOException I/O exception
    */
   private void write(final Buffer bf) throws IOException {
     file.seek(bf.pos * IO.BLOCKSIZE);
     file.write(bf.data);
+    pool.write(id, bf.pos, bf.data);
     bf.dirty = false;
   }
 
@@ -592,4 +868,165 @@ public final class TableDiskAccess extends TableAccess {
   private int occSpace(final int i) {
     return (i + 1 < used ? fpres[i + 1] : meta.size) - fpres[i];
   }
+
+  /**
+   * Thread-local cursor, which is used for reading pages concurrently.
+   * Pages are either read from the memory mapping or via positional channel access.
+   * The page index is not modified as long as concurrent reads are allowed.
+   */
+  private final class Reader {
+    /** Table version. */
+    private final int version = TableDiskAccess.this.version;
+    /** Owner of the cursor. */
+    private final WeakReference<Thread> owner = new WeakReference<>(Thread.currentThread());
+    /** Indicates if the cursor is currently used by its owner. */
+    private volatile boolean busy;
+    /** Memory mapping (can be {@code null}). */
+    private FileMapping map = mapping != null ? mapping.acquire() : null;
+    /** Buffer manager (only assigned if the table is not mapped). */
+    private Buffers buffers = map == null ? new Buffers(READERBUFFERS) : null;
+
+    /** Pointer to current page. */
+    private int pg = -1;
+    /** Pre value of the first entry in the current page. */
+    private int first = -1;
+    /** First pre value of the next page. */
+    private int next = -1;
+    /** File position of the current page. */
+    private long pos;
+    /** Block number of the current page. */
+    private long block;
+
+    /**
+     * Reads a byte value and returns it as an integer value.
+     * @param pre pre value
+     * @param off offset
+     * @return integer value
+     */
+    int read1(final int pre, final int off) {
+      final int o = off + cursor(pre);
+      return map != null ? map.read1(pos + o) & 0xFF : TableDiskAccess.read1(data(), o);
+    }
+
+    /**
+     * Reads a short value and returns it as an integer value.
+     * @param pre pre value
+     * @param off offset
+     * @return integer value
+     */
+    int read2(final int pre, final int off) {
+      final int o = off + cursor(pre);
+      return map != null ? map.read2(pos + o) : TableDiskAccess.read2(data(), o);
+    }
+
+    /**
+     * Reads an integer value.
+     * @param pre pre value
+     * @param off offset
+     * @return integer value
+     */
+    int read4(final int pre, final int off) {
+      final int o = off + cursor(pre);
+      return map != null ? map.read4(pos + o) : TableDiskAccess.read4(data(), o);
+    }
+
+    /**
+     * Reads a 5-byte value and returns it as a long value.
+     * @param pre pre value
+     * @param off offset
+     * @return long value
+     */
+    long read5(final int pre, final int off) {
+      final int o = off + cursor(pre);
+      return map != null ? map.read5(pos + o) : TableDiskAccess.read5(data(), o);
+    }
+
+    /**
+     * Leaves the cursor. Notifies a waiting update if concurrent reads have been disabled.
+     */
+    void leave() {
+      busy = false;
+      if(!concurrent) {
+        synchronized(this) {
+          notifyAll();
+        }
+      }
+    }
+
+    /**
+     * Waits until the cursor has been left. Called after concurrent reads have been disabled.
+     */
+    synchronized void await() {
+      boolean interrupted = false;
+      while(busy) {
+        try {
+          wait();
+        } catch(final InterruptedException ex) {
+          interrupted = true;
+        }
+      }
+      if(interrupted) Thread.currentThread().interrupt();
+    }
+
+    /**
+     * Releases the buffers and the reference to the mapping. Called if the cursor is outdated.
+     */
+    void release() {
+      if(map != null) map.release();
+      map = null;
+      buffers = null;
+    }
+
+    /**
+     * Returns the data of the current buffer.
+     * @return data
+     */
+    private byte[] data() {
+      return buffers.current().data;
+    }
+
+    /**
+     * Searches for the page containing the entry for the specified pre value.
+     * Reads the page and returns its offset inside the page.
+     * @param pre pre of the entry to search for
+     * @return offset of the entry in the page
+     */
+    private int cursor(final int pre) {
+      // the current buffer is invalid if the last page could not be read
+      if(pre < first || pre >= next || buffers != null && buffers.current().pos == -1) {
+        final int p = find(pre, pg, first, next);
+        pg = p;
+        first = fpre(p);
+        next = p + 1 >= used ? meta.size : fpre(p + 1);
+        block = page(p);
+        pos = block * IO.BLOCKSIZE;
+        if(buffers != null) read();
+      }
+      return pre - first << IO.NODEPOWER;
+    }
+
+    /**
+     * Reads the current page from disk.
+     */
+    private void read() {
+      if(!buffers.cursor(block)) return;
+
+      // the buffer is only assigned to the page after it has been read
+      final Buffer bf = buffers.current();
+      bf.pos = -1;
+      if(!pool.read(id, block, bf.data)) {
+        final ByteBuffer bb = ByteBuffer.wrap(bf.data);
+        try {
+          if(!(buffers.sequential(SEQUENTIAL) && readAhead(block, bf))) {
+            final FileChannel fc = file.getChannel();
+            while(bb.hasRemaining() && fc.read(bb, pos + bb.position()) != -1);
+            pool.write(id, block, bf.data);
+          }
+        } catch(final IOException ex) {
+          throw Util.notExpected(ex);
+        }
+      }
+      bf.pos = block;
+    }
+  }
 }
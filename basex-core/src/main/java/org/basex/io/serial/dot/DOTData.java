@@ -83,7 +83,9 @@ final class DOTData {
     // cyan
     { "009999", StaticFuncCall.class, StandardFunc.class, Root.class, VarRef.class,
                 StaticVar.class, ValueAccess.class, RangeAccess.class,
-                StringRangeAccess.class, FTIndexAccess.class },
+                StringRangeAccess.class, DateRangeAccess.class, ElementAccess.class,
+                TrigramAccess.class,
+                FTIndexAccess.class },
   };
 
   /**
@@ -341,7 +341,8 @@ public final class QueryContext extends Job implements Closeable {
         check(results, datas, dbs);
         check(cache, datas, dbs);
 
-        // invalidate current node set in context, apply updates
+        // acquire exclusive locks, invalidate current node set in context, apply updates
+        context.locking.upgrade();
         if(context.data() != null) context.invalidate();
         updates.apply(this);
 
@@ -433,6 +434,8 @@ public final class QueryContext extends Job implements Closeable {
        ctxItem != null && !ctxItem.databases(locks, this)) {
       (updating ? write : read).addGlobal();
     }
+    // updating queries: do not block readers while the query is evaluated
+    locks.deferred = updating;
   }
 
   /**
@@ -580,7 +583,7 @@ public final class QueryContext extends Job implements Closeable {
     } else {
       // otherwise, adopt update reference (may have been initialized by sub query)
       parent.updates = updates;
-      parent.popJob();
+      parent.popJob(this);
     }
     // reassign original database options (changed by compile step)
     for(final Entry<Option<?>, Object> e : staticOpts.entrySet()) {
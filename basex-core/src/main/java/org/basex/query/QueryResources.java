@@ -107,6 +107,7 @@ public final class QueryResources {
 
   /**
    * Returns or creates an external resource of the specified class.
+   * The lookup is atomic, as it may be called by parallel child contexts.
    * @param <R> resource
    * @param resource external resource
    * @return resource
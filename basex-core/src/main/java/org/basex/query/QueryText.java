@@ -199,6 +199,7 @@ public interface QueryText {
   /** Parser token. */ String READ_LOCK = "read-lock";
   /** Parser token. */ String WRITE_LOCK = "write-lock";
   /** Parser token. */ String NON_DETERMNISTIC = "non-deterministic";
+  /** Parser token. */ String PARALLEL = "parallel";
 
   // PARSER KEYWORDS (IGNORED BY THE SYNTAX HIGHLIGHTER) ==========================================
 
@@ -383,6 +384,10 @@ public interface QueryText {
   /** Query Info. */ String MAX = "max";
   /** Query Info. */ String INF = "inf";
   /** Query Info. */ String TCL = "tailCall";
+  /** Query Info. */ String PATHS = "paths";
+  /** Query Info. */ String TRIGRAMS = "trigrams";
+  /** Query Info. */ String LIMIT = "limit";
+  /** Query Info. */ String AGGREGATE = "aggregate";
 
   // OPTIMIZATIONS ================================================================================
 
@@ -401,6 +406,10 @@ public interface QueryText {
   /** Optimization info. */ String OPTINLINE_X = "inlining %";
   /** Optimization info. */ String OPTWHERE = "rewriting where clause(s)";
   /** Optimization info. */ String OPTPRED_X = "rewriting % to predicate(s)";
+  /** Optimization info. */ String OPTJOIN_X = "rewriting for % to hash join";
+  /** Optimization info. */ String OPTLIMIT_X = "sorting first % tuple(s)";
+  /** Optimization info. */ String OPTAGGR_X = "aggregating values of %";
+  /** Optimization info. */ String OPTPARALLEL_X = "evaluating for % in parallel";
   /** Optimization info. */ String OPTVAR_X = "removing variable %";
   /** Optimization info. */ String OPTNAME_X = "removing unknown element/attribute %";
   /** Optimization info. */ String OPTPATH_X = "removing non-existing path %";
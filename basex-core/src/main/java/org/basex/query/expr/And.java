@@ -64,6 +64,17 @@ public final class And extends Logical {
             break;
           }
         }
+      } else if(e instanceof CmpDR) {
+        // merge adjacent date range comparisons
+        while(i + 1 < es && exprs[i + 1] instanceof CmpDR) {
+          final Expr tmp = ((CmpDR) e).intersect((CmpDR) exprs[i + 1]);
+          if(tmp != null) {
+            e = tmp;
+            i++;
+          } else {
+            break;
+          }
+        }
       }
 
       // expression will always return false
@@ -35,6 +35,14 @@ public final class BaseXPragma extends Pragma {
     return flag == Flag.NDT && Token.eq(name.local(), Token.token(QueryText.NON_DETERMNISTIC));
   }
 
+  /**
+   * Indicates if the enclosed expression is to be evaluated in parallel.
+   * @return result of check
+   */
+  boolean parallel() {
+    return Token.eq(name.local(), Token.token(QueryText.PARALLEL));
+  }
+
   @Override
   public Pragma copy() {
     return new BaseXPragma(name, value);
@@ -0,0 +1,205 @@
+package org.basex.query.expr;
+
+import static org.basex.query.QueryError.*;
+import static org.basex.query.QueryText.*;
+
+import org.basex.data.*;
+import org.basex.index.*;
+import org.basex.index.query.*;
+import org.basex.query.*;
+import org.basex.query.expr.CmpG.*;
+import org.basex.query.expr.index.*;
+import org.basex.query.iter.*;
+import org.basex.query.util.*;
+import org.basex.query.value.item.*;
+import org.basex.query.value.node.*;
+import org.basex.query.value.type.*;
+import org.basex.query.var.*;
+import org.basex.util.*;
+import org.basex.util.hash.*;
+
+/**
+ * Date range expression (xs:date, xs:dateTime).
+ *
+ * @author BaseX Team 2005-17, BSD License
+ * @author Christian Gruen
+ */
+final class CmpDR extends Single {
+  /** Date type. */
+  private final AtomType type;
+  /** Minimum ({@code null}: no lower limit). */
+  private final ADate min;
+  /** Include minimum value. */
+  private final boolean mni;
+  /** Maximum ({@code null}: no upper limit). */
+  private final ADate max;
+  /** Include maximum value. */
+  private final boolean mxi;
+  /** Flag for atomic evaluation. */
+  private final boolean atomic;
+
+  /**
+   * Constructor.
+   * @param expr (compiled) expression
+   * @param min minimum value
+   * @param mni include minimum value
+   * @param max maximum value
+   * @param mxi include maximum value
+   * @param info input info
+   */
+  private CmpDR(final Expr expr, final ADate min, final boolean mni, final ADate max,
+      final boolean mxi, final InputInfo info) {
+
+    super(info, expr);
+    this.min = min;
+    this.mni = mni;
+    this.max = max;
+    this.mxi = mxi;
+    type = (AtomType) (min != null ? min : max).type;
+    seqType = SeqType.BLN;
+    final SeqType st = expr.seqType();
+    atomic = st.zeroOrOne() && !st.mayBeArray();
+  }
+
+  @Override
+  public Expr optimize(final CompileContext cc) throws QueryException {
+    return expr.isValue() ? optPre(item(cc.qc, info), cc) : this;
+  }
+
+  /**
+   * Tries to convert the specified expression into a range expression.
+   * @param cmp expression to be converted
+   * @return new or original expression
+   */
+  static ParseExpr get(final CmpG cmp) {
+    final Expr e1 = cmp.exprs[0], e2 = cmp.exprs[1];
+    if(e1.has(Flag.NDT) || e1.has(Flag.UPD) || !(e2 instanceof ADate)) return cmp;
+
+    // type of first expression must be untyped or identical to the date type
+    final ADate d = (ADate) e2;
+    final Type t = e1.seqType().type;
+    if(d.type != AtomType.DAT && d.type != AtomType.DTM) return cmp;
+    if(!t.isUntyped() && t != d.type) return cmp;
+
+    switch(cmp.op.op) {
+      case GE: return new CmpDR(e1, d,    true,  null, true,  cmp.info);
+      case GT: return new CmpDR(e1, d,    false, null, true,  cmp.info);
+      case LE: return new CmpDR(e1, null, true,  d,    true,  cmp.info);
+      case LT: return new CmpDR(e1, null, true,  d,    false, cmp.info);
+      default: return cmp;
+    }
+  }
+
+  @Override
+  public Bln item(final QueryContext qc, final InputInfo ii) throws QueryException {
+    // atomic evaluation of arguments (faster)
+    if(atomic) {
+      final Item it = expr.item(qc, info);
+      return Bln.get(it != null && eval(it, qc));
+    }
+
+    // iterative evaluation
+    final Iter ir = expr.atomIter(qc, info);
+    for(Item it; (it = ir.next()) != null;) {
+      if(eval(it, qc)) return Bln.TRUE;
+    }
+    return Bln.FALSE;
+  }
+
+  /**
+   * Evaluates the range for the specified item.
+   * @param it item to be evaluated
+   * @param qc query context
+   * @return result of check
+   * @throws QueryException query exception
+   */
+  private boolean eval(final Item it, final QueryContext qc) throws QueryException {
+    final Item d = it.type.isUntyped() ? type.cast(it, qc, null, info) : it;
+    if(d.type != type) throw diffError(it, min != null ? min : max, info);
+    final int mn = min == null ?  1 : d.diff(min, null, info);
+    final int mx = max == null ? -1 : d.diff(max, null, info);
+    return (mni ? mn >= 0 : mn > 0) && (mxi ? mx <= 0 : mx < 0);
+  }
+
+  /**
+   * Creates an intersection of the existing and the specified expressions.
+   * @param c range comparison
+   * @return resulting expression or {@code null}
+   * @throws QueryException query exception
+   */
+  Expr intersect(final CmpDR c) throws QueryException {
+    // skip intersection if expressions to be compared or date types are different
+    if(type != c.type || !c.expr.sameAs(expr)) return null;
+
+    // find common minimum and maximum value
+    ADate mn = min, mx = max;
+    boolean mnin = mni, mxin = mxi;
+    if(c.min != null) {
+      final int d = mn == null ? -1 : mn.diff(c.min, null, info);
+      if(d < 0) {
+        mn = c.min;
+        mnin = c.mni;
+      } else if(d == 0) {
+        mnin &= c.mni;
+      }
+    }
+    if(c.max != null) {
+      final int d = mx == null ? 1 : mx.diff(c.max, null, info);
+      if(d > 0) {
+        mx = c.max;
+        mxin = c.mxi;
+      } else if(d == 0) {
+        mxin &= c.mxi;
+      }
+    }
+
+    // remove comparisons that will never yield results
+    if(mn != null && mx != null) {
+      final int d = mn.diff(mx, null, info);
+      if(d > 0 || d == 0 && !(mnin && mxin)) return Bln.FALSE;
+    }
+    return new CmpDR(c.expr, mn, mnin, mx, mxin, info);
+  }
+
+  @Override
+  public boolean indexAccessible(final IndexInfo ii) {
+    // accept only location path, string and equality expressions
+    final Data data = ii.ic.data;
+    // no support for main-memory databases
+    if(data.inMemory()) return false;
+    final IndexType it = ii.type(expr, null);
+    if(it == null) return false;
+
+    // create range access
+    final DateRange dr = new DateRange(it, min, mni, max, mxi);
+    ii.costs = data.costs(dr);
+    if(ii.costs < 0) return false;
+
+    final TokenBuilder tb = new TokenBuilder();
+    tb.add(mni ? '[' : '(').addExt(min != null ? min : "").add(',');
+    tb.addExt(max != null ? max : "").add(mxi ? ']' : ')');
+    ii.create(new DateRangeAccess(info, dr, ii.ic), true, info,
+        Util.info(OPTINDEX_X_X, it + " " + type + " range", tb));
+    return true;
+  }
+
+  @Override
+  public Expr copy(final CompileContext cc, final IntObjMap<Var> vm) {
+    return new CmpDR(expr.copy(cc, vm), min, mni, max, mxi, info);
+  }
+
+  @Override
+  public void plan(final FElem plan) {
+    addPlan(plan, planElem(MIN, min != null ? min.string(info) : "",
+        MAX, max != null ? max.string(info) : ""), expr);
+  }
+
+  @Override
+  public String toString() {
+    final TokenBuilder tb = new TokenBuilder();
+    if(min != null) tb.addExt(type).add('(').addExt(min).add(')').add(mni ? " <= " : " < ");
+    tb.addExt(expr);
+    if(max != null) tb.add(mxi ? " <= " : " < ").addExt(type).add('(').addExt(max).add(')');
+    return tb.toString();
+  }
+}
@@ -184,6 +184,8 @@ public final class CmpG extends Cmp {
     ParseExpr e = CmpR.get(this);
     // rewrite expr CMP string)
     if(e == this) e = CmpSR.get(this);
+    // rewrite expr CMP date
+    if(e == this) e = CmpDR.get(this);
     if(e != this) {
       // pre-evaluate optimized expression
       cc.info(OPTREWRITE_X, this);
@@ -293,6 +295,14 @@ public final class CmpG extends Cmp {
     throw diffError(it1, it2, info);
   }
 
+  /**
+   * Checks if this is an equality comparison based on the default collation.
+   * @return result of check
+   */
+  public boolean equality() {
+    return op == OpG.EQ && coll == null;
+  }
+
   @Override
   public CmpG invert() {
     final Expr e1 = exprs[0], e2 = exprs[1];
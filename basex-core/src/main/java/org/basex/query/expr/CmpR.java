@@ -1,7 +1,6 @@
 package org.basex.query.expr;
 
 import static org.basex.query.QueryText.*;
-import static org.basex.util.Token.*;
 
 import org.basex.data.*;
 import org.basex.index.*;
@@ -152,17 +151,20 @@ public final class CmpR extends Single {
     final Data data = ii.ic.data;
     // sequential main memory scan is assumed to be faster than range index access;
     // no support for main-memory databases
-    if(!mni || !mxi || data.inMemory()) return false;
+    if(data.inMemory()) return false;
     final IndexType type = ii.type(expr, null);
     if(type == null) return false;
 
     final Stats key = key(ii, type);
     if(key == null) return false;
 
+    // exclusive limits: choose adjacent values
+    final double mn = mni ? min : Math.nextAfter(min, Double.POSITIVE_INFINITY);
+    final double mx = mxi ? max : Math.nextAfter(max, Double.NEGATIVE_INFINITY);
     // estimate costs for range access; all values out of range: no results
-    final NumericRange nr = new NumericRange(type, Math.max(min, key.min), Math.min(max, key.max));
-    // skip queries with no results
-    if(nr.min > nr.max || nr.max < key.min || nr.min > key.max) {
+    final NumericRange nr = new NumericRange(type, Math.max(mn, key.min), Math.min(mx, key.max));
+    // skip queries with no results (the range may also fall into a gap between the values)
+    if(nr.min > nr.max || nr.max < key.min || nr.min > key.max || key.disjoint(nr.min, nr.max)) {
       ii.costs = 0;
       return true;
     }
@@ -171,15 +173,6 @@ public final class CmpR extends Single {
     ii.costs = data.costs(nr);
     if(ii.costs == -1) return false;
 
-    // skip if numbers are negative, doubles, or of different string length
-    final int mnl = min >= 0 && (long) min == min ? token(min).length : -1;
-    final int mxl = max >= 0 && (long) max == max ? token(max).length : -1;
-    if(mnl != mxl || mnl == -1) return false;
-
-    // don't use index if min/max values are infinite
-    if(min == Double.NEGATIVE_INFINITY && max == Double.POSITIVE_INFINITY ||
-        token((int) nr.min).length != token((int) nr.max).length) return false;
-
     final TokenBuilder tb = new TokenBuilder();
     tb.add(mni ? '[' : '(').addExt(min).add(',').addExt(max).add(mxi ? ']' : ')');
     ii.create(new RangeAccess(info, nr, ii.ic), true, info, Util.info(OPTINDEX_X_X, "range", tb));
@@ -5,6 +5,7 @@ import static org.basex.query.QueryText.*;
 import java.util.*;
 
 import org.basex.query.*;
+import org.basex.query.expr.gflwor.*;
 import org.basex.query.iter.*;
 import org.basex.query.value.*;
 import org.basex.query.value.node.*;
@@ -53,6 +54,11 @@ public final class Extension extends Single {
 
   @Override
   public Expr optimize(final CompileContext cc) {
+    for(final Pragma p : pragmas) {
+      if(p instanceof BaseXPragma && ((BaseXPragma) p).parallel() && expr instanceof GFLWOR) {
+        ((GFLWOR) expr).parallel(cc);
+      }
+    }
     seqType = expr.seqType();
     size = expr.size();
     return this;
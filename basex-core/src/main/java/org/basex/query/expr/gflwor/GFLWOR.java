@@ -5,7 +5,9 @@ import java.util.*;
 import org.basex.query.*;
 import org.basex.query.expr.*;
 import org.basex.query.expr.path.*;
+import org.basex.query.func.*;
 import org.basex.query.iter.*;
+import org.basex.query.scope.*;
 import org.basex.query.util.*;
 import org.basex.query.util.list.*;
 import org.basex.query.value.*;
@@ -29,6 +31,8 @@ public final class GFLWOR extends ParseExpr {
   private final LinkedList<Clause> clauses;
   /** Return expression. */
   public Expr ret;
+  /** Parallel evaluation of the tuples of the first for clause. */
+  private boolean parallel;
 
   /**
    * Constructor.
@@ -67,6 +71,8 @@ public final class GFLWOR extends ParseExpr {
 
   @Override
   public Value value(final QueryContext qc) throws QueryException {
+    if(parallel) return parallel(qc);
+
     final Eval eval = newEval();
     if(!eval.next(qc)) return Empty.SEQ;
     final Value v1 = ret.value(qc);
@@ -81,6 +87,19 @@ public final class GFLWOR extends ParseExpr {
 
   @Override
   public Iter iter(final QueryContext qc) {
+    if(parallel) {
+      return new Iter() {
+        /** Iterator over the results of the parallel evaluation. */
+        private Iter iter;
+
+        @Override
+        public Item next() throws QueryException {
+          if(iter == null) iter = parallel(qc).iter();
+          return iter.next();
+        }
+      };
+    }
+
     return new Iter() {
       /** Clause evaluator. */
       private final Eval ev = newEval();
@@ -150,6 +169,8 @@ public final class GFLWOR extends ParseExpr {
       changed |= cleanDeadVars();
       // include the clauses of nested FLWR expressions into this one
       changed |= unnestFLWR(cc);
+      // rewrite equality comparisons between for clauses to hash joins
+      changed |= hashJoins(cc);
       // float where expressions upwards to filter earlier
       changed |= optimizeWhere(cc);
       // rewrite positional variables to predicates
@@ -241,6 +262,8 @@ public final class GFLWOR extends ParseExpr {
     } while(changed);
 
     mergeWheres();
+    aggregates(cc);
+    if(parallel) parallel = parallelizable();
 
     size = calcSize();
     if(size == 0 && !has(Flag.NDT) && !has(Flag.UPD)) {
@@ -259,6 +282,165 @@ public final class GFLWOR extends ParseExpr {
     return this;
   }
 
+  /**
+   * Indicates that only the specified number of results will be requested from this expression.
+   * If the last clauses sort the tuples, only the tuples that are required will be cached.
+   * Example: {@code head(for $i in E order by $i return $i)}
+   * @param limit maximum number of requested results
+   * @param cc compilation context
+   */
+  public void limit(final long limit, final CompileContext cc) {
+    // each tuple must yield at least one result
+    if(limit < 1 || limit >= Integer.MAX_VALUE || ret.seqType().mayBeZero()) return;
+    for(int c = clauses.size(); --c >= 0;) {
+      final Clause clause = clauses.get(c);
+      if(clause instanceof OrderBy) {
+        cc.info(QueryText.OPTLIMIT_X, limit);
+        ((OrderBy) clause).limit(limit);
+        return;
+      }
+      if(!(clause instanceof Let)) return;
+    }
+  }
+
+  /**
+   * Enables the parallel evaluation of this expression if the tuples of the first for clause
+   * can be evaluated independently.
+   * Example: {@code (# basex:parallel #) { for $i in 1 to 100000 return f($i) }}
+   * @param cc compilation context
+   */
+  public void parallel(final CompileContext cc) {
+    if(!parallel && parallelizable()) {
+      cc.info(QueryText.OPTPARALLEL_X, ((For) clauses.getFirst()).var);
+      parallel = true;
+    }
+  }
+
+  /**
+   * Checks if the tuples of the first for clause can be evaluated in parallel.
+   * All clauses must be for, let or where clauses, no expression must be updating or
+   * non-deterministic, and no lazy static variables must be referenced, as they are
+   * bound by the first thread that accesses them.
+   * @return result of check
+   */
+  private boolean parallelizable() {
+    if(clauses.isEmpty() || !(clauses.getFirst() instanceof For)) return false;
+    final For fr = (For) clauses.getFirst();
+    if(fr.score != null || fr.empty || !isFLW() || has(Flag.UPD) || has(Flag.NDT)) return false;
+
+    final HashSet<Scope> scopes = new HashSet<>();
+    return accept(new ASTVisitor() {
+      @Override
+      public boolean staticVar(final StaticVar var) {
+        return !var.lazy;
+      }
+
+      @Override
+      public boolean staticFuncCall(final StaticFuncCall call) {
+        final StaticFunc func = call.func();
+        return func == null || scope(func);
+      }
+
+      @Override
+      public boolean inlineFunc(final Scope sub) {
+        return scope(sub);
+      }
+
+      @Override
+      public boolean funcItem(final FuncItem func) {
+        return scope(func);
+      }
+
+      /**
+       * Visits a scope.
+       * @param scope scope
+       * @return if more expressions should be visited
+       */
+      private boolean scope(final Scope scope) {
+        return !scopes.add(scope) || scope.visit(this);
+      }
+    });
+  }
+
+  /**
+   * Evaluates this expression in parallel. The items of the first for clause are split into
+   * chunks, which are evaluated on a shared fork/join pool. The results are concatenated in
+   * order.
+   * @param qc query context
+   * @return resulting value
+   * @throws QueryException query exception
+   */
+  private Value parallel(final QueryContext qc) throws QueryException {
+    final Value items = ((For) clauses.getFirst()).expr.value(qc);
+    final long size = items.size();
+    final int procs = Runtime.getRuntime().availableProcessors();
+    if(size < 2 || procs < 2) return value(qc, items, 0, size);
+
+    // assign the current date and time, which will be adopted by all threads
+    qc.initDateTime();
+    // create a few chunks per thread to balance the load
+    final long chunks = procs * 4L, chunk = Math.max(1, (size + chunks - 1) / chunks);
+    return new ParallelTask(this, items, qc, 0, size, chunk).evaluate();
+  }
+
+  /**
+   * Evaluates the tuples for a range of items of the first for clause.
+   * @param qc query context
+   * @param items items of the first for clause
+   * @param start position of the first item
+   * @param end position after the last item
+   * @return resulting value
+   * @throws QueryException query exception
+   */
+  Value value(final QueryContext qc, final Value items, final long start, final long end)
+      throws QueryException {
+
+    final For fr = (For) clauses.getFirst();
+    Eval eval = new Eval() {
+      /** Current position. */
+      private long p = start;
+
+      @Override
+      public boolean next(final QueryContext q) throws QueryException {
+        if(p == end) return false;
+        q.set(fr.var, items.itemAt(p));
+        if(fr.pos != null) q.set(fr.pos, Int.get(p + 1));
+        p++;
+        return true;
+      }
+    };
+    final ListIterator<Clause> iter = clauses.listIterator(1);
+    while(iter.hasNext()) eval = iter.next().eval(eval);
+
+    final ValueBuilder vb = new ValueBuilder();
+    while(eval.next(qc)) {
+      qc.checkStop();
+      vb.add(ret.value(qc));
+    }
+    return vb.value();
+  }
+
+  /**
+   * Detects non-grouping variables of group by clauses whose values are only passed on to
+   * aggregation functions.
+   * Example: {@code for $x in E group by $k := $x mod 10 return sum($x)}
+   * @param cc compilation context
+   * @throws QueryException query exception
+   */
+  private void aggregates(final CompileContext cc) throws QueryException {
+    boolean folded = false;
+    final int cs = clauses.size();
+    for(int c = 0; c < cs; c++) {
+      final Clause clause = clauses.get(c);
+      if(clause instanceof GroupBy) {
+        folded |= ((GroupBy) clause).aggregates(clauses.subList(0, c),
+            clauses.subList(c + 1, cs), ret, cc);
+      }
+    }
+    // bind the tuples of subsequent order by clauses to the new variables
+    if(folded) cleanDeadVars();
+  }
+
   /**
    * Pre-calculates the number of results of this FLWOR expression.
    * @return result size if statically computable, {@code -1} otherwise
@@ -483,7 +665,7 @@ public final class GFLWOR extends ParseExpr {
         if(!curr.skippable(let)) break;
         // insert directly above the highest skippable for or window clause
         // this guarantees that no unnecessary swaps occur
-        if(curr instanceof For || curr instanceof Window) insert = j;
+        if(curr instanceof For || curr instanceof Window || curr instanceof Join) insert = j;
       }
 
       if(insert >= 0) {
@@ -496,6 +678,94 @@ public final class GFLWOR extends ParseExpr {
     return changed;
   }
 
+  /**
+   * Rewrites where clauses with equality comparisons between the items of a for clause and
+   * the preceding clauses to hash joins.
+   * Example: {@code for $o in O for $c in C where $c/@id = $o/@cid}
+   * @param cc compilation context
+   * @return change flag
+   * @throws QueryException query exception
+   */
+  private boolean hashJoins(final CompileContext cc) throws QueryException {
+    boolean changed = false;
+    for(int i = 0; i < clauses.size(); i++) {
+      final Clause clause = clauses.get(i);
+      if(!(clause instanceof Where) || clause.has(Flag.NDT) || clause.has(Flag.UPD)) continue;
+      final Expr cond = ((Where) clause).expr;
+      if(!(cond instanceof CmpG) || !((CmpG) cond).equality()) continue;
+      final Expr[] ops = ((CmpG) cond).exprs;
+
+      // find for clause; skip clauses that do not change the order or number of tuples
+      for(int j = i; --j > 0;) {
+        final Clause curr = clauses.get(j);
+        if(curr.has(Flag.NDT) || curr.has(Flag.UPD) ||
+            !(curr instanceof For || curr instanceof Let || curr instanceof Where)) break;
+        if(curr instanceof For && join(cc, (For) curr, j, ops)) {
+          clauses.remove(i--);
+          changed = true;
+          break;
+        }
+      }
+    }
+    return changed;
+  }
+
+  /**
+   * Tries to replace the specified for clause with a hash join.
+   * @param cc compilation context
+   * @param fr for clause
+   * @param index position of the for clause
+   * @param ops operands of the equality comparison
+   * @return success flag
+   * @throws QueryException query exception
+   */
+  private boolean join(final CompileContext cc, final For fr, final int index, final Expr[] ops)
+      throws QueryException {
+
+    if(fr.empty || fr.vars.length != 1) return false;
+    final long[] minMax = { 1, 1 };
+    for(int c = 0; c < index; c++) {
+      clauses.get(c).calcSize(minMax);
+      // bound expression must not depend on variables that are bound more than once
+      if((minMax[1] < 0 || minMax[1] > 1) && uses(fr.expr, c, c + 1, null)) return false;
+    }
+    // skip single incoming tuples
+    if(minMax[1] == 0 || minMax[1] == 1) return false;
+
+    for(int o = 0; o < 2; o++) {
+      // key must only depend on the for variable, probe must be independent of it
+      final Expr key = ops[o], probe = ops[1 - o];
+      final AtomType type = Join.keyType(key);
+      if(type == null || type != Join.keyType(probe) || !key.uses(fr.var) ||
+          uses(key, 0, clauses.size(), fr.var) || uses(probe, index, clauses.size(), null)) {
+        continue;
+      }
+
+      cc.info(QueryText.OPTJOIN_X, fr.var);
+      final Join join = new Join(fr.var, fr.expr, key, probe, type == AtomType.DBL);
+      clauses.set(index, join.optimize(cc));
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Checks if an expression uses variables declared in the specified range of clauses.
+   * @param ex expression
+   * @param start position of the first clause
+   * @param end position after the last clause
+   * @param ignore variable to be ignored (can be {@code null})
+   * @return result of check
+   */
+  private boolean uses(final Expr ex, final int start, final int end, final Var ignore) {
+    for(int c = start; c < end; c++) {
+      for(final Var v : clauses.get(c).vars()) {
+        if(v != ignore && ex.uses(v)) return true;
+      }
+    }
+    return false;
+  }
+
   /**
    * Slides where clauses upwards and removes those that do not filter anything.
    * @param cc compilation context
@@ -733,7 +1003,7 @@ public final class GFLWOR extends ParseExpr {
     // check if an outer clause can prevent the error
     while(iter.hasPrevious()) {
       final Clause b4 = iter.previous();
-      if(b4 instanceof For || b4 instanceof Window || b4 instanceof Where) {
+      if(b4 instanceof For || b4 instanceof Window || b4 instanceof Where || b4 instanceof Join) {
         iter.next();
         while(iter.hasNext()) {
           iter.next();
@@ -752,7 +1022,9 @@ public final class GFLWOR extends ParseExpr {
   public Expr copy(final CompileContext cc, final IntObjMap<Var> vm) {
     final LinkedList<Clause> cls = new LinkedList<>();
     for(final Clause clause : clauses) cls.add(clause.copy(cc, vm));
-    return copyType(new GFLWOR(info, cls, ret.copy(cc, vm)));
+    final GFLWOR flwor = new GFLWOR(info, cls, ret.copy(cc, vm));
+    flwor.parallel = parallel;
+    return copyType(flwor);
   }
 
   /**
@@ -803,7 +1075,7 @@ public final class GFLWOR extends ParseExpr {
 
   @Override
   public void plan(final FElem plan) {
-    final FElem e = planElem();
+    final FElem e = parallel ? planElem(QueryText.PARALLEL, true) : planElem();
     for(final Clause clause : clauses) clause.plan(e);
     ret.plan(e);
     plan.add(e);
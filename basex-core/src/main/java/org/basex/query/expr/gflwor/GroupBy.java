@@ -1,13 +1,22 @@
 package org.basex.query.expr.gflwor;
 
+import static org.basex.query.QueryError.*;
 import static org.basex.query.QueryText.*;
 
+import java.io.*;
 import java.util.*;
+import java.util.List;
 
+import org.basex.core.*;
+import org.basex.io.*;
+import org.basex.io.in.DataInput;
+import org.basex.io.out.DataOutput;
 import org.basex.query.*;
 import org.basex.query.expr.*;
 import org.basex.query.expr.gflwor.GFLWOR.Clause;
 import org.basex.query.expr.gflwor.GFLWOR.Eval;
+import org.basex.query.expr.path.*;
+import org.basex.query.func.*;
 import org.basex.query.util.*;
 import org.basex.query.util.collation.*;
 import org.basex.query.value.*;
@@ -23,16 +32,31 @@ import org.basex.util.hash.*;
 /**
  * The GFLWOR {@code group by} expression.
  *
+ * If the values of a non-grouping variable are only passed on to a single aggregation function
+ * ({@code count}, {@code sum}, {@code min}, {@code max}), they are aggregated while the groups
+ * are built. A path with the variable as root (e.g. {@code sum($x/@v)}) is evaluated for each
+ * tuple if this yields the same result. If the maximum number of groups in main memory is
+ * exceeded, the tuples of all new groups are distributed to partitions on disk, which are
+ * grouped after the groups in memory have been returned.
+ *
  * @author BaseX Team 2005-17, BSD License
  * @author Leo Woerteler
  */
 public final class GroupBy extends Clause {
+  /** Number of hash bits that are consumed by each partitioning level. */
+  private static final int BITS = 4;
+  /** Number of partitions per level. */
+  private static final int PARTITIONS = 1 << BITS;
+  /** Maximum partitioning level. */
+  private static final int LEVELS = Integer.SIZE / BITS;
   /** Grouping specs. */
   private final Spec[] specs;
   /** Non-grouping variable expressions. */
   private Expr[] preExpr;
   /** Non-grouping variables. */
   private Var[] post;
+  /** Aggregation functions of the non-grouping variables (entries can be {@code null}). */
+  private StandardFunc[] aggr;
   /** Number of non-occluded grouping variables. */
   private final int nonOcc;
 
@@ -49,6 +73,7 @@ public final class GroupBy extends Clause {
     this.post = post;
     preExpr = new Expr[pre.length];
     System.arraycopy(pre, 0, preExpr, 0, pre.length);
+    aggr = new StandardFunc[post.length];
     int n = 0;
     for(final Spec spec : specs) if(!spec.occluded) n++;
     nonOcc = n;
@@ -59,15 +84,17 @@ public final class GroupBy extends Clause {
    * @param specs grouping specs
    * @param pre pre-grouping expressions
    * @param post post-grouping variables
+   * @param aggr aggregation functions
    * @param nonOcc number of non-occluded grouping variables
    * @param info input info
    */
-  private GroupBy(final Spec[] specs, final Expr[] pre, final Var[] post, final int nonOcc,
-      final InputInfo info) {
+  private GroupBy(final Spec[] specs, final Expr[] pre, final Var[] post,
+      final StandardFunc[] aggr, final int nonOcc, final InputInfo info) {
     super(info, vars(specs, post));
     this.specs = specs;
     preExpr = pre;
     this.post = post;
+    this.aggr = aggr;
     this.nonOcc = nonOcc;
   }
 
@@ -90,13 +117,19 @@ public final class GroupBy extends Clause {
     return new Eval() {
       /** Groups to iterate over. */
       private Group[] groups;
+      /** Partitions with the tuples of groups that have not been built yet. */
+      private final ArrayList<Partition> partitions = new ArrayList<>();
       /** Current position. */
       private int pos;
 
       @Override
       public boolean next(final QueryContext qc) throws QueryException {
         if(groups == null) groups = init(qc);
-        if(pos == groups.length) return false;
+        while(pos == groups.length) {
+          if(partitions.isEmpty()) return false;
+          groups = partitions.remove(partitions.size() - 1).group(qc, partitions);
+          pos = 0;
+        }
 
         final Group curr = groups[pos];
         // be nice to the garbage collector
@@ -110,7 +143,10 @@ public final class GroupBy extends Clause {
           }
         }
         final int pl = post.length;
-        for(int i = 0; i < pl; i++) qc.set(post[i], curr.ngv[i].value());
+        for(int i = 0; i < pl; i++) {
+          final ValueBuilder vb = curr.ngv[i];
+          qc.set(post[i], vb != null ? vb.value() : aggregated(i, curr.aggr[i]));
+        }
         return true;
       }
 
@@ -120,67 +156,177 @@ public final class GroupBy extends Clause {
        * @throws QueryException query exception
        */
       private Group[] init(final QueryContext qc) throws QueryException {
-        final ArrayList<Group> grps = new ArrayList<>();
-        final IntObjMap<Group> map = new IntObjMap<>();
-        final Collation[] colls = new Collation[nonOcc];
-        int c = 0;
-        for(final Spec spec : specs) {
-          if(!spec.occluded) colls[c++] = spec.coll;
-        }
-
+        final int buffer = qc.context.options.get(MainOptions.GROUPBUFFER);
+        final Groups grps = new Groups(qc, buffer, 0, null);
+        final int pl = preExpr.length;
         while(sub.next(qc)) {
           final Item[] key = new Item[nonOcc];
-          int p = 0, hash = 1;
+          int p = 0;
           for(final Spec spec : specs) {
             final Item atom = spec.atomItem(qc, info);
-            if(!spec.occluded) {
-              key[p++] = atom;
-              // If the values are compared using a special collation, we let them collide
-              // here and let the comparison do all the work later.
-              // This enables other non-collation specs to avoid the collision.
-              hash = 31 * hash + (atom == null || spec.coll != null ? 0 : atom.hash(info));
-            }
+            if(!spec.occluded) key[p++] = atom;
             qc.set(spec.var, atom == null ? Empty.SEQ : atom);
           }
+          final Value[] values = new Value[pl];
+          for(int v = 0; v < pl; v++) values[v] = preExpr[v].value(qc);
+          grps.add(key, values);
+        }
+        return grps.finish(partitions);
+      }
+    };
+  }
 
-          // find the group for this key
-          final Group fst;
-          Group grp = null;
-          // no collations, so we can use hashing
-          for(Group g = fst = map.get(hash); g != null; g = g.next) {
-            if(eq(key, g.key, colls)) {
-              grp = g;
-              break;
-            }
-          }
+  /**
+   * Returns the value of an aggregated non-grouping variable. If the value is passed on to the
+   * aggregation function, it yields the same result as the original values.
+   * @param v index of the variable
+   * @param agg aggregated value (can be {@code null})
+   * @return value
+   */
+  private Value aggregated(final int v, final Value agg) {
+    if(agg == null) return Empty.SEQ;
+    return aggr[v].sig == Function.COUNT ? RangeSeq.get(1, ((Int) agg).itr(), true) : agg;
+  }
 
-          final int pl = preExpr.length;
-          if(grp == null) {
-            // new group, add it to the list
-            final ValueBuilder[] ngs = new ValueBuilder[pl];
-            final int nl = ngs.length;
-            for(int n = 0; n < nl; n++) ngs[n] = new ValueBuilder();
-            grp = new Group(key, ngs);
-            grps.add(grp);
-
-            // insert the group into the hash table
-            if(fst == null) {
-              map.put(hash, grp);
-            } else {
-              final Group nxt = fst.next;
-              fst.next = grp;
-              grp.next = nxt;
-            }
-          }
+  /**
+   * Detects non-grouping variables whose values are only passed on to a single aggregation
+   * function. The values of these variables will be aggregated while the groups are built.
+   * @param before preceding clauses
+   * @param clauses subsequent clauses
+   * @param ret return expression
+   * @param cc compilation context
+   * @return {@code true} if a non-grouping variable has been replaced with a new variable
+   * @throws QueryException query exception
+   */
+  boolean aggregates(final List<Clause> before, final List<Clause> clauses, final Expr ret,
+      final CompileContext cc) throws QueryException {
+    boolean folded = false;
+    final int pl = post.length;
+    for(int p = 0; p < pl; p++) {
+      final Var var = post[p];
+      final ArrayList<StandardFunc> calls = new ArrayList<>();
+      final int[] refs = { 0 };
+      final ASTVisitor visitor = new ASTVisitor() {
+        @Override
+        public boolean used(final VarRef ref) {
+          if(ref.var.is(var)) refs[0]++;
+          return true;
+        }
 
-          // add values of non-grouping variables to the group
-          for(int g = 0; g < pl; g++) grp.ngv[g].add(preExpr[g].value(qc));
+        @Override
+        public boolean funcCall(final StandardFunc call) {
+          final Function f = call.sig;
+          final Expr[] args = call.exprs;
+          if((f == Function.COUNT || f == Function.SUM ||
+              (f == Function.MIN || f == Function.MAX) && args.length == 1) && (
+              args[0] instanceof VarRef && ((VarRef) args[0]).var.is(var) ||
+              args[0] instanceof Path && ((Path) args[0]).root instanceof VarRef &&
+              ((VarRef) ((Path) args[0]).root).var.is(var))) calls.add(call);
+          return true;
         }
+      };
+      for(final Clause clause : clauses) clause.accept(visitor);
+      ret.accept(visitor);
+
+      final int cs = calls.size();
+      StandardFunc agg = refs[0] == cs && cs > 0 ? calls.get(0) : null;
+      for(final StandardFunc call : calls) {
+        if(agg != null && (call.sig != agg.sig ||
+            !(call.exprs[0] instanceof VarRef) && cs != 1)) agg = null;
+      }
+      // path argument: evaluate it for each tuple and bind a new variable to the results
+      if(agg != null && agg.exprs[0] instanceof Path) {
+        if(foldable((Path) agg.exprs[0], p, before, agg.sig)) {
+          fold(p, agg, cc);
+          folded = true;
+        } else {
+          agg = null;
+        }
+      }
+      if(agg != null && aggr[p] == null) cc.info(OPTAGGR_X, post[p]);
+      aggr[p] = agg;
+    }
+    if(folded) optimize(cc);
+    return folded;
+  }
+
+  /**
+   * Checks if the path argument of an aggregation function can be evaluated for each tuple
+   * instead of the values of all tuples of a group. This is the case if the path is
+   * deterministic and references no variables, if the grouped values are nodes, and if the
+   * function ignores duplicates ({@code min}, {@code max}), or if the paths of different tuples
+   * cannot yield the same nodes: tuples must be distinct nodes, which are returned by a single
+   * for clause, and the path may only navigate to children and attributes.
+   * @param path path
+   * @param p index of the non-grouping variable
+   * @param before preceding clauses
+   * @param func aggregation function
+   * @return result of check
+   */
+  private boolean foldable(final Path path, final int p, final List<Clause> before,
+      final Function func) {
 
-        // we're finished, copy the array so the list can be garbage-collected
-        return grps.toArray(new Group[grps.size()]);
+    if(path.has(Flag.NDT)) return false;
+    final ASTVisitor visitor = new ASTVisitor() {
+      @Override
+      public boolean used(final VarRef ref) {
+        return false;
       }
     };
+    for(final Expr step : path.steps) {
+      if(!step.accept(visitor)) return false;
+    }
+    if(!(preExpr[p].seqType().type instanceof NodeType)) return false;
+    if(func == Function.MIN || func == Function.MAX) return true;
+
+    final int sl = path.steps.length;
+    for(int s = 0; s < sl; s++) {
+      final Expr step = path.steps[s];
+      if(step instanceof Step) {
+        final Axis axis = ((Step) step).axis;
+        if(axis != Axis.CHILD && axis != Axis.ATTR && axis != Axis.SELF) return false;
+      } else if(s < sl - 1 || step.seqType().type instanceof NodeType) {
+        return false;
+      }
+    }
+
+    For source = null;
+    for(final Clause clause : before) {
+      if(clause instanceof For) {
+        if(source != null) return false;
+        source = (For) clause;
+      } else if(!(clause instanceof Let || clause instanceof Where || clause instanceof Count ||
+          clause instanceof OrderBy)) {
+        return false;
+      }
+    }
+    return source != null && preExpr[p] instanceof VarRef &&
+        ((VarRef) preExpr[p]).var.is(source.var) &&
+        (source.expr instanceof Path || source.expr instanceof DBNodes) &&
+        source.expr.seqType().type instanceof NodeType;
+  }
+
+  /**
+   * Evaluates the path argument of an aggregation function for each tuple: the path becomes
+   * the pre-grouping expression, and the argument is replaced with a new variable.
+   * The variable references of subsequent {@code order by} clauses must be updated afterwards.
+   * @param p index of the non-grouping variable
+   * @param agg aggregation function
+   * @param cc compilation context
+   * @throws QueryException query exception
+   */
+  private void fold(final int p, final StandardFunc agg, final CompileContext cc)
+      throws QueryException {
+
+    final Path path = (Path) agg.exprs[0];
+    final Var old = post[p], var = cc.vs().addNew(old.name, null, false, cc.qc, old.info);
+    preExpr[p] = Path.get(path.info, preExpr[p], path.steps).optimize(cc);
+    agg.exprs[0] = new VarRef(agg.info, var);
+    post[p] = var;
+    final int vl = vars.length;
+    for(int v = 0; v < vl; v++) {
+      if(vars[v] == old) vars[v] = var;
+    }
   }
 
   /**
@@ -254,7 +400,7 @@ public final class GroupBy extends Clause {
     for(int p = 0; p < pl; p++) ps[p] = cc.copy(post[p], vm);
 
     // done
-    return new GroupBy(Arr.copyAll(cc, vm, specs), pEx, ps, nonOcc, info);
+    return new GroupBy(Arr.copyAll(cc, vm, specs), pEx, ps, aggr.clone(), nonOcc, info);
   }
 
   @Override
@@ -272,6 +418,7 @@ public final class GroupBy extends Clause {
     for(int p = 0; p < post.length; p++) {
       if(!used.get(post[p].id)) {
         preExpr = Array.delete(preExpr, p);
+        aggr = Array.delete(aggr, p);
         post = Array.delete(post, p--);
       }
     }
@@ -304,7 +451,11 @@ public final class GroupBy extends Clause {
 
   @Override
   public void plan(final FElem plan) {
-    final FElem e = planElem();
+    final TokenBuilder tb = new TokenBuilder();
+    for(final StandardFunc agg : aggr) {
+      if(agg != null) tb.add(tb.isEmpty() ? "" : SEP).add(agg.toString());
+    }
+    final FElem e = tb.isEmpty() ? planElem() : planElem(AGGREGATE, tb.toString());
     for(final Spec spec : specs) spec.plan(e);
     plan.add(e);
   }
@@ -399,8 +550,10 @@ public final class GroupBy extends Clause {
   private static final class Group {
     /** Grouping key, may contain {@code null} values. */
     final Item[] key;
-    /** Non-grouping variables. */
+    /** Non-grouping variables (entries are {@code null} for aggregated variables). */
     final ValueBuilder[] ngv;
+    /** Aggregated values of non-grouping variables (entries can be {@code null}). */
+    final Value[] aggr;
     /** Overflow list. */
     Group next;
 
@@ -408,10 +561,276 @@ public final class GroupBy extends Clause {
      * Constructor.
      * @param k grouping key
      * @param ng non-grouping variables
+     * @param ag aggregated values
      */
-    Group(final Item[] k, final ValueBuilder[] ng) {
+    Group(final Item[] k, final ValueBuilder[] ng, final Value[] ag) {
       key = k;
       ngv = ng;
+      aggr = ag;
+    }
+  }
+
+  /**
+   * Groups that are built from incoming tuples.
+   */
+  private final class Groups {
+    /** Query context. */
+    private final QueryContext qc;
+    /** Maximum number of groups in main memory (0: no limit). */
+    private final int buffer;
+    /** Partitioning level. */
+    private final int level;
+    /** Groups in the order of their creation. */
+    private final ArrayList<Group> list = new ArrayList<>();
+    /** Hash table with all groups. */
+    private final IntObjMap<Group> map = new IntObjMap<>();
+    /** Collations of the grouping keys. */
+    private final Collation[] colls = new Collation[nonOcc];
+    /** Function calls for aggregating values (entries can be {@code null}). */
+    private final StandardFunc[] calls;
+    /** Indicates if the hash values of the grouping keys can differ (no collation is used). */
+    private final boolean hashed;
+    /** Spill files (can be {@code null}). */
+    private Spill spill;
+    /** Partitions with the tuples of new groups (assigned if the buffer is exceeded). */
+    private Partition[] parts;
+
+    /**
+     * Constructor.
+     * @param qc query context
+     * @param buffer maximum number of groups in main memory (0: no limit)
+     * @param level partitioning level
+     * @param spill spill files (can be {@code null})
+     */
+    Groups(final QueryContext qc, final int buffer, final int level, final Spill spill) {
+      this.qc = qc;
+      this.buffer = buffer;
+      this.level = level;
+      this.spill = spill;
+      int c = 0;
+      boolean h = false;
+      for(final Spec spec : specs) {
+        if(!spec.occluded) {
+          colls[c++] = spec.coll;
+          if(spec.coll == null) h = true;
+        }
+      }
+      hashed = h;
+      final int al = aggr.length;
+      calls = new StandardFunc[al];
+      for(int a = 0; a < al; a++) {
+        final StandardFunc agg = aggr[a];
+        if(agg != null && agg.sig != Function.COUNT) {
+          calls[a] = agg.sig.get(agg.sc, info, Empty.SEQ);
+        }
+      }
+    }
+
+    /**
+     * Adds a tuple to its group.
+     * @param key grouping key
+     * @param values values of the non-grouping variables
+     * @throws QueryException query exception
+     */
+    void add(final Item[] key, final Value[] values) throws QueryException {
+      int hash = 1;
+      for(int k = 0; k < nonOcc; k++) {
+        // If the values are compared using a special collation, we let them collide
+        // here and let the comparison do all the work later.
+        // This enables other non-collation specs to avoid the collision.
+        final Item atom = key[k];
+        hash = 31 * hash + (atom == null || colls[k] != null ? 0 : atom.hash(info));
+      }
+
+      // find the group for this key
+      final Group fst;
+      Group grp = null;
+      for(Group g = fst = map.get(hash); g != null; g = g.next) {
+        if(eq(key, g.key, colls)) {
+          grp = g;
+          break;
+        }
+      }
+
+      final int pl = values.length;
+      if(grp == null) {
+        // maximum number of groups is reached: write tuple to a partition
+        // (skipped if all hash values are equal, as they would end up in the same partition)
+        if(buffer > 0 && list.size() == buffer && level < LEVELS && hashed) {
+          write(hash, key, values);
+          return;
+        }
+
+        // new group, add it to the list
+        final ValueBuilder[] ngs = new ValueBuilder[pl];
+        for(int n = 0; n < pl; n++) {
+          if(aggr[n] == null) ngs[n] = new ValueBuilder();
+        }
+        grp = new Group(key, ngs, new Value[pl]);
+        list.add(grp);
+
+        // insert the group into the hash table
+        if(fst == null) {
+          map.put(hash, grp);
+        } else {
+          final Group nxt = fst.next;
+          fst.next = grp;
+          grp.next = nxt;
+        }
+      }
+
+      // add values of non-grouping variables to the group
+      for(int v = 0; v < pl; v++) {
+        if(aggr[v] == null) grp.ngv[v].add(values[v]);
+        else grp.aggr[v] = aggregate(v, grp.aggr[v], values[v]);
+      }
+    }
+
+    /**
+     * Aggregates the values of a non-grouping variable.
+     * @param v index of the variable
+     * @param agg aggregated value (can be {@code null})
+     * @param value value to be added
+     * @return new aggregated value
+     */
+    private Value aggregate(final int v, final Value agg, final Value value) {
+      if(value.isEmpty()) return agg;
+      final StandardFunc call = calls[v];
+      if(call == null) return Int.get((agg == null ? 0 : ((Int) agg).itr()) + value.size());
+
+      // values that raised an error are retained, and the error will be raised again
+      // when the aggregation function is called
+      if(agg != null && agg.size() > 1) return agg;
+      final Value vals = agg == null ? value : new ValueBuilder().add(agg).add(value).value();
+      call.exprs[0] = vals;
+      try {
+        return call.item(qc, info);
+      } catch(final QueryException ex) {
+        Util.debug(ex);
+        return vals;
+      }
+    }
+
+    /**
+     * Writes a tuple to a partition.
+     * @param hash hash value of the grouping key
+     * @param key grouping key
+     * @param values values of the non-grouping variables
+     * @throws QueryException query exception
+     */
+    private void write(final int hash, final Item[] key, final Value[] values)
+        throws QueryException {
+      if(parts == null) {
+        if(spill == null) spill = new Spill(qc, info);
+        parts = new Partition[PARTITIONS];
+        for(int p = 0; p < PARTITIONS; p++) parts[p] = new Partition(spill, buffer, level + 1);
+      }
+      parts[hash >>> level * BITS & PARTITIONS - 1].write(key, values);
+    }
+
+    /**
+     * Finishes the grouping.
+     * @param partitions list, to which non-empty partitions will be added
+     * @return groups in main memory
+     * @throws QueryException query exception
+     */
+    Group[] finish(final ArrayList<Partition> partitions) throws QueryException {
+      if(parts != null) {
+        for(final Partition part : parts) {
+          if(part.close()) partitions.add(part);
+        }
+      }
+      // we're finished, copy the array so the list can be garbage-collected
+      return list.toArray(new Group[list.size()]);
+    }
+  }
+
+  /**
+   * Partition with tuples that are written to a temporary file.
+   */
+  private final class Partition {
+    /** Spill files. */
+    private final Spill spill;
+    /** Maximum number of groups in main memory. */
+    private final int buffer;
+    /** Partitioning level. */
+    private final int level;
+    /** File. */
+    private final IOFile file;
+    /** Output stream. */
+    private final DataOutput out;
+    /** Number of tuples. */
+    private int size;
+
+    /**
+     * Constructor.
+     * @param spill spill files
+     * @param buffer maximum number of groups in main memory
+     * @param level partitioning level
+     * @throws QueryException query exception
+     */
+    Partition(final Spill spill, final int buffer, final int level) throws QueryException {
+      this.spill = spill;
+      this.buffer = buffer;
+      this.level = level;
+      file = spill.file();
+      out = spill.output(file);
+    }
+
+    /**
+     * Writes a tuple.
+     * @param key grouping key
+     * @param values values of the non-grouping variables
+     * @throws QueryException query exception
+     */
+    void write(final Item[] key, final Value[] values) throws QueryException {
+      try {
+        for(final Item it : key) spill.write(out, it);
+        for(final Value value : values) spill.write(out, value);
+        size++;
+      } catch(final IOException ex) {
+        throw IOERR_X.get(info, ex);
+      }
+    }
+
+    /**
+     * Closes the output stream. Deletes the file if no tuples have been written.
+     * @return {@code true} if the partition contains tuples
+     * @throws QueryException query exception
+     */
+    boolean close() throws QueryException {
+      spill.close(file);
+      if(size != 0) return true;
+      spill.delete(file);
+      return false;
+    }
+
+    /**
+     * Reads the tuples and builds the groups. Deletes the file.
+     * @param qc query context
+     * @param partitions list, to which non-empty partitions will be added
+     * @return groups in main memory
+     * @throws QueryException query exception
+     */
+    Group[] group(final QueryContext qc, final ArrayList<Partition> partitions)
+        throws QueryException {
+      final Groups grps = new Groups(qc, buffer, level, spill);
+      final int pl = preExpr.length;
+      final DataInput in = spill.input(file);
+      try {
+        for(int s = 0; s < size; s++) {
+          qc.checkStop();
+          final Item[] key = new Item[nonOcc];
+          for(int k = 0; k < nonOcc; k++) key[k] = spill.readItem(in);
+          final Value[] values = new Value[pl];
+          for(int v = 0; v < pl; v++) values[v] = spill.readValue(in);
+          grps.add(key, values);
+        }
+      } catch(final IOException ex) {
+        throw IOERR_X.get(info, ex);
+      }
+      spill.delete(file);
+      return grps.finish(partitions);
     }
   }
 }
@@ -0,0 +1,273 @@
+package org.basex.query.expr.gflwor;
+
+import static org.basex.query.QueryText.*;
+
+import org.basex.query.*;
+import org.basex.query.expr.*;
+import org.basex.query.expr.gflwor.GFLWOR.Clause;
+import org.basex.query.expr.gflwor.GFLWOR.Eval;
+import org.basex.query.iter.*;
+import org.basex.query.util.*;
+import org.basex.query.util.list.*;
+import org.basex.query.value.item.*;
+import org.basex.query.value.node.*;
+import org.basex.query.value.type.*;
+import org.basex.query.value.type.SeqType.Occ;
+import org.basex.query.var.*;
+import org.basex.util.*;
+import org.basex.util.hash.*;
+import org.basex.util.list.*;
+
+/**
+ * FLWOR {@code for} clause with an equality predicate, which is evaluated as hash join.
+ * The clause replaces {@code for $v in E ... where K = P}, in which the key expression {@code K}
+ * only depends on {@code $v}, and in which the bound expression {@code E} and the probe
+ * expression {@code P} are independent of {@code $v}.
+ *
+ * The items of {@code E} are evaluated once. They are indexed by the atomized values of
+ * {@code K} when the first tuple arrives. For each incoming tuple, the atomized values of
+ * {@code P} are looked up, and {@code $v} is bound to all matching items in their original order.
+ *
+ * @author BaseX Team 2005-17, BSD License
+ * @author Christian Gruen
+ */
+public final class Join extends Clause {
+  /** Item variable. */
+  final Var var;
+  /** Bound expression. */
+  Expr expr;
+  /** Key expression (depends on the item variable). */
+  Expr key;
+  /** Probe expression (independent of the item variable). */
+  Expr probe;
+  /** Numeric comparison (keys are compared as strings otherwise). */
+  private final boolean numeric;
+
+  /**
+   * Constructor.
+   * @param var item variable
+   * @param expr bound expression
+   * @param key key expression
+   * @param probe probe expression
+   * @param numeric numeric comparison
+   */
+  Join(final Var var, final Expr expr, final Expr key, final Expr probe, final boolean numeric) {
+    super(var.info, var);
+    this.var = var;
+    this.expr = expr;
+    this.key = key;
+    this.probe = probe;
+    this.numeric = numeric;
+  }
+
+  /**
+   * Returns the type of the keys that are compared by a join.
+   * @param ex key or probe expression
+   * @return {@link AtomType#STR} for strings, untyped values and nodes,
+   *   {@link AtomType#DBL} for numbers, {@code null} otherwise
+   */
+  static AtomType keyType(final Expr ex) {
+    final Type type = ex.seqType().type;
+    return type.isStringOrUntyped() ? AtomType.STR : type.isNumber() ? AtomType.DBL : null;
+  }
+
+  @Override
+  Eval eval(final Eval sub) {
+    return new Eval() {
+      /** Hash table (created with the first incoming tuple). */
+      private Table table;
+      /** Positions of the matching items. */
+      private int[] matches = {};
+      /** Current position. */
+      private int m;
+
+      @Override
+      public boolean next(final QueryContext qc) throws QueryException {
+        while(m == matches.length) {
+          if(!sub.next(qc)) return false;
+          if(table == null) table = new Table(qc);
+          matches = table.probe(qc);
+          m = 0;
+        }
+        qc.set(var, table.items.get(matches[m++]));
+        return true;
+      }
+    };
+  }
+
+  @Override
+  public boolean has(final Flag flag) {
+    return expr.has(flag) || key.has(flag) || probe.has(flag);
+  }
+
+  @Override
+  public Join compile(final CompileContext cc) throws QueryException {
+    expr = expr.compile(cc);
+    key = key.compile(cc);
+    probe = probe.compile(cc);
+    return optimize(cc);
+  }
+
+  @Override
+  public Join optimize(final CompileContext cc) throws QueryException {
+    seqType = SeqType.get(expr.seqType().type, Occ.ONE);
+    var.refineType(seqType, cc);
+    size = 1;
+    var.size = size;
+    var.data = expr.data();
+    return this;
+  }
+
+  @Override
+  public boolean removable(final Var v) {
+    return expr.removable(v) && key.removable(v) && probe.removable(v);
+  }
+
+  @Override
+  public VarUsage count(final Var v) {
+    // the key expression is evaluated for each item of the bound expression
+    return VarUsage.sum(v, expr, probe).plus(key.count(v).times(expr.size()));
+  }
+
+  @Override
+  public Join inline(final Var v, final Expr ex, final CompileContext cc) throws QueryException {
+    final Expr e = expr.inline(v, ex, cc), k = key.inline(v, ex, cc), p = probe.inline(v, ex, cc);
+    if(e == null && k == null && p == null) return null;
+    if(e != null) expr = e;
+    if(k != null) key = k;
+    if(p != null) probe = p;
+    return compile(cc);
+  }
+
+  @Override
+  public Join copy(final CompileContext cc, final IntObjMap<Var> vm) {
+    final Var v = cc.copy(var, vm);
+    return new Join(v, expr.copy(cc, vm), key.copy(cc, vm), probe.copy(cc, vm), numeric);
+  }
+
+  @Override
+  public boolean accept(final ASTVisitor visitor) {
+    return expr.accept(visitor) && probe.accept(visitor) && visitor.declared(var) &&
+        key.accept(visitor);
+  }
+
+  @Override
+  public void checkUp() throws QueryException {
+    checkNoneUp(expr, key, probe);
+  }
+
+  @Override
+  void calcSize(final long[] minMax) {
+    final long sz = expr.size();
+    minMax[0] = 0;
+    final long max = minMax[1];
+    minMax[1] = sz < 0 ? -1 : max > 0 ? max * sz : max;
+  }
+
+  @Override
+  public int exprSize() {
+    return expr.exprSize() + key.exprSize() + probe.exprSize();
+  }
+
+  @Override
+  public void plan(final FElem plan) {
+    final FElem e = planElem();
+    var.plan(e);
+    expr.plan(e);
+    key.plan(e);
+    probe.plan(e);
+    plan.add(e);
+  }
+
+  @Override
+  public String toString() {
+    return new StringBuilder(FOR).append(' ').append(var).append(' ').append(IN).append(' ').
+        append(expr).append(' ').append(WHERE).append(' ').append(key).append(" = ").
+        append(probe).toString();
+  }
+
+  /**
+   * Hash table with the items of the bound expression.
+   */
+  private final class Table {
+    /** Items of the bound expression. */
+    private final ItemList items = new ItemList();
+    /** Positions of the items of all table entries. */
+    private final IntList positions = new IntList();
+    /** Atomized keys of all table entries (only assigned for numeric comparisons). */
+    private final ItemList atoms = numeric ? new ItemList() : null;
+    /** Hashed keys, referencing lists of table entries. */
+    private final TokenObjMap<IntList> map = new TokenObjMap<>();
+
+    /**
+     * Constructor, building the hash table.
+     * @param qc query context
+     * @throws QueryException query exception
+     */
+    Table(final QueryContext qc) throws QueryException {
+      final Iter iter = expr.iter(qc);
+      for(Item it; (it = iter.next()) != null;) {
+        qc.checkStop();
+        final int pos = items.size();
+        items.add(it);
+        qc.set(var, it);
+        final Iter ir = key.atomIter(qc, info);
+        for(Item atom; (atom = ir.next()) != null;) {
+          final byte[] hash = hash(atom);
+          if(hash == null) continue;
+          IntList entries = map.get(hash);
+          if(entries == null) {
+            entries = new IntList(1);
+            map.put(hash, entries);
+          } else if(!numeric && positions.get(entries.peek()) == pos) {
+            // skip duplicate string keys of the same item
+            continue;
+          }
+          entries.add(positions.size());
+          positions.add(pos);
+          if(numeric) atoms.add(atom);
+        }
+      }
+    }
+
+    /**
+     * Returns the positions of all items that match the probe values of the current tuple.
+     * @param qc query context
+     * @return positions in ascending order
+     * @throws QueryException query exception
+     */
+    int[] probe(final QueryContext qc) throws QueryException {
+      final IntList list = new IntList();
+      int values = 0;
+      final Iter ir = probe.atomIter(qc, info);
+      for(Item atom; (atom = ir.next()) != null;) {
+        values++;
+        final byte[] hash = hash(atom);
+        final IntList entries = hash != null ? map.get(hash) : null;
+        if(entries == null) continue;
+        final int es = entries.size();
+        for(int e = 0; e < es; e++) {
+          final int entry = entries.get(e);
+          if(!numeric || atoms.get(entry).eq(atom, null, null, info)) {
+            list.add(positions.get(entry));
+          }
+        }
+      }
+      if(values > 1) list.sort();
+      return list.distinct().finish();
+    }
+
+    /**
+     * Returns the hash key of an atomized item.
+     * Numbers are hashed by their double value, as equal numbers have the same double value.
+     * @param atom atomized item
+     * @return hash key, or {@code null} if the item cannot be equal to any other item
+     * @throws QueryException query exception
+     */
+    private byte[] hash(final Item atom) throws QueryException {
+      if(!numeric) return atom.string(info);
+      final double d = atom.dbl(info);
+      return Double.isNaN(d) ? null : Token.token(d == 0 ? 0 : d);
+    }
+  }
+}
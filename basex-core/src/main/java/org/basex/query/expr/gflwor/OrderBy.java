@@ -3,9 +3,14 @@ package org.basex.query.expr.gflwor;
 import static org.basex.query.QueryError.*;
 import static org.basex.query.QueryText.*;
 
+import java.io.*;
 import java.util.*;
 import java.util.List;
 
+import org.basex.core.*;
+import org.basex.io.*;
+import org.basex.io.in.DataInput;
+import org.basex.io.out.DataOutput;
 import org.basex.query.*;
 import org.basex.query.expr.*;
 import org.basex.query.expr.gflwor.GFLWOR.Clause;
@@ -26,10 +31,15 @@ import org.basex.util.hash.*;
  * @author Leo Woerteler
  */
 public final class OrderBy extends Clause {
+  /** Maximum number of sorted runs that are merged at once. */
+  private static final int MERGE = 64;
+
   /** References to the variables to be sorted. */
   private VarRef[] refs;
   /** Sort keys. */
   private final Key[] keys;
+  /** Maximum number of tuples that will be requested ({@link Long#MAX_VALUE}: no limit). */
+  private long limit = Long.MAX_VALUE;
 
   /**
    * Constructor.
@@ -50,41 +60,65 @@ public final class OrderBy extends Clause {
       private Value[][] tpls;
       /** Permutation of the values. */
       private Integer[] perm;
+      /** Sorted runs on disk (assigned if the tuples did not fit into main memory). */
+      private Runs runs;
       /** Current position. */
       int pos;
       @Override
       public boolean next(final QueryContext qc) throws QueryException {
-        if(tpls == null) sort(qc);
-        if(pos == tpls.length) return false;
-        final int p = perm[pos++];
-        final Value[] tuple = tpls[p];
-        // free the space occupied by the tuple
-        tpls[p] = null;
+        if(tpls == null && runs == null) {
+          if(limit == Long.MAX_VALUE) sort(qc);
+          else topK(qc);
+        }
+        final Value[] tuple;
+        if(runs != null) {
+          tuple = runs.next();
+          if(tuple == null) return false;
+        } else {
+          if(pos == tpls.length) return false;
+          final int p = perm[pos++];
+          tuple = tpls[p];
+          // free the space occupied by the tuple
+          tpls[p] = null;
+        }
         final int rl = refs.length;
         for(int r = 0; r < rl; r++) qc.set(refs[r].var, tuple[r]);
         return true;
       }
 
       /**
-       * Caches and sorts all incoming tuples.
+       * Caches and sorts all incoming tuples. If the maximum number of cached tuples is
+       * exceeded, sorted runs are written to disk, which will be merged later on.
        * @param qc query context
        * @throws QueryException evaluation exception
        */
       private void sort(final QueryContext qc) throws QueryException {
+        final int buffer = qc.context.options.get(MainOptions.SORTBUFFER);
         // keys are stored at odd positions, values at even ones
-        List<Value[]> tuples = new ArrayList<>();
+        final List<Value[]> tuples = new ArrayList<>();
         while(sub.next(qc)) {
-          final int kl = keys.length;
-          final Item[] key = new Item[kl];
-          for(int k = 0; k < kl; k++) key[k] = keys[k].expr.atomItem(qc, keys[k].info);
-          tuples.add(key);
-
-          final int rl = refs.length;
-          final Value[] vals = new Value[rl];
-          for(int r = 0; r < rl; r++) vals[r] = refs[r].value(qc);
-          tuples.add(vals);
+          tuples.add(keys(qc, 0));
+          tuples.add(values(qc));
+          if(buffer > 0 && tuples.size() >>> 1 == buffer) {
+            if(runs == null) runs = new Runs(qc);
+            runs.write(sort(tuples), tpls, perm);
+          }
         }
+        final Item[][] ks = sort(tuples);
+        if(runs != null) {
+          if(ks.length != 0) runs.write(ks, tpls, perm);
+          tpls = null;
+          runs.merge();
+        }
+      }
 
+      /**
+       * Sorts the specified tuples and assigns the tuple values and the permutation.
+       * @param tuples tuples (will be cleared)
+       * @return keys
+       * @throws QueryException evaluation exception
+       */
+      private Item[][] sort(final List<Value[]> tuples) throws QueryException {
         final int len = tuples.size() >>> 1;
         final Item[][] ks = new Item[len][];
         perm = new Integer[len];
@@ -95,28 +129,13 @@ public final class OrderBy extends Clause {
           ks[i] = (Item[]) tuples.get(i << 1);
         }
         // be nice to the garbage collector
-        tuples = null;
+        tuples.clear();
         try {
           Arrays.sort(perm, new Comparator<Integer>() {
             @Override
             public int compare(final Integer x, final Integer y) {
               try {
-                final Item[] a = ks[x], b = ks[y];
-                final int kl = keys.length;
-                for(int k = 0; k < kl; k++) {
-                  final Key key = keys[k];
-                  Item m = a[k], n = b[k];
-                  if(m == Dbl.NAN || m == Flt.NAN) m = null;
-                  if(n == Dbl.NAN || n == Flt.NAN) n = null;
-                  if(m != null && n != null && !m.comparable(n))
-                    throw castError(n, m.type, key.info);
-
-                  final int c = m == null
-                      ? n == null ? 0                 : key.least ? -1 : 1
-                      : n == null ? key.least ? 1 : -1 : m.diff(n, key.coll, key.info);
-                  if(c != 0) return key.desc ? -c : c;
-                }
-                return 0;
+                return OrderBy.this.compare(ks[x], ks[y]);
               } catch(final QueryException ex) {
                 throw new QueryRTException(ex);
               }
@@ -125,13 +144,309 @@ public final class OrderBy extends Clause {
         } catch(final QueryRTException ex) {
           throw ex.getCause();
         }
+        return ks;
+      }
+
+      /**
+       * Sorts the incoming tuples and only caches the first ones that will be requested.
+       * A heap is used, which contains the worst cached tuple at the top.
+       * @param qc query context
+       * @throws QueryException evaluation exception
+       */
+      private void topK(final QueryContext qc) throws QueryException {
+        // the position of the tuple is stored after the keys to keep the sort stable
+        final int kl = keys.length;
+        final MinHeap<Item[], Value[]> heap = new MinHeap<>(new Comparator<Item[]>() {
+          @Override
+          public int compare(final Item[] a, final Item[] b) {
+            try {
+              final int c = OrderBy.this.compare(a, b);
+              return -(c != 0 ? c : Long.compare(((Int) a[kl]).itr(), ((Int) b[kl]).itr()));
+            } catch(final QueryException ex) {
+              throw new QueryRTException(ex);
+            }
+          }
+        });
+        try {
+          for(long p = 0; sub.next(qc); p++) {
+            final Item[] key = keys(qc, 1);
+            key[kl] = Int.get(p);
+            heap.insert(key, values(qc));
+            if(heap.size() > limit) heap.removeMin();
+          }
+        } catch(final QueryRTException ex) {
+          throw ex.getCause();
+        }
+
+        final int len = heap.size();
+        perm = new Integer[len];
+        tpls = new Value[len][];
+        for(int i = len; --i >= 0;) {
+          perm[i] = i;
+          tpls[i] = heap.removeMin();
+        }
+      }
+
+      /**
+       * Evaluates the keys of the current tuple.
+       * @param qc query context
+       * @param extra number of additional entries
+       * @return keys
+       * @throws QueryException evaluation exception
+       */
+      private Item[] keys(final QueryContext qc, final int extra) throws QueryException {
+        final int kl = keys.length;
+        final Item[] key = new Item[kl + extra];
+        for(int k = 0; k < kl; k++) key[k] = keys[k].expr.atomItem(qc, keys[k].info);
+        return key;
+      }
+
+      /**
+       * Returns the variable values of the current tuple.
+       * @param qc query context
+       * @return values
+       * @throws QueryException evaluation exception
+       */
+      private Value[] values(final QueryContext qc) throws QueryException {
+        final int rl = refs.length;
+        final Value[] vals = new Value[rl];
+        for(int r = 0; r < rl; r++) vals[r] = refs[r].value(qc);
+        return vals;
       }
     };
   }
 
+  /**
+   * Compares the keys of two tuples.
+   * @param a keys of the first tuple
+   * @param b keys of the second tuple
+   * @return result of comparison
+   * @throws QueryException query exception
+   */
+  private int compare(final Item[] a, final Item[] b) throws QueryException {
+    final int kl = keys.length;
+    for(int k = 0; k < kl; k++) {
+      final Key key = keys[k];
+      Item m = a[k], n = b[k];
+      if(m == Dbl.NAN || m == Flt.NAN) m = null;
+      if(n == Dbl.NAN || n == Flt.NAN) n = null;
+      if(m != null && n != null && !m.comparable(n)) throw castError(n, m.type, key.info);
+
+      final int c = m == null
+          ? n == null ? 0                 : key.least ? -1 : 1
+          : n == null ? key.least ? 1 : -1 : m.diff(n, key.coll, key.info);
+      if(c != 0) return key.desc ? -c : c;
+    }
+    return 0;
+  }
+
+  /**
+   * Sorted runs of tuples, which are written to temporary files and merged.
+   * If the number of runs exceeds {@link #MERGE}, runs are merged in several passes.
+   */
+  private final class Runs {
+    /** Query context. */
+    private final QueryContext qc;
+    /** Spill files. */
+    private final Spill spill;
+    /** Heap with the current tuples of all runs (the run is stored after the keys). */
+    private final MinHeap<Item[], Integer> heap = new MinHeap<>(new Comparator<Item[]>() {
+      @Override
+      public int compare(final Item[] a, final Item[] b) {
+        try {
+          final int c = OrderBy.this.compare(a, b);
+          final int kl = keys.length;
+          return c != 0 ? c : Long.compare(((Int) a[kl]).itr(), ((Int) b[kl]).itr());
+        } catch(final QueryException ex) {
+          throw new QueryRTException(ex);
+        }
+      }
+    });
+    /** Files with sorted runs. */
+    private ArrayList<IOFile> files = new ArrayList<>();
+    /** Files of the runs that are currently merged. */
+    private IOFile[] merged;
+    /** Inputs of the runs that are currently merged. */
+    private DataInput[] inputs;
+    /** Number of remaining tuples of the runs that are currently merged. */
+    private int[] remaining;
+    /** Current keys of the runs that are currently merged. */
+    private Item[][] heads;
+    /** Current tuples of the runs that are currently merged. */
+    private Value[][] tuples;
+
+    /**
+     * Constructor.
+     * @param qc query context
+     */
+    Runs(final QueryContext qc) {
+      this.qc = qc;
+      spill = new Spill(qc, info);
+    }
+
+    /**
+     * Writes a sorted run to disk.
+     * @param ks keys
+     * @param tpls tuple values
+     * @param perm permutation
+     * @throws QueryException query exception
+     */
+    void write(final Item[][] ks, final Value[][] tpls, final Integer[] perm)
+        throws QueryException {
+      final IOFile file = spill.file();
+      files.add(file);
+      final DataOutput out = spill.output(file);
+      try {
+        out.writeNum(perm.length);
+        for(final int p : perm) {
+          for(final Item key : ks[p]) spill.write(out, key);
+          for(final Value value : tpls[p]) spill.write(out, value);
+        }
+      } catch(final IOException ex) {
+        throw IOERR_X.get(info, ex);
+      }
+      spill.close(file);
+    }
+
+    /**
+     * Prepares the merge of all runs. If the number of runs exceeds the maximum fan-in,
+     * groups of runs are merged to new runs until the maximum is reached.
+     * @throws QueryException query exception
+     */
+    void merge() throws QueryException {
+      while(files.size() > MERGE) {
+        final ArrayList<IOFile> runs = new ArrayList<>();
+        final int fs = files.size();
+        for(int f = 0; f < fs; f += MERGE) {
+          final List<IOFile> group = files.subList(f, Math.min(fs, f + MERGE));
+          if(group.size() == 1) {
+            runs.add(group.get(0));
+          } else {
+            final IOFile file = spill.file();
+            runs.add(file);
+            final int size = open(group);
+            final DataOutput out = spill.output(file);
+            try {
+              out.writeNum(size);
+              final int kl = keys.length;
+              for(int r; (r = poll()) != -1;) {
+                qc.checkStop();
+                final Item[] key = heads[r];
+                for(int k = 0; k < kl; k++) spill.write(out, key[k]);
+                for(final Value value : tuples[r]) spill.write(out, value);
+                read(r);
+              }
+            } catch(final IOException ex) {
+              throw IOERR_X.get(info, ex);
+            }
+            spill.close(file);
+          }
+        }
+        files = runs;
+      }
+      open(files);
+    }
+
+    /**
+     * Returns the next tuple.
+     * @return tuple, or {@code null} if all tuples have been returned
+     * @throws QueryException query exception
+     */
+    Value[] next() throws QueryException {
+      final int r = poll();
+      if(r == -1) return null;
+      final Value[] tuple = tuples[r];
+      try {
+        read(r);
+      } catch(final IOException ex) {
+        throw IOERR_X.get(info, ex);
+      }
+      return tuple;
+    }
+
+    /**
+     * Opens the specified runs and adds their first tuples to the heap.
+     * @param runs files of the runs
+     * @return total number of tuples
+     * @throws QueryException query exception
+     */
+    private int open(final List<IOFile> runs) throws QueryException {
+      final int rs = runs.size();
+      merged = runs.toArray(new IOFile[rs]);
+      inputs = new DataInput[rs];
+      remaining = new int[rs];
+      heads = new Item[rs][];
+      tuples = new Value[rs][];
+      int size = 0;
+      try {
+        for(int r = 0; r < rs; r++) {
+          inputs[r] = spill.input(merged[r]);
+          remaining[r] = inputs[r].readNum();
+          size += remaining[r];
+          read(r);
+        }
+      } catch(final IOException ex) {
+        throw IOERR_X.get(info, ex);
+      }
+      return size;
+    }
+
+    /**
+     * Removes the run with the smallest current tuple from the heap.
+     * @return run, or {@code -1} if all tuples have been returned
+     * @throws QueryException query exception
+     */
+    private int poll() throws QueryException {
+      if(heap.isEmpty()) return -1;
+      try {
+        return heap.removeMin();
+      } catch(final QueryRTException ex) {
+        throw ex.getCause();
+      }
+    }
+
+    /**
+     * Reads the next tuple of a run and adds it to the heap.
+     * Closes and deletes the file if the run is exhausted.
+     * @param r run
+     * @throws IOException I/O exception
+     * @throws QueryException query exception
+     */
+    private void read(final int r) throws IOException, QueryException {
+      if(remaining[r]-- == 0) {
+        spill.delete(merged[r]);
+        heads[r] = null;
+        tuples[r] = null;
+        return;
+      }
+      final DataInput in = inputs[r];
+      final int kl = keys.length, rl = refs.length;
+      final Item[] key = new Item[kl + 1];
+      for(int k = 0; k < kl; k++) key[k] = spill.readItem(in);
+      key[kl] = Int.get(r);
+      final Value[] tuple = new Value[rl];
+      for(int v = 0; v < rl; v++) tuple[v] = spill.readValue(in);
+      heads[r] = key;
+      tuples[r] = tuple;
+      try {
+        heap.insert(key, r);
+      } catch(final QueryRTException ex) {
+        throw ex.getCause();
+      }
+    }
+  }
+
+  /**
+   * Limits the number of tuples that will be requested from this clause.
+   * @param lim maximum number of tuples
+   */
+  void limit(final long lim) {
+    limit = Math.min(limit, lim);
+  }
+
   @Override
   public void plan(final FElem plan) {
-    final FElem e = planElem();
+    final FElem e = limit == Long.MAX_VALUE ? planElem() : planElem(LIMIT, limit);
     for(final Key key : keys) key.plan(e);
     plan.add(e);
   }
@@ -183,7 +498,9 @@ public final class OrderBy extends Clause {
 
   @Override
   public OrderBy copy(final CompileContext cc, final IntObjMap<Var> vm) {
-    return new OrderBy(Arr.copyAll(cc, vm, refs), Arr.copyAll(cc, vm, keys), info);
+    final OrderBy ob = new OrderBy(Arr.copyAll(cc, vm, refs), Arr.copyAll(cc, vm, keys), info);
+    ob.limit = limit;
+    return ob;
   }
 
   @Override
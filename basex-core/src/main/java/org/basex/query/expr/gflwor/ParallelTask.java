@@ -0,0 +1,211 @@
+package org.basex.query.expr.gflwor;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.basex.core.jobs.*;
+import org.basex.query.*;
+import org.basex.query.value.*;
+
+/**
+ * Task for evaluating the tuples of a FLWOR expression in parallel.
+ * Each chunk of items of the first for clause is evaluated with a separate query context,
+ * which adopts the variable bindings and the focus of the original context.
+ * If the evaluation of a chunk fails, the remaining tasks are cancelled.
+ *
+ * @author BaseX Team 2005-17, BSD License
+ * @author Christian Gruen
+ */
+final class ParallelTask extends RecursiveTask<Value> {
+  /** Serial version UID. */
+  private static final long serialVersionUID = 1L;
+  /** Shared pool for evaluating tasks (will be created on first use). */
+  private static ForkJoinPool pool;
+
+  /** State of the evaluation, which is shared by all tasks. */
+  private final State state;
+  /** FLWOR expression. */
+  private final GFLWOR flwor;
+  /** Items of the first for clause. */
+  private final Value items;
+  /** Query context. */
+  private final QueryContext qc;
+  /** Position of the first item. */
+  private final long start;
+  /** Position after the last item. */
+  private final long end;
+  /** Maximum number of items that are evaluated by a single task. */
+  private final long chunk;
+
+  /**
+   * Constructor.
+   * @param flwor FLWOR expression
+   * @param items items of the first for clause
+   * @param qc query context
+   * @param start position of the first item
+   * @param end position after the last item
+   * @param chunk maximum number of items that are evaluated by a single task
+   */
+  ParallelTask(final GFLWOR flwor, final Value items, final QueryContext qc, final long start,
+      final long end, final long chunk) {
+    this(new State(), flwor, items, qc, start, end, chunk);
+  }
+
+  /**
+   * Constructor for a subtask.
+   * @param task parent task
+   * @param start position of the first item
+   * @param end position after the last item
+   */
+  private ParallelTask(final ParallelTask task, final long start, final long end) {
+    this(task.state, task.flwor, task.items, task.qc, start, end, task.chunk);
+  }
+
+  /**
+   * Constructor.
+   * @param state shared state
+   * @param flwor FLWOR expression
+   * @param items items of the first for clause
+   * @param qc query context
+   * @param start position of the first item
+   * @param end position after the last item
+   * @param chunk maximum number of items that are evaluated by a single task
+   */
+  private ParallelTask(final State state, final GFLWOR flwor, final Value items,
+      final QueryContext qc, final long start, final long end, final long chunk) {
+    this.state = state;
+    this.flwor = flwor;
+    this.items = items;
+    this.qc = qc;
+    this.start = start;
+    this.end = end;
+    this.chunk = chunk;
+  }
+
+  /**
+   * Evaluates the task. If the current thread belongs to a fork/join pool, the task is
+   * evaluated in this pool. Otherwise, a shared pool is used.
+   * @return resulting value
+   * @throws QueryException query exception
+   */
+  Value evaluate() throws QueryException {
+    try {
+      return Thread.currentThread() instanceof ForkJoinWorkerThread ? invoke() :
+        pool().invoke(this);
+    } catch(final RuntimeException ex) {
+      // pass on the first error, query and job exceptions
+      final RuntimeException error = state.error(ex);
+      for(Throwable th = error; th != null; th = th.getCause()) {
+        if(th instanceof QueryException) throw (QueryException) th;
+        if(th instanceof JobException) throw (JobException) th;
+      }
+      throw error;
+    }
+  }
+
+  @Override
+  protected Value compute() {
+    final long s = start, e = end;
+    if(e - s > chunk) {
+      // split the work and join the results in the correct order
+      final long m = s + (e - s) / 2;
+      final ParallelTask task2 = new ParallelTask(this, m, e);
+      task2.fork();
+      final Value value1;
+      try {
+        value1 = new ParallelTask(this, s, m).compute();
+      } catch(final RuntimeException ex) {
+        task2.cancel(true);
+        throw ex;
+      }
+      return new ValueBuilder().add(value1).add(task2.join()).value();
+    }
+
+    // perform the work (skipped if another task has failed)
+    final QueryContext tqc = state.start(qc);
+    try {
+      tqc.stack.copyFrame(qc.stack);
+      final QueryFocus focus = new QueryFocus();
+      focus.value = qc.focus.value;
+      focus.pos = qc.focus.pos;
+      focus.size = qc.focus.size;
+      tqc.focus = focus;
+      tqc.date = qc.date;
+      tqc.datm = qc.datm;
+      tqc.time = qc.time;
+      tqc.zone = qc.zone;
+      tqc.nano = qc.nano;
+      tqc.maxCalls = qc.maxCalls;
+      return flwor.value(tqc, items, s, e);
+    } catch(final QueryException ex) {
+      throw state.fail(new QueryRTException(ex));
+    } catch(final RuntimeException ex) {
+      throw state.fail(ex);
+    } finally {
+      state.finish(tqc);
+      tqc.close();
+    }
+  }
+
+  /**
+   * Returns the shared pool.
+   * @return pool
+   */
+  private static synchronized ForkJoinPool pool() {
+    if(pool == null) pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    return pool;
+  }
+
+  /**
+   * State of a parallel evaluation.
+   */
+  private static final class State {
+    /** Query contexts of the running tasks. */
+    private final ArrayList<QueryContext> running = new ArrayList<>();
+    /** First error (can be {@code null}). */
+    private RuntimeException error;
+
+    /**
+     * Creates and registers a query context for a new task.
+     * @param qc query context
+     * @return query context of the task
+     * @throws CancellationException if another task has failed
+     */
+    synchronized QueryContext start(final QueryContext qc) {
+      if(error != null) throw new CancellationException();
+      final QueryContext tqc = new QueryContext(qc);
+      running.add(tqc);
+      return tqc;
+    }
+
+    /**
+     * Unregisters the query context of a finished task.
+     * @param tqc query context
+     */
+    synchronized void finish(final QueryContext tqc) {
+      running.remove(tqc);
+    }
+
+    /**
+     * Registers an error. If it is the first one, all running tasks are stopped.
+     * @param ex error
+     * @return error
+     */
+    synchronized RuntimeException fail(final RuntimeException ex) {
+      if(error == null) {
+        error = ex;
+        for(final QueryContext tqc : running) tqc.stop();
+      }
+      return ex;
+    }
+
+    /**
+     * Returns the first error, or the specified error if no error has been registered.
+     * @param ex error
+     * @return error
+     */
+    synchronized RuntimeException error(final RuntimeException ex) {
+      return error != null ? error : ex;
+    }
+  }
+}
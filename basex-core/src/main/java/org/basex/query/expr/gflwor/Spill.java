@@ -0,0 +1,294 @@
+package org.basex.query.expr.gflwor;
+
+import static org.basex.query.QueryError.*;
+
+import java.io.*;
+import java.util.*;
+
+import org.basex.data.*;
+import org.basex.io.*;
+import org.basex.io.in.DataInput;
+import org.basex.io.out.DataOutput;
+import org.basex.query.*;
+import org.basex.query.util.list.*;
+import org.basex.query.value.*;
+import org.basex.query.value.item.*;
+import org.basex.query.value.node.*;
+import org.basex.query.value.seq.*;
+import org.basex.query.value.type.*;
+import org.basex.util.*;
+
+/**
+ * Writes values of FLWOR clauses to temporary files and reads them back.
+ *
+ * Database nodes are written as references to their database and their pre value.
+ * Atomic items are written as values or strings. All other items, such as constructed nodes
+ * or function items, cannot be restored from a serialized representation. They are kept in
+ * main memory and referenced by their position. The items of a value are concluded by an
+ * end marker. Ranges of integers are kept in main memory as a whole.
+ *
+ * @author BaseX Team 2005-17, BSD License
+ * @author Christian Gruen
+ */
+final class Spill {
+  /** Item encoding: no item. */
+  private static final int NONE = 0;
+  /** Item encoding: item in main memory. */
+  private static final int MEMORY = 1;
+  /** Item encoding: database node. */
+  private static final int NODE = 2;
+  /** Item encoding: integer. */
+  private static final int INTEGER = 3;
+  /** Item encoding: double. */
+  private static final int DOUBLE = 4;
+  /** Item encoding: float. */
+  private static final int FLOAT = 5;
+  /** Item encoding: string. */
+  private static final int STRING = 6;
+  /** Item encoding: untyped atomic. */
+  private static final int UNTYPED = 7;
+  /** Item encoding: other atomic item, which is restored by a cast. */
+  private static final int ATOMIC = 8;
+  /** Value encoding: value in main memory. */
+  private static final int VALUE = 9;
+  /** Atomic types. */
+  private static final AtomType[] TYPES = AtomType.values();
+
+  /** Query context. */
+  private final QueryContext qc;
+  /** Input info. */
+  private final InputInfo info;
+  /** Temporary files. */
+  private final TempFiles files;
+  /** Databases of the written nodes. */
+  private final ArrayList<Data> datas = new ArrayList<>();
+  /** Items that are kept in main memory. */
+  private final ItemList items = new ItemList();
+  /** Values that are kept in main memory. */
+  private final ArrayList<Value> values = new ArrayList<>();
+
+  /**
+   * Constructor.
+   * @param qc query context
+   * @param info input info
+   */
+  Spill(final QueryContext qc, final InputInfo info) {
+    this.qc = qc;
+    this.info = info;
+    files = qc.resources.index(TempFiles.class);
+  }
+
+  /**
+   * Creates a temporary file.
+   * @return file
+   * @throws QueryException query exception
+   */
+  IOFile file() throws QueryException {
+    try {
+      return files.create();
+    } catch(final IOException ex) {
+      throw IOERR_X.get(info, ex);
+    }
+  }
+
+  /**
+   * Opens an output stream for a temporary file.
+   * The stream will be closed when the query is closed.
+   * @param file file
+   * @return output stream
+   * @throws QueryException query exception
+   */
+  DataOutput output(final IOFile file) throws QueryException {
+    try {
+      return files.output(file);
+    } catch(final IOException ex) {
+      throw IOERR_X.get(info, ex);
+    }
+  }
+
+  /**
+   * Opens an input stream for a temporary file.
+   * The stream will be closed when the query is closed.
+   * @param file file
+   * @return input stream
+   * @throws QueryException query exception
+   */
+  DataInput input(final IOFile file) throws QueryException {
+    try {
+      return files.input(file);
+    } catch(final IOException ex) {
+      throw IOERR_X.get(info, ex);
+    }
+  }
+
+  /**
+   * Closes the open stream of a temporary file.
+   * @param file file
+   * @throws QueryException query exception
+   */
+  void close(final IOFile file) throws QueryException {
+    try {
+      files.close(file);
+    } catch(final IOException ex) {
+      throw IOERR_X.get(info, ex);
+    }
+  }
+
+  /**
+   * Closes the open stream of a temporary file and deletes the file.
+   * @param file file
+   */
+  void delete(final IOFile file) {
+    files.delete(file);
+  }
+
+  /**
+   * Writes a value.
+   * @param out output stream
+   * @param value value
+   * @throws IOException I/O exception
+   * @throws QueryException query exception
+   */
+  void write(final DataOutput out, final Value value) throws IOException, QueryException {
+    if(value instanceof RangeSeq) {
+      out.write1(VALUE);
+      out.writeNum(values.size());
+      values.add(value);
+    } else {
+      for(final Item it : value) write(out, it);
+      out.write1(NONE);
+    }
+  }
+
+  /**
+   * Writes an item.
+   * @param out output stream
+   * @param item item (can be {@code null})
+   * @throws IOException I/O exception
+   * @throws QueryException query exception
+   */
+  void write(final DataOutput out, final Item item) throws IOException, QueryException {
+    if(item == null) {
+      out.write1(NONE);
+    } else if(item instanceof DBNode && !(item instanceof FTPosNode)) {
+      final DBNode node = (DBNode) item;
+      int d = datas.indexOf(node.data());
+      if(d == -1) {
+        d = datas.size();
+        datas.add(node.data());
+      }
+      out.write1(NODE);
+      out.writeNum(d);
+      out.writeNum(node.pre());
+    } else if(item instanceof Int) {
+      out.write1(INTEGER);
+      out.writeNum(((AtomType) item.type).ordinal());
+      write(out, ((Int) item).itr());
+    } else if(item instanceof Dbl) {
+      out.write1(DOUBLE);
+      write(out, Double.doubleToRawLongBits(((Dbl) item).dbl()));
+    } else if(item instanceof Flt) {
+      out.write1(FLOAT);
+      write(out, Float.floatToRawIntBits(((Flt) item).flt()));
+    } else if(item.type == AtomType.STR || item.type == AtomType.ATM) {
+      out.write1(item.type == AtomType.STR ? STRING : UNTYPED);
+      out.writeToken(item.string(info));
+    } else if(item instanceof AStr || item instanceof ADateDur || item instanceof Bin ||
+        item instanceof Dec || item instanceof Bln) {
+      out.write1(ATOMIC);
+      out.writeNum(((AtomType) item.type).ordinal());
+      out.writeToken(item.string(info));
+    } else {
+      out.write1(MEMORY);
+      out.writeNum(items.size());
+      items.add(item);
+    }
+  }
+
+  /**
+   * Reads a value.
+   * @param in input stream
+   * @return value
+   * @throws IOException I/O exception
+   * @throws QueryException query exception
+   */
+  Value readValue(final DataInput in) throws IOException, QueryException {
+    int enc = in.read();
+    if(enc == VALUE) return values.get(in.readNum());
+    if(enc == NONE) return Empty.SEQ;
+
+    final Item first = readItem(in, enc);
+    enc = in.read();
+    if(enc == NONE) return first;
+    final ValueBuilder vb = new ValueBuilder().add(first);
+    for(; enc != NONE; enc = in.read()) vb.add(readItem(in, enc));
+    return vb.value();
+  }
+
+  /**
+   * Reads an item.
+   * @param in input stream
+   * @return item (can be {@code null})
+   * @throws IOException I/O exception
+   * @throws QueryException query exception
+   */
+  Item readItem(final DataInput in) throws IOException, QueryException {
+    return readItem(in, in.read());
+  }
+
+  /**
+   * Reads an item with the specified encoding.
+   * @param in input stream
+   * @param enc item encoding
+   * @return item (can be {@code null})
+   * @throws IOException I/O exception
+   * @throws QueryException query exception
+   */
+  private Item readItem(final DataInput in, final int enc) throws IOException, QueryException {
+    switch(enc) {
+      case NONE:
+        return null;
+      case MEMORY:
+        return items.get(in.readNum());
+      case NODE:
+        final Data data = datas.get(in.readNum());
+        return new DBNode(data, in.readNum());
+      case INTEGER:
+        final AtomType type = TYPES[in.readNum()];
+        return Int.get(readLong(in), type);
+      case DOUBLE:
+        return Dbl.get(Double.longBitsToDouble(readLong(in)));
+      case FLOAT:
+        return Flt.get(Float.intBitsToFloat((int) readLong(in)));
+      case STRING:
+        return Str.get(in.readToken());
+      case UNTYPED:
+        return new Atm(in.readToken());
+      default:
+        final AtomType tp = TYPES[in.readNum()];
+        return tp.cast(Str.get(in.readToken()), qc, null, info);
+    }
+  }
+
+  /**
+   * Writes a long value.
+   * @param out output stream
+   * @param value value
+   * @throws IOException I/O exception
+   */
+  private static void write(final DataOutput out, final long value) throws IOException {
+    for(int s = 56; s >= 0; s -= 8) out.write1((int) (value >>> s));
+  }
+
+  /**
+   * Reads a long value.
+   * @param in input stream
+   * @return value
+   * @throws IOException I/O exception
+   */
+  private static long readLong(final DataInput in) throws IOException {
+    long value = 0;
+    for(int s = 0; s < 8; s++) value = value << 8 | in.read() & 0xFF;
+    return value;
+  }
+}
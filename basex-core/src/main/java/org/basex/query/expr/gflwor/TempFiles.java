@@ -0,0 +1,102 @@
+package org.basex.query.expr.gflwor;
+
+import java.io.*;
+import java.util.*;
+
+import org.basex.io.*;
+import org.basex.io.in.DataInput;
+import org.basex.io.out.DataOutput;
+import org.basex.query.*;
+import org.basex.util.*;
+
+/**
+ * Temporary files that are created during the evaluation of a query.
+ * Streams that have not been closed yet will be closed, and files that have not been deleted
+ * yet will be deleted when the query is closed.
+ *
+ * @author BaseX Team 2005-17, BSD License
+ * @author Christian Gruen
+ */
+public final class TempFiles implements QueryResource {
+  /** Files and their open streams ({@code null} if no stream is open). */
+  private final HashMap<IOFile, Closeable> files = new HashMap<>();
+
+  /**
+   * Creates a new temporary file.
+   * @return file
+   * @throws IOException I/O exception
+   */
+  synchronized IOFile create() throws IOException {
+    final IOFile file = new IOFile(File.createTempFile(Prop.NAME + '-', IO.TMPSUFFIX));
+    files.put(file, null);
+    return file;
+  }
+
+  /**
+   * Opens an output stream for a temporary file.
+   * @param file file
+   * @return output stream
+   * @throws IOException I/O exception
+   */
+  synchronized DataOutput output(final IOFile file) throws IOException {
+    close(file);
+    final DataOutput out = new DataOutput(file);
+    files.put(file, out);
+    return out;
+  }
+
+  /**
+   * Opens an input stream for a temporary file.
+   * @param file file
+   * @return input stream
+   * @throws IOException I/O exception
+   */
+  synchronized DataInput input(final IOFile file) throws IOException {
+    close(file);
+    final DataInput in = new DataInput(file);
+    files.put(file, in);
+    return in;
+  }
+
+  /**
+   * Closes the open stream of a temporary file.
+   * @param file file
+   * @throws IOException I/O exception
+   */
+  synchronized void close(final IOFile file) throws IOException {
+    final Closeable stream = files.put(file, null);
+    if(stream != null) stream.close();
+  }
+
+  /**
+   * Closes the open stream of a temporary file and deletes the file.
+   * @param file file
+   */
+  synchronized void delete(final IOFile file) {
+    close(file, files.remove(file));
+  }
+
+  @Override
+  public synchronized void close() {
+    for(final Map.Entry<IOFile, Closeable> entry : files.entrySet()) {
+      close(entry.getKey(), entry.getValue());
+    }
+    files.clear();
+  }
+
+  /**
+   * Closes a stream and deletes a file.
+   * @param file file
+   * @param stream stream (can be {@code null})
+   */
+  private static void close(final IOFile file, final Closeable stream) {
+    if(stream != null) {
+      try {
+        stream.close();
+      } catch(final IOException ex) {
+        Util.debug(ex);
+      }
+    }
+    file.delete();
+  }
+}
@@ -0,0 +1,80 @@
+package org.basex.query.expr.index;
+
+import static org.basex.query.QueryText.*;
+
+import org.basex.data.*;
+import org.basex.index.*;
+import org.basex.index.query.*;
+import org.basex.query.*;
+import org.basex.query.expr.*;
+import org.basex.query.func.*;
+import org.basex.query.iter.*;
+import org.basex.query.util.*;
+import org.basex.query.value.item.*;
+import org.basex.query.value.node.*;
+import org.basex.query.value.type.*;
+import org.basex.query.var.*;
+import org.basex.util.*;
+import org.basex.util.hash.*;
+
+/**
+ * This index class retrieves ranges of dates or dateTimes from the index.
+ *
+ * @author BaseX Team 2005-17, BSD License
+ * @author Christian Gruen
+ */
+public final class DateRangeAccess extends IndexAccess {
+  /** Index type. */
+  private final DateRange index;
+
+  /**
+   * Constructor.
+   * @param info input info
+   * @param index index reference
+   * @param ictx index context
+   */
+  public DateRangeAccess(final InputInfo info, final DateRange index, final IndexContext ictx) {
+    super(ictx, info);
+    this.index = index;
+  }
+
+  @Override
+  public BasicNodeIter iter(final QueryContext qc) {
+    final byte kind = index.type() == IndexType.TEXT ? Data.TEXT : Data.ATTR;
+    return new DBNodeIter(ictx.data) {
+      final IndexIterator it = data.iter(index);
+      @Override
+      public DBNode next() {
+        return it.more() ? new DBNode(data, it.pre(), kind) : null;
+      }
+    };
+  }
+
+  @Override
+  public Expr copy(final CompileContext cc, final IntObjMap<Var> vm) {
+    return new DateRangeAccess(info, index, ictx);
+  }
+
+  @Override
+  public void plan(final FElem plan) {
+    addPlan(plan, planElem(DATA, ictx.data.meta.name,
+        MIN, index.min != null ? index.min.string(info) : "",
+        MAX, index.max != null ? index.max.string(info) : "", TYPE, index.type()));
+  }
+
+  @Override
+  public String toString() {
+    final AtomType date = index.date();
+    final TokenBuilder tb = new TokenBuilder();
+    tb.add(Function._DB_OPEN.toString(Str.get(ictx.data.meta.name)));
+    tb.add(index.type() == IndexType.TEXT ? "//text()[" : "//@*[");
+    if(index.min != null) {
+      tb.add(index.mni ? ". >= " : ". > ").addExt(date).add('(').addExt(index.min).add(')');
+      if(index.max != null) tb.add(" and ");
+    }
+    if(index.max != null) {
+      tb.add(index.mxi ? ". <= " : ". < ").addExt(date).add('(').addExt(index.max).add(')');
+    }
+    return tb.add(']').toString();
+  }
+}
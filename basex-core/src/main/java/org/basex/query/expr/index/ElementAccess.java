@@ -0,0 +1,69 @@
+package org.basex.query.expr.index;
+
+import static org.basex.query.QueryText.*;
+
+import org.basex.data.*;
+import org.basex.index.*;
+import org.basex.index.query.*;
+import org.basex.query.*;
+import org.basex.query.expr.*;
+import org.basex.query.func.*;
+import org.basex.query.iter.*;
+import org.basex.query.util.*;
+import org.basex.query.value.item.*;
+import org.basex.query.value.node.*;
+import org.basex.query.value.type.*;
+import org.basex.query.var.*;
+import org.basex.util.*;
+import org.basex.util.hash.*;
+
+/**
+ * This index class retrieves elements with a specific name from the element index.
+ *
+ * @author BaseX Team 2005-17, BSD License
+ * @author Christian Gruen
+ */
+public final class ElementAccess extends IndexAccess {
+  /** Element name. */
+  private final byte[] name;
+
+  /**
+   * Constructor.
+   * @param info input info
+   * @param name element name
+   * @param ictx index context
+   */
+  public ElementAccess(final InputInfo info, final byte[] name, final IndexContext ictx) {
+    super(ictx, info);
+    this.name = name;
+    seqType = SeqType.ELM_ZM;
+  }
+
+  @Override
+  public BasicNodeIter iter(final QueryContext qc) {
+    return new DBNodeIter(ictx.data) {
+      final IndexIterator it = data.iter(new StringToken(IndexType.ELEMENT, name));
+      @Override
+      public DBNode next() {
+        return it.more() ? new DBNode(data, it.pre(), Data.ELEM) : null;
+      }
+    };
+  }
+
+  @Override
+  public Expr copy(final CompileContext cc, final IntObjMap<Var> vm) {
+    return copyType(new ElementAccess(info, name, ictx));
+  }
+
+  @Override
+  public void plan(final FElem plan) {
+    addPlan(plan, planElem(DATA, ictx.data.meta.name, NAM, name));
+  }
+
+  @Override
+  public String toString() {
+    final TokenBuilder tb = new TokenBuilder();
+    tb.add(Function._DB_OPEN.toString(Str.get(ictx.data.meta.name)));
+    return tb.add("/descendant::").add(name).toString();
+  }
+}
@@ -0,0 +1,135 @@
+package org.basex.query.expr.index;
+
+import static org.basex.query.QueryText.*;
+
+import java.util.*;
+
+import org.basex.data.*;
+import org.basex.index.*;
+import org.basex.index.query.*;
+import org.basex.query.*;
+import org.basex.query.expr.*;
+import org.basex.query.func.*;
+import org.basex.query.iter.*;
+import org.basex.query.util.*;
+import org.basex.query.value.item.*;
+import org.basex.query.value.node.*;
+import org.basex.query.var.*;
+import org.basex.util.*;
+import org.basex.util.hash.*;
+
+/**
+ * This index class retrieves texts and attribute values that contain all specified trigrams.
+ * The returned nodes are candidates, which need to be verified by the original predicate.
+ *
+ * @author BaseX Team 2005-17, BSD License
+ * @author Christian Gruen
+ */
+public final class TrigramAccess extends IndexAccess {
+  /** Trigrams. */
+  private final byte[][] trigrams;
+  /** Text or attribute nodes. */
+  private final boolean text;
+
+  /**
+   * Constructor.
+   * @param info input info
+   * @param trigrams trigrams
+   * @param text text or attribute nodes
+   * @param ictx index context
+   */
+  public TrigramAccess(final InputInfo info, final byte[][] trigrams, final boolean text,
+      final IndexContext ictx) {
+    super(ictx, info);
+    this.trigrams = trigrams;
+    this.text = text;
+  }
+
+  @Override
+  public BasicNodeIter iter(final QueryContext qc) {
+    final Data data = ictx.data;
+    final int tl = trigrams.length;
+    final IndexIterator[] iters = new IndexIterator[tl];
+    for(int t = 0; t < tl; t++) {
+      iters[t] = data.iter(new StringToken(IndexType.TRIGRAM, trigrams[t]));
+    }
+    // start with the most selective trigrams
+    Arrays.sort(iters, new Comparator<IndexIterator>() {
+      @Override
+      public int compare(final IndexIterator it1, final IndexIterator it2) {
+        return it1.size() - it2.size();
+      }
+    });
+
+    final byte kind = text ? Data.TEXT : Data.ATTR;
+    return new DBNodeIter(data) {
+      @Override
+      public DBNode next() {
+        for(int pre; (pre = intersect(iters)) != -1;) {
+          if(data.kind(pre) == kind) return new DBNode(data, pre, kind);
+        }
+        return null;
+      }
+    };
+  }
+
+  /**
+   * Returns the next pre value that is returned by all iterators.
+   * @param iters iterators
+   * @return pre value or {@code -1}
+   */
+  private static int intersect(final IndexIterator[] iters) {
+    final int il = iters.length;
+    if(!iters[0].more()) return -1;
+    int pre = iters[0].pre();
+    // advance the other iterators until all of them have reached the same pre value
+    for(int i = 1 % il, same = 1; same < il; i = (i + 1) % il) {
+      if(!advance(iters[i], pre)) return -1;
+      final int p = iters[i].pre();
+      if(p == pre) {
+        same++;
+      } else {
+        pre = p;
+        same = 1;
+      }
+    }
+    return pre;
+  }
+
+  /**
+   * Advances the iterator to the first pre value that is equal to or greater than the target.
+   * @param iter iterator
+   * @param target target pre value
+   * @return {@code true} if a pre value was found
+   */
+  private static boolean advance(final IndexIterator iter, final int target) {
+    if(iter instanceof IndexSkipIterator) return ((IndexSkipIterator) iter).advance(target);
+    while(iter.more()) {
+      if(iter.pre() >= target) return true;
+    }
+    return false;
+  }
+
+  @Override
+  public Expr copy(final CompileContext cc, final IntObjMap<Var> vm) {
+    return copyType(new TrigramAccess(info, trigrams, text, ictx));
+  }
+
+  @Override
+  public void plan(final FElem plan) {
+    final TokenBuilder tb = new TokenBuilder();
+    for(final byte[] trigram : trigrams) tb.add(tb.isEmpty() ? "" : ", ").add(trigram);
+    addPlan(plan, planElem(DATA, ictx.data.meta.name, TYP, text ? IndexType.TEXT :
+      IndexType.ATTRIBUTE, TRIGRAMS, tb));
+  }
+
+  @Override
+  public String toString() {
+    final TokenBuilder tb = new TokenBuilder();
+    tb.add(Function._DB_OPEN.toString(Str.get(ictx.data.meta.name)));
+    tb.add("//").add(text ? "text()" : "@*").add("[trigrams(");
+    final int tl = trigrams.length;
+    for(int t = 0; t < tl; t++) tb.add(t == 0 ? "" : ", ").add('"').add(trigrams[t]).add('"');
+    return tb.add(")]").toString();
+  }
+}
@@ -35,6 +35,8 @@ public final class ValueAccess extends IndexAccess {
   private final NameTest test;
   /** Trim search terms. */
   private boolean trim;
+  /** Ids of the paths of the requested nodes ({@code null}: path-qualified index is not used). */
+  private int[] paths;
 
   /**
    * Constructor.
@@ -62,6 +64,16 @@ public final class ValueAccess extends IndexAccess {
     return this;
   }
 
+  /**
+   * Assigns the ids of the paths of the requested nodes.
+   * @param ids path ids (can be {@code null})
+   * @return self reference
+   */
+  public ValueAccess paths(final int[] ids) {
+    paths = ids;
+    return this;
+  }
+
   @Override
   public BasicNodeIter iter(final QueryContext qc) throws QueryException {
     final ArrayList<BasicNodeIter> iter = new ArrayList<>();
@@ -96,7 +108,9 @@ public final class ValueAccess extends IndexAccess {
       index &= tl > 0 && tl <= data.meta.maxlen;
     }
 
-    final IndexIterator ii = index ? data.iter(new StringToken(type, term)) : scan(term);
+    final IndexIterator ii = !index ? scan(term) :
+      paths != null && data.meta.pathvalueindex ? paths(term) :
+      data.iter(new StringToken(type, term));
     final int kind = type == IndexType.TEXT ? Data.TEXT : Data.ATTR;
     final DBNode tmp = new DBNode(data, 0, test == null ? kind : Data.ELEM);
     return new DBNodeIter(data) {
@@ -116,6 +130,50 @@ public final class ValueAccess extends IndexAccess {
     };
   }
 
+  /**
+   * Returns an iterator for the path-qualified value index.
+   * The results of the requested paths are merged in ascending order.
+   * @param term term to be found
+   * @return iterator
+   */
+  private IndexIterator paths(final byte[] term) {
+    final Data data = ictx.data;
+    final int pl = paths.length;
+    if(pl == 1) return data.iter(new PathToken(paths[0], term));
+
+    final IndexIterator[] iters = new IndexIterator[pl];
+    int sz = 0;
+    for(int p = 0; p < pl; p++) {
+      iters[p] = data.iter(new PathToken(paths[p], term));
+      sz += iters[p].size();
+    }
+    final int size = sz;
+    return new IndexIterator() {
+      final int[] pres = new int[pl];
+      int pre;
+
+      @Override
+      public boolean more() {
+        // advance all iterators that returned the last result
+        int min = Integer.MAX_VALUE;
+        for(int p = 0; p < pl; p++) {
+          if(pres[p] == pre) pres[p] = iters[p].more() ? iters[p].pre() : Integer.MAX_VALUE;
+          if(pres[p] < min) min = pres[p];
+        }
+        pre = min;
+        return min != Integer.MAX_VALUE;
+      }
+      @Override
+      public int pre() {
+        return pre;
+      }
+      @Override
+      public int size() {
+        return size;
+      }
+    };
+  }
+
   /**
    * Returns a scan-based index iterator, which looks for text nodes with the specified value.
    * @param value value to be looked up
@@ -199,7 +257,7 @@ public final class ValueAccess extends IndexAccess {
 
   @Override
   public Expr copy(final CompileContext cc, final IntObjMap<Var> vm) {
-    return copyType(new ValueAccess(info, expr.copy(cc, vm), type, test, ictx));
+    return copyType(new ValueAccess(info, expr.copy(cc, vm), type, test, ictx).paths(paths));
   }
 
   @Override
@@ -214,7 +272,8 @@ public final class ValueAccess extends IndexAccess {
 
   @Override
   public void plan(final FElem plan) {
-    addPlan(plan, planElem(DATA, ictx.data.meta.name, TYP, type, NAM, test), expr);
+    addPlan(plan, planElem(DATA, ictx.data.meta.name, TYP, type, NAM, test,
+        PATHS, paths != null ? Arrays.toString(paths) : null), expr);
   }
 
   @Override
@@ -7,7 +7,9 @@ import java.util.*;
 
 import org.basex.core.locks.*;
 import org.basex.data.*;
+import org.basex.index.*;
 import org.basex.index.path.*;
+import org.basex.index.query.*;
 import org.basex.query.*;
 import org.basex.query.expr.constr.*;
 import org.basex.query.expr.index.*;
@@ -35,6 +37,10 @@ public abstract class Path extends ParseExpr {
   /** XPath axes that are expected to be expensive when at the start of a path. */
   private static final EnumSet<Axis> EXPENSIVE =
       EnumSet.of(DESC, DESCORSELF, PREC, PRECSIBL, FOLL, FOLLSIBL);
+  /** Maximum ratio between the costs of index accesses whose results will be intersected. */
+  private static final int INTERSECT = 4;
+  /** Minimum ratio between the database size and the costs of an element index access. */
+  private static final int SELECTIVE = 10;
 
   /** Root expression. */
   public Expr root;
@@ -627,6 +633,9 @@ public abstract class Path extends ParseExpr {
    *
    * Queries of type 1, 3, 5 will not yield any results if the string to be compared is empty.
    *
+   * If an element index exists, descendant steps with selective element names will be
+   * rewritten to {@link ElementAccess} instances.
+   *
    * @param cc compilation context
    * @param rt root value (can be {@code null})
    * @return original or new expression
@@ -643,6 +652,8 @@ public abstract class Path extends ParseExpr {
     IndexInfo index = null;
     // cheapest predicate and step
     int iPred = 0, iStep = 0;
+    // index accesses of all predicates of the cheapest step
+    IndexInfo[] infos = null;
 
     // check if path can be converted to an index access
     final int sl = steps.length;
@@ -653,14 +664,16 @@ public abstract class Path extends ParseExpr {
       if(step == null || !step.axis.down || step.has(Flag.POS)) break;
 
       // check if path is iterable (i.e., will be duplicate-free)
-      final boolean iter = pathNodes(data, s) != null;
-      final IndexContext ictx = new IndexContext(data, iter);
+      final ArrayList<PathNode> nodes = pathNodes(data, s);
+      final IndexContext ictx = new IndexContext(data, nodes != null, nodes);
 
       // choose cheapest index access
       final int pl = step.preds.length;
+      final IndexInfo[] iis = new IndexInfo[pl];
       for(int p = 0; p < pl; p++) {
         final IndexInfo ii = new IndexInfo(ictx, cc.qc, step);
         if(!step.preds[p].indexAccessible(ii)) continue;
+        iis[p] = ii;
 
         if(ii.costs == 0) {
           // no results...
@@ -672,16 +685,47 @@ public abstract class Path extends ParseExpr {
           index = ii;
           iPred = p;
           iStep = s;
+          infos = iis;
+        }
+      }
+
+      // choose element index if the step name is selective (no predicate will be consumed)
+      final IndexInfo ii = element(ictx, cc, step);
+      if(ii != null) {
+        if(ii.costs == 0) {
+          cc.info(OPTNOINDEX, this);
+          return Empty.SEQ;
+        }
+        if(index == null || index.costs > ii.costs) {
+          index = ii;
+          iPred = -1;
+          iStep = s;
+          infos = iis;
         }
       }
     }
 
-    // skip rewriting if no index access is possible, or if it is too expensive
-    if(index == null || index.costs > data.meta.size) return this;
+    // skip rewriting if no index access is possible, or if it is more expensive than a scan
+    if(index == null || index.costs > scanCosts(data, iStep)) return this;
 
     // rewrite for index access
     cc.info(index.optInfo);
 
+    // choose other index accesses of the same step with similar costs
+    final boolean[] intersect = iPred == -1 ? null : intersect(index, infos, iPred);
+    final ExprList inter = new ExprList();
+    if(intersect != null) {
+      final int il = infos.length;
+      final int[] costs = new int[il];
+      for(int i = 0; i < il; i++) costs[i] = infos[i] != null ? infos[i].costs : 0;
+      // evaluate accesses with higher selectivity first
+      for(final int i : Array.createOrder(costs, true)) {
+        if(!intersect[i]) continue;
+        if(i != iPred) cc.info(infos[i].optInfo);
+        inter.add(infos[i].expr);
+      }
+    }
+
     // invert steps that occur before index step and add them as predicate
     final ExprList newPreds = new ExprList();
     final Test test = InvDocTest.get(rt);
@@ -705,13 +749,19 @@ public abstract class Path extends ParseExpr {
     final Step indexStep = index.step;
     final int pl = indexStep.preds.length;
     for(int p = 0; p < pl; p++) {
-      if(p != iPred) newPreds.add(indexStep.preds[p]);
+      // keep predicates of index accesses that only return candidates
+      if((intersect != null ? !intersect[p] : p != iPred) || infos[p] != null && infos[p].verify) {
+        newPreds.add(indexStep.preds[p]);
+      }
     }
 
     // create resulting expression
     final ExprList resultSteps = new ExprList();
     final Expr resultRoot;
-    if(index.expr instanceof Path) {
+    if(!inter.isEmpty()) {
+      // intersect results of index accesses
+      resultRoot = new InterSect(info, inter.finish()).optimize(cc);
+    } else if(index.expr instanceof Path) {
       final Path p = (Path) index.expr;
       resultRoot = p.root;
       resultSteps.add(p.steps);
@@ -745,6 +795,93 @@ public abstract class Path extends ParseExpr {
     return resultSteps.isEmpty() ? resultRoot : get(info, resultRoot, resultSteps.finish());
   }
 
+  /**
+   * Returns an element index access for the specified step, or {@code null} if the element
+   * index cannot be used, or if the element name is not selective enough.
+   * @param ictx index context
+   * @param cc compilation context
+   * @param step step
+   * @return index info or {@code null}
+   */
+  private IndexInfo element(final IndexContext ictx, final CompileContext cc, final Step step) {
+    // skip if index does not exist, if namespaces occur, or if name test is not simple.
+    // only consider descendant steps, as child steps will not traverse the whole database
+    final Data data = ictx.data;
+    if(!data.meta.elemindex || !data.nspaces.isEmpty() || step.axis != DESC ||
+        step.test.type != NodeType.ELM || step.test.kind != Kind.NAME) return null;
+
+    final byte[] name = step.test.name.local();
+    final int costs = data.costs(new StringToken(IndexType.ELEMENT, name));
+    if(costs > data.meta.size / SELECTIVE) return null;
+
+    final IndexInfo ii = new IndexInfo(ictx, cc.qc, step);
+    ii.costs = costs;
+    ii.expr = new ElementAccess(info, name, ictx);
+    ii.optInfo = Util.info(OPTINDEX_X_X, IndexType.ELEMENT, step.test);
+    return ii;
+  }
+
+  /**
+   * Estimates the number of nodes that will be visited when the steps of the path are evaluated
+   * sequentially, up to the specified step. The estimate is based on the path summary.
+   * @param data data reference
+   * @param last last step
+   * @return number of nodes (database size if no estimate is possible)
+   */
+  private long scanCosts(final Data data, final int last) {
+    final long size = data.meta.size;
+    if(!data.meta.uptodate) return size;
+
+    long costs = 0;
+    ArrayList<PathNode> nodes = data.paths.root();
+    for(int s = 0; s <= last; s++) {
+      final Step curr = axisStep(s);
+      if(curr.axis != DESC && curr.axis != CHILD || curr.test.kind != Kind.NAME ||
+          curr.test.type != NodeType.ELM) return size;
+
+      // the test matches all names with the same local name, including prefixed ones
+      final byte[] local = curr.test.name.local();
+      final ArrayList<PathNode> tmp = new ArrayList<>();
+      for(final PathNode node : PathIndex.desc(nodes, curr.axis == DESC)) {
+        // all traversed nodes will be tested
+        costs += node.stats.count;
+        if(node.kind == Data.ELEM && Token.eq(local, Token.local(data.elemNames.key(node.name)))) {
+          tmp.add(node);
+        }
+      }
+      nodes = tmp;
+    }
+    return Math.min(size, costs);
+  }
+
+  /**
+   * Chooses index accesses whose results will be intersected with the results of the
+   * cheapest index access. The results of an index access will only be included if its
+   * costs are of similar magnitude, as it will be cheaper to filter a small number of
+   * results than to traverse a large number of index entries.
+   * @param index cheapest index access
+   * @param infos index accesses of all predicates of the step (entries can be {@code null})
+   * @param iPred predicate of the cheapest index access
+   * @return predicates to be intersected, or {@code null} if no other index access was chosen
+   */
+  private static boolean[] intersect(final IndexInfo index, final IndexInfo[] infos,
+      final int iPred) {
+
+    final int il = infos.length;
+    final boolean[] intersect = new boolean[il];
+    boolean found = false;
+    for(int i = 0; i < il; i++) {
+      final IndexInfo ii = infos[i];
+      if(i != iPred && ii != null && ii.costs / INTERSECT <= index.costs) {
+        intersect[i] = true;
+        found = true;
+      }
+    }
+    if(!found) return null;
+    intersect[iPred] = true;
+    return intersect;
+  }
+
   /**
    * Checks if steps before index step need to be inverted and traversed.
    * @param data data reference
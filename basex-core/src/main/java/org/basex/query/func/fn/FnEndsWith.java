@@ -2,9 +2,11 @@ package org.basex.query.func.fn;
 
 import org.basex.query.*;
 import org.basex.query.func.*;
+import org.basex.query.util.*;
 import org.basex.query.util.collation.*;
 import org.basex.query.value.item.*;
 import org.basex.util.*;
+import org.basex.util.list.*;
 
 /**
  * Function implementation.
@@ -19,4 +21,11 @@ public final class FnEndsWith extends StandardFunc {
     final Collation coll = toCollation(2, qc);
     return Bln.get(coll == null ? Token.endsWith(ss, sb) : coll.endsWith(ss, sb, info));
   }
+
+  @Override
+  public boolean indexAccessible(final IndexInfo ii) {
+    // support limited to default collation and static search strings
+    return exprs.length == 2 && sc.collation == null && exprs[1] instanceof Str &&
+        ii.trigrams(exprs[0], new TokenList().add(((Str) exprs[1]).string()), info);
+  }
 }
@@ -2,6 +2,7 @@ package org.basex.query.func.fn;
 
 import org.basex.query.*;
 import org.basex.query.expr.*;
+import org.basex.query.expr.gflwor.*;
 import org.basex.query.func.*;
 import org.basex.query.value.item.*;
 import org.basex.query.value.type.*;
@@ -23,6 +24,7 @@ public final class FnHead extends StandardFunc {
 
   @Override
   protected Expr opt(final CompileContext cc) {
+    if(exprs[0] instanceof GFLWOR) ((GFLWOR) exprs[0]).limit(1, cc);
     seqType = SeqType.get(exprs[0].seqType().type, Occ.ZERO_ONE);
     return this;
   }
@@ -5,8 +5,10 @@ import static org.basex.util.Token.*;
 import java.util.regex.*;
 
 import org.basex.query.*;
+import org.basex.query.util.*;
 import org.basex.query.value.item.*;
 import org.basex.util.*;
+import org.basex.util.list.*;
 
 /**
  * Function implementation.
@@ -21,4 +23,146 @@ public final class FnMatches extends RegEx {
     final Pattern p = pattern(exprs[1], exprs.length == 3 ? exprs[2] : null, qc, false);
     return Bln.get(p.matcher(string(value)).find());
   }
+
+  @Override
+  public boolean indexAccessible(final IndexInfo ii) {
+    // support limited to static patterns, and to flags that do not change the matched strings
+    if(!(exprs[1] instanceof Str)) return false;
+    byte[] flags = EMPTY;
+    if(exprs.length == 3) {
+      if(!(exprs[2] instanceof Str)) return false;
+      flags = ((Str) exprs[2]).string();
+      for(final byte flag : flags) {
+        if(flag != 's' && flag != 'm' && flag != 'q') return false;
+      }
+    }
+    // skip invalid patterns: errors will be raised at runtime
+    try {
+      pattern(exprs[1], exprs.length == 3 ? exprs[2] : null, ii.qc, false);
+    } catch(final QueryException ex) {
+      Util.debug(ex);
+      return false;
+    }
+
+    final byte[] pattern = ((Str) exprs[1]).string();
+    final TokenList strings = contains(flags, 'q') ? new TokenList().add(pattern) :
+      literals(pattern);
+    return !strings.isEmpty() && ii.trigrams(exprs[0], strings, info);
+  }
+
+  /**
+   * Returns literal strings of a regular expression that must occur in all matching strings.
+   * Example: {@code abc+d.*efg} -> {@code abc}, {@code efg}
+   * @param pattern pattern
+   * @return strings (empty if no required string was found)
+   */
+  private static TokenList literals(final byte[] pattern) {
+    final TokenList list = new TokenList();
+    final TokenBuilder tb = new TokenBuilder();
+    // start of the last codepoint that has been added to the current string
+    int last = -1;
+    final int pl = pattern.length;
+    for(int p = 0; p < pl;) {
+      final int cp = cp(pattern, p);
+      final int l = cl(pattern, p);
+      if(cp == '|') {
+        // top-level alternatives: no string is required
+        return new TokenList();
+      } else if(cp == '\\' && p + 1 < pl) {
+        final byte ch = pattern[p + 1];
+        final int esc = ch == 'n' ? '\n' : ch == 'r' ? '\r' : ch == 't' ? '\t' :
+          contains(token("\\|.-^?*+{}()[]$"), ch) ? ch : -1;
+        if(esc != -1) {
+          last = tb.size();
+          tb.add(esc);
+          p += 2;
+        } else {
+          // character class escapes and back-references
+          add(list, tb);
+          last = -1;
+          if(ch == 'p' || ch == 'P') {
+            p = curly(pattern, p);
+          } else {
+            // skip all digits: they may belong to a back-reference with multiple digits
+            p += 2;
+            if(digit(ch)) while(p < pl && digit(pattern[p])) p++;
+          }
+        }
+        continue;
+      } else if(cp == '(' || cp == '[') {
+        add(list, tb);
+        last = -1;
+        p = skip(pattern, p);
+        continue;
+      } else if(cp == '?' || cp == '*' || cp == '+' || cp == '{') {
+        // quantifiers: drop optional character, keep required character
+        final boolean optional = cp == '?' || cp == '*' ||
+          cp == '{' && p + 1 < pl && pattern[p + 1] == '0';
+        if(optional && last != -1) tb.size(last);
+        add(list, tb);
+        last = -1;
+        if(cp == '{') {
+          p = curly(pattern, p);
+          continue;
+        }
+      } else if(cp == '.' || cp == '^' || cp == '$' || cp == ')' || cp == ']' || cp == '}') {
+        add(list, tb);
+        last = -1;
+      } else {
+        last = tb.size();
+        tb.add(pattern, p, p + l);
+      }
+      p += l;
+    }
+    add(list, tb);
+    return list;
+  }
+
+  /**
+   * Adds the current string to the list if it consists of at least one trigram,
+   * and resets the token builder.
+   * @param list list
+   * @param tb token builder
+   */
+  private static void add(final TokenList list, final TokenBuilder tb) {
+    if(tb.size() >= 3) list.add(tb.toArray());
+    tb.reset();
+  }
+
+  /**
+   * Skips a quantifier or a category escape with curly braces.
+   * @param pattern pattern
+   * @param pos current position
+   * @return position after the closing brace
+   */
+  private static int curly(final byte[] pattern, final int pos) {
+    final int pl = pattern.length;
+    for(int p = pos; p < pl; p++) {
+      if(pattern[p] == '}') return p + 1;
+    }
+    return pl;
+  }
+
+  /**
+   * Skips a group or character class.
+   * @param pattern pattern
+   * @param pos position of the opening parenthesis or bracket
+   * @return position after the closing parenthesis or bracket
+   */
+  private static int skip(final byte[] pattern, final int pos) {
+    final byte open = pattern[pos], close = open == '(' ? (byte) ')' : (byte) ']';
+    final int pl = pattern.length;
+    for(int p = pos + 1; p < pl;) {
+      final byte ch = pattern[p];
+      if(ch == close) return p + 1;
+      if(ch == '\\') {
+        p += 2;
+      } else if(ch == '[' || ch == '(' && open == '(') {
+        p = skip(pattern, p);
+      } else {
+        p++;
+      }
+    }
+    return pl;
+  }
 }
@@ -2,6 +2,7 @@ package org.basex.query.func.fn;
 
 import org.basex.query.*;
 import org.basex.query.expr.*;
+import org.basex.query.expr.gflwor.*;
 import org.basex.query.func.*;
 import org.basex.query.func.util.*;
 import org.basex.query.iter.*;
@@ -136,6 +137,12 @@ public class FnSubsequence extends StandardFunc {
 
   @Override
   protected Expr opt(final CompileContext cc) {
+    if(exprs[0] instanceof GFLWOR && exprs.length == 3 && exprs[1] instanceof Int &&
+        exprs[2] instanceof Int) {
+      // limit number of results: compute position of last requested item
+      final long start = ((Int) exprs[1]).itr(), end = ((Int) exprs[2]).itr();
+      ((GFLWOR) exprs[0]).limit(this instanceof UtilItemRange ? end : start + end - 1, cc);
+    }
     final SeqType st = exprs[0].seqType();
     seqType = SeqType.get(st.type, st.zeroOrOne() ? Occ.ZERO_ONE : Occ.ZERO_MORE);
     return this;
@@ -2,6 +2,7 @@ package org.basex.query.func.util;
 
 import org.basex.query.*;
 import org.basex.query.expr.*;
+import org.basex.query.expr.gflwor.*;
 import org.basex.query.func.*;
 import org.basex.query.iter.*;
 import org.basex.query.value.item.*;
@@ -37,6 +38,8 @@ public final class UtilItemAt extends StandardFunc {
 
   @Override
   protected Expr opt(final CompileContext cc) {
+    if(exprs[0] instanceof GFLWOR && exprs[1] instanceof Int)
+      ((GFLWOR) exprs[0]).limit(((Int) exprs[1]).itr(), cc);
     seqType = exprs[0].seqType().withOcc(Occ.ZERO_ONE);
     return this;
   }
@@ -46,7 +46,10 @@ public final class DBOptimize extends DBUpdate {
 
     final ArrayList<Option<?>> supported = new ArrayList<>();
     for(final Option<?> option : DBOptions.INDEXING) {
-      if(all || option != MainOptions.UPDINDEX) supported.add(option);
+      if(all || option != MainOptions.UPDINDEX && option != MainOptions.COMPRESSION &&
+          option != MainOptions.DEDUPLICATE) {
+        supported.add(option);
+      }
     }
     options = new DBOptions(opts, supported, info);
   }
@@ -68,6 +71,9 @@ public final class DBOptimize extends DBUpdate {
     options.assignIfEmpty(MainOptions.ATTRINDEX, meta.createattr);
     options.assignIfEmpty(MainOptions.TOKENINDEX, meta.createtoken);
     options.assignIfEmpty(MainOptions.FTINDEX, meta.createft);
+    options.assignIfEmpty(MainOptions.ELEMINDEX, meta.createelem);
+    options.assignIfEmpty(MainOptions.PATHVALUEINDEX, meta.createpathvalue);
+    options.assignIfEmpty(MainOptions.TRIGRAMINDEX, meta.createtrigram);
     options.assignIfEmpty(MainOptions.TEXTINCLUDE, meta.textinclude);
     options.assignIfEmpty(MainOptions.ATTRINCLUDE, meta.attrinclude);
     options.assignIfEmpty(MainOptions.TOKENINCLUDE, meta.tokeninclude);
@@ -75,6 +81,8 @@ public final class DBOptimize extends DBUpdate {
     options.assignIfEmpty(MainOptions.SPLITSIZE, meta.splitsize);
     options.assignIfEmpty(MainOptions.UPDINDEX, meta.updindex);
     options.assignIfEmpty(MainOptions.AUTOOPTIMIZE, meta.autooptimize);
+    options.assignIfEmpty(MainOptions.COMPRESSION, meta.compression);
+    options.assignIfEmpty(MainOptions.DEDUPLICATE, meta.deduplicate);
     options.assignTo(opts);
 
     // adopt options to database meta data
@@ -82,6 +90,9 @@ public final class DBOptimize extends DBUpdate {
     meta.createattr = opts.get(MainOptions.ATTRINDEX);
     meta.createtoken = opts.get(MainOptions.TOKENINDEX);
     meta.createft = opts.get(MainOptions.FTINDEX);
+    meta.createelem = opts.get(MainOptions.ELEMINDEX);
+    meta.createpathvalue = opts.get(MainOptions.PATHVALUEINDEX);
+    meta.createtrigram = opts.get(MainOptions.TRIGRAMINDEX);
 
     meta.updindex = opts.get(MainOptions.UPDINDEX);
     meta.autooptimize = opts.get(MainOptions.AUTOOPTIMIZE);
@@ -63,6 +63,16 @@ public abstract class ASTVisitor {
     return true;
   }
 
+  /**
+   * Notifies the visitor of a built-in function call.
+   * @param call function call
+   * @return if more expressions should be visited
+   */
+  @SuppressWarnings("unused")
+  public boolean funcCall(final StandardFunc call) {
+    return true;
+  }
+
   /**
    * Notifies the visitor of a dynamic function call.
    * @param call function call
@@ -1,6 +1,9 @@
 package org.basex.query.util;
 
+import java.util.*;
+
 import org.basex.data.*;
+import org.basex.index.path.*;
 
 /**
  * This class contains data required for index operations.
@@ -13,6 +16,8 @@ public final class IndexContext {
   public final Data data;
   /** Flag for iterative evaluation. */
   public final boolean iterable;
+  /** Path summary nodes of the current step (can be {@code null}). */
+  public final ArrayList<PathNode> nodes;
 
   /**
    * Constructor.
@@ -20,7 +25,18 @@ public final class IndexContext {
    * @param iterable iterable flag
    */
   public IndexContext(final Data data, final boolean iterable) {
+    this(data, iterable, null);
+  }
+
+  /**
+   * Constructor.
+   * @param data data reference
+   * @param iterable iterable flag
+   * @param nodes path summary nodes of the current step (can be {@code null})
+   */
+  public IndexContext(final Data data, final boolean iterable, final ArrayList<PathNode> nodes) {
     this.data = data;
     this.iterable = iterable;
+    this.nodes = nodes;
   }
 }
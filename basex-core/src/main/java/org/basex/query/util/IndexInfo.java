@@ -6,8 +6,11 @@ import java.util.*;
 
 import org.basex.data.*;
 import org.basex.index.*;
+import org.basex.index.name.*;
+import org.basex.index.path.*;
 import org.basex.index.query.*;
 import org.basex.index.stats.*;
+import org.basex.index.value.*;
 import org.basex.query.*;
 import org.basex.query.expr.*;
 import org.basex.query.expr.Expr.*;
@@ -21,6 +24,7 @@ import org.basex.query.value.type.*;
 import org.basex.query.value.type.SeqType.*;
 import org.basex.util.*;
 import org.basex.util.hash.*;
+import org.basex.util.list.*;
 
 /**
  * This class contains methods for storing information on new index expressions.
@@ -47,6 +51,8 @@ public final class IndexInfo {
   /** Costs of index access. 0 = no results; 1 = exactly one results;
    * all other values may be estimates (the smaller, the better). */
   public int costs;
+  /** Indicates if the index returns candidates, which must be verified by the predicate. */
+  public boolean verify;
 
   /** Predicate expression. */
   private Expr pred;
@@ -118,6 +124,7 @@ public final class IndexInfo {
     if(value.isValue()) {
       // loop through all items
       costs = 0;
+      final int[] paths = paths(type);
       final Iter ir = value.iter(qc);
       final ArrayList<ValueAccess> tmp = new ArrayList<>();
       final TokenSet strings = new TokenSet();
@@ -133,10 +140,25 @@ public final class IndexInfo {
         // add only expressions that yield results and that have not been requested before
         if(!strings.contains(string)) {
           strings.put(string);
-          final int c = data.costs(new StringToken(type, string));
+          int c = 0;
+          int[] ids = null;
+          if(paths == null) {
+            c = data.costs(new StringToken(type, string));
+          } else {
+            // path-qualified index: only consider paths that yield results
+            final IntList list = new IntList(paths.length);
+            for(final int path : paths) {
+              final int pc = data.costs(new PathToken(path, string));
+              if(pc > 0) {
+                list.add(path);
+                c += pc;
+              }
+            }
+            ids = list.finish();
+          }
           if(c < 0) return false;
           if(c > 0) {
-            final ValueAccess va = new ValueAccess(info, it, type, test, ic).trim(trim);
+            final ValueAccess va = new ValueAccess(info, it, type, test, ic).trim(trim).paths(ids);
             tmp.add(va);
             if(c == 1) va.seqType = va.seqType().withOcc(Occ.ZERO_ONE);
             costs += c;
@@ -156,15 +178,57 @@ public final class IndexInfo {
       if(!value.seqType().type.isStringOrUntyped() || value.has(Flag.CTX) || value.has(Flag.NDT) ||
         value.has(Flag.UPD)) return false;
 
-      // estimate costs (tend to worst case)
-      costs = Math.max(1, data.meta.size / 10);
-      root = new ValueAccess(info, value, type, test, ic);
+      // estimate costs
+      costs = costs(type);
+      root = new ValueAccess(info, value, type, test, ic).paths(paths(type));
     }
 
     create(root, false, info, Util.info(OPTINDEX_X_X, type, value));
     return true;
   }
 
+  /**
+   * Tries to rewrite the specified input for trigram index access. The index access returns
+   * texts or attribute values that contain all trigrams of the specified strings.
+   * @param input input (if {@code null}, no optimization will be possible)
+   * @param strings strings that must occur in the input
+   * @param info input info
+   * @return success flag
+   */
+  public boolean trigrams(final Expr input, final TokenList strings, final InputInfo info) {
+    if(type(input, IndexType.TRIGRAM) == null) return false;
+
+    final TokenSet set = new TokenSet();
+    final TokenList list = new TokenList();
+    for(final byte[] string : strings) {
+      for(final byte[] trigram : Trigrams.distinct(string)) {
+        if(set.add(trigram)) list.add(trigram);
+      }
+    }
+    if(list.isEmpty()) return false;
+
+    // costs of the most selective trigram
+    final Data data = ic.data;
+    final byte[][] trigrams = list.finish();
+    costs = Integer.MAX_VALUE;
+    for(final byte[] trigram : trigrams) {
+      final int c = data.costs(new StringToken(IndexType.TRIGRAM, trigram));
+      if(c < 0) return false;
+      costs = Math.min(costs, c);
+    }
+    // results are only candidates: exact number of results is unknown
+    if(costs != 0) costs = Math.max(2, costs);
+    verify = true;
+
+    final TokenBuilder tb = new TokenBuilder();
+    for(final byte[] string : strings) {
+      tb.add(tb.isEmpty() ? "" : ", ").add('"').add(string).add('"');
+    }
+    create(new TrigramAccess(info, trigrams, text, ic), true, info,
+        Util.info(OPTINDEX_X_X, IndexType.TRIGRAM, tb));
+    return true;
+  }
+
   /**
    * Creates an index expression with an inverted axis path.
    * @param root new root expression
@@ -193,10 +257,92 @@ public final class IndexInfo {
       type == IndexType.FULLTEXT ? text :
       type == IndexType.TOKEN ? !text :
       type == IndexType.TEXT ? text :
+      type == IndexType.TRIGRAM ? text || last.test.type == NodeType.ATT :
       !text && last.test.type == NodeType.ATT
     );
   }
 
+  /**
+   * Estimates the costs for a value that is unknown at compile time.
+   * If statistics are available, the average number of occurrences of a distinct value is
+   * returned. Otherwise, costs tend to the worst case.
+   * @param type index type
+   * @return costs (never {@code 0} or {@code 1}, as results are not known in advance)
+   */
+  private int costs(final IndexType type) {
+    final Data data = ic.data;
+    final int costs = Math.max(2, data.meta.size / 10);
+    if(type != IndexType.TEXT && type != IndexType.ATTRIBUTE || !data.meta.uptodate) return costs;
+
+    final byte[][] qname = qname();
+    if(qname == null || qname[0] == null) return costs;
+    final Names names = type == IndexType.TEXT ? data.elemNames : data.attrNames;
+    final Stats stats = names.stats(names.id(qname[0]));
+    final int distinct = stats != null ? stats.distinct() : -1;
+    return distinct > 0 ? Math.max(2, Math.min(costs, (stats.count + distinct - 1) / distinct)) :
+      costs;
+  }
+
+  /**
+   * Returns the ids of the paths of all nodes that will be compared with the search value,
+   * or {@code null} if the path-qualified value index cannot be used. Example:
+   * {@code /xml/a[b/@c = 'X']} -> id of the path {@code /xml/a/b/@c}
+   * @param type index type
+   * @return path ids or {@code null}
+   */
+  private int[] paths(final IndexType type) {
+    final Data data = ic.data;
+    if(type != IndexType.TEXT && type != IndexType.ATTRIBUTE || !data.meta.pathvalueindex ||
+        !data.nspaces.isEmpty() || ic.nodes == null) return null;
+
+    // follow the steps of the predicate, starting from the nodes of the current step
+    ArrayList<PathNode> nodes = ic.nodes;
+    if(pred instanceof AxisPath) {
+      final AxisPath path = (AxisPath) pred;
+      final int pl = path.steps.length;
+      for(int p = 0; p < pl; p++) {
+        final Step s = path.step(p);
+        final Test t = s.test;
+        final byte kind;
+        int name = 0;
+        if(s.axis == Axis.CHILD && t == KindTest.TXT) {
+          kind = Data.TEXT;
+        } else if(t.kind == Kind.NAME && s.axis == Axis.CHILD && t.type == NodeType.ELM) {
+          kind = Data.ELEM;
+          name = data.elemNames.id(t.name.local());
+        } else if(t.kind == Kind.NAME && s.axis == Axis.ATTR && t.type == NodeType.ATT) {
+          kind = Data.ATTR;
+          name = data.attrNames.id(t.name.local());
+        } else {
+          return null;
+        }
+        final ArrayList<PathNode> tmp = new ArrayList<>();
+        for(final PathNode node : nodes) {
+          for(final PathNode child : node.children) {
+            if(child.kind == kind && child.name == name) tmp.add(child);
+          }
+        }
+        nodes = tmp;
+      }
+    } else if(!(pred instanceof ContextValue)) {
+      return null;
+    }
+
+    // collect ids of text nodes (elements: text children) or attributes
+    final byte kind = type == IndexType.TEXT ? Data.TEXT : Data.ATTR;
+    final IntList list = new IntList();
+    for(final PathNode node : nodes) {
+      if(node.kind == kind) {
+        list.add(data.paths.id(node));
+      } else if(node.kind == Data.ELEM && kind == Data.TEXT) {
+        for(final PathNode child : node.children) {
+          if(child.kind == Data.TEXT) list.add(data.paths.id(child));
+        }
+      }
+    }
+    return list.isEmpty() ? null : list.finish();
+  }
+
   /**
    * Returns the local name and namespace uri of the last name test.
    * If the returned name or uri is {@code null}, it represents a wildcard.
@@ -26,6 +26,8 @@ public abstract class ADate extends ADateDur {
   static final long MIN_YEAR = -MAX_YEAR;
   /** Constant for counting negative years (divisible by 400). */
   private static final long ADD_NEG = (MAX_YEAR / 400 + 1) * 400;
+  /** Day count of 1970-01-01. */
+  private static final BigDecimal EPOCH = days(1970 + ADD_NEG, 0, 0);
 
   /** Pattern for two digits. */
   static final String DD = "(\\d{2})";
@@ -422,6 +424,14 @@ public abstract class ADate extends ADateDur {
         BigDecimal.valueOf(Math.max(0, hou) * 3600L + Math.max(0, min) * 60L - z * 60L));
   }
 
+  /**
+   * Returns the number of milliseconds since 1970-01-01T00:00:00Z.
+   * @return milliseconds
+   */
+  public final double epoch() {
+    return seconds().add(days().subtract(EPOCH).multiply(DAYSECONDS)).doubleValue() * 1000;
+  }
+
   /**
    * Returns a day count.
    * @return days
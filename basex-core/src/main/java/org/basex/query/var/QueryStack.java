@@ -36,6 +36,18 @@ public final class QueryStack {
     return s;
   }
 
+  /**
+   * Enters a new stack frame with the bindings of the current stack frame of another stack.
+   * Required for evaluating expressions of the same scope in parallel.
+   * @param qs stack with the bindings to be copied
+   */
+  public void copyFrame(final QueryStack qs) {
+    final int size = qs.end - qs.start;
+    enterFrame(size);
+    System.arraycopy(qs.stack, qs.start, stack, start, size);
+    System.arraycopy(qs.vars, qs.start, vars, start, size);
+  }
+
   /**
    * Prepares the current stack frame to be reused.
    * @param size new frame size
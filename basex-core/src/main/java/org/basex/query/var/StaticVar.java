@@ -24,7 +24,7 @@ public final class StaticVar extends StaticDecl {
   /** If this variable can be bound from outside the query. */
   public final boolean external;
   /** Flag for lazy evaluation. */
-  private final boolean lazy;
+  public final boolean lazy;
 
   /** Bound value. */
   Value val;
@@ -0,0 +1,176 @@
+package org.basex.util;
+
+import java.util.*;
+
+/**
+ * This class compresses and decompresses byte arrays in the LZ4 block format.
+ * A greedy strategy is applied to find matches, which favors speed over compression ratio.
+ *
+ * @author BaseX Team 2005-17, BSD License
+ * @author Christian Gruen
+ */
+public final class LZ4 {
+  /** Minimum match length. */
+  private static final int MINMATCH = 4;
+  /** Number of bytes at the end of the input that are always stored as literals. */
+  private static final int LASTLITERALS = 5;
+  /** Minimum distance of the last match to the end of the input. */
+  private static final int MFLIMIT = 12;
+  /** Maximum match offset. */
+  private static final int MAXOFFSET = 0xFFFF;
+  /** Size of the hash table (power of two). */
+  private static final int HASHPOWER = 14;
+
+  /** Hidden constructor. */
+  private LZ4() { }
+
+  /**
+   * Returns the maximum length of compressed input.
+   * @param len input length
+   * @return maximum length
+   */
+  public static int maxLength(final int len) {
+    return len + len / 255 + 16;
+  }
+
+  /**
+   * Creates a hash table, which can be reused for subsequent compressions.
+   * @return hash table
+   */
+  public static int[] table() {
+    return new int[1 << HASHPOWER];
+  }
+
+  /**
+   * Compresses bytes.
+   * @param src input array
+   * @param len number of bytes to be compressed
+   * @param dst output array (its size must be at least {@link #maxLength(int)})
+   * @return length of compressed bytes
+   */
+  public static int compress(final byte[] src, final int len, final byte[] dst) {
+    return compress(src, len, dst, table());
+  }
+
+  /**
+   * Compresses bytes with the specified hash table.
+   * @param src input array
+   * @param len number of bytes to be compressed
+   * @param dst output array (its size must be at least {@link #maxLength(int)})
+   * @param table hash table (see {@link #table()})
+   * @return length of compressed bytes
+   */
+  public static int compress(final byte[] src, final int len, final byte[] dst,
+      final int[] table) {
+    int s = 0, anchor = 0, d = 0;
+    if(len > MFLIMIT) {
+      Arrays.fill(table, -1);
+      final int mflimit = len - MFLIMIT, limit = len - LASTLITERALS;
+      while(s < mflimit) {
+        final int v = int4(src, s), h = v * 0x9E3779B1 >>> 32 - HASHPOWER;
+        int ref = table[h];
+        table[h] = s;
+        if(ref == -1 || s - ref > MAXOFFSET || int4(src, ref) != v) {
+          s++;
+          continue;
+        }
+        // extend match backwards and forwards
+        while(s > anchor && ref > 0 && src[s - 1] == src[ref - 1]) {
+          s--;
+          ref--;
+        }
+        int m = s + MINMATCH;
+        for(int r = ref + MINMATCH; m < limit && src[m] == src[r]; m++, r++);
+
+        // write sequence
+        final int ll = s - anchor, ml = m - s - MINMATCH;
+        final int token = d++;
+        dst[token] = (byte) (Math.min(ll, 15) << 4 | Math.min(ml, 15));
+        if(ll >= 15) d = length(ll - 15, dst, d);
+        System.arraycopy(src, anchor, dst, d, ll);
+        d += ll;
+        final int off = s - ref;
+        dst[d++] = (byte) off;
+        dst[d++] = (byte) (off >>> 8);
+        if(ml >= 15) d = length(ml - 15, dst, d);
+        s = m;
+        anchor = m;
+      }
+    }
+    // write remaining literals
+    final int ll = len - anchor;
+    dst[d++] = (byte) (Math.min(ll, 15) << 4);
+    if(ll >= 15) d = length(ll - 15, dst, d);
+    System.arraycopy(src, anchor, dst, d, ll);
+    return d + ll;
+  }
+
+  /**
+   * Decompresses bytes.
+   * @param src input array
+   * @param off offset to compressed bytes
+   * @param len length of compressed bytes
+   * @param dst output array (must be large enough for the decompressed bytes)
+   * @return length of decompressed bytes
+   */
+  public static int decompress(final byte[] src, final int off, final int len, final byte[] dst) {
+    final int end = off + len;
+    int s = off, d = 0;
+    while(s < end) {
+      final int token = src[s++] & 0xFF;
+      // copy literals
+      int ll = token >>> 4;
+      if(ll == 15) {
+        int b;
+        do ll += b = src[s++] & 0xFF; while(b == 255);
+      }
+      System.arraycopy(src, s, dst, d, ll);
+      s += ll;
+      d += ll;
+      if(s >= end) break;
+
+      // copy match
+      final int o = src[s++] & 0xFF | (src[s++] & 0xFF) << 8;
+      int ml = token & 0x0F;
+      if(ml == 15) {
+        int b;
+        do ml += b = src[s++] & 0xFF; while(b == 255);
+      }
+      ml += MINMATCH;
+      final int r = d - o;
+      if(o >= ml) {
+        System.arraycopy(dst, r, dst, d, ml);
+      } else {
+        // overlapping match
+        for(int m = 0; m < ml; m++) dst[d + m] = dst[r + m];
+      }
+      d += ml;
+    }
+    return d;
+  }
+
+  /**
+   * Writes an extended length.
+   * @param len remaining length
+   * @param dst output array
+   * @param off output offset
+   * @return new output offset
+   */
+  private static int length(final int len, final byte[] dst, final int off) {
+    int l = len, d = off;
+    for(; l >= 255; l -= 255) dst[d++] = (byte) 255;
+    dst[d++] = (byte) l;
+    return d;
+  }
+
+  /**
+   * Returns four bytes as integer.
+   * @param src input array
+   * @param off offset
+   * @return integer
+   */
+  private static int int4(final byte[] src, final int off) {
+    return (src[off] & 0xFF) << 24 | (src[off + 1] & 0xFF) << 16 | (src[off + 2] & 0xFF) << 8 |
+      src[off + 3] & 0xFF;
+  }
+}
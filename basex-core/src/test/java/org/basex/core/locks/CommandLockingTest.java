@@ -282,6 +282,17 @@ public final class CommandLockingTest extends SandboxTest {
     ckDBs(new XQuery(_REPO_LIST.args()), false, REPO_LIST);
   }
 
+  /**
+   * Test if exclusive locks are deferred.
+   */
+  @Test
+  public void deferred() {
+    ckDeferred(new OptimizeAll(), true);
+    ckDeferred(new Optimize(), false);
+    ckDeferred(new XQuery(_DB_DELETE.args(NAME, "x")), true);
+    ckDeferred(new XQuery(_DB_OPEN.args(NAME)), false);
+  }
+
   /** Test XQuery module. */
   @Test
   public void xqueryModule() {
@@ -289,6 +300,17 @@ public final class CommandLockingTest extends SandboxTest {
     ckDBs(new XQuery(_XQUERY_EVAL.args(FILE)), false, null);
   }
 
+  /**
+   * Test if exclusive locks are deferred.
+   * @param cmd command to test
+   * @param deferred expected result
+   */
+  private static void ckDeferred(final Command cmd, final boolean deferred) {
+    cmd.updating(DUMMY_CONTEXT);
+    cmd.addLocks();
+    assertEquals(deferred, cmd.jc().locks.deferred);
+  }
+
   /**
    * Test if the right databases are identified for locking. Required databases are exact,
    * no additional ones allowed.
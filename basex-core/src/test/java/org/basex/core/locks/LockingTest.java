@@ -126,6 +126,48 @@ public final class LockingTest extends SandboxTest {
     th2.release();
   }
 
+  /**
+   * Fetch deferred write lock, then read lock; upgrade write lock.
+   * @throws InterruptedException Got interrupted.
+   */
+  @Test
+  public void deferredWriteReadTest() throws InterruptedException {
+    final CountDownLatch sync = new CountDownLatch(1), test = new CountDownLatch(1),
+        write = new CountDownLatch(1), upgrade = new CountDownLatch(1),
+        read = new CountDownLatch(1);
+    final LockTester th1 = new LockTester(null, NONE, objects, sync);
+    final LockTester th2 = new LockTester(sync, objects, NONE, test);
+    final LockTester th3 = new LockTester(test, NONE, objects, write);
+    th1.locks.deferred = true;
+
+    th1.start();
+    th2.start();
+    assertTrue("Thread 2 should be able to acquire lock.",
+        test.await(WAIT, TimeUnit.MILLISECONDS));
+    th3.start();
+    assertFalse("Thread 3 shouldn't be able to acquire lock yet.",
+        write.await(WAIT, TimeUnit.MILLISECONDS));
+    th3.release();
+
+    th1.upgrade(upgrade);
+    assertFalse("Thread 1 shouldn't be able to upgrade lock yet.",
+        upgrade.await(WAIT, TimeUnit.MILLISECONDS));
+    th2.release();
+    assertTrue("Thread 1 should be able to upgrade lock now.",
+        upgrade.await(WAIT, TimeUnit.MILLISECONDS));
+
+    final LockTester th4 = new LockTester(null, objects, NONE, read);
+    th4.start();
+    assertFalse("Thread 4 shouldn't be able to acquire lock yet.",
+        read.await(WAIT, TimeUnit.MILLISECONDS));
+    th1.release();
+    assertTrue("Thread 4 should be able to acquire lock now.",
+        read.await(WAIT, TimeUnit.MILLISECONDS));
+    th4.release();
+    assertTrue("Thread 3 should be able to acquire lock now.",
+        write.await(WAIT, TimeUnit.MILLISECONDS));
+  }
+
   /**
    * Fetch two read locks.
    * @throws InterruptedException Got interrupted.
@@ -560,6 +602,8 @@ public final class LockingTest extends SandboxTest {
     private final Locks locks = new Locks();
     /** Flag indicating to release locks after being notified. */
     private volatile boolean requestRelease;
+    /** Latch to count down after upgrading locks (can be {@code null}). */
+    private CountDownLatch upgraded;
 
     /**
      * Setup locking thread. Call {@code start} to lock, notify the thread to unlock.
@@ -604,9 +648,17 @@ public final class LockingTest extends SandboxTest {
         // we hold the lock, count down
         if(countDown != null) countDown.countDown();
 
-        // wait until we're asked to release the lock
-        synchronized(this) {
-          while(!requestRelease) wait();
+        // wait until we're asked to release the lock, upgrade deferred locks if requested
+        while(true) {
+          final CountDownLatch latch;
+          synchronized(this) {
+            while(!requestRelease && upgraded == null) wait();
+            if(requestRelease) break;
+            latch = upgraded;
+            upgraded = null;
+          }
+          locking.upgrade();
+          latch.countDown();
         }
 
         locking.release();
@@ -624,5 +676,14 @@ public final class LockingTest extends SandboxTest {
       requestRelease = true;
       notifyAll();
     }
+
+    /**
+     * Upgrades deferred write locks. The locks are upgraded by the thread holding the lock.
+     * @param latch latch to count down after upgrading locks
+     */
+    public synchronized void upgrade(final CountDownLatch latch) {
+      upgraded = latch;
+      notifyAll();
+    }
   }
 }
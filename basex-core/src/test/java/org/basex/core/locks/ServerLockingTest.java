@@ -167,10 +167,17 @@ public final class ServerLockingTest extends SandboxTest {
         new XQuery(f("insert node %s into db:open('%s')", Q, NAME)),
         new XQuery(f("insert node %s into db:open('%s1')", Q, NAME)),
         true);
-    // Read from and write to the same database
+    // Read from and write to the same database: the updating query is evaluated in parallel,
+    // as its exclusive lock is deferred until the updates are applied
     testQueries(
         new XQuery(f("(db:open('%s'), %s)", NAME, Q)),
         new XQuery(f("insert node %s into db:open('%s')", Q, NAME)),
+        true);
+    // Read from and write to the same database: locks are not deferred if other locks are held
+    testQueries(
+        new XQuery(f("(db:open('%s'), %s)", NAME, Q)),
+        new XQuery(f("import module namespace qm='java:org.basex.query.func.QueryModuleTest';"
+            + "insert node (qm:writeLock(), %s) into db:open('%s')", Q, NAME)),
         false);
     // Read from and write to different databases
     testQueries(
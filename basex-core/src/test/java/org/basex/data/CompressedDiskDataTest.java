@@ -0,0 +1,47 @@
+package org.basex.data;
+
+import org.basex.core.*;
+import org.basex.core.cmd.*;
+import org.basex.util.*;
+import org.junit.*;
+
+/**
+ * Test index updates when using compressed disk storage ({@link DiskData}).
+ *
+ * @author BaseX Team 2005-17, BSD License
+ * @author Christian Gruen
+ */
+public final class CompressedDiskDataTest extends MemDataTest {
+  /** Test database name. */
+  private final String dbName = Util.className(CompressedDiskDataTest.class);
+
+  /**
+   * Enables compression.
+   */
+  @BeforeClass
+  public static void init() {
+    set(MainOptions.COMPRESSION, true);
+  }
+
+  /**
+   * Disables compression.
+   */
+  @AfterClass
+  public static void finish() {
+    set(MainOptions.COMPRESSION, false);
+  }
+
+  @Override
+  @Before
+  public void setUp() {
+    execute(new CreateDB(dbName, XMLSTR));
+  }
+
+  /**
+   * Clean up method; executed after each test; drops the database.
+   */
+  @After
+  public void cleanUp() {
+    execute(new DropDB(dbName));
+  }
+}
@@ -0,0 +1,100 @@
+package org.basex.data;
+
+import static org.junit.Assert.*;
+
+import org.basex.core.*;
+import org.basex.core.cmd.*;
+import org.basex.util.*;
+import org.junit.*;
+import org.junit.Test;
+
+/**
+ * Test index updates when using deduplicated disk storage ({@link DiskData}).
+ *
+ * @author BaseX Team 2005-17, BSD License
+ * @author Christian Gruen
+ */
+public final class DeduplicatedDiskDataTest extends MemDataTest {
+  /** Test database name. */
+  private final String dbName = Util.className(DeduplicatedDiskDataTest.class);
+
+  /**
+   * Enables deduplication.
+   */
+  @BeforeClass
+  public static void init() {
+    set(MainOptions.DEDUPLICATE, true);
+  }
+
+  /**
+   * Disables deduplication.
+   */
+  @AfterClass
+  public static void finish() {
+    set(MainOptions.DEDUPLICATE, false);
+  }
+
+  @Override
+  @Before
+  public void setUp() {
+    execute(new CreateDB(dbName, XMLSTR));
+  }
+
+  /**
+   * Checks that repeated values are stored only once, and that shared values are not
+   * overwritten by updates.
+   */
+  @Test
+  public void shared() {
+    final StringBuilder sb = new StringBuilder("<a>");
+    for(int i = 0; i < 1000; i++) sb.append("<b c='x'>y</b>");
+    execute(new CreateDB(dbName, sb.append("</a>").toString()));
+    final MetaData meta = context.data().meta;
+    assertTrue(meta.dbfile(DataText.DATATXT).length() < 100);
+    assertTrue(meta.dbfile(DataText.DATAATV).length() < 100);
+
+    query("for $b in /a/b[position() <= 10] return replace value of node $b/@c with 'z'");
+    query("delete node /a/b[position() > 990]");
+    assertEquals("980", query("count(/a/b[@c = 'x'][text() = 'y'])"));
+    assertEquals("10", query("count(/a/b[@c = 'z'][text() = 'y'])"));
+  }
+
+  /**
+   * Checks that values added after the database has been reopened are shared with the values
+   * that have been stored before.
+   */
+  @Test
+  public void reopened() {
+    execute(new CreateDB(dbName, "<a><b c='x'>y</b></a>"));
+    execute(new Close());
+    execute(new Open(dbName));
+    MetaData meta = context.data().meta;
+    long txt = meta.dbfile(DataText.DATATXT).length();
+    long atv = meta.dbfile(DataText.DATAATV).length();
+
+    query("for $i in 1 to 1000 return insert node <b c='x'>y</b> into /a");
+    assertEquals("1001", query("count(/a/b[@c = 'x'][text() = 'y'])"));
+    assertEquals(txt, meta.dbfile(DataText.DATATXT).length());
+    assertEquals(atv, meta.dbfile(DataText.DATAATV).length());
+
+    // values added in a previous session
+    query("insert node <b c='v'>w</b> into /a");
+    execute(new Close());
+    execute(new Open(dbName));
+    meta = context.data().meta;
+    txt = meta.dbfile(DataText.DATATXT).length();
+    atv = meta.dbfile(DataText.DATAATV).length();
+    query("for $i in 1 to 10 return insert node <b c='v'>w</b> into /a");
+    assertEquals("11", query("count(/a/b[@c = 'v'][text() = 'w'])"));
+    assertEquals(txt, meta.dbfile(DataText.DATATXT).length());
+    assertEquals(atv, meta.dbfile(DataText.DATAATV).length());
+  }
+
+  /**
+   * Clean up method; executed after each test; drops the database.
+   */
+  @After
+  public void cleanUp() {
+    execute(new DropDB(dbName));
+  }
+}
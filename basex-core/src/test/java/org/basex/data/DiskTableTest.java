@@ -328,6 +328,123 @@ public final class DiskTableTest extends SandboxTest {
     assertEntrysEqual(nodes, 2 * nodes, size - nodes);
   }
 
+  /**
+   * Tests concurrent reads after an update.
+   * @throws Exception exception
+   */
+  @Test
+  public void concurrentReads() throws Exception {
+    tda.delete(3, 1);
+    tda.flush(false);
+
+    // more threads than thread-local cursors; cursors of terminated threads are reclaimed
+    for(int r = 0; r < 2; r++) {
+      readConcurrently(80, new Runnable() {
+        @Override
+        public void run() {
+          assertEntrysEqual(0, 0, 3);
+          assertEntrysEqual(4, 3, size - 4);
+        }
+      });
+    }
+  }
+
+  /**
+   * Tests reads after the table has been closed and reopened.
+   * @throws Exception exception
+   */
+  @Test
+  public void closeAndReopen() throws Exception {
+    final Runnable read = new Runnable() {
+      @Override
+      public void run() {
+        assertEntrysEqual(0, 0, size);
+      }
+    };
+    read.run();
+    readConcurrently(4, read);
+    // pages that have been read before can still be accessed
+    tda.close();
+    read.run();
+
+    tda = new TableDiskAccess(data.meta, false);
+    read.run();
+    readConcurrently(80, read);
+  }
+
+  /**
+   * Tests reads of pages that have not been read before the table was closed.
+   * @throws Exception exception
+   */
+  @Test
+  public void closedUnavailable() throws Exception {
+    final int last = size - 1;
+    tda.close();
+    tda = new TableDiskAccess(data.meta, false);
+    assertEntrysEqual(0, 0, 1);
+    tda.close();
+    // pages that have not been read before are unavailable, and no stale data is returned
+    for(int r = 0; r < 2; r++) {
+      try {
+        tda.read1(last, 0);
+        fail("Page of closed table was read.");
+      } catch(final RuntimeException ex) {
+        assertTrue(ex.getMessage(), ex.getMessage().contains("closed"));
+      }
+    }
+    assertEntrysEqual(0, 0, 1);
+  }
+
+  /**
+   * Runs the specified code in parallel threads.
+   * @param count number of threads
+   * @param code code to be run
+   * @throws Exception exception
+   */
+  private static void readConcurrently(final int count, final Runnable code) throws Exception {
+    final Throwable[] errors = new Throwable[count];
+    final Thread[] threads = new Thread[count];
+    for(int t = 0; t < count; t++) {
+      final int tt = t;
+      threads[t] = new Thread() {
+        @Override
+        public void run() {
+          try {
+            code.run();
+          } catch(final Throwable th) {
+            errors[tt] = th;
+          }
+        }
+      };
+    }
+    for(final Thread thread : threads) thread.start();
+    for(final Thread thread : threads) thread.join();
+    for(final Throwable error : errors) if(error != null) throw new AssertionError(error);
+  }
+
+  /**
+   * Tests if pages are read ahead if the table is scanned sequentially.
+   * @throws Exception exception
+   */
+  @Test
+  public void readAhead() throws Exception {
+    tda.close();
+    final int elems = 10000;
+    final StringBuilder sb = new StringBuilder("<x>");
+    for(int e = 0; e < elems; e++) sb.append("<y/>");
+    final Parser parser = Parser.xmlParser(new IOContent(sb.append("</x>").toString()));
+    data = new DiskBuilder(NAME, parser, context.soptions, context.options).build();
+    data.close();
+    tda = new TableDiskAccess(data.meta, false);
+
+    final BufferPool pool = BufferPool.get();
+    final long misses = pool.misses();
+    for(int pre = 0; pre < elems + 2; pre++) {
+      assertEquals(pre == 0 ? Data.DOC : Data.ELEM, tda.read1(pre, 0) & 0x07);
+    }
+    assertTrue(pool.misses() - misses < elems / IO.ENTRIES / 2);
+  }
+
   /**
    * Asserts that the chosen entries are inserted by a test case.
    * @param startNum first entry
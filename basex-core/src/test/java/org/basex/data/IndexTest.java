@@ -1,13 +1,17 @@
 package org.basex.data;
 
 import static org.basex.query.func.Function.*;
+import static org.junit.Assert.*;
 
 import java.util.*;
 import java.util.List;
 
 import org.basex.core.*;
 import org.basex.core.cmd.*;
+import org.basex.index.*;
+import org.basex.index.query.*;
 import org.basex.query.*;
+import org.basex.util.*;
 import org.junit.*;
 import org.junit.Test;
 import org.junit.runner.*;
@@ -56,6 +60,7 @@ public final class IndexTest extends AdvancedQueryTest {
   public void after() {
     execute(new DropDB(NAME));
     set(MainOptions.TOKENINDEX, false);
+    set(MainOptions.FTINDEX, false);
     set(MainOptions.UPDINDEX, false);
     set(MainOptions.AUTOOPTIMIZE, false);
     set(MainOptions.MAINMEM, false);
@@ -206,6 +211,118 @@ public final class IndexTest extends AdvancedQueryTest {
     execute(new Delete("A"));
   }
 
+  /**
+   * Test.
+   */
+  @Test
+  public void updindexRange() {
+    set(MainOptions.UPDINDEX, true);
+    execute(new CreateDB(NAME, "<x><a>1</a><a>5</a><a>10</a></x>"));
+    query("count(//a[text() >= 2 and text() <= 10])", 2);
+    query("insert node <a>7</a> into /x");
+    query("delete node //a[. = '10']");
+    // statistics must be up-to-date for range index access
+    execute(new Optimize());
+    query("count(//a[text() >= 2 and text() <= 10])", 2);
+    query("//a[text() > 1 and text() < 10] ! string()", "5\n7");
+  }
+
+  /**
+   * Test.
+   */
+  @Test
+  public void updindexLargeLists() {
+    set(MainOptions.UPDINDEX, true);
+    largeLists();
+    query("for $i in 1 to 500 return insert node <a>A</a> into /x");
+    query("delete node (//a[text() = 'A'])[position() <= 100]");
+    query("count(db:text('" + NAME + "', 'A'))", 1400);
+    query("count(//a[text() = '1'])", 334);
+  }
+
+  /**
+   * Test.
+   */
+  @Test
+  public void largeLists() {
+    final StringBuilder sb = new StringBuilder("<x>");
+    for(int i = 1; i <= 1000; i++) sb.append("<a>A</a><a>").append(i % 3).append("</a><b c='A'/>");
+    execute(new CreateDB(NAME, sb.append("</x>").toString()));
+    query("count(db:text('" + NAME + "', 'A'))", 1000);
+    query("count(db:attribute('" + NAME + "', 'A'))", 1000);
+    query("count(//a[text() = '1'])", 334);
+    query("count(//a[text() = ('0', '2')])", 666);
+    if((Boolean) mainmem || context.options.get(MainOptions.UPDINDEX)) return;
+
+    // texts 'A' have the pre values 3, 9, 15, ...
+    final IndexSkipIterator iter = (IndexSkipIterator)
+        context.data().iter(new StringToken(IndexType.TEXT, Token.token("A")));
+    assertTrue(iter.more());
+    assertEquals(3, iter.pre());
+    assertTrue(iter.advance(4));
+    assertEquals(9, iter.pre());
+    assertTrue(iter.advance(1000));
+    assertEquals(1005, iter.pre());
+    assertTrue(iter.advance(5000));
+    assertEquals(5001, iter.pre());
+    assertTrue(iter.more());
+    assertEquals(5007, iter.pre());
+    assertFalse(iter.advance(7000));
+  }
+
+  /**
+   * Test.
+   */
+  @Test
+  public void updindexFulltext() {
+    // full-text index is not supported in main memory
+    if((Boolean) mainmem) return;
+    set(MainOptions.UPDINDEX, true);
+    set(MainOptions.FTINDEX, true);
+    execute(new CreateDB(NAME));
+    for(int i = 0; i < 5; i++) {
+      execute(new Replace("x.xml", "<x><a>A B</a><a>C</a></x>"));
+      execute(new Replace("x.xml", "<x><a>A D</a><a>E</a></x>"));
+    }
+    query(_FT_SEARCH.args(NAME, "a") + "/string()", "A D");
+    query(_FT_SEARCH.args(NAME, "b"), "");
+    query("//a[text() contains text 'e']/string()", "E");
+    query("delete node //a[. = 'E']");
+    query(_FT_SEARCH.args(NAME, "e"), "");
+    query("insert node <b>F e</b> into /x");
+    query(_FT_SEARCH.args(NAME, "e") + "/string()", "F e");
+    query(_FT_TOKENS.args(NAME, "f") + "/string()", "f");
+    query(_DB_INFO.args(NAME) + "//ftindex/text()", "true");
+
+    // delta segment is persisted
+    execute(new Close());
+    execute(new Open(NAME));
+    query(_FT_SEARCH.args(NAME, "a") + "/string()", "A D");
+    query(_FT_SEARCH.args(NAME, "e") + "/string()", "F e");
+  }
+
+  /**
+   * Test.
+   */
+  @Test
+  public void updindexFulltextMerge() {
+    if((Boolean) mainmem) return;
+    set(MainOptions.UPDINDEX, true);
+    set(MainOptions.FTINDEX, true);
+    execute(new CreateDB(NAME, "<x><a>A</a></x>"));
+    // large update: delta segment will be merged with main segment
+    final StringBuilder sb = new StringBuilder("<y>");
+    for(int i = 0; i < 300000; i++) sb.append("B ");
+    execute(new Add("y.xml", sb.append("</y>").toString()));
+    query("delete node //a");
+    query(_FT_SEARCH.args(NAME, "a"), "");
+    query("count(" + _FT_SEARCH.args(NAME, "b") + ")", 1);
+    query("//y[text() contains text 'b'] ! name()", "y");
+    execute(new Close());
+    execute(new Open(NAME));
+    query("count(" + _FT_SEARCH.args(NAME, "b") + ")", 1);
+  }
+
   /**
    * Test.
    */
@@ -0,0 +1,138 @@
+package org.basex.data;
+
+import static org.junit.Assert.*;
+
+import org.basex.core.*;
+import org.basex.core.cmd.*;
+import org.basex.io.*;
+import org.basex.util.*;
+import org.junit.*;
+import org.junit.Test;
+
+/**
+ * Test index updates when using journaled updates ({@link DiskData}).
+ *
+ * @author BaseX Team 2005-17, BSD License
+ * @author Christian Gruen
+ */
+public final class JournaledDiskDataTest extends MemDataTest {
+  /** Test database name. */
+  private final String dbName = Util.className(JournaledDiskDataTest.class);
+
+  /**
+   * Enables journaling.
+   */
+  @BeforeClass
+  public static void init() {
+    set(MainOptions.JOURNAL, true);
+  }
+
+  /**
+   * Disables journaling.
+   */
+  @AfterClass
+  public static void finish() {
+    set(MainOptions.JOURNAL, false);
+  }
+
+  @Override
+  @Before
+  public void setUp() {
+    execute(new CreateDB(dbName, XMLSTR));
+  }
+
+  /**
+   * Checks that the journal is reset by checkpoints and deleted when the database is closed.
+   * @throws Exception exception
+   */
+  @Test
+  public void journal() throws Exception {
+    final IOFile jnl = context.data().meta.dbfile(DataText.DATAJNL);
+    query("insert node <x>y</x> into /*");
+    assertTrue(jnl.exists());
+    assertTrue(jnl.length() > 0);
+    for(int i = 0; i < 50 && jnl.length() > 0; i++) Thread.sleep(100);
+    assertEquals(0, jnl.length());
+    execute(new Close());
+    assertFalse(jnl.exists());
+    execute(new Open(dbName));
+    assertEquals("y", query("/*/x/text()"));
+  }
+
+  /**
+   * Restores a database that has been partially updated.
+   * @throws Exception exception
+   */
+  @Test
+  public void uncommitted() throws Exception {
+    final int nodes = 10000;
+    final StringBuilder sb = new StringBuilder("<x>");
+    for(int n = 0; n < nodes; n++) sb.append("<y>").append(n).append("</y>");
+    execute(new CreateDB(dbName, sb.append("</x>").toString()));
+    final String expected = query("sum(//y)");
+
+    // modify all table pages and evict them before the update is committed
+    final Data data = context.data();
+    data.startUpdate(context.options);
+    for(int n = 0; n < nodes; n++) data.update(3 + n * 2, Data.TEXT, Token.token("v" + n));
+
+    // simulate crash: copy the database files
+    final String name = dbName + "Crash";
+    final IOFile dir = context.soptions.dbPath(name);
+    dir.md();
+    for(final IOFile file : context.soptions.dbPath(dbName).children()) {
+      file.copyTo(new IOFile(dir, file.name()));
+    }
+    data.finishUpdate(context.options);
+    // the marker of the interrupted update must be removed before the database is opened
+    assertTrue(MetaData.file(dir, DataText.DATAUPD).delete());
+
+    try {
+      execute(new Open(name));
+      assertEquals(expected, query("sum(//y)"));
+      assertEquals(String.valueOf(nodes), query("count(//y[text()])"));
+    } finally {
+      execute(new DropDB(name));
+    }
+  }
+
+  /**
+   * Opens compressed databases, and rejects journaling of their updates.
+   */
+  @Test
+  public void compressed() {
+    final String name = dbName + "Compressed";
+    set(MainOptions.COMPRESSION, true);
+    try {
+      new CreateDB(name, XMLSTR).execute(context);
+      fail("Compressed database was updated.");
+    } catch(final BaseXException ex) {
+      assertTrue(ex.getMessage(), ex.getMessage().contains("journaled"));
+    } finally {
+      set(MainOptions.COMPRESSION, false);
+    }
+
+    try {
+      execute(new Close());
+      execute(new Open(name));
+      assertEquals("2", query("count(//f)"));
+      try {
+        new XQuery("delete node //f").execute(context);
+        fail("Compressed database was updated.");
+      } catch(final BaseXException ex) {
+        assertTrue(ex.getMessage(), ex.getMessage().contains("journaled"));
+      }
+      assertEquals("2", query("count(//f)"));
+    } finally {
+      execute(new DropDB(name));
+    }
+  }
+
+  /**
+   * Clean up method; executed after each test; drops the database.
+   */
+  @After
+  public void cleanUp() {
+    execute(new DropDB(dbName));
+  }
+}
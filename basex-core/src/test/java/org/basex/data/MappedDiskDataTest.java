@@ -0,0 +1,47 @@
+package org.basex.data;
+
+import org.basex.core.*;
+import org.basex.core.cmd.*;
+import org.basex.util.*;
+import org.junit.*;
+
+/**
+ * Test index updates when using memory-mapped disk storage ({@link DiskData}).
+ *
+ * @author BaseX Team 2005-17, BSD License
+ * @author Christian Gruen
+ */
+public final class MappedDiskDataTest extends MemDataTest {
+  /** Test database name. */
+  private final String dbName = Util.className(MappedDiskDataTest.class);
+
+  /**
+   * Enables memory mapping.
+   */
+  @BeforeClass
+  public static void init() {
+    set(MainOptions.MMAP, true);
+  }
+
+  /**
+   * Disables memory mapping.
+   */
+  @AfterClass
+  public static void finish() {
+    set(MainOptions.MMAP, false);
+  }
+
+  @Override
+  @Before
+  public void setUp() {
+    execute(new CreateDB(dbName, XMLSTR));
+  }
+
+  /**
+   * Clean up method; executed after each test; drops the database.
+   */
+  @After
+  public void cleanUp() {
+    execute(new DropDB(dbName));
+  }
+}
@@ -0,0 +1,57 @@
+package org.basex.data;
+
+import static org.basex.data.DataText.*;
+import static org.basex.util.Token.*;
+import static org.junit.Assert.*;
+
+import java.io.*;
+
+import org.basex.*;
+import org.basex.io.*;
+import org.basex.io.in.DataInput;
+import org.basex.io.out.*;
+import org.basex.io.out.DataOutput;
+import org.junit.*;
+import org.junit.Test;
+
+/**
+ * Tests for reading the meta data of databases ({@link MetaData}).
+ *
+ * @author BaseX Team 2005-17, BSD License
+ * @author Christian Gruen
+ */
+public final class MetaDataTest extends SandboxTest {
+  /**
+   * Checks that statistics of older storage versions remain up-to-date
+   * (they are read without histograms and sketches).
+   * @throws IOException I/O exception
+   */
+  @Test
+  public void olderVersions() throws IOException {
+    assertTrue(read(STORAGE).uptodate);
+    assertTrue(read("8.6").uptodate);
+    assertTrue(read("7.9").uptodate);
+  }
+
+  /**
+   * Reads meta data with the specified storage version.
+   * @param storage storage version
+   * @return meta data
+   * @throws IOException I/O exception
+   */
+  private static MetaData read(final String storage) throws IOException {
+    final ArrayOutput ao = new ArrayOutput();
+    try(DataOutput out = new DataOutput(ao)) {
+      out.writeToken(token(DBSTR));
+      out.writeToken(token(storage));
+      out.writeToken(token(IDBSTR));
+      out.writeToken(token(ISTORAGE));
+      out.writeToken(token(DBUPTODATE));
+      out.writeToken(token("1"));
+      out.writeToken(EMPTY);
+    }
+    final MetaData meta = new MetaData(NAME, context.options, context.soptions);
+    meta.read(new DataInput(new IOContent(ao.finish())));
+    return meta;
+  }
+}
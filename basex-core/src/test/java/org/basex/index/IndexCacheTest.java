@@ -74,6 +74,88 @@ public final class IndexCacheTest {
     assertNull(cache.get(key));
   }
 
+  /** Tests if the number of entries is bounded, and if least recently used entries are evicted. */
+  @Test
+  public void testBounded() {
+    cache = new IndexCache(100);
+    for(int i = 0; i < 100; ++i) {
+      final byte[] key = token("key" + i);
+      assertNull(cache.get(key));
+      cache.add(key, i, i);
+    }
+    // request first key, add new key
+    assertNotNull(cache.get(token("key0")));
+    assertNull(cache.get(token("new")));
+    cache.add(token("new"), 1, 1);
+
+    assertEquals(100, cache.size());
+    assertNotNull(cache.get(token("key0")));
+    assertNotNull(cache.get(token("new")));
+    assertNull(cache.get(token("key1")));
+  }
+
+  /** Tests if frequently requested entries are not evicted by entries that are requested once. */
+  @Test
+  public void testAdmission() {
+    cache = new IndexCache(10);
+    for(int i = 0; i < 10; ++i) {
+      final byte[] key = token("hot" + i);
+      for(int r = 0; r < 5; r++) cache.get(key);
+      cache.add(key, i, i);
+    }
+    // scan, interrupted by requests for the frequently used entries
+    for(int i = 0; i < 1000; ++i) {
+      final byte[] key = token("cold" + i);
+      if(cache.get(key) == null) cache.add(key, i, i);
+      if(i % 100 == 0) {
+        for(int h = 0; h < 10; ++h) assertNotNull(cache.get(token("hot" + h)));
+      }
+    }
+    for(int i = 0; i < 10; ++i) assertNotNull(cache.get(token("hot" + i)));
+  }
+
+  /** Tests the hit and miss counters. */
+  @Test
+  public void testStatistics() {
+    final byte[] key = token("key");
+    assertNull(cache.get(key));
+    cache.add(key, 1, 1);
+    assertNotNull(cache.get(key));
+    assertNotNull(cache.get(key));
+    assertEquals(2, cache.hits());
+    assertEquals(1, cache.misses());
+  }
+
+  /**
+   * Tests concurrent lookups and updates.
+   * @throws InterruptedException interruption
+   */
+  @Test
+  public void testConcurrent() throws InterruptedException {
+    cache = new IndexCache(1 << 12);
+    final Thread[] threads = new Thread[4];
+    final int tl = threads.length;
+    for(int t = 0; t < tl; t++) {
+      final int offset = t;
+      threads[t] = new Thread() {
+        @Override
+        public void run() {
+          for(int i = 0; i < 100000; i++) {
+            final byte[] key = token("key" + (i * 31 + offset) % 10000);
+            if(cache.get(key) == null) cache.add(key, i, i);
+            if(i % 100 == 0) cache.delete(key);
+          }
+        }
+      };
+      threads[t].start();
+    }
+    for(final Thread thread : threads) thread.join();
+
+    assertTrue(cache.size() <= 1 << 12);
+    assertEquals(cache.size(), cache.keys().size());
+    assertEquals(4 * 100000, cache.hits() + cache.misses());
+  }
+
   /**
    * Test that new records can be continuously added without hitting
    * {@link OutOfMemoryError}.
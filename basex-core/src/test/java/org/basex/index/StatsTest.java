@@ -0,0 +1,55 @@
+package org.basex.index;
+
+import static org.basex.util.Token.*;
+import static org.junit.Assert.*;
+
+import org.basex.core.*;
+import org.basex.data.*;
+import org.basex.index.stats.*;
+import org.junit.*;
+
+/**
+ * Tests for {@link Stats}.
+ *
+ * @author BaseX Team 2005-17, BSD License
+ * @author Christian Gruen
+ */
+public final class StatsTest {
+  /** Meta data. */
+  private final MetaData meta = new MetaData("db", new MainOptions(), null);
+
+  /** Tests the number of distinct values. */
+  @Test
+  public void distinct() {
+    final Stats stats = new Stats();
+    assertEquals(0, stats.distinct());
+    for(int i = 0; i < 50; i++) stats.add(token(i % 10), meta);
+    assertEquals(10, stats.distinct());
+
+    // categories are given up: estimate
+    for(int i = 0; i < 10000; i++) stats.add(token("value" + i % 5000), meta);
+    final int distinct = stats.distinct();
+    assertTrue(distinct + " distinct values", distinct > 4500 && distinct < 5500);
+  }
+
+  /** Tests the estimated number of numeric values in a range. */
+  @Test
+  public void estimate() {
+    final Stats stats = new Stats();
+    for(int i = 0; i < 10; i++) stats.add(token(i * 10), meta);
+    assertEquals(2, stats.estimate(5, 25));
+    assertTrue(stats.disjoint(11, 19));
+    assertFalse(stats.disjoint(10, 19));
+
+    // categories are given up: estimate
+    for(int i = 0; i < 100000; i++) stats.add(token(i), meta);
+    final int count = stats.estimate(10000, 19999);
+    assertTrue(count + " values", count > 8000 && count < 12000);
+    assertTrue(stats.disjoint(100000, 200000));
+    assertFalse(stats.disjoint(11, 19));
+
+    // strings: no estimate
+    stats.add(token("string"), meta);
+    assertEquals(-1, stats.estimate(0, 1));
+  }
+}
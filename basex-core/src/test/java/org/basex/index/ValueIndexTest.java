@@ -127,6 +127,86 @@ public final class ValueIndexTest extends SandboxTest {
     valueIndexTest(IndexType.TOKEN, tokens, paramSet);
   }
 
+  /**
+   * Tests exact, prefix and range lookups of index keys.
+   */
+  @Test
+  public void keysTest() {
+    for(final Set option : paramSet) execute(option);
+    // keys of main-memory indexes are not sorted
+    if(context.options.get(MainOptions.MAINMEM)) return;
+
+    final TreeMap<String, Integer> keys = new TreeMap<>();
+    final StringBuilder sb = new StringBuilder("<xml>");
+    for(int i = 0; i < 500; i++) {
+      for(final String key : new String[] { "key" + i, "key" + i % 7 }) {
+        sb.append("<a>").append(key).append("</a>");
+        keys.put(key, keys.containsKey(key) ? keys.get(key) + 1 : 1);
+      }
+    }
+    execute(new CreateDB(NAME, sb.append("</xml>").toString()));
+    keysTest(keys);
+
+    // update index, check lookups again
+    if(context.options.get(MainOptions.UPDINDEX)) {
+      execute(new XQuery("insert node (<a>key00</a>, <a>key0</a>, <a>kex</a>) into /xml"));
+      keys.put("key00", 1);
+      keys.put("key0", keys.get("key0") + 1);
+      keys.put("kex", 1);
+      keysTest(keys);
+      // optimize and reopen database: lookups use the rebuilt dictionary
+      execute(new Optimize());
+      keysTest(keys);
+      execute(new Close());
+      execute(new Open(NAME));
+      keysTest(keys);
+    }
+  }
+
+  /**
+   * Compares the keys of the text index with the expected keys.
+   * @param keys expected keys and their number of occurrences
+   */
+  private static void keysTest(final TreeMap<String, Integer> keys) {
+    final ValueIndex index = (ValueIndex) context.data().index(IndexType.TEXT);
+    // exact lookups
+    for(final String key : new String[] { "key0", "key00", "key123", "key499", "k", "kez" }) {
+      final Integer count = keys.get(key);
+      final IndexIterator it = index.iter(new StringToken(IndexType.TEXT, token(key)));
+      int c = 0;
+      while(it.more()) {
+        it.pre();
+        c++;
+      }
+      assertEquals(key, count == null ? 0 : count, c);
+    }
+    // prefix lookups
+    for(final String prefix : new String[] { "key4", "key49", "key499", "kex", "kez" }) {
+      final EntryIterator ei = index.entries(new IndexEntries(token(prefix), IndexType.TEXT));
+      for(final Entry<String, Integer> entry : keys.tailMap(prefix).entrySet()) {
+        if(!entry.getKey().startsWith(prefix)) break;
+        assertEquals(entry.getKey(), string(ei.next()));
+        assertEquals((int) entry.getValue(), ei.count());
+      }
+      assertNull(ei.next());
+    }
+    // keys from a given key
+    final EntryIterator ei = index.entries(new IndexEntries(token("key97"), true, IndexType.TEXT));
+    for(final String key : keys.tailMap("key97").keySet()) assertEquals(key, string(ei.next()));
+    assertNull(ei.next());
+    // string range
+    final IndexIterator it = index.iter(new StringRange(IndexType.TEXT, token("key1"), true,
+        token("key2"), false));
+    int c = 0;
+    while(it.more()) {
+      it.pre();
+      c++;
+    }
+    int count = 0;
+    for(final int v : keys.subMap("key1", "key2").values()) count += v;
+    assertEquals(count, c);
+  }
+
   /**
    * Tests the index: fetch results for different tokens, compare whether the right node was
    * returned and verify against the expected result size.
@@ -0,0 +1,83 @@
+package org.basex.io.random;
+
+import static org.junit.Assert.*;
+
+import org.basex.core.*;
+import org.basex.io.*;
+import org.junit.*;
+import org.junit.Test;
+
+/**
+ * Tests for class {@link BufferPool}.
+ *
+ * @author BaseX Team 2005-17, BSD License
+ * @author Christian Gruen
+ */
+public final class BufferPoolTest {
+  /** Buffer pool. */
+  private final BufferPool pool = BufferPool.get();
+  /** File id. */
+  private int id;
+
+  /**
+   * Set up method.
+   */
+  @Before
+  public void setUp() {
+    pool.size(1);
+    id = pool.register();
+  }
+
+  /**
+   * Tear down method.
+   */
+  @After
+  public void tearDown() {
+    pool.remove(id);
+    pool.size(StaticOptions.BUFFERPOOL.value());
+  }
+
+  /**
+   * Caches and reads blocks.
+   */
+  @Test
+  public void readWrite() {
+    final byte[] data = new byte[IO.BLOCKSIZE];
+    final long hits = pool.hits(), misses = pool.misses();
+    assertFalse(pool.read(id, 0, data));
+    assertEquals(misses + 1, pool.misses());
+
+    data[0] = 1;
+    pool.write(id, 0, data);
+    data[0] = 0;
+    assertTrue(pool.read(id, 0, data));
+    assertEquals(1, data[0]);
+    assertEquals(hits + 1, pool.hits());
+
+    pool.remove(id);
+    assertFalse(pool.read(id, 0, data));
+  }
+
+  /**
+   * Checks that frequently accessed blocks are not evicted by scans.
+   */
+  @Test
+  public void scan() {
+    final byte[] data = new byte[IO.BLOCKSIZE];
+    final int hot = 16;
+    long block = hot;
+    int hits = 0;
+    for(int r = 0; r < 20; r++) {
+      // access hot blocks
+      hits = 0;
+      for(int b = 0; b < hot; b++) {
+        if(pool.read(id, b, data)) hits++;
+        else pool.write(id, b, data);
+      }
+      // scan other blocks (first rounds: small scans; remaining rounds: exceed pool size)
+      final int scan = r < 5 ? 64 : 1024;
+      for(int b = 0; b < scan; b++) pool.write(id, block++, data);
+    }
+    assertEquals(hot, hits);
+  }
+}
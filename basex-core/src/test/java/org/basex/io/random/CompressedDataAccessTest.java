@@ -0,0 +1,199 @@
+package org.basex.io.random;
+
+import static org.basex.util.Token.*;
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.*;
+
+import org.basex.*;
+import org.basex.io.*;
+import org.basex.io.out.*;
+import org.basex.io.out.DataOutput;
+import org.basex.util.*;
+import org.junit.*;
+import org.junit.Test;
+
+/**
+ * Tests for class {@link DataAccess}, using compressed file contents.
+ *
+ * @author BaseX Team 2005-17, BSD License
+ * @author Christian Gruen
+ */
+public final class CompressedDataAccessTest extends SandboxTest {
+  /** Number of tokens. */
+  private static final int TOKENS = 20000;
+  /** Temporary file. */
+  private IOFile file;
+
+  /**
+   * Set up method.
+   */
+  @Before
+  public void setUp() {
+    file = new IOFile(sandbox(), "compressed" + IO.BASEXSUFFIX);
+  }
+
+  /**
+   * Tear down method.
+   */
+  @After
+  public void tearDown() {
+    file.delete();
+  }
+
+  /**
+   * Writes tokens with a data output and reads them.
+   * @throws IOException I/O exception
+   */
+  @Test
+  public void output() throws IOException {
+    final long[] offsets = new long[TOKENS];
+    long size = 0;
+    try(DataOutput out = new DataOutput(new CompressedOutput(file))) {
+      for(int t = 0; t < TOKENS; t++) {
+        offsets[t] = out.size();
+        out.writeToken(value(t));
+      }
+      size = out.size();
+    }
+    assertTrue(file.length() < size / 2);
+
+    final DataAccess da = new DataAccess(file, false, true);
+    try {
+      assertEquals(size, da.length());
+      for(int t = TOKENS - 1; t >= 0; t--) {
+        assertEquals(string(value(t)), string(da.readToken(offsets[t])));
+      }
+    } finally {
+      da.close();
+    }
+  }
+
+  /**
+   * Writes, updates and reads tokens.
+   * @throws IOException I/O exception
+   */
+  @Test
+  public void update() throws IOException {
+    final long[] offsets = new long[TOKENS];
+    DataAccess da = new DataAccess(file, false, true);
+    try {
+      for(int t = 0; t < TOKENS; t++) {
+        offsets[t] = da.length();
+        da.writeToken(offsets[t], value(t));
+      }
+    } finally {
+      da.close();
+    }
+
+    // update every tenth token
+    da = new DataAccess(file, false, true);
+    try {
+      for(int t = 0; t < TOKENS; t += 10) {
+        final byte[] value = token(t + "-" + t);
+        offsets[t] = da.free(offsets[t], value.length + Num.length(value.length));
+        da.writeToken(offsets[t], value);
+      }
+    } finally {
+      da.close();
+    }
+
+    da = new DataAccess(file, false, true);
+    try {
+      for(int t = 0; t < TOKENS; t++) {
+        final String exp = t % 10 == 0 ? t + "-" + t : string(value(t));
+        assertEquals(exp, string(da.readToken(offsets[t])));
+      }
+    } finally {
+      da.close();
+    }
+  }
+
+  /**
+   * Checks that the directory on disk remains valid until new chunks have been flushed.
+   * @throws IOException I/O exception
+   */
+  @Test
+  public void relocate() throws IOException {
+    final byte[] block = new byte[IO.BLOCKSIZE];
+    try(RandomAccessFile raf = new RandomAccessFile(file.file(), "rw")) {
+      final CompressedBlocks blocks = new CompressedBlocks(raf);
+      block[0] = 1;
+      blocks.write(0, block);
+      blocks.flush(IO.BLOCKSIZE);
+      final long size = raf.length();
+
+      // incompressible contents: chunk is relocated, old directory must still be readable
+      final Random random = new Random(0);
+      random.nextBytes(block);
+      final byte[] written = block.clone();
+      blocks.write(0, block);
+      blocks.read(1 << 8, block);
+      assertEquals(1, new CompressedBlocks(raf).length() / IO.BLOCKSIZE);
+      new CompressedBlocks(raf).read(0, block);
+      assertEquals(1, block[0]);
+
+      // flushed contents are visible, and repeated flushes do not let the file grow
+      blocks.flush(IO.BLOCKSIZE * 2);
+      final long length = raf.length();
+      assertTrue(length > size);
+      new CompressedBlocks(raf).read(0, block);
+      assertArrayEquals(written, block);
+      for(int f = 3; f < 10; f++) {
+        blocks.flush(IO.BLOCKSIZE * f);
+        assertTrue(raf.length() <= length + (length - size));
+        final CompressedBlocks cb = new CompressedBlocks(raf);
+        assertEquals(IO.BLOCKSIZE * f, cb.length());
+        cb.read(0, block);
+        assertArrayEquals(written, block);
+      }
+    }
+  }
+
+  /**
+   * Checks that chunks referenced by the directory on disk are not overwritten before a flush,
+   * and that replaced slots are reused afterwards.
+   * @throws IOException I/O exception
+   */
+  @Test
+  public void copyOnWrite() throws IOException {
+    final byte[] block = new byte[IO.BLOCKSIZE];
+    try(RandomAccessFile raf = new RandomAccessFile(file.file(), "rw")) {
+      final CompressedBlocks blocks = new CompressedBlocks(raf);
+      block[0] = 1;
+      blocks.write(0, block);
+      blocks.flush(IO.BLOCKSIZE);
+
+      // chunk fits into its original slot, but must be written to a new one
+      block[0] = 2;
+      blocks.write(0, block);
+      blocks.read(1 << 8, block);
+      new CompressedBlocks(raf).read(0, block);
+      assertEquals(1, block[0]);
+      blocks.flush(IO.BLOCKSIZE);
+      new CompressedBlocks(raf).read(0, block);
+      assertEquals(2, block[0]);
+
+      // slots are reused: repeated updates do not let the file grow
+      final long length = raf.length();
+      for(int b = 3; b < 100; b++) {
+        block[0] = (byte) b;
+        blocks.write(0, block);
+        blocks.flush(IO.BLOCKSIZE);
+        new CompressedBlocks(raf).read(0, block);
+        assertEquals(b, block[0]);
+        assertTrue(raf.length() < length * 2);
+      }
+    }
+  }
+
+  /**
+   * Returns a token for the specified number.
+   * @param t number
+   * @return token
+   */
+  private static byte[] value(final int t) {
+    return token("token " + t);
+  }
+}
@@ -81,7 +81,17 @@ public class DataAccessTest {
     try(RandomAccessFile f = new RandomAccessFile(file.file(), "rw")) {
       initialContent(f);
     }
-    da = new DataAccess(file);
+    da = open(file);
+  }
+
+  /**
+   * Opens the instance under test.
+   * @param input input file
+   * @return instance
+   * @throws IOException I/O exception
+   */
+  DataAccess open(final IOFile input) throws IOException {
+    return new DataAccess(input);
   }
 
   /**
@@ -0,0 +1,219 @@
+package org.basex.io.random;
+
+import static org.basex.util.Token.*;
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.*;
+
+import org.basex.*;
+import org.basex.io.*;
+import org.junit.*;
+import org.junit.Test;
+
+/**
+ * Tests for class {@link Journal}.
+ *
+ * @author BaseX Team 2005-17, BSD License
+ * @author Christian Gruen
+ */
+public final class JournalTest extends SandboxTest {
+  /** Journal file. */
+  private IOFile jnl;
+  /** Copy of the journal file. */
+  private IOFile copy;
+  /** Database file. */
+  private IOFile file;
+  /** Backup of the database file. */
+  private IOFile backup;
+
+  /**
+   * Set up method.
+   */
+  @Before
+  public void setUp() {
+    jnl = new IOFile(sandbox(), "journal");
+    copy = new IOFile(sandbox(), "copy");
+    file = new IOFile(sandbox(), "file");
+    backup = new IOFile(sandbox(), "file.bak");
+  }
+
+  /**
+   * Tear down method.
+   */
+  @After
+  public void tearDown() {
+    jnl.delete();
+    copy.delete();
+    file.delete();
+    backup.delete();
+  }
+
+  /**
+   * Replays committed records and discards uncommitted ones.
+   * @throws IOException I/O exception
+   */
+  @Test
+  public void recover() throws IOException {
+    file.write(token("aaaaaaaa"));
+    final Journal journal = new Journal(jnl);
+    journal.block(file, 0, token("bb"), 2);
+    journal.block(file, 6, token("cc"), 2);
+    journal.commit();
+    journal.length(file, 4);
+    journal.commit();
+    // uncommitted record: checkpoints will be skipped
+    journal.block(file, 0, token("dddd"), 4);
+    // simulate crash: leave journal without closing it
+    copy.write(jnl.read());
+
+    Journal.recover(copy);
+    assertFalse(copy.exists());
+    assertEquals("bbaa", string(file.read()));
+    journal.close();
+  }
+
+  /**
+   * Restores blocks that have been overwritten by uncommitted updates.
+   * @throws IOException I/O exception
+   */
+  @Test
+  public void undo() throws IOException {
+    file.write(token("aaaaaaaa"));
+    final Journal journal = new Journal(jnl);
+    try(RandomAccessFile raf = new RandomAccessFile(file.file(), "rw")) {
+      assertTrue(journal.undo(file, raf.getChannel(), 0));
+      // original contents are only saved once per update
+      assertFalse(journal.undo(file, raf.getChannel(), 0));
+      journal.ahead();
+      raf.write(token("bbbbbbbbbb"));
+    }
+    // simulate crash: leave journal without closing it
+    copy.write(jnl.read());
+    Journal.recover(copy);
+    assertEquals("aaaaaaaa", string(file.read()));
+
+    // incomplete record: the block has not been written
+    file.write(token("bbbbbbbbbb"));
+    final byte[] data = jnl.read();
+    copy.write(Arrays.copyOf(data, data.length - 1));
+    Journal.recover(copy);
+    assertEquals("bbbbbbbbbb", string(file.read()));
+    journal.close();
+  }
+
+  /**
+   * Discards records of an incomplete commit.
+   * @throws IOException I/O exception
+   */
+  @Test
+  public void incomplete() throws IOException {
+    file.write(token("aaaa"));
+    final Journal journal = new Journal(jnl);
+    journal.block(file, 0, token("bb"), 2);
+    journal.commit();
+    journal.block(file, 2, token("cc"), 2);
+    journal.commit();
+    // truncate last commit record
+    final byte[] data = jnl.read();
+    copy.write(Arrays.copyOf(data, data.length - 1));
+
+    Journal.recover(copy);
+    assertEquals("bbaa", string(file.read()));
+    journal.close();
+  }
+
+  /**
+   * Commits records in parallel.
+   * @throws Exception exception
+   */
+  @Test
+  public void parallel() throws Exception {
+    final int threads = 4, commits = 10;
+    file.write(new byte[threads * commits]);
+    final Journal journal = new Journal(jnl);
+    final ArrayList<Thread> list = new ArrayList<>();
+    final ArrayList<Exception> errors = new ArrayList<>();
+    for(int t = 0; t < threads; t++) {
+      final int thread = t;
+      list.add(new Thread() {
+        @Override
+        public void run() {
+          try {
+            for(int c = 0; c < commits; c++) {
+              journal.block(file, thread * commits + c, new byte[] { 'x' }, 1);
+              journal.commit();
+            }
+          } catch(final IOException ex) {
+            synchronized(errors) { errors.add(ex); }
+          }
+        }
+      });
+    }
+    for(final Thread thread : list) thread.start();
+    for(final Thread thread : list) thread.join();
+    if(!errors.isEmpty()) throw errors.get(0);
+    copy.write(jnl.read());
+
+    Journal.recover(copy);
+    final byte[] data = file.read();
+    for(final byte b : data) assertEquals('x', b);
+    journal.close();
+  }
+
+  /**
+   * Keeps files that have been rewritten by committed updates.
+   * @throws IOException I/O exception
+   */
+  @Test
+  public void file() throws IOException {
+    final Journal journal = new Journal(jnl);
+    file.write(token("abc"));
+    journal.file(file);
+    file.write(token("x"));
+    journal.commit();
+    assertFalse(backup.exists());
+    copy.write(jnl.read());
+
+    Journal.recover(copy);
+    assertEquals("x", string(file.read()));
+    journal.close();
+    assertFalse(jnl.exists());
+  }
+
+  /**
+   * Restores files that have been rewritten by uncommitted updates.
+   * @throws IOException I/O exception
+   */
+  @Test
+  public void restore() throws IOException {
+    final Journal journal = new Journal(jnl);
+    file.write(token("abc"));
+    journal.file(file);
+    assertTrue(backup.exists());
+    file.write(token("x"));
+    copy.write(jnl.read());
+
+    Journal.recover(copy);
+    assertEquals("abc", string(file.read()));
+    assertFalse(backup.exists());
+    journal.close();
+  }
+
+  /**
+   * Deletes files that have been created by uncommitted updates.
+   * @throws IOException I/O exception
+   */
+  @Test
+  public void created() throws IOException {
+    final Journal journal = new Journal(jnl);
+    file.write(token("abc"));
+    journal.created(file);
+    journal.ahead();
+    copy.write(jnl.read());
+
+    Journal.recover(copy);
+    assertFalse(file.exists());
+    journal.close();
+  }
+}
@@ -0,0 +1,18 @@
+package org.basex.io.random;
+
+import java.io.*;
+
+import org.basex.io.*;
+
+/**
+ * Tests for class {@link DataAccess}, using memory-mapped file access.
+ *
+ * @author BaseX Team 2005-17, BSD License
+ * @author Christian Gruen
+ */
+public final class MappedDataAccessTest extends DataAccessTest {
+  @Override
+  DataAccess open(final IOFile input) throws IOException {
+    return new DataAccess(input, true);
+  }
+}
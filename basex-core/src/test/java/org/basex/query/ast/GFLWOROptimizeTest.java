@@ -1,5 +1,6 @@
 package org.basex.query.ast;
 
+import org.basex.query.*;
 import org.basex.query.expr.*;
 import org.basex.query.expr.gflwor.*;
 import org.basex.query.func.util.*;
@@ -298,4 +299,129 @@ public final class GFLWOROptimizeTest extends QueryPlanTest {
         "count(//VarRef) = 1"
     );
   }
+
+  /** Tests the rewriting of equality comparisons to hash joins. */
+  @Test public void hashJoin() {
+    final String data = "let $o := (<o c='2' n='1'/>, <o c='1' n='2'/>, <o c='3' n='3'/>) " +
+      "let $c := (<c id='1' n='a'/>, <c id='2' n='b'/>, <c id='1' n='c'/>) ";
+    check(data + "for $a in $o, $b in $c where $a/@c = $b/@id return $a/@n || $b/@n",
+        "1b\n2a\n2c",
+        Util.info("exists(//%)", Join.class),
+        Util.info("empty(//%)", Where.class));
+    // operands are swapped, multiple probe values, duplicates
+    check(data + "for $a in $o, $b in $c where ($b/@id, $b/@id) = ($a/@c, $a/@n) " +
+        "return $a/@n || $b/@n",
+        "1a\n1b\n1c\n2a\n2b\n2c",
+        Util.info("exists(//%)", Join.class));
+    // numbers with different types
+    check("for $a in (0, 1, 2) for $b in (0e0, -0e0, 2e0, xs:double('NaN')) " +
+        "where $a = $b return $a || '=' || $b",
+        "0=0\n0=-0\n2=2",
+        Util.info("exists(//%)", Join.class));
+    // no rewriting: key depends on outer variable, types differ
+    check("for $a in 1 to 3, $b in 1 to 3 where $a + $b = $a * 2 return $b",
+        "1\n2\n3",
+        Util.info("empty(//%)", Join.class));
+    check("for $a in ('1', '2'), $b in 1 to 3 where $a = string($b) return $b",
+        "1\n2",
+        Util.info("exists(//%)", Join.class));
+    error("for $a in ('1', '2'), $b in 1 to 3 where $a = $b return $b", QueryError.CMPTYPES_X_X);
+  }
+
+  /** Tests the top-k evaluation of order by clauses. */
+  @Test public void orderByLimit() {
+    check("head(for $i in (5, 2, 7, 1, 9) order by $i descending return $i)",
+        "9",
+        "//OrderBy/@limit = 1");
+    check("subsequence(for $i in 1 to 100 order by $i mod 10, $i return $i, 2, 3)",
+        "20\n30\n40",
+        "//OrderBy/@limit = 4");
+    // stable sort
+    check("(for $i in 1 to 20 order by $i mod 2 return $i)[position() <= 3]",
+        "2\n4\n6",
+        "//OrderBy/@limit = 3");
+    check("(for $i in (1, 2, 3, 4) let $k := (1, 2)[$i] order by $k empty greatest " +
+        "return $i)[2]",
+        "2",
+        "//OrderBy/@limit = 2");
+    // no limit: return clause may yield no results
+    check("head(for $i in 1 to 5 order by -$i return $i[. < 3])",
+        "2",
+        "empty(//OrderBy/@limit)");
+  }
+
+  /** Tests the aggregation of non-grouping variables. */
+  @Test public void groupByAggregate() {
+    check("for $i in 1 to 10 group by $k := $i mod 2 return $k || ':' || count($i)",
+        "1:5\n0:5",
+        "exists(//GroupBy/@aggregate)");
+    check("for $i in (1, 2.5, 3e0, 4) group by $k := $i mod 2 = 0 return sum($i)",
+        "6.5\n4",
+        "exists(//GroupBy/@aggregate)");
+    check("for $a in (<a>3</a>, <a>10</a>, <a>2</a>) group by $k := 1 return max($a)",
+        "10",
+        "exists(//GroupBy/@aggregate)");
+    check("for $i in 1 to 4 let $v := $i[. > 3] group by $k := $i mod 2 " +
+        "return sum($v, 'none')",
+        "none\n4",
+        "exists(//GroupBy/@aggregate)");
+    // errors are only raised if the aggregation function is called
+    check("for $i in (1, 'a', 2) group by $k := $i instance of xs:integer " +
+        "return if($k) then sum($i) else ()",
+        "3",
+        "exists(//GroupBy/@aggregate)");
+    error("for $i in (1, 'a') group by $k := 1 return sum($i)", QueryError.SUMNUM_X_X);
+    // no aggregation: different functions, values are used otherwise
+    check("for $i in 1 to 4 group by $k := $i mod 2 return count($i) + sum($i)",
+        "6\n8",
+        "empty(//GroupBy/@aggregate)");
+    check("for $i in 1 to 4 group by $k := $i mod 2 return count($i) || string-join($i)",
+        "213\n224",
+        "empty(//GroupBy/@aggregate)");
+  }
+
+  /** Tests the parallel evaluation of FLWOR expressions. */
+  @Test public void parallel() {
+    final String par = "(# basex:parallel #) ";
+    check("deep-equal(" + par + "{ for $i in 1 to 10000 let $j := $i * $i " +
+        "where $j mod 3 = 1 return $j }, for $i in 1 to 10000 let $j := $i * $i " +
+        "where $j mod 3 = 1 return $j)",
+        "true",
+        "//GFLWOR/@parallel = 'true'");
+    // positional variable, outer variables, context
+    check("string-join(" + par + "{ for $s at $p in ('a', 'b', 'c') return $p || $s })",
+        "1a2b3c",
+        "//GFLWOR/@parallel = 'true'");
+    check("for $f in (2, 3) return sum(" + par + "{ for $i in 1 to 100 return $i * $f })",
+        "10100\n15150",
+        "//GFLWOR/@parallel = 'true'");
+    check("(10, 20) ! sum(" + par + "{ for $i in 1 to 100 return . + $i })",
+        "6050\n7050",
+        "//GFLWOR/@parallel = 'true'");
+    check("declare function local:f($i) { <a>{ $i }</a> }; " +
+        "sum(" + par + "{ for $i in 1 to 1000 return local:f($i) })",
+        "500500",
+        "//GFLWOR/@parallel = 'true'");
+    // nested evaluation in the same pool
+    check("sum(" + par + "{ for $i in 1 to 10 return sum(" + par +
+        "{ for $j in 1 to 100 return $i * $j }) })",
+        "277750",
+        "//GFLWOR/@parallel = 'true'");
+    error(par + "{ for $i in 1 to 1000 return if($i = 777) then error() else $i }",
+        QueryError.FUNERR1);
+    // the first error is returned, remaining tasks are cancelled
+    error(par + "{ for $i in 1 to 100000 return if($i mod 10 = 0) then error() else $i }",
+        QueryError.FUNERR1);
+    // no parallel evaluation: order by, non-deterministic code, lazy static variables
+    check("string-join(" + par + "{ for $i in 1 to 3 order by -$i return $i })",
+        "321",
+        "empty(//GFLWOR/@parallel)");
+    check("count(" + par + "{ for $i in 1 to 3 return random:double() })",
+        "3",
+        "empty(//GFLWOR/@parallel)");
+    check("declare %basex:lazy variable $v := <v>1</v>; " +
+        "sum(" + par + "{ for $i in 1 to 3 return $i + $v })",
+        "9",
+        "empty(//GFLWOR/@parallel)");
+  }
 }
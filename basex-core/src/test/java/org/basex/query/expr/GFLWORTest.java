@@ -2,7 +2,14 @@ package org.basex.query.expr;
 
 import static org.junit.Assert.*;
 
+import java.io.*;
+
+import org.basex.core.*;
+import org.basex.core.cmd.CreateDB;
+import org.basex.core.cmd.DropDB;
+import org.basex.io.*;
 import org.basex.query.*;
+import org.basex.util.*;
 import org.junit.*;
 
 /**
@@ -30,4 +37,114 @@ public final class GFLWORTest extends AdvancedQueryTest {
   public void posOptimizationTest() {
     assertEquals("<a/>", query("for $a at $p in (<a/>,<b/>)/. where $p < 2 return $a"));
   }
+
+  /** Group by: path arguments of aggregation functions. */
+  @Test
+  public void groupByAggregatePath() {
+    assertEquals("3\n9", query("let $d := <x><a v='3'/><a v='4'/><a v='5'/></x> " +
+        "for $i in $d/a group by $k := $i/@v > 3 order by $k return sum($i/@v)"));
+    assertEquals("5\n3", query("let $d := <x><a v='3'/><a v='4'/><a v='5'/></x> " +
+        "for $i in $d/a group by $k := $i/@v > 3 order by $k descending return max($i/@v)"));
+    assertEquals("ok", query("for $i in (1, <a v='7'/>) group by $k := 1 " +
+        "return if($k = 5) then max($i/@v) else 'ok'"));
+  }
+
+  /** Order by: sorted runs on disk. */
+  @Test
+  public void orderBySpill() {
+    final StringBuilder sb = new StringBuilder("<x>");
+    for(int i = 0; i < 40; i++) sb.append("<a v='").append(i * 7 % 9).append("'/>");
+    execute(new CreateDB(NAME, sb.append("</x>").toString()));
+
+    final String[] queries = {
+      "for $i in 1 to 100 order by $i mod 7, -$i return $i",
+      "for $i in 1 to 50 order by string($i) descending return <a>{ $i }</a>",
+      "for $a in //a order by $a/@v descending return $a",
+      "for $i in 1 to 20 let $d := xs:date('2000-01-01') + xs:dayTimeDuration('P' || $i || 'D') " +
+        "order by $i mod 4, $d descending return $d",
+      "for $i in 1 to 30 let $k := (1.5e0, xs:double('NaN'), -0e0, (), 2)[$i mod 5 + 1] " +
+        "order by $k empty greatest return $i || ':' || $k",
+      "for $i in 1 to 30 let $f := function() { $i } order by $i mod 3 return $f()",
+      "for $i in 1 to 1000 order by $i mod 13, -$i return $i",
+      "head(for $i in 1 to 100 order by -$i return $i)",
+      "(for $i in 1 to 100 order by $i mod 9 return $i)[position() = 3 to 5]",
+      "for $i in 1 to 20 let $r := 1 to $i * 1000000000 order by -$i return count($r)"
+    };
+    final int files = tempFiles();
+    try {
+      for(final String query : queries) {
+        set(MainOptions.SORTBUFFER, 0);
+        final String expected = query(query);
+        set(MainOptions.SORTBUFFER, 4);
+        assertEquals(query, expected, query(query));
+      }
+    } finally {
+      set(MainOptions.SORTBUFFER, 0);
+      execute(new DropDB(NAME));
+    }
+    // temporary files must have been deleted
+    assertEquals(files, tempFiles());
+  }
+
+  /** Tests the partitioning of groups on disk. */
+  @Test
+  public void groupBySpill() {
+    final StringBuilder sb = new StringBuilder("<x>");
+    for(int i = 0; i < 40; i++) sb.append("<a v='").append(i * 7 % 9).append("'/>");
+    execute(new CreateDB(NAME, sb.append("</x>").toString()));
+
+    final String[] queries = {
+      "for $i in 1 to 200 group by $k := $i mod 37 return $k || ':' || count($i) || ':' || " +
+        "sum($i)",
+      "for $i in 1 to 200 let $j := $i group by $k := $i mod 37 " +
+        "return $k || ':' || count($i) || ':' || max($j)",
+      "for $a in //a group by $v := $a/@v return $v || ':' || count($a) || ':' || " +
+        "count($a/ancestor::x)",
+      "for $i in 1 to 50 let $e := <e>{ $i }</e> group by $k := $i mod 7 " +
+        "return $k || ':' || string-join($e, ',')",
+      "for $i in 1 to 60 group by $a := $i mod 3, $b := ($i mod 5)[. > 0] " +
+        "return $a || '-' || $b || ':' || count($i)",
+      "for $s in ('a', 'A', 'b', 'B', 'c', 'C', 'd', 'e') group by $k := $s collation " +
+        "'http://www.w3.org/2005/xpath-functions/collation/html-ascii-case-insensitive' " +
+        "return lower-case($k) || ':' || count($s)",
+      "for $a in //a group by $k := $a/@v mod 4 return $k || ':' || sum($a/@v) || ':' || " +
+        "count($a/@v)",
+      "for $a in //a group by $k := $a/@v mod 4 return $k || ':' || min($a/@v) || ':' || " +
+        "max($a/../a/@v)",
+      "for $a in //a, $b in (1, 2) group by $k := $a/@v mod 4 return $k || ':' || " +
+        "sum($a/@v)",
+      "for $a in (//a, //a) group by $k := $a/@v mod 4 return $k || ':' || sum($a/@v)",
+      "for $a in //a group by $k := $a/@v mod 4 return $k || ':' || sum($a/../a/@v)"
+    };
+    final int files = tempFiles();
+    try {
+      for(final String query : queries) {
+        // groups are returned in a different order if they are partitioned
+        final String sorted = "sort(" + query + ')';
+        set(MainOptions.GROUPBUFFER, 0);
+        final String expected = query(sorted);
+        set(MainOptions.GROUPBUFFER, 2);
+        assertEquals(query, expected, query(sorted));
+      }
+    } finally {
+      set(MainOptions.GROUPBUFFER, 0);
+      execute(new DropDB(NAME));
+    }
+    // temporary files must have been deleted
+    assertEquals(files, tempFiles());
+  }
+
+  /**
+   * Returns the number of temporary files.
+   * @return number of files
+   */
+  private static int tempFiles() {
+    final String[] names = new File(Prop.TMP).list(new FilenameFilter() {
+      @Override
+      public boolean accept(final File dir, final String name) {
+        return name.startsWith(Prop.NAME + '-') && name.endsWith(IO.TMPSUFFIX);
+      }
+    });
+    return names == null ? 0 : names.length;
+  }
 }
@@ -0,0 +1,99 @@
+package org.basex.query.index;
+
+import org.basex.core.cmd.*;
+import org.basex.core.parse.Commands.CmdIndex;
+import org.basex.query.ast.*;
+import org.basex.query.expr.*;
+import org.basex.query.expr.index.*;
+import org.basex.util.*;
+import org.junit.*;
+import org.junit.Test;
+
+/**
+ * This class tests if date range queries are correctly evaluated with(out) the index.
+ *
+ * @author BaseX Team 2005-17, BSD License
+ * @author Christian Gruen
+ */
+public final class DateRangeTest extends QueryPlanTest {
+  /**
+   * Initializes the tests.
+   */
+  @BeforeClass
+  public static void start() {
+    // create initial document
+    final TokenBuilder tb = new TokenBuilder();
+    tb.add("<xml>");
+    for(int i = 1; i <= 28; i++) {
+      final String d = "2017-02-" + (i < 10 ? "0" : "") + i;
+      // add dates and dateTimes
+      tb.add("<d>").add(d).add("</d>");
+      tb.add("<e ts='").add(d).add("T12:00:00Z'/>");
+    }
+    tb.add("<x>no date</x><x>2017-02-30</x><x>1234567</x>");
+    tb.add("</xml>");
+    execute(new CreateDB(NAME, tb.toString()));
+  }
+
+  /**
+   * Finishes the tests.
+   */
+  @AfterClass
+  public static void finish() {
+    execute(new DropDB(NAME));
+  }
+
+  /**
+   * Testing dates.
+   */
+  @Test
+  public void date() {
+    final Class<? extends Expr> clz = DateRangeAccess.class;
+    test("count(//d[text() >= xs:date('2017-02-10') and text() <= xs:date('2017-02-19')])",
+        "10", clz);
+    test("count(//d[text() > xs:date('2017-02-10') and text() < xs:date('2017-02-19')])",
+        "8", clz);
+    test("count(//d[text() > xs:date('2017-02-20')][text() < xs:date('2017-02-20')])", "0");
+  }
+
+  /**
+   * Testing dateTimes.
+   */
+  @Test
+  public void dateTime() {
+    final Class<? extends Expr> clz = DateRangeAccess.class;
+    test("count(//e[@ts >= xs:dateTime('2017-02-20T12:00:00Z')])", "9", clz);
+    test("count(//e[@ts < xs:dateTime('2017-02-20T12:00:00+01:00')])", "19", clz);
+    test("count(//e[@ts > xs:dateTime('2017-02-01T00:00:00Z') and " +
+        "@ts < xs:dateTime('2017-02-03T00:00:00Z')])", "2", clz);
+  }
+
+  /**
+   * Tests a query with and without index.
+   * @param query query
+   * @param result expected result
+   * @param expr class expected in query plan
+   */
+  private static void test(final String query, final String result,
+      final Class<? extends Expr> expr) {
+
+    execute(new CreateIndex(CmdIndex.TEXT));
+    execute(new CreateIndex(CmdIndex.ATTRIBUTE));
+    check(query, result, "exists(//" + Util.className(expr) + ')');
+    execute(new DropIndex(CmdIndex.TEXT));
+    execute(new DropIndex(CmdIndex.ATTRIBUTE));
+    check(query, result, "not(//" + Util.className(expr) + ')');
+  }
+
+  /**
+   * Tests a query with and without index.
+   * @param query query
+   * @param result expected result
+   */
+  private static void test(final String query, final String result) {
+    execute(new CreateIndex(CmdIndex.TEXT));
+    check(query, result);
+    execute(new DropIndex(CmdIndex.TEXT));
+    check(query, result);
+  }
+}
@@ -4,6 +4,7 @@ import static org.basex.query.func.Function.*;
 
 import org.basex.core.*;
 import org.basex.core.cmd.*;
+import org.basex.core.parse.Commands.*;
 import org.basex.query.ast.*;
 import org.basex.query.expr.ft.*;
 import org.basex.query.expr.index.*;
@@ -216,6 +217,179 @@ public final class IndexOptimizeTest extends QueryPlanTest {
     query("//a[not(. = '')]/text()", "1\n2 3");
   }
 
+  /**
+   * Checks if the results of multiple index accesses are intersected.
+   */
+  @Test
+  public void intersect() {
+    execute(new CreateDB(NAME, "<xml><a x='1' y='1'>A</a><a x='1' y='2'>B</a>" +
+        "<a x='2' y='1'>A</a><a x='1' y='1'>B</a></xml>"));
+
+    final String count = "count(//" + Util.className(ValueAccess.class) + ") = ";
+    check("data(//a[@x = '1'][@y = '1'])", "A\nB", count + 2);
+    check("data(//a[@x = '1'][@y = '1'][text() = 'B'])", "B", count + 3);
+    check("data(//a[@x = '2'][@y = '2'])", "", count + 2);
+    check("data(//a[@x = '1'][not(@y = '2')])", "A\nB", count + 1);
+  }
+
+  /**
+   * Checks the element index.
+   * Test method.
+   */
+  @Test
+  public void elementIndex() {
+    set(MainOptions.ELEMINDEX, true);
+    set(MainOptions.UPDINDEX, true);
+    try {
+      execute(new CreateDB(NAME, "<xml/>"));
+      execute(new XQuery("for $i in 1 to 200 return insert node <a/> into /xml"));
+      execute(new XQuery("insert node (<b>1</b>, <b>2</b>) into /xml/a[50]"));
+
+      final String exists = "exists(//" + Util.className(ElementAccess.class) + ')';
+      check("data(//b)", "1\n2", exists);
+      check("data(//b[. = '2'])", "2", exists);
+      check("count(//xml/a/b)", "2", exists);
+      check("count(//a)", "200", "not(" + exists + ')');
+
+      execute(new XQuery("rename node /xml/a[50]/b[1] as 'c'"));
+      check("data(//b)", "2", exists);
+      check("data(//c)", "1", exists);
+      execute(new XQuery("delete node //c"));
+      query("data(//c)", "");
+    } finally {
+      set(MainOptions.ELEMINDEX, false);
+      set(MainOptions.UPDINDEX, false);
+    }
+  }
+
+  /**
+   * Checks the path-qualified value index.
+   * Test method.
+   */
+  @Test
+  public void pathValueIndex() {
+    set(MainOptions.PATHVALUEINDEX, true);
+    try {
+      execute(new CreateDB(NAME, "<xml><a><b>1</b><c k='1'>1</c></a><a><b>2</b><c k='2'>1</c></a>"
+          + "<d><b>1</b></d><d><b>2</b><b>1</b></d></xml>"));
+
+      final String paths = "exists(//" + Util.className(ValueAccess.class) + "/@paths)";
+      check("count(//a[b = '1'])", "1", paths);
+      check("count(//d[b = '1'])", "2", paths);
+      check("count(//b[. = '1'])", "3", paths);
+      check("count(//a[c = '1'])", "2", paths);
+      check("count(//a[c/@k = '2'])", "1", paths);
+      check("count(//d[b/text() = '2'])", "1", paths);
+
+      execute(new XQuery("insert node <a><b>1</b></a> into /xml"));
+      query("count(//a[b = '1'])", "2");
+      execute(new Optimize());
+      check("count(//a[b = '1'])", "2", paths);
+    } finally {
+      set(MainOptions.PATHVALUEINDEX, false);
+    }
+  }
+
+  /**
+   * Checks that the path-qualified value index is rebuilt with the path summary.
+   * Test method.
+   */
+  @Test
+  public void pathValueIndexOptimize() {
+    execute(new CreateDB(NAME, "<xml><a><b>1</b></a><c><b><name>Smith</name></b></c></xml>"));
+    execute(new XQuery("delete node //a"));
+    execute(new CreateIndex(CmdIndex.PATHVALUE));
+    final String query = "//b/name[. = 'Smith']/text()";
+    query(query, "Smith");
+    execute(new Optimize());
+    query(query, "Smith");
+    check("count(" + query + ')', "1", "exists(//" + Util.className(ValueAccess.class) + ')');
+  }
+
+  /**
+   * Checks the trigram index.
+   * Test method.
+   */
+  @Test
+  public void trigramIndex() {
+    set(MainOptions.TRIGRAMINDEX, true);
+    set(MainOptions.UPDINDEX, true);
+    try {
+      final TokenBuilder tb = new TokenBuilder("<xml>");
+      for(int i = 1; i <= 100; i++) {
+        tb.add("<a k='key").addInt(i).add("'>text ").addInt(i).add("</a>");
+      }
+      execute(new CreateDB(NAME, tb.add("<b>Grüße, Müller</b></xml>").toString()));
+
+      final String exists = "exists(//" + Util.className(TrigramAccess.class) + ')';
+      check("data(//a[contains(., 'xt 42')])", "text 42", exists);
+      check("data(//a[contains(text(), 'xt 4')])", "text 4\ntext 40\ntext 41\ntext 42\ntext 43\n"
+          + "text 44\ntext 45\ntext 46\ntext 47\ntext 48\ntext 49", exists);
+      check("data(//a[starts-with(., 'xt 42')])", "", exists);
+      check("data(//a[ends-with(., 't 100')])", "text 100", exists);
+      check("data(//a[contains(@k, 'y99')])", "text 99", exists);
+      check("data(//@k[starts-with(., 'key10')])", "key10\nkey100", exists);
+      check("data(//b[contains(., 'üße')])", "Grüße, Müller", exists);
+      check("count(//a[contains(., 'xyz')])", "0", "not(" + exists + ')');
+      check("count(//a[contains(., 'xt')])", "100", "not(" + exists + ')');
+
+      check("data(//a[matches(., '^text 5.$')])", "text 50\ntext 51\ntext 52\ntext 53\n"
+          + "text 54\ntext 55\ntext 56\ntext 57\ntext 58\ntext 59", exists);
+      check("data(//a[matches(., 'xt 9+9')])", "text 99", exists);
+      check("data(//a[matches(., ' 10', 'q')])", "text 10\ntext 100", exists);
+      check("count(//a[matches(., 'x.5', 'q')])", "0", "not(" + exists + ')');
+      check("count(//a[matches(., 't|x')])", "100", "not(" + exists + ')');
+      check("count(//a[matches(., 'x(t 1)?0')])", "2", "not(" + exists + ')');
+      check("data(//b[matches(., '(M)()()()()()()()(ü)(l)\\10er')])", "Grüße, Müller",
+          "not(" + exists + ')');
+
+      // no index access for non-default collations
+      final String coll = "declare default collation " +
+          "'http://basex.org/collation?strength=primary'; ";
+      check(coll + "data(//a[contains(., 'TEXT 42')])", "text 42", "not(" + exists + ')');
+      check(coll + "data(//a[starts-with(., 'TEXT 42')])", "text 42", "not(" + exists + ')');
+      check(coll + "data(//a[ends-with(., 'T 100')])", "text 100", "not(" + exists + ')');
+      execute(new XQuery("insert nodes (<x>hello foo bar</x>, <x>HELLO FOO</x>) into /xml"));
+      check(coll + "count(db:open('" + NAME + "')//x[contains(text(), 'foo')])", "2",
+          "not(" + exists + ')');
+      check("count(db:open('" + NAME + "')//x[contains(text(), 'foo')])", "1",
+          exists);
+
+      execute(new XQuery("insert node <a>new text</a> into /xml"));
+      check("data(//a[contains(text(), 'new')])", "new text", exists);
+      execute(new XQuery("replace value of node //a[. = 'new text'] with 'old text'"));
+      check("count(//a[contains(text(), 'new')])", "0", "not(" + exists + ')');
+      check("data(//a[contains(text(), 'old')])", "old text", exists);
+    } finally {
+      set(MainOptions.TRIGRAMINDEX, false);
+      set(MainOptions.UPDINDEX, false);
+    }
+  }
+
+  /**
+   * Checks if statistics are considered when choosing index accesses.
+   * Test method.
+   */
+  @Test
+  public void statistics() {
+    final TokenBuilder tb = new TokenBuilder("<xml><x><b>1</b></x>");
+    for(int i = 1; i <= 200; i++) tb.add("<n>").addInt(i * 10).add("</n>");
+    for(int i = 1; i <= 150; i++) tb.add("<y><b>1</b><b>1</b><b>1</b></y>");
+    execute(new CreateDB(NAME, tb.add("</xml>").toString()));
+
+    // range between two values: no results
+    final String range = "exists(//" + Util.className(RangeAccess.class) + ')';
+    check("count(//n[text() > 11 and text() < 19])", "0", "not(" + range + ')');
+    check("count(//n[text() >= 15 and text() <= 25])", "1", range);
+    execute(new Close());
+    execute(new Open(NAME));
+    check("count(//n[text() > 11 and text() < 19])", "0", "not(" + range + ')');
+    // scan is cheaper than index access
+    final String value = "exists(//" + Util.className(ValueAccess.class) + ')';
+    check("count(/xml/x[b = '1'])", "1", "not(" + value + ')');
+    check("count(//b[. = '1'])", "451", value);
+  }
+
   /**
    * Checks the selective index feature.
    * Test method.
@@ -0,0 +1,95 @@
+package org.basex.query.index;
+
+import org.basex.core.cmd.*;
+import org.basex.core.parse.Commands.CmdIndex;
+import org.basex.query.ast.*;
+import org.basex.query.expr.*;
+import org.basex.query.expr.index.*;
+import org.basex.util.*;
+import org.junit.*;
+import org.junit.Test;
+
+/**
+ * This class tests if numeric range queries are correctly evaluated with(out) the index.
+ *
+ * @author BaseX Team 2005-17, BSD License
+ * @author Christian Gruen
+ */
+public final class NumericRangeTest extends QueryPlanTest {
+  /**
+   * Initializes the tests.
+   */
+  @BeforeClass
+  public static void start() {
+    // create initial document
+    final TokenBuilder tb = new TokenBuilder();
+    tb.add("<xml>");
+    for(int i = 0; i < 1000; i++) {
+      // add integer and decimal values
+      tb.add("<n>").addInt(i - 500).add("</n>");
+      tb.add("<d>").addExt(i / 4.0).add("</d>");
+    }
+    tb.add("</xml>");
+    execute(new CreateDB(NAME, tb.toString()));
+  }
+
+  /**
+   * Finishes the tests.
+   */
+  @AfterClass
+  public static void finish() {
+    execute(new DropDB(NAME));
+  }
+
+  /**
+   * Testing greater-equal and less-equal.
+   */
+  @Test
+  public void geLe() {
+    final Class<? extends Expr> clz = RangeAccess.class;
+    test("count(//n[text() >= 490 and text() <= 499])", "10", clz);
+    test("count(//n[text() >= -10 and text() <= 10])", "21", clz);
+    test("count(//n[text() >= 5 and text() <= 150])", "146", clz);
+    test("count(//n[text() >= -1000 and text() <= 1000])", "1000", clz);
+    test("count(//d[text() >= 1.5 and text() <= 3])", "7", clz);
+  }
+
+  /**
+   * Testing greater-than and less-than.
+   */
+  @Test
+  public void gtLt() {
+    final Class<? extends Expr> clz = RangeAccess.class;
+    test("count(//n[text() > -10 and text() < 10])", "19", clz);
+    test("count(//n[text() > 5 and text() < 150])", "144", clz);
+    test("count(//d[text() > 1.5 and text() < 3])", "5", clz);
+    test("count(//d[text() > 1.6 and text() <= 1.7])", "0");
+  }
+
+  /**
+   * Tests a query with and without index.
+   * @param query query
+   * @param result expected result
+   * @param expr class expected in query plan
+   */
+  private static void test(final String query, final String result,
+      final Class<? extends Expr> expr) {
+
+    execute(new CreateIndex(CmdIndex.TEXT));
+    check(query, result, "exists(//" + Util.className(expr) + ')');
+    execute(new DropIndex(CmdIndex.TEXT));
+    check(query, result, "not(//" + Util.className(expr) + ')');
+  }
+
+  /**
+   * Tests a query with and without index.
+   * @param query query
+   * @param result expected result
+   */
+  private static void test(final String query, final String result) {
+    execute(new CreateIndex(CmdIndex.TEXT));
+    check(query, result);
+    execute(new DropIndex(CmdIndex.TEXT));
+    check(query, result);
+  }
+}
@@ -0,0 +1,65 @@
+package org.basex.util;
+
+import static org.basex.util.Token.*;
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.*;
+
+/**
+ * Class for testing the {@link LZ4} methods.
+ *
+ * @author BaseX Team 2005-17, BSD License
+ * @author Christian Gruen
+ */
+public final class LZ4Test {
+  /** Empty and short input. */
+  @Test
+  public void small() {
+    run(new byte[0]);
+    run(token("a"));
+    run(token("abcdefghijklm"));
+  }
+
+  /** Repetitive input. */
+  @Test
+  public void repetitive() {
+    final TokenBuilder tb = new TokenBuilder();
+    for(int i = 0; i < 10000; i++) tb.add("<item id='").addInt(i).add("'>text</item>");
+    final byte[] bytes = tb.finish();
+    assertTrue(run(bytes) < bytes.length / 4);
+
+    // overlapping matches
+    run(new byte[100000]);
+    run(token("ababababababababababababababababababababab"));
+  }
+
+  /** Random input. */
+  @Test
+  public void random() {
+    final Random rnd = new Random(0);
+    for(int l = 1; l < 100000; l *= 3) {
+      final byte[] bytes = new byte[l];
+      rnd.nextBytes(bytes);
+      run(bytes);
+      // few different bytes
+      for(int b = 0; b < l; b++) bytes[b] = (byte) rnd.nextInt(4);
+      run(bytes);
+    }
+  }
+
+  /**
+   * Compresses and decompresses the specified input.
+   * @param bytes input
+   * @return length of compressed bytes
+   */
+  private static int run(final byte[] bytes) {
+    final byte[] comp = new byte[LZ4.maxLength(bytes.length)];
+    final int cl = LZ4.compress(bytes, bytes.length, comp);
+    final byte[] decomp = new byte[bytes.length];
+    assertEquals(bytes.length, LZ4.decompress(comp, 0, cl, decomp));
+    assertArrayEquals(bytes, decomp);
+    return cl;
+  }
+}
@@ -0,0 +1,136 @@
+package org.basex.local.multiple;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.*;
+
+import org.basex.*;
+import org.basex.core.*;
+import org.basex.core.cmd.*;
+import org.basex.io.*;
+import org.basex.io.out.*;
+import org.basex.util.*;
+import org.junit.*;
+import org.junit.Test;
+
+/**
+ * This class measures the throughput of parallel read-only queries on the same database.
+ *
+ * @author BaseX Team 2005-17, BSD License
+ * @author Christian Gruen
+ */
+public final class ParallelReadTest extends SandboxTest {
+  /** Number of items to be created (~100 MB, which is similar to the XMark 1.0 instance). */
+  private static final int ITEMS = 500000;
+  /** Number of queries per reader. */
+  private static final int RUNS = 5;
+  /** Maximum number of parallel readers (at least; more if more processors are available). */
+  private static final int READERS = 8;
+  /** Query, which is mostly evaluated by accessing the database table. */
+  private static final String QUERY = "count(db:open('" + NAME + "')//*[text()])";
+  /** Expected result (each item has three elements with text). */
+  private static final String RESULT = Integer.toString(ITEMS * 3);
+
+  /**
+   * Initializes the test database.
+   * @throws IOException I/O exception
+   */
+  @BeforeClass
+  public static void initDB() throws IOException {
+    /* generate test file. example:
+     * <site>
+     *   <item id="item0"><name>ndjkeibj</name><price>12</price>
+     *     <description>...</description></item>
+     * </site>
+     */
+    final IOFile dbfile = new IOFile(sandbox(), NAME);
+    try(BufferOutput bo = new BufferOutput(dbfile.path())) {
+      // use constant seed to create same test document every time
+      final Random rnd = new Random(0);
+      final byte[] cache = new byte[64];
+      bo.write(Token.token("<site>"));
+      for(int i = 0; i < ITEMS; i++) {
+        bo.write(Token.token("<item id='item" + i + "'><name>"));
+        final int nl = rnd.nextInt(16) + 1;
+        for(int r = 0; r < nl; r++) cache[r] = (byte) ('a' + rnd.nextInt(26));
+        bo.write(cache, 0, nl);
+        bo.write(Token.token("</name><price>" + rnd.nextInt(1000) + "</price><description>"));
+        final int dl = rnd.nextInt(64) + 1;
+        for(int r = 0; r < dl; r++) cache[r] = (byte) ('a' + rnd.nextInt(26));
+        bo.write(cache, 0, dl);
+        bo.write(Token.token("</description></item>"));
+      }
+      bo.write(Token.token("</site>"));
+    }
+
+    // create database
+    set(MainOptions.TEXTINDEX, false);
+    set(MainOptions.ATTRINDEX, false);
+    execute(new CreateDB(NAME, dbfile.path()));
+    execute(new Close());
+    dbfile.delete();
+  }
+
+  /**
+   * Drops the test database.
+   */
+  @AfterClass
+  public static void finishDB() {
+    execute(new DropDB(NAME));
+  }
+
+  /**
+   * Runs the benchmark with 1, 2, 4, ... n parallel readers (n: maximum of {@link #READERS}
+   * and the number of available processors) and prints the throughput and the speedup.
+   * @throws Throwable throwable
+   */
+  @Test
+  public void readers() throws Throwable {
+    final int max = Math.max(READERS, Runtime.getRuntime().availableProcessors());
+    context.soptions.set(StaticOptions.PARALLEL, max);
+
+    // warm up
+    assertEquals(RESULT, query(QUERY));
+    final double single = run(1);
+    for(int readers = 2; readers <= max; readers <<= 1) {
+      final double qps = run(readers);
+      Util.outln("Speedup: %", String.format(Locale.ENGLISH, "%.2f", qps / single));
+    }
+  }
+
+  /**
+   * Runs the specified number of readers and prints the throughput.
+   * @param readers number of readers
+   * @return number of queries per second
+   * @throws Throwable throwable
+   */
+  private static double run(final int readers) throws Throwable {
+    final Reader[] rd = new Reader[readers];
+    for(int r = 0; r < readers; r++) rd[r] = new Reader();
+
+    final Performance perf = new Performance();
+    for(final Reader r : rd) r.start();
+    for(final Reader r : rd) r.join();
+    for(final Reader r : rd) if(r.error != null) throw r.error;
+    final double qps = readers * RUNS / (perf.time() / 1000000000d);
+    Util.outln("Readers: %, queries/sec: %", readers,
+        String.format(Locale.ENGLISH, "%.2f", qps));
+    return qps;
+  }
+
+  /** Single reader. */
+  private static final class Reader extends Thread {
+    /** Error. */
+    private Throwable error;
+
+    @Override
+    public void run() {
+      try {
+        for(int r = 0; r < RUNS; r++) assertEquals(RESULT, query(QUERY));
+      } catch(final Throwable th) {
+        error = th;
+      }
+    }
+  }
+}